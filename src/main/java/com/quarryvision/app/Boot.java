@@ -1,9 +1,12 @@
 package com.quarryvision.app;
 
 import com.quarryvision.core.db.Pg;
+import com.quarryvision.core.detection.BucketDetector;
 import com.quarryvision.core.importer.IngestProcessor;
 import com.quarryvision.core.importer.UsbIngestService;
+import com.quarryvision.core.ocr.OcrEnginePool;
 import com.quarryvision.core.ocr.OcrService;
+import com.quarryvision.core.queue.DeferredOcrService;
 import com.quarryvision.ui.MainController;
 import javafx.application.Application;
 import javafx.scene.Scene;
@@ -18,6 +21,7 @@ import java.util.List;
 // JavaFX Application (main)
 public class Boot extends Application {
     static Logger log = LoggerFactory.getLogger(Boot.class);
+    private static DeferredOcrService deferredOcr;
     @Override
     public void start(Stage stage) {
         Config cfg = Config.load();
@@ -47,6 +51,10 @@ public class Boot extends Application {
                 // 1) остановить фоновые задачи UI
                 root.shutdown();
             } catch (Throwable ignore) {}
+            // воркеры отложенного OCR держат движки пула — дождаться их до закрытия пула
+            if (deferredOcr != null) deferredOcr.close();
+            // нативные движки OCR: занятые detect() освободятся при возврате в пул
+            try { OcrEnginePool.closeShared(); } catch (Throwable ignore) {}
             try { Pg.close(); } catch (Throwable ignore) {}
             javafx.application.Platform.exit();
             System.exit(0);
@@ -60,6 +68,26 @@ public class Boot extends Application {
 
         // опциональная смок-инициализация OCR: -Dqv.ocr.init=true
         initOcrIfRequested();
+        // фоновый OCR событий, сохранённых без номера: -Dqv.ocr.deferred=true
+        startDeferredOcrIfRequested(cfg);
+    }
+
+    /** Воркеры очереди ocr_jobs (qv.ocr.deferredWorkers, по умолчанию 1): номера дочитываются после detect. */
+    private static void startDeferredOcrIfRequested(Config cfg) {
+        if (!BucketDetector.deferredOcr()) return;
+        try {
+            // RUNNING дольше аренды — брошены остановленным процессом; свежие может выполнять другой процесс
+            int requeued = Pg.requeueStaleOcrJobs(Long.getLong("qv.ocr.deferredLeaseSec", 1800L));
+            if (requeued > 0) log.info("Deferred OCR: requeued {} stale job(s)", requeued);
+            deferredOcr = new DeferredOcrService(
+                    DeferredOcrService.pgStore(Integer.getInteger("qv.ocr.deferredMaxAttempts", 3)),
+                    job -> new BucketDetector(cfg).ocrDeferred(Path.of(job.videoPath()), job.frames()),
+                    Integer.getInteger("qv.ocr.deferredWorkers", 1),
+                    Long.getLong("qv.ocr.deferredIdleMs", 2000L));
+            deferredOcr.start();
+        } catch (Throwable t) {
+            log.warn("Deferred OCR: start failed: {}", t.toString());
+        }
     }
 
     private static void startIngestIfRequested(Config cfg, List<String> args) {
@@ -116,8 +144,10 @@ public class Boot extends Application {
         int oem         = Integer.getInteger("qv.ocr.oem", 3);
         if (!flag) return;
         try {
-            new OcrService(new OcrService.Config(true, datapath, langs, psm, oem));
-            System.out.println("OCR: initialized datapath=" + datapath + " languages=" + langs + " psm=" + psm + " oem=" + oem);
+            // прогреваем общий пул движков: detect() потом только берёт их в аренду
+            OcrEnginePool pool = OcrEnginePool.shared(new OcrService.Config(true, datapath, langs, psm, oem));
+            System.out.println("OCR: initialized datapath=" + datapath + " languages=" + langs + " psm=" + psm + " oem=" + oem
+                    + " pool=" + pool.size());
         } catch (Throwable t) {
             System.out.println("OCR: init failed: " + t);
         }
@@ -8,6 +8,7 @@ import org.yaml.snakeyaml.Yaml;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -20,7 +21,26 @@ public record Config(Db db, ImportConf imp, DetectConf detection) {
                              int cooldownFrames, int minChangedPixels, int morphW, int morphH,
                              int mergeMs,
                              double emaAlpha, double thrLowFactor, int minActiveMs, int nmsWindowMs,
-                             boolean trace) {}
+                             boolean trace, int analysisWidth, double minChangedFrac,
+                             List<DetectProfile> profiles) {}
+    /**
+     * Профиль камеры/видео: glob по имени файла и полигон зоны погрузки (вершины в долях кадра 0..1).
+     * zones — несколько именованных зон (например, два погрузочных места) на одном декодировании;
+     * пусто — одна зона с roi профиля. ocrReader — чтение номеров камеры: "tesseract" или "template"
+     * (быстрые шаблоны символов, Tesseract — при низкой уверенности); null — -Dqv.ocr.reader.
+     */
+    public record DetectProfile(String name, String match, List<double[]> roi, List<DetectZone> zones,
+                                String ocrReader) {
+        public DetectProfile(String name, String match, List<double[]> roi) {
+            this(name, match, roi, List.of());
+        }
+        public DetectProfile(String name, String match, List<double[]> roi, List<DetectZone> zones) {
+            this(name, match, roi, zones, null);
+        }
+    }
+    /** Зона профиля: свой ROI и, при необходимости, свои пороги (null — берём из detect:). */
+    public record DetectZone(String name, List<double[]> roi, Integer diffThreshold, Double eventRatio,
+                             Double minChangedFrac) {}
 
     @SuppressWarnings("unchecked")
     public static Config load() {
@@ -59,11 +79,16 @@ public record Config(Db db, ImportConf imp, DetectConf detection) {
             int minActiveMs = det.get("minActiveMs") != null ? ((Number) det.get("minActiveMs")).intValue() : 1200;
             int nmsWindowMs = det.get("nmsWindowMs") != null ? ((Number) det.get("nmsWindowMs")).intValue() : 2000;
             boolean trace = det.get("trace") != null ? (Boolean) det.get("trace") : false;
+            // ширина кадра анализа движения (0 — полное разрешение) и порог долей кадра (-1 — берём minChangedPixels)
+            int analysisWidth = det.get("analysisWidth") != null ? ((Number) det.get("analysisWidth")).intValue() : 0;
+            double minChangedFrac = det.get("minChangedFrac") != null ? ((Number) det.get("minChangedFrac")).doubleValue() : -1.0;
+            List<DetectProfile> profiles = parseProfiles(det.get("profiles"));
             return  new Config(
                     new Db((String) db.get("url"), (String) db.get("user"), (String) db.get("pass")),
                     new ImportConf((List<String>) imp.get("patterns"), (String) imp.get("inbox"), (String) imp.get("source")),
                     new DetectConf(stepFrames, diffThreshold, eventRatio, cooldownFrames, minChangedPixels, morphW, morphH, mergeMs,
-                            emaAlpha, thrLowFactor, minActiveMs, nmsWindowMs, trace)
+                            emaAlpha, thrLowFactor, minActiveMs, nmsWindowMs, trace, analysisWidth, minChangedFrac,
+                            profiles)
             );
         } catch (Exception e) {
             throw new RuntimeException("Failed to load application.yaml", e);
@@ -71,4 +96,64 @@ public record Config(Db db, ImportConf imp, DetectConf detection) {
             try { if (in != null) in.close(); } catch (Exception ignore) {}
         }
     }
+
+    /**
+     * detect.profiles: [{ name, match, roi: [[x,y], ...], ocrReader?, zones: [{ name, roi, diffThreshold?, eventRatio?,
+     * minChangedFrac? }] }]; отсутствует — пустой список.
+     */
+    /** Предел имени зоны: столбец events.zone — varchar(32) (миграция V7). */
+    static final int ZONE_NAME_MAX = 32;
+
+    @SuppressWarnings("unchecked")
+    private static List<DetectProfile> parseProfiles(Object node) {
+        if (node == null) return List.of();
+        List<DetectProfile> out = new ArrayList<>();
+        for (Object o : (List<Object>) node) {
+            Map<String, Object> m = (Map<String, Object>) o;
+            String name = String.valueOf(m.getOrDefault("name", "profile" + out.size()));
+            String match = (String) m.get("match");
+            List<DetectZone> zones = new ArrayList<>();
+            Object zn = m.get("zones");
+            if (zn != null) {
+                for (Object zo : (List<Object>) zn) {
+                    Map<String, Object> z = (Map<String, Object>) zo;
+                    String zname = String.valueOf(z.getOrDefault("name", "zone" + zones.size()));
+                    if (zname.length() > ZONE_NAME_MAX) {
+                        throw new IllegalStateException("detect.profiles[" + name + "].zones: zone name '" + zname
+                                + "' is longer than " + ZONE_NAME_MAX + " characters");
+                    }
+                    if (zones.stream().anyMatch(x -> x.name().equals(zname))) {
+                        throw new IllegalStateException("detect.profiles[" + name + "].zones: duplicate zone '" + zname + "'");
+                    }
+                    zones.add(new DetectZone(zname, parsePolygon(name + "." + zname, z.get("roi")),
+                            z.get("diffThreshold") != null ? ((Number) z.get("diffThreshold")).intValue() : null,
+                            z.get("eventRatio") != null ? ((Number) z.get("eventRatio")).doubleValue() : null,
+                            z.get("minChangedFrac") != null ? ((Number) z.get("minChangedFrac")).doubleValue() : null));
+                }
+            }
+            String ocrReader = m.get("ocrReader") != null ? String.valueOf(m.get("ocrReader")).trim().toLowerCase() : null;
+            if (ocrReader != null && !ocrReader.equals("tesseract") && !ocrReader.equals("template")) {
+                throw new IllegalStateException("detect.profiles[" + name + "].ocrReader: expected tesseract|template, got '" + ocrReader + "'");
+            }
+            out.add(new DetectProfile(name, match, parsePolygon(name, m.get("roi")), List.copyOf(zones), ocrReader));
+        }
+        return List.copyOf(out);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<double[]> parsePolygon(String profile, Object node) {
+        if (node == null) return null;
+        List<double[]> pts = new ArrayList<>();
+        for (Object o : (List<Object>) node) {
+            List<Number> xy = (List<Number>) o;
+            if (xy.size() != 2) throw new IllegalStateException("detect.profiles[" + profile + "].roi: point must be [x, y]");
+            double x = xy.get(0).doubleValue(), y = xy.get(1).doubleValue();
+            if (x < 0 || x > 1 || y < 0 || y > 1) {
+                throw new IllegalStateException("detect.profiles[" + profile + "].roi: coordinates are fractions 0..1, got [" + x + ", " + y + "]");
+            }
+            pts.add(new double[]{x, y});
+        }
+        if (pts.size() < 3) throw new IllegalStateException("detect.profiles[" + profile + "].roi: need at least 3 points");
+        return List.copyOf(pts);
+    }
 }
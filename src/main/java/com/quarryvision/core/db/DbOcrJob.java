@@ -0,0 +1,7 @@
+package com.quarryvision.core.db;
+
+import com.quarryvision.core.detection.DeferredOcr;
+
+/** Задача отложенного OCR (ocr_jobs), взятая воркером: событие, его видео и кадры-кандидаты. */
+public record DbOcrJob(int id, int eventId, String videoPath, DeferredOcr frames, int attempts) {
+}
@@ -1,6 +1,8 @@
 package com.quarryvision.core.db;
 
 import com.quarryvision.app.Config;
+import com.quarryvision.core.detection.DeferredOcr;
+import com.quarryvision.core.detection.DetectionResult;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.flywaydb.core.Flyway;
@@ -85,8 +87,56 @@ public final class Pg {
     }
     /** Вставить detection с событиями, (+ plate  на каждое событие), вернуть id. */
     public static int insertDetection(int videoId, int mergeMs, List<Instant> stamps, List<String> plates) {
+        return insertDetection(videoId, mergeMs, stamps, plates, null);
+    }
+
+    /**
+     * Одна detection на все зоны профиля камеры: события зон сливаются по времени,
+     * у каждого события — имя зоны (events.zone). Отложенный OCR зон ({@link DetectionResult#deferred()})
+     * ставится в очередь ocr_jobs в той же транзакции. Вернуть id.
+     */
+    public static int insertDetectionZones(int videoId, int mergeMs, List<DetectionResult> zones) {
+        record Row(Instant t, String plate, String zone, DeferredOcr ocr) {}
+        List<Row> rows = new ArrayList<>();
+        for (DetectionResult r : zones) {
+            List<Instant> ts = r.timestampsMs() == null ? List.of() : r.timestampsMs();
+            List<String> plates = r.platesOrEmpty();
+            List<DeferredOcr> deferred = r.deferredOrEmpty();
+            for (int i = 0; i < ts.size(); i++) {
+                rows.add(new Row(ts.get(i), i < plates.size() ? plates.get(i) : null, r.zone(),
+                        i < deferred.size() ? deferred.get(i) : null));
+            }
+        }
+        rows.sort(java.util.Comparator.comparing(Row::t));
+        List<Instant> stamps = new ArrayList<>(rows.size());
+        List<String> plates = new ArrayList<>(rows.size());
+        List<String> zoneNames = new ArrayList<>(rows.size());
+        List<DeferredOcr> ocrJobs = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            stamps.add(row.t());
+            plates.add(row.plate());
+            zoneNames.add(row.zone());
+            ocrJobs.add(row.ocr());
+        }
+        return insertDetection(videoId, mergeMs, stamps, plates, zoneNames, ocrJobs);
+    }
+
+    /** Вставить detection с событиями (+ plate и zone на каждое событие), вернуть id. */
+    public static int insertDetection(int videoId, int mergeMs, List<Instant> stamps, List<String> plates,
+                                      List<String> zones) {
+        return insertDetection(videoId, mergeMs, stamps, plates, zones, null);
+    }
+
+    /**
+     * Вставить detection с событиями (+ plate и zone на каждое событие), вернуть id. Для событий с непустым
+     * ocrJobs[i] — задача отложенного OCR в ocr_jobs (events.plate заполнит воркер, {@link #claimOcrJob()}).
+     */
+    public static int insertDetection(int videoId, int mergeMs, List<Instant> stamps, List<String> plates,
+                                      List<String> zones, List<DeferredOcr> ocrJobs) {
         final String insDet = "insert into detections(video_id, merge_ms, events_count) values(?,?,?) returning id";
-        final String insEvt = "insert into events(detection_id, t_ms, plate) values (?,?,?)";
+        final String insEvt = "insert into events(detection_id, t_ms, plate, zone) values (?,?,?,?)";
+        final String insJob = "insert into ocr_jobs(event_id, frames, search) values (?,?,?)";
+        final boolean withJobs = ocrJobs != null && ocrJobs.stream().anyMatch(java.util.Objects::nonNull);
         try (Connection c = get()) {
             c.setAutoCommit(false);
             int detId;
@@ -100,7 +150,9 @@ public final class Pg {
                 }
             }
             if (stamps != null && !stamps.isEmpty()) {
-                try (PreparedStatement ps = c.prepareStatement(insEvt)) {
+                try (PreparedStatement ps = withJobs
+                        ? c.prepareStatement(insEvt, new String[]{"id"})
+                        : c.prepareStatement(insEvt)) {
                     int i = 0;
                     for (Instant t: stamps) {
                         ps.setInt(1, detId);
@@ -114,10 +166,39 @@ public final class Pg {
                         } else {
                             ps.setString(3, plate);
                         }
+                        String zone = (zones != null && i < zones.size()) ? zones.get(i) : null;
+                        if (zone == null || zone.isBlank()) {
+                            ps.setNull(4, Types.VARCHAR);
+                        } else {
+                            ps.setString(4, zone);
+                        }
                         ps.addBatch();
                         i++;
                     }
                     ps.executeBatch();
+                    if (withJobs) {
+                        // id событий — в порядке вставки
+                        try (ResultSet keys = ps.getGeneratedKeys();
+                             PreparedStatement pj = c.prepareStatement(insJob)) {
+                            int k = 0;
+                            while (keys.next()) {
+                                DeferredOcr job = k < ocrJobs.size() ? ocrJobs.get(k) : null;
+                                k++;
+                                if (job == null) continue;
+                                pj.setInt(1, keys.getInt(1));
+                                pj.setArray(2, c.createArrayOf("bigint",
+                                        java.util.Arrays.stream(job.frames()).boxed().toArray()));
+                                if (job.search() == null) {
+                                    pj.setNull(3, Types.ARRAY);
+                                } else {
+                                    pj.setArray(3, c.createArrayOf("integer",
+                                            java.util.Arrays.stream(job.search()).boxed().toArray()));
+                                }
+                                pj.addBatch();
+                            }
+                            pj.executeBatch();
+                        }
+                    }
                 }
             }
             c.commit();
@@ -415,6 +496,125 @@ public final class Pg {
         }
     }
 
+    /**
+     * Взять следующую задачу отложенного OCR (PENDING → RUNNING, attempts+1), null — очередь пуста.
+     * FOR UPDATE SKIP LOCKED: несколько воркеров (и процессов) не берут одну задачу дважды.
+     */
+    public static DbOcrJob claimOcrJob() {
+        final String sql = """
+                UPDATE ocr_jobs j
+                SET status = 'RUNNING', attempts = j.attempts + 1, updated_at = now()
+                FROM events e
+                JOIN detections d ON d.id = e.detection_id
+                JOIN videos v ON v.id = d.video_id
+                WHERE e.id = j.event_id
+                  AND j.id = (SELECT id FROM ocr_jobs
+                              WHERE status = 'PENDING'
+                              ORDER BY id
+                              FOR UPDATE SKIP LOCKED
+                              LIMIT 1)
+                RETURNING j.id, j.event_id, v.path, j.frames, j.search, j.attempts
+                """;
+        try (Connection c = get();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()
+        ) {
+            if (!rs.next()) return null;
+            Object[] frames = (Object[]) rs.getArray(4).getArray();
+            long[] f = new long[frames.length];
+            for (int i = 0; i < f.length; i++) f[i] = ((Number) frames[i]).longValue();
+            Array searchArr = rs.getArray(5);
+            int[] search = null;
+            if (searchArr != null) {
+                Object[] a = (Object[]) searchArr.getArray();
+                search = new int[a.length];
+                for (int i = 0; i < a.length; i++) search[i] = ((Number) a[i]).intValue();
+            }
+            return new DbOcrJob(rs.getInt(1), rs.getInt(2), rs.getString(3), new DeferredOcr(f, search), rs.getInt(6));
+        } catch (SQLException e) {
+            throw new RuntimeException("claimOcrJob failed", e);
+        }
+    }
+
+    /** Номер прочитан (или нет — plate null): events.plate и статус DONE одной транзакцией. */
+    public static void completeOcrJob(DbOcrJob job, String plate) {
+        try (Connection c = get()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement("UPDATE events SET plate=? WHERE id=?")) {
+                if (plate == null || plate.isBlank()) {
+                    ps.setNull(1, Types.VARCHAR);
+                } else {
+                    ps.setString(1, plate);
+                }
+                ps.setInt(2, job.eventId());
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE ocr_jobs SET status='DONE', last_error=NULL, updated_at=now() WHERE id=?")) {
+                ps.setInt(1, job.id());
+                ps.executeUpdate();
+            }
+            c.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("completeOcrJob failed id=" + job.id(), e);
+        }
+    }
+
+    /** Ошибка OCR: задача вернётся в очередь, пока attempts < maxAttempts, иначе FAILED. */
+    public static void failOcrJob(DbOcrJob job, String error, int maxAttempts) {
+        final String sql = "UPDATE ocr_jobs SET " +
+                                "status = CASE WHEN attempts >= ? THEN 'FAILED' ELSE 'PENDING' END," +
+                                "last_error=?," +
+                                "updated_at=now() " +
+                            "WHERE id=?";
+        try (Connection c = get();
+             PreparedStatement ps = c.prepareStatement(sql)
+        ) {
+            ps.setInt(1, maxAttempts);
+            ps.setString(2, error);
+            ps.setInt(3, job.id());
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("failOcrJob failed id=" + job.id(), e);
+        }
+    }
+
+    /**
+     * Задачи, взятые дольше leaseSec назад и так и не завершённые (процесс остановлен или упал), — снова
+     * в очередь; попытка, на которой их взяли, остаётся засчитанной. Свежие RUNNING не трогаем: их может
+     * сейчас выполнять воркер другого процесса. Вернуть их число.
+     */
+    public static int requeueStaleOcrJobs(long leaseSec) {
+        final String sql = "UPDATE ocr_jobs SET status='PENDING', updated_at=now() " +
+                           "WHERE status='RUNNING' AND updated_at < now() - ? * interval '1 second'";
+        try (Connection c = get();
+             PreparedStatement ps = c.prepareStatement(sql)
+        ) {
+            ps.setLong(1, leaseSec);
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("requeueStaleOcrJobs failed", e);
+        }
+    }
+
+    /** Задача не выполнена по нашей причине (воркер остановлен): снова в очередь, попытка не засчитывается. */
+    public static void requeueOcrJob(DbOcrJob job) {
+        final String sql = "UPDATE ocr_jobs SET status='PENDING', attempts=GREATEST(attempts - 1, 0), updated_at=now() " +
+                           "WHERE id=? AND status='RUNNING'";
+        try (Connection c = get();
+             PreparedStatement ps = c.prepareStatement(sql)
+        ) {
+            ps.setInt(1, job.id());
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("requeueOcrJob failed id=" + job.id(), e);
+        }
+    }
+
+    public static long countPendingOcrJobs() {
+        return count("SELECT count(*) FROM ocr_jobs WHERE status='PENDING'");
+    }
+
     // список камер
     public static List<DbCamera> listCameras() {
         final String sql = "SELECT id,name,url,active,last_seen_at,last_error FROM cameras ORDER BY id";
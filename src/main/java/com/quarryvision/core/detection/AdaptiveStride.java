@@ -0,0 +1,52 @@
+package com.quarryvision.core.detection;
+
+/**
+ * Адаптивный шаг выборки кадров: редко в IDLE, плотно около события.
+ * <p>
+ * Шаг всегда кратен stepFrames. «Горячий» сэмпл (EMA близка к порогу входа или зона в ACTIVE)
+ * сразу возвращает плотный шаг stepFrames и держит его cooldownFrames кадров после последнего
+ * горячего сэмпла; затем шаг удваивается на каждом сэмпле до maxStride. maxStride ограничен допуском
+ * по времени события: начало ACTIVE запаздывает не больше чем на один разреженный шаг.
+ */
+final class AdaptiveStride {
+    private final int minStride;
+    private final int maxStride;
+    private final long holdFrames;
+    private int stride;
+    private long denseUntil = Long.MIN_VALUE;
+    private long denseSamples;
+    private long sparseSamples;
+
+    /**
+     * @param stepFrames  плотный шаг (как при фиксированном шаге)
+     * @param toleranceMs допуск по времени события относительно фиксированного шага
+     * @param maxMul      верхняя граница разреженного шага в stepFrames
+     * @param holdFrames  сколько кадров держать плотный шаг после горячего сэмпла (cooldown)
+     */
+    AdaptiveStride(int stepFrames, double fps, long toleranceMs, int maxMul, long holdFrames) {
+        this.minStride = Math.max(1, stepFrames);
+        long tolFrames = Math.round(Math.max(0, toleranceMs) * fps / 1000.0);
+        int mul = (int) Math.max(1, Math.min(Math.max(1, maxMul), tolFrames / minStride));
+        this.maxStride = minStride * mul;
+        this.holdFrames = Math.max(0, holdFrames);
+        this.stride = minStride;
+    }
+
+    /** Шаг до следующего сэмпла после сэмпла idx; hot — хотя бы одна зона близка к событию. */
+    int next(long idx, boolean hot) {
+        if (hot) {
+            stride = minStride;
+            denseUntil = idx + holdFrames;
+        } else if (idx < denseUntil) {
+            stride = minStride;
+        } else {
+            stride = Math.min(maxStride, stride * 2);
+        }
+        if (stride == minStride) denseSamples++; else sparseSamples++;
+        return stride;
+    }
+
+    int maxStride() { return maxStride; }
+    long denseSamples() { return denseSamples; }
+    long sparseSamples() { return sparseSamples; }
+}
@@ -1,10 +1,15 @@
 package com.quarryvision.core.detection;
 
 import com.quarryvision.app.Config;
+import com.quarryvision.core.ocr.CachingOcrEngine;
+import com.quarryvision.core.ocr.CharTemplates;
+import com.quarryvision.core.ocr.OcrDeadline;
+import com.quarryvision.core.ocr.OcrEngine;
+import com.quarryvision.core.ocr.OcrEnginePool;
+import com.quarryvision.core.ocr.OcrResultCache;
 import com.quarryvision.core.ocr.OcrService;
-import org.bytedeco.javacpp.BytePointer;
+import com.quarryvision.core.ocr.TemplatePlateReader;
 import org.bytedeco.opencv.global.opencv_core;
-import org.bytedeco.opencv.global.opencv_imgcodecs;
 import org.bytedeco.opencv.opencv_core.Rect;
 import org.bytedeco.opencv.opencv_core.Size;
 import org.bytedeco.opencv.global.opencv_imgproc;
@@ -14,16 +19,36 @@ import org.bytedeco.opencv.opencv_videoio.VideoCapture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 
 /**
@@ -46,7 +71,10 @@ public final class BucketDetector {
     private final int diffThreshold;    // порог бинаризации 15..40
     private final double eventRatio;    // доля «белых» пикселей для события, например 0.02
     private final int cooldownFrames;   // анти-дребезг, минимум кадров между событиями
-    private final int minChangedPixels; // минимальное число «белых» пикселей
+    private final int minChangedPixels; // минимальное число «белых» пикселей (legacy, в пикселях полного кадра)
+    private final double minChangedFrac; // минимальная доля «белых» пикселей кадра; <0 — берём minChangedPixels
+    private final int analysisWidth;    // ширина кадра анализа движения; 0 — полное разрешение
+    private final List<Config.DetectProfile> profiles; // профили камер (ROI зоны погрузки) из application.yaml
     private final Size morphKernel;     // ядро морфологии
     private final int mergeMs;
     private final double emaAlpha;
@@ -66,6 +94,18 @@ public final class BucketDetector {
     public BucketDetector(int stepFrames, int diffThreshold, double eventRatio, int cooldownFrames,
                           int minChangedPixels, Size morphKernel, int mergeMs,
                           double emaAlpha, double thrLowFactor, int minActiveMs, int nmsWindowMs, boolean trace) {
+        this(stepFrames, diffThreshold, eventRatio, cooldownFrames, minChangedPixels, morphKernel, mergeMs,
+                emaAlpha, thrLowFactor, minActiveMs, nmsWindowMs, trace, 0, -1.0);
+    }
+
+    /**
+     * Полный конструктор: analysisWidth — ширина уменьшенного кадра анализа движения (0 — полное разрешение),
+     * minChangedFrac — порог «белых» пикселей долей кадра (не зависит от разрешения; <0 — берётся minChangedPixels).
+     */
+    public BucketDetector(int stepFrames, int diffThreshold, double eventRatio, int cooldownFrames,
+                          int minChangedPixels, Size morphKernel, int mergeMs,
+                          double emaAlpha, double thrLowFactor, int minActiveMs, int nmsWindowMs, boolean trace,
+                          int analysisWidth, double minChangedFrac) {
         this.stepFrames = Math.max(1, stepFrames);
         this.diffThreshold = Math.max(1, diffThreshold);
         this.eventRatio = Math.max(1e-4, eventRatio);
@@ -78,6 +118,9 @@ public final class BucketDetector {
         this.minActiveMs = Math.max(0, minActiveMs);
         this.nmsWindowMs = Math.max(0, nmsWindowMs);
         this.trace = trace;
+        this.analysisWidth = Math.max(0, analysisWidth);
+        this.minChangedFrac = (minChangedFrac < 0) ? -1.0 : Math.min(1.0, minChangedFrac);
+        this.profiles = List.of();
     }
 
     /** Удобный конструктор: параметры из application.yaml (+ учёт -Dqv.mergeMs). */
@@ -112,585 +155,2420 @@ public final class BucketDetector {
         this.minActiveMs = Math.max(0, d.minActiveMs());
         this.nmsWindowMs = Math.max(0, d.nmsWindowMs());
         this.trace = d.trace();
+        this.analysisWidth = Math.max(0, d.analysisWidth());
+        this.minChangedFrac = (d.minChangedFrac() < 0) ? -1.0 : Math.min(1.0, d.minChangedFrac());
+        this.profiles = (d.profiles() == null) ? List.of() : List.copyOf(d.profiles());
+    }
+
+    /**
+     * Копия детектора с другими параметрами автомата событий (сигнал движения и профили камер — прежние):
+     * для перебора параметров по сохранённому сигналу ({@link ParameterSweep}).
+     */
+    public BucketDetector retuned(double eventRatio, double emaAlpha, double thrLowFactor,
+                                  int minActiveMs, int nmsWindowMs, int mergeMs) {
+        return new BucketDetector(this, eventRatio, emaAlpha, thrLowFactor, minActiveMs, nmsWindowMs, mergeMs);
+    }
+
+    private BucketDetector(BucketDetector base, double eventRatio, double emaAlpha, double thrLowFactor,
+                           int minActiveMs, int nmsWindowMs, int mergeMs) {
+        this.stepFrames = base.stepFrames;
+        this.diffThreshold = base.diffThreshold;
+        this.eventRatio = Math.max(1e-4, eventRatio);
+        this.cooldownFrames = base.cooldownFrames;
+        this.minChangedPixels = base.minChangedPixels;
+        this.morphKernel = base.morphKernel;
+        this.mergeMs = Math.max(0, mergeMs);
+        this.emaAlpha = Math.max(0.0, Math.min(1.0, emaAlpha));
+        this.thrLowFactor = Math.max(1e-6, thrLowFactor);
+        this.minActiveMs = Math.max(0, minActiveMs);
+        this.nmsWindowMs = Math.max(0, nmsWindowMs);
+        this.trace = false;
+        this.analysisWidth = base.analysisWidth;
+        this.minChangedFrac = base.minChangedFrac;
+        this.profiles = base.profiles;
+    }
+
+    /**
+     * Детект по видео. Для профиля камеры с несколькими зонами возвращает результат первой зоны —
+     * все зоны сразу даёт {@link #detectZones(Path)}.
+     */
+    public DetectionResult detect(Path videoPath) {
+        return detectZones(videoPath).get(0);
     }
 
-    private static List<Instant> mergeClose(List<Instant> src, long mergeMs) {
-        if (src.isEmpty()) return List.of();
-        List<Instant> out = new ArrayList<>();
-        Instant last = null;
-        for (Instant t: src) {
-            if (last == null || (t.toEpochMilli() - last.toEpochMilli()) > mergeMs) {
-                out.add(t);
-                last = t;
+    /**
+     * Детект всех зон профиля камеры за одно декодирование: каждая зона — свой ROI, пороги и автомат
+     * EMA/IDLE-ACTIVE поверх одного и того же кадра. Список не пуст; порядок — как в detect.profiles[].zones,
+     * {@link DetectionResult#zone()} — имя зоны (null, если зона одна).
+     */
+    public List<DetectionResult> detectZones(Path videoPath) {
+        // Параллельный режим по чанкам: -Dqv.detect.threads=N (N>1)
+        final int threads = Integer.getInteger("qv.detect.threads", 1);
+        if (threads > 1) {
+            if (Boolean.getBoolean("qv.detect.adaptive")) {
+                log.warn("Detect: qv.detect.adaptive is ignored in chunk-parallel mode (qv.detect.threads={})", threads);
             }
+            return detectParallelZones(videoPath, threads);
         }
-        return out;
+        return detectSequential(videoPath);
     }
 
-    public DetectionResult detect(Path videoPath) {
+    /**
+     * Потоковый детект: кадры подаются снаружи ({@link StreamingDetector#push}, {@link FrameSource}), событие
+     * уходит в listener, как только закрылся ACTIVE-интервал. Профиль зон — по sourceName (как по имени файла),
+     * параметры автомата и -Dqv.detect.warmupMs / -Dqv.mergeMs — как у detect(); номера не читаются.
+     */
+    public StreamingDetector stream(String sourceName, double fps, Consumer<DetectionEvent> listener) {
+        List<ZoneSpec> specs;
+        try {
+            specs = zoneSpecs(Path.of(sourceName));
+        } catch (InvalidPathException e) {
+            // имя камеры/URL, непригодный для glob профиля, — профиль только через -Dqv.detect.profile
+            specs = zoneSpecs(Path.of("stream"));
+        }
+        return new StreamingDetector(this, specs, stepFrames, (fps > 1e-3) ? fps : 25.0,
+                nmsWindowMs, Integer.getInteger("qv.mergeMs", this.mergeMs),
+                Long.getLong("qv.detect.warmupMs", 0L), listener);
+    }
+
+    /**
+     * Повторный прогон по сохранённому сигналу движения ({@link MotionSignal}, -Dqv.detect.signalCache):
+     * EMA/гистерезис/cooldown/minActiveMs/warmup/NMS/склейка с параметрами этого детектора — без декодирования
+     * и OpenCV, за миллисекунды. Пусто — для какой-то зоны профиля нет сигнала с текущими stepFrames, шириной
+     * анализа, морфологией, ROI и diffThreshold (их смена требует нового прохода detect). Номера не читаются.
+     */
+    public Optional<List<DetectionResult>> replayZones(Path videoPath) {
+        return loadSignals(videoPath).map(signals -> replay(videoPath, signals));
+    }
+
+    /** Сохранённые сигналы всех зон видео для текущих параметров сигнала; пусто — нужен проход detect. */
+    public Optional<List<MotionSignal>> loadSignals(Path videoPath) {
+        List<MotionSignal> signals = new ArrayList<>();
+        for (ZoneSpec spec : zoneSpecs(videoPath)) {
+            String key = signalKey(videoPath, spec);
+            if (key == null) return Optional.empty();
+            try {
+                MotionSignal s = MotionSignal.load(MotionSignal.path(signalCacheDir(videoPath), videoPath, key), key);
+                if (s == null) return Optional.empty();
+                signals.add(s);
+            } catch (IOException e) {
+                log.warn("Detect: cannot read motion signal for {}: {}", videoPath, e.toString());
+                return Optional.empty();
+            }
+        }
+        return Optional.of(List.copyOf(signals));
+    }
+
+    /**
+     * То же по уже загруженным сигналам зон (порядок — как в {@link #detectZones}) — для переборов параметров,
+     * когда один сигнал прогоняется многими детекторами.
+     */
+    public List<DetectionResult> replay(Path videoPath, List<MotionSignal> signals) {
+        List<ZoneSpec> specs = zoneSpecs(videoPath);
+        if (signals.size() != specs.size()) {
+            throw new IllegalArgumentException("replay: expected " + specs.size() + " zone signal(s), got " + signals.size());
+        }
+        int effectiveMergeMs = Integer.getInteger("qv.mergeMs", this.mergeMs);
+        final long maxDetectMs = Long.getLong("qv.detect.maxMs", Long.MAX_VALUE);
+        final long warmupMs = Long.getLong("qv.detect.warmupMs", 0L);
+        List<DetectionResult> out = new ArrayList<>(specs.size());
+        for (int zi = 0; zi < specs.size(); zi++) {
+            MotionSignal s = signals.get(zi);
+            ZoneRun z = new ZoneRun(specs.get(zi), s, warmupMs);
+            final double fps = s.fps();
+            long idxEnd = s.idxEnd();
+            for (int i = 0; i < s.size(); i++) {
+                long idx = s.frameAt(i);
+                if ((long) ((idx / fps) * 1000.0) >= maxDetectMs) {
+                    idxEnd = idx;
+                    break;
+                }
+                double white = s.white(i);
+                if (white < z.minWhite) continue;
+                if (z.sm.update(idx, white / (double) z.area)) z.plates.add(null);
+            }
+            // без INFO-лога хвоста: переборы прогоняют тысячи комбинаций
+            out.add(finishResult(videoPath, fps, s.frameCount(), z, idxEnd, effectiveMergeMs, false));
+        }
+        return List.copyOf(out);
+    }
+
+    /**
+     * Один проход по видео, разложенный на конвейер из трёх стадий:
+     * <ol>
+     *   <li>декодер (поток {@code qv-detect-decode}) — {@code cap.read} со сдвигом на stepFrames
+     *       в слоты {@link MatRing};</li>
+     *   <li>анализ движения (текущий поток) — gray/blur/absdiff/морфология + EMA/IDLE-ACTIVE
+     *       по каждой зоне профиля на одном и том же кадре;</li>
+     *   <li>OCR-воркер (поток {@code qv-detect-ocr}) — снимки вокруг события из кольца кадров
+     *       и скан номера.</li>
+     * </ol>
+     * Стадии связаны ограниченными очередями: кольцо кадров ({@code qv.detect.ringSize}, по умолчанию 8)
+     * и очередь событий на OCR ({@code qv.detect.ocrQueue}, по умолчанию 16). Полная очередь блокирует
+     * предыдущую стадию (backpressure), поэтому медленный OCR больше не останавливает декодирование,
+     * пока очередь событий не переполнена. Глубина очередей и ожидания стадий — в строке PERF.
+     */
+    private List<DetectionResult> detectSequential(Path videoPath) {
         // PERF (PR-0): baseline timings/counters for video processing
         final long perfStartNs = System.nanoTime();
-        // Счётчик используется как лимит на одну попытку распознавания номера (plate scan).
-        this.ocrCallsThisDetect = 0;
-        this.perfOcrCallsTotal = 0;
-        this.perfOcrNsTotal = 0;
-        this.perfOcrRoiNsTotal = 0;
-        this.perfRoiAttemptsTotal = 0;
-        this.perfRoiDroppedFast = 0;
-        this.perfSnapReads = 0;
-        this.perfStopByNormVotes = 0;
-        final boolean ocrEnabled = Boolean.getBoolean("qv.ocr.init");
-        final OcrService ocr = ocrEnabled ? new OcrService(
-                new OcrService.Config(
-                        true,
-                        System.getProperty("qv.ocr.datapath", "tessdata"),
-                        System.getProperty("qv.ocr.languages", "eng"),
-                        Integer.getInteger("qv.ocr.psm", 7),
-                        Integer.getInteger("qv.ocr.oem", 3)
-                )
-        ) : null;
+        resetPerf();
+        startVideoOcrDeadline(perfStartNs);
+        // отложенный OCR: проход по движению не ждёт Tesseract, кадры событий уходят в очередь
+        final boolean deferred = deferredOcr();
+        final OcrEnginePool ocr = deferred ? null : ocrPoolIfRequested();
+        final OcrRun run = ocr != null ? new OcrRun(ocr, fastReaderFor(videoPath), OcrResultCache.forRun()) : null;
+        this.ocrRun = run;
         int effectiveMergeMs = Integer.getInteger("qv.mergeMs", this.mergeMs);
         final long maxDetectMs = Long.getLong("qv.detect.maxMs", Long.MAX_VALUE);
         // Warm-up окно в миллисекундах: события, которые попали целиком в первые N мс, игнорируем как шум.
         // Пример: -Dqv.detect.warmupMs=15000
         final long warmupMs = Long.getLong("qv.detect.warmupMs", 0L);
-        log.info("Detect params: stepFrames={}, diffThreshold={}, eventRatio={}, cooldownFrames={}, minChangedPixels={}, mergeMs={}, emaAlpha={}, thrLowFactor={}, minActiveMs={}, nmsWindowMs={}, maxDetectMs={}, warmupMs={}",
-                stepFrames, diffThreshold, eventRatio, cooldownFrames, minChangedPixels, effectiveMergeMs, emaAlpha, thrLowFactor, minActiveMs, nmsWindowMs, maxDetectMs, warmupMs);
-        try {
-            if (!java.nio.file.Files.isRegularFile(videoPath) || java.nio.file.Files.size(videoPath) == 0L) {
-                log.error("Video file invalid: exists={} size={} path={}",
-                        java.nio.file.Files.exists(videoPath),
-                        java.nio.file.Files.exists(videoPath) ? java.nio.file.Files.size(videoPath) : -1,
-                        videoPath);
-                return new DetectionResult(videoPath, 0, List.of(), 0.0, 0);
-            }
-        } catch (Exception e) {
-            log.error("Video file check failed: {}", videoPath, e);
-            return new DetectionResult(videoPath, 0, List.of(), 0.0, 0);
-        }
+        final int ringSize = Integer.getInteger("qv.detect.ringSize", 8);
+        final int ocrQueueSize = Math.max(1, Integer.getInteger("qv.detect.ocrQueue", 16));
+        // адаптивный шаг: редкие сэмплы в IDLE, плотные около события (-Dqv.detect.adaptive=true)
+        final boolean adaptive = Boolean.getBoolean("qv.detect.adaptive");
+        // область поиска номера — по маске движения ACTIVE-интервала (нужна только при OCR)
+        final boolean motionGuided = (ocr != null || deferred) && motionRegionEnabled();
+        log.info("Detect params: stepFrames={}, diffThreshold={}, eventRatio={}, cooldownFrames={}, minChangedPixels={}, minChangedFrac={}, analysisWidth={}, mergeMs={}, emaAlpha={}, thrLowFactor={}, minActiveMs={}, nmsWindowMs={}, maxDetectMs={}, warmupMs={}",
+                stepFrames, diffThreshold, eventRatio, cooldownFrames, minChangedPixels, minChangedFrac, effectiveAnalysisWidth(), effectiveMergeMs, emaAlpha, thrLowFactor, minActiveMs, nmsWindowMs, maxDetectMs, warmupMs);
+        DetectionResult invalid = checkVideoFile(videoPath);
+        if (invalid != null) return List.of(invalid);
         try (VideoCapture cap = new VideoCapture(videoPath.toString())) {
             final long perfAfterOpenNs = System.nanoTime();
             if (!cap.isOpened()) {
                 log.error("VideoCapture cannot open: {}", videoPath);
-                return new DetectionResult(videoPath, 0, List.of(), 0.0, 0);
+                return List.of(new DetectionResult(videoPath, 0, List.of(), 0.0, 0));
             }
             double fps = cap.get(opencv_videoio.CAP_PROP_FPS);
             if (!(fps > 1e-3)) fps = 25.0;
             long frameCount = (long) cap.get(opencv_videoio.CAP_PROP_FRAME_COUNT);
-            if (trace) {
-                try {
-                    var name = videoPath.getFileName().toString().replaceAll("\\.[^.]+$","");
-                    var dir = Path.of("trace");
-                    Files.createDirectories(dir);
-                    traceOut = new PrintWriter(Files.newBufferedWriter(
-                            dir.resolve("trace_" + name + ".csv")));
-                    traceOut.println("ms,frame,ratio,ema,state,event");
-                    log.info("trace enabled → {}", dir.resolve("trace_" + name + ".csv").toAbsolutePath());
-                } catch (Exception ex) {
-                    log.warn("trace init failed: {}", ex.toString());
-                }
-            }
 
-            Mat prev = new Mat(),
-            frame = new Mat(),
-            grayPrev = new Mat(),
-            gray = new Mat(),
-            diff = new Mat(),
-            // ядро морфологии (Mat), построенное из заданного Size
-            kernel = opencv_imgproc.getStructuringElement(
-                    opencv_imgproc.MORPH_RECT,
-                    morphKernel
-            );
-
-            List<Instant> stamps = new ArrayList<>();
-            List<String> ocrPlates = new ArrayList<>();
-            long lastEventFrame = -cooldownFrames - 1;
-            enum S {IDLE, ACTIVE}
-            S st = S.IDLE;
-            long activeStartFrame = -1;
-            double ema = 0.0;
-            double thrHigh = eventRatio;
-            double thrLow = Math.max(1e-6, eventRatio * thrLowFactor);
-            long minActiveFrames = Math.max(1L, Math.round((minActiveMs / 1000.0) * fps));
+            Mat prev = new Mat();
+            // зоны анализа (ROI профиля камеры) создаются по размеру первого кадра
+            List<ZoneRun> zones = new ArrayList<>();
+            MatRing ring = new MatRing(ringSize);
+            AtomicBoolean stop = new AtomicBoolean(false);
+            Thread decoder = null;
+            OcrQueue ocrStage = null;
+            // снимки событий: кольцо последних кадров анализа + отложенные запросы на положительные смещения
+            final int[] offsetsSec = eventOffsetsSec();
+            final FrameSelection select = FrameSelection.fromProperties(offsetsSec);
+            // события, ещё не переданные OCR-стадии (их снимки освобождает проход, переданные — сама задача)
+            PendingSnapshots pendingSnaps = null;
+            final BlockingQueue<Integer> strideGate = adaptive ? new ArrayBlockingQueue<>(1) : null;
+            AdaptiveStride stridePolicy = null;
+            int stride = stepFrames; // шаг, которым пришли к текущему сэмплу
             final long perfLoopStartNs = System.nanoTime();
 
             try {// первый кадр
                 if (!cap.read(prev) || prev.empty()) {
                     log.error("First frame is empty: {}", videoPath);
-                    return new DetectionResult(videoPath, 0, List.of(), fps, frameCount);
+                    return List.of(new DetectionResult(videoPath, 0, List.of(), fps, frameCount));
+                }
+                this.perfFramesRetrieved++;
+                // анализ движения — на уменьшенном сером кадре зоны; полный кадр нужен только для OCR-снимков
+                for (ZoneSpec spec : zoneSpecs(videoPath)) {
+                    ZoneRun z = new ZoneRun(spec, newMotionZone(spec, prev.cols(), prev.rows()), fps, warmupMs);
+                    // адаптивный шаг пропускает сэмплы — такой сигнал для повторного прогона не годится
+                    if (!adaptive) z.signal = signalRecorder(videoPath, z);
+                    zones.add(z);
+                    z.motion.reset(prev);
+                    logZone(z.motion, prev.cols(), prev.rows());
+                }
+                final boolean multiZone = zones.size() > 1;
+                openTrace(videoPath, multiZone);
+                final double[] whites = new double[zones.size()];
+                if (adaptive) {
+                    stridePolicy = new AdaptiveStride(stepFrames, fps,
+                            Long.getLong("qv.detect.adaptiveToleranceMs", 1000L),
+                            Integer.getInteger("qv.detect.adaptiveMaxMul", 8), cooldownFrames);
+                    strideGate.add(stepFrames);
+                    log.info("Detect: adaptive stride {}..{} frames", stepFrames, stridePolicy.maxStride());
+                }
+
+                // стадия 1: декодер
+                decoder = new Thread(() -> decodeLoop(cap, ring, stop, strideGate), "qv-detect-decode");
+                decoder.setDaemon(true);
+                decoder.start();
+                // стадия 3: OCR-воркер; кадры получает готовыми из стадии анализа, без seek
+                if (run != null) {
+                    final OcrQueue stage = ocrStage = new OcrQueue(run, ocrQueueSize);
+                    pendingSnaps = new PendingSnapshots(new EventFrameRing(eventRingCapacity(offsetsSec, fps)), stepFrames,
+                            ev -> ev.futures.set(ev.eventIndex, stage.submit(ev)));
                 }
-                opencv_imgproc.cvtColor(prev, grayPrev, opencv_imgproc.COLOR_BGR2GRAY);
-                opencv_imgproc.GaussianBlur(grayPrev, grayPrev, new Size(5, 5), 0);
 
+                // стадия 2: анализ движения
                 long idx = 1;
+                boolean stoppedEarly = false;
                 while (true) {
-                    if (!cap.read(frame) || frame.empty()) {
-                        break; // EOF/кадр пуст — выходим без WARN
-                    }
-                    // шаг через несколько кадров
-                    for (int s = 1; s < stepFrames; s++) {
-                        if (!cap.read(frame) || frame.empty()) {
-                            break;
-                        }
-                        idx++;
-                    }
-                    // могли выйти из внутреннего шага из-за EOF -> кадр пустой
-                    if (frame.empty()) {
-                        // тихо выходим: конец файла
+                    MatRing.Slot slot = ring.take();
+                    if (slot.eof) {
+                        // EOF/кадр пуст — выходим без WARN
+                        idx = slot.idxEnd;
+                        ring.recycle(slot);
                         break;
                     }
-
-                    opencv_imgproc.cvtColor(frame, gray, opencv_imgproc.COLOR_BGR2GRAY);
-                    opencv_imgproc.GaussianBlur(gray, gray, new Size(5, 5), 0);
-
-                    opencv_core.absdiff(gray, grayPrev, diff);
-                    opencv_imgproc.threshold(diff, diff, diffThreshold, 255, opencv_imgproc.THRESH_BINARY);
-                    // Морфология: убираем мелкий шум и заращиваем разрывы
-                    opencv_imgproc.erode(diff, diff, kernel);
-                    opencv_imgproc.dilate(diff, diff, kernel);
-                    double white = opencv_core.countNonZero(diff);
+                    idx = slot.idx;
                     long msNow = (long) ((idx / fps) * 1000.0);
 
                     if (msNow >= maxDetectMs) {
+                        ring.recycle(slot);
                         log.info("Detect: reached qv.detect.maxMs={}ms (msNow={}), stop early", maxDetectMs, msNow);
+                        stoppedEarly = true;
                         break;
                     }
-                    // Отсечь мелкие всплески
-                    if (white < minChangedPixels) {
-                        gray.copyTo(grayPrev);
-                        idx++;
-                        continue;
+                    // один декодированный кадр — на все зоны
+                    for (int zi = 0; zi < zones.size(); zi++) {
+                        ZoneRun z = zones.get(zi);
+                        whites[zi] = z.motion.white(slot.mat);
+                        if (z.signal != null) z.signal.add(idx, whites[zi]);
                     }
-                    double ratio = white / (double) (diff.rows() * diff.cols());
-                    ema = emaAlpha * ratio + (1.0 - emaAlpha) * ema;
-                    String stStr = st.name();
-                    int evtMark = 0;
-
-                    switch (st) {
-                        case IDLE -> {
-                            if ((idx - lastEventFrame) > cooldownFrames && ema >= thrHigh) {
-                                st = S.ACTIVE;
-                                activeStartFrame = idx;
-                            }
+                    // отложенные снимки (положительные смещения) дозаполняются по мере прохода
+                    if (pendingSnaps != null) pendingSnaps.onFrame(idx, slot.mat);
+                    ring.recycle(slot);
+
+                    for (int zi = 0; zi < zones.size(); zi++) {
+                        ZoneRun z = zones.get(zi);
+                        double white = whites[zi];
+                        // Отсечь мелкие всплески
+                        if (white < z.minWhite) {
+                            z.motion.commit();
+                            continue;
                         }
-                        case ACTIVE -> {
-                            if (ema < thrLow) {
-                                long durFrames = idx - activeStartFrame;
-                                if (durFrames >= minActiveFrames) {
-                                    // Границы события
-                                    long startFrame = activeStartFrame;
-                                    // idx здесь уже первый кадр после того, как EMA упал ниже thrLow
-                                    long endFrame = Math.max(startFrame, idx - 1);
-                                    long startMs = (long) ((startFrame / fps) * 1000.0);
-                                    long endMs = (long) ((endFrame / fps) * 1000.0);
-
-                                    // Warmup: отбрасываем только события, которые ЦЕЛИКОМ в первые warmupMs
-                                    // (по midpoint нельзя — можно потерять реальное событие, пересекающее границу warmup)
-                                    if (warmupMs > 0 && endMs <= warmupMs) {
-                                        if (log.isDebugEnabled()) {
-                                            log.debug("Detect: drop warmup event (startMs={}, endMs={}, warmupMs={})",
-                                                    startMs, endMs, warmupMs);
-                                        }
-                                        // Важно: не дергаем OCR и не добавляем событие
-                                    } else {
-                                        long mid = startFrame + durFrames / 2;
-                                        long ms = (long) ((mid / fps) * 1000.0);
-
-                                        String plate = null;
-                                        // OCR-хук: снимки вокруг события
-                                        if (ocr != null) {
-                                            try {
-                                                plate = tryOcrPlateAroundEvent(ocr, cap, mid, fps, frameCount);
-                                                if (plate != null && !plate.isBlank()) {
-                                                    log.info("OCR plate@{}ms: {}", ms, plate);
-                                                } else {
-                                                    log.debug("OCR no plate @{}ms", ms);
-                                                }
-                                            } catch (Throwable t) {
-                                                log.debug("OCR hook failed: {}", t.toString());
-                                            }
-                                        }
-
-                                        stamps.add(Instant.ofEpochMilli(ms));
-                                        ocrPlates.add(plate);
-
-                                        lastEventFrame = idx;
-                                        evtMark = 1;
-                                    }
-                                }
-                                st = S.IDLE;
-                                stStr = st.name();
+                        double ratio = white / (double) z.area;
+                        int evtMark = 0;
+                        if (z.sm.update(idx, ratio, stride / stepFrames)) {
+                            // событие принято (не warmup)
+                            int evIdx = z.sm.eventCount() - 1;
+                            long mid = z.sm.eventMidFrame(evIdx);
+                            long ms = z.sm.eventMs(evIdx);
+                            Rect search = motionGuided ? motionSearchRect(z, prev.cols(), prev.rows()) : null;
+                            z.plates.add(null);
+                            z.plateFutures.add(null);
+                            if (deferred) {
+                                z.eventMids.add(mid);
+                                z.eventRegions.add(search);
                             }
+                            // OCR-хук: снимки вокруг события — из кольца кадров, будущие — отложенно
+                            if (pendingSnaps != null) {
+                                this.perfSnapRingMiss += pendingSnaps.onEvent(new EventSnapshots(z.plateFutures, evIdx,
+                                        mid, ms, select, fps, frameCount, search), idx);
+                            }
+                            evtMark = 1;
+                        } else if (motionGuided) {
+                            trackMotion(z, idx, white);
                         }
-                    }
 
-                    if (traceOut != null) traceOut.printf("%d,%d,%.6f,%.6f,%s,%d%n",
-                            msNow, idx, ratio, ema, stStr, evtMark);
+                        traceSample(msNow, idx, ratio, z, evtMark, multiZone);
 
-                    // старый триггер по ratio убран
+                        // старый триггер по ratio убран
 
-                    gray.copyTo(grayPrev);
+                        z.motion.commit();
+                    }
+                    if (stridePolicy != null) {
+                        boolean hot = false;
+                        for (ZoneRun z : zones) hot |= z.sm.isHot();
+                        stride = stridePolicy.next(idx, hot);
+                        // хвост ролика: не перепрыгивать последний кадр, иначе событие у EOF потеряется
+                        long room = (frameCount - 1 - idx) / stepFrames * stepFrames;
+                        if (frameCount > 0 && room >= stepFrames && room < stride) stride = (int) room;
+                        strideGate.add(stride);
+                    }
                     idx++;
                 }
-
-                // EOF: если остались в ACTIVE — зафиксировать интервал
-                if (st == S.ACTIVE) {
-                    long durFrames = idx - activeStartFrame;
-                    if (durFrames >= minActiveFrames) {
-                        long mid = activeStartFrame + durFrames / 2;
-                        long ms = (long) ((mid / fps) * 1000.0);
-                        stamps.add(Instant.ofEpochMilli(ms));
-                        ocrPlates.add(null); // пока без OCR на хвосте
-                        if (log.isInfoEnabled()) {
-                            long startMs = (long) ((activeStartFrame / fps) * 1000.0);
-                            long durMs = (long) ((durFrames / fps) * 1000.0);
-                            log.info("evt interval: startMs={} durMs{} midMs{}", startMs, durMs, ms);
+                stopDecoder(decoder, stop, ring);
+                decoder = null;
+                // EOF/стоп: недостающие будущие кадры берём ближайшими из кольца
+                if (pendingSnaps != null) pendingSnaps.flush();
+
+                // дожидаемся OCR-стадии (порядок событий = порядок future)
+                final long ocrDrainStartNs = System.nanoTime();
+                for (ZoneRun z : zones) {
+                    for (int i = 0; i < z.plateFutures.size(); i++) {
+                        Future<EventPlate> f = z.plateFutures.get(i);
+                        if (f == null) continue;
+                        try {
+                            // счётчики события — в PERF прогона только после завершения его задачи
+                            EventPlate p = f.get();
+                            z.plates.set(i, p.plate());
+                            this.perfOcr.add(p.perf());
+                        } catch (ExecutionException ee) {
+                            log.debug("OCR stage failed: {}", ee.getCause() == null ? ee.toString() : ee.getCause().toString());
                         }
                     }
                 }
-                // простое подавление соседних пиков (NMS окно по времени)
-                List<Instant> nmsTimes = new ArrayList<>();
-                List<String> nmsPlates = new ArrayList<>();
-                Instant winStart = null;
-                for (int i = 0; i < stamps.size(); i++) {
-                    Instant t = stamps.get(i);
-                    String plate = (i < ocrPlates.size()) ? ocrPlates.get(i) : null;
-                    if (winStart == null || t.toEpochMilli() - winStart.toEpochMilli() > nmsWindowMs) {
-                        nmsTimes.add(t);
-                        nmsPlates.add(plate);
-                        winStart = t;
-                    }
+                long ocrDrainMs = (System.nanoTime() - ocrDrainStartNs) / 1_000_000L;
+                // сигнал неполного прохода (qv.detect.maxMs) не сохраняем
+                if (!stoppedEarly) saveSignals(videoPath, zones, fps, frameCount, idx);
+
+                List<DetectionResult> out = new ArrayList<>(zones.size());
+                int events = 0;
+                for (ZoneRun z : zones) {
+                    DetectionResult r = finishResult(videoPath, fps, frameCount, z, idx, effectiveMergeMs, true);
+                    events += r.events();
+                    out.add(r);
                 }
-                MergedEvents merged = mergeCloseWithPlates(nmsTimes, nmsPlates, (long) effectiveMergeMs);
-                // times можно копировать через List.copyOf (там нет null)
-                List<Instant> mergedTimes = List.copyOf(merged.times);
-                // а в plates могут быть null → делаем обычную копию
-                List<String> mergedPlates = new ArrayList<>(merged.plates);
-                DetectionResult out = new DetectionResult(videoPath, mergedTimes.size(), mergedTimes, fps, frameCount, mergedPlates);
-
-                final long perfEndNs = System.nanoTime();
-                long totalMs = (perfEndNs - perfStartNs) / 1_000_000L;
-                long openMs  = (perfAfterOpenNs - perfStartNs) / 1_000_000L;
-                long loopMs  = (perfEndNs - perfLoopStartNs) / 1_000_000L;
-
-                long ocrRoiMs = this.perfOcrRoiNsTotal / 1_000_000L;
-                long ocrMs    = this.perfOcrNsTotal / 1_000_000L;
-                long ocrCalls = this.perfOcrCallsTotal;
-                long ocrAvgMs = (ocrCalls > 0) ? (ocrMs / ocrCalls) : 0;
-
-                final int maxRoiPerScan = Integer.getInteger(
-                        "qv.ocr.maxRoiPerScan",
-                        OCR_FAST_MODE ? 80 : Integer.MAX_VALUE);
-                final String eventOffsetsSec = System.getProperty("qv.ocr.eventOffsetsSec", "0,-4,4");
-
-                log.info("PERF {{video='{}', totalMs={}, openMs={}, loopMs={}, fps={}, frames={}, events={}, ocrEnabled={}, snapReads={}, roiAttempts={}, roiDroppedFast={}, ocrCalls={}, ocrRoiMs={}, ocrMs={}, ocrAvgMs={}, ocrStopByVotes={}, stepFrames={}, maxRoiPerScan={}, warmupMs={}, eventOffsetsSec='{}'}}",
-                        videoPath.getFileName(),
-                        totalMs, openMs, loopMs,
-                        fps, frameCount, mergedTimes.size(),
-                        (ocr != null),
-                        this.perfSnapReads,
-                        this.perfRoiAttemptsTotal,
-                        this.perfRoiDroppedFast,
-                        ocrCalls,
-                        ocrRoiMs,
-                        ocrMs,
-                        ocrAvgMs,
-                        this.perfStopByNormVotes,
-                        stepFrames,
-                        maxRoiPerScan,
-                        warmupMs,
-                        eventOffsetsSec);
-                return out;
+                this.lastStages = new StageDepth(ring.capacity(), ring.depthMax(),
+                        ocrStage != null ? ocrStage.size : 0, ocrStage != null ? ocrStage.queueMax : 0,
+                        pendingSnaps != null ? pendingSnaps.capacity() : 0, pendingSnaps != null ? pendingSnaps.maxSize() : 0);
+                logPerf(videoPath, perfStartNs, perfAfterOpenNs, perfLoopStartNs, fps, frameCount,
+                        events, ocr != null, warmupMs,
+                        String.format(java.util.Locale.ROOT,
+                                ", zones=%d, ringSize=%d, decodeQueueMax=%d, decodeQueueAvg=%.2f, decodeBlockedMs=%d, analysisWaitMs=%d, ocrQueueMax=%d, ocrBlockedMs=%d, ocrDrainMs=%d, snapRingMiss=%d%s",
+                                zones.size(), ring.capacity(), ring.depthMax(), ring.depthAvg(), ring.producerWaitMs(),
+                                ring.consumerWaitMs(), ocrStage != null ? ocrStage.queueMax : 0,
+                                ocrStage != null ? ocrStage.blockedNs / 1_000_000L : 0, ocrDrainMs,
+                                this.perfSnapRingMiss,
+                                stridePolicy == null ? "" : String.format(java.util.Locale.ROOT,
+                                        ", adaptive=true, strideMax=%d, samplesDense=%d, samplesSparse=%d",
+                                        stridePolicy.maxStride(), stridePolicy.denseSamples(), stridePolicy.sparseSamples())));
+                return List.copyOf(out);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                log.warn("Detect interrupted: {}", videoPath);
+                return List.of(new DetectionResult(videoPath, 0, List.of(), fps, frameCount));
             } finally {
-                // гарантированное освобождение нативной памяти
-                release(prev, frame, grayPrev, gray, diff, kernel);
-                if (traceOut != null) {
-                    traceOut.flush();
-                    traceOut.close();
-                    traceOut = null;
-                }
+                stopDecoder(decoder, stop, ring);
+                // задачи в работе читают свои снимки — освобождать нативную память можно только после них
+                if (ocrStage != null) ocrStage.shutdownAndAwait();
+                if (pendingSnaps != null) pendingSnaps.close();
+                // гарантированное освобождение нативной памяти (декодер уже остановлен)
+                ring.close();
+                release(prev);
+                for (ZoneRun z : zones) z.close();
+                closeTrace();
             }
         }
     }
 
     /**
-     * Попытка OCR не только в mid кадре события, а на нескольких кадрах вокруг него.
-     * Управление через system property:
-     *   -Dqv.ocr.eventOffsetsSec=0,-4,4   (по умолчанию)
-     *
-     * Идея: на реальном видео mid кадр часто не лучший (перекрытия/смаз/угол),
-     * а за 3–5 секунд до/после номер бывает читаемее.
+     * Стадия декодера: кадры k*stepFrames в слоты кольца; промежуточные кадры только grab() без retrieve.
+     * В конце публикует EOF-маркер с idx, каким он был бы в последовательном цикле.
+     * strideGate != null — адаптивный шаг: первые stepFrames-1 кадров шага grab()-аются сразу, а длину
+     * шага (кратную stepFrames) декодер ждёт от стадии анализа — по одному значению на сэмпл.
      */
-    private String tryOcrPlateAroundEvent(OcrService ocr, VideoCapture cap,
-                                          long midFrame, double fps, long frameCount) {
-        String offs = System.getProperty("qv.ocr.eventOffsetsSec", "0,-4,4");
-        // Бюджет OCR — на событие целиком (на все offsets), а не на каждый кадр отдельно
-        this.ocrCallsThisDetect = 0;
-        String[] parts = offs.split(",");
-        for (String p : parts) {
-            int sec;
+    private void decodeLoop(VideoCapture cap, MatRing ring, AtomicBoolean stop, BlockingQueue<Integer> strideGate) {
+        long idx = 1;
+        final long[] counts = new long[2];
+        final boolean grab = grabSkip();
+        try {
+            while (!stop.get()) {
+                MatRing.Slot slot = ring.acquire(100);
+                if (slot == null) continue;
+                // шаг через несколько кадров: декодируем в Mat только последний (анализируемый)
+                int stride = stepFrames;
+                for (int s = 0; s < stride; s++) {
+                    if (strideGate != null && s == stepFrames - 1) {
+                        Integer next = null;
+                        while (next == null && !stop.get()) next = strideGate.poll(100, TimeUnit.MILLISECONDS);
+                        if (next == null) {
+                            ring.recycle(slot);
+                            return;
+                        }
+                        stride = next;
+                    }
+                    if (!nextFrame(cap, slot.mat, s == stride - 1 || !grab, counts)) {
+                        // EOF на первом кадре шага — idx как есть, внутри шага — на последнем прочитанном
+                        ring.publishEof(slot, s == 0 ? idx : idx + s - 1);
+                        return;
+                    }
+                }
+                idx += stride - 1;
+                slot.idx = idx;
+                ring.publish(slot);
+                idx++;
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            log.warn("Detect decoder failed: {}", t.toString());
+            // анализ не должен висеть на take(): отдаём EOF любым свободным слотом
             try {
-                sec = Integer.parseInt(p.trim());
-            } catch (Exception ignore) {
-                continue;
+                MatRing.Slot slot;
+                while ((slot = ring.acquire(100)) == null && !stop.get()) { /* ждём слот */ }
+                if (slot != null) ring.publishEof(slot, idx);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
             }
-            long f = midFrame + Math.round(sec * fps);
-            f = clampLong(f, 0, Math.max(0, frameCount - 1));
-            Mat snap = null;
+        } finally {
+            // читаются после join() декодера
+            this.perfFramesGrabbed += counts[0];
+            this.perfFramesRetrieved += counts[1];
+        }
+    }
+
+    /** -Dqv.detect.grabSkip=false — прежний read() каждого кадра (эталон для сравнения с grab()-пропуском). */
+    private static boolean grabSkip() {
+        return Boolean.parseBoolean(System.getProperty("qv.detect.grabSkip", "true"));
+    }
+
+    /**
+     * Продвигает поток на один кадр. retrieve=false — только grab(): демультиплексирование без
+     * retrieve/конвертации в Mat; retrieve=true — read() в dst. counts: [0] — grab-only, [1] — retrieved.
+     */
+    private static boolean nextFrame(VideoCapture cap, Mat dst, boolean retrieve, long[] counts) {
+        if (!retrieve) {
+            if (!cap.grab()) return false;
+            counts[0]++;
+            return true;
+        }
+        if (!cap.read(dst) || dst.empty()) return false;
+        counts[1]++;
+        return true;
+    }
+
+    /**
+     * OCR-стадия последовательного прохода: один поток и не больше qv.detect.ocrQueue собранных событий в работе.
+     * Слот берётся только на событие, у которого все снимки уже есть: ждущие будущих кадров слотов не держат,
+     * иначе анализ, который один их и дозаполняет, мог бы навсегда встать на acquire().
+     */
+    private final class OcrQueue {
+        final ThreadPoolExecutor exec;
+        final OcrRun run;
+        final Semaphore slots;
+        final int size;
+        /** Проход прерван: задачи из очереди не читают номер, а только освобождают снимки и слот. */
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        /** Для PERF: максимум событий в работе и время, которое анализ ждал слот. */
+        int queueMax;
+        long blockedNs;
+
+        OcrQueue(OcrRun run, int size) {
+            this.run = run;
+            this.size = size;
+            this.slots = new Semaphore(size);
+            this.exec = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "qv-detect-ocr");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        /** Ставит собранные снимки события в очередь (ждёт слот — backpressure); слот освобождается по завершении. */
+        Future<EventPlate> submit(EventSnapshots ev) throws InterruptedException {
+            long tb = System.nanoTime();
+            slots.acquire();
+            blockedNs += System.nanoTime() - tb;
+            queueMax = Math.max(queueMax, size - slots.availablePermits());
             try {
-                this.perfSnapReads++;
-                snap = readFrameAt(cap, f);
-                if (snap == null || snap.empty()) continue;
-                // Если бюджет исчерпан — дальше offsets не читаем
-                if (this.ocrCallsThisDetect >= MAX_OCR_CALLS_PER_DETECT) {
-                    if ( log.isDebugEnabled()) {
-                        log.debug("OCR: event budget reached (MAX_OCR_CALLS_PER_DETECT={}), stop offsets scan", MAX_OCR_CALLS_PER_DETECT);
+                return submitOcr(ev);
+            } catch (RuntimeException e) {
+                slots.release();
+                throw e;
+            }
+        }
+
+        /** Задача события: состояние OCR и счётчики — в своём {@link OcrEvent}, поля детектора не трогает. */
+        private Future<EventPlate> submitOcr(EventSnapshots ev) {
+            perfOcr.framesScored += ev.scored;
+            return exec.submit(() -> {
+                final OcrEvent e = new OcrEvent(run);
+                try {
+                    if (cancelled.get()) return new EventPlate(null, e.perf);
+                    if (videoOcrDeadlinePassed()) {
+                        // дедлайн OCR видео: событие остаётся без номера, пропуск — в PERF
+                        e.perf.eventsSkipped++;
+                        log.debug("OCR skipped @{}ms: video OCR deadline passed", ev.ms);
+                        return new EventPlate(null, e.perf);
                     }
-                    break;
-                }
-                String plate = tryOcrPlate(ocr, snap);
-                if (plate != null && !plate.isBlank()) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("OCR: plate candidate '{}' at offsetSec={} (frame={})", plate, sec, f);
+                    // движок берём из общего пула на время одного события: Tesseract не потокобезопасен
+                    try (OcrEnginePool.Lease lease = run.pool().checkout()) {
+                        e.perf.poolWaitNs += lease.waitNanos();
+                        String plate = tryOcrPlateOnSnapshots(e, run.reader(lease.engine()), ev);
+                        if (plate != null && !plate.isBlank()) {
+                            log.info("OCR plate@{}ms: {}", ev.ms, plate);
+                        } else {
+                            log.debug("OCR no plate @{}ms", ev.ms);
+                        }
+                        return new EventPlate(plate, e.perf);
                     }
-                    return plate;
+                } catch (Throwable t) {
+                    log.debug("OCR hook failed: {}", t.toString());
+                    return new EventPlate(null, e.perf);
+                } finally {
+                    ev.release();
+                    slots.release();
+                }
+            });
+        }
+
+        /**
+         * Остановить стадию и дождаться её задач без ограничения по времени: снимки освобождает задача,
+         * поэтому выход раньше неё — use-after-free нативных Mat. Флаг прерывания на время ожидания
+         * снимается и затем восстанавливается.
+         */
+        void shutdownAndAwait() {
+            cancelled.set(true);
+            exec.shutdown();
+            boolean interrupted = Thread.interrupted();
+            while (true) {
+                try {
+                    if (exec.awaitTermination(1, TimeUnit.MINUTES)) break;
+                    log.info("Detect: waiting for OCR stage to finish");
+                } catch (InterruptedException ie) {
+                    interrupted = true;
                 }
-            } catch (Throwable ignore) {
-                // молча продолжаем на следующий offset
-            } finally {
-                if (snap != null) snap.release();
             }
+            if (interrupted) Thread.currentThread().interrupt();
         }
-        return null;
     }
 
-    private static long clampLong(long v, long min, long max) {
-        if (v < min) return min;
-        if (v > max) return max;
-        return v;
+    /** Смещения снимков события: -Dqv.ocr.eventOffsetsSec=0,-4,4 (некорректные элементы пропускаем). */
+    private static int[] eventOffsetsSec() {
+        String offs = System.getProperty("qv.ocr.eventOffsetsSec", "0,-4,4");
+        return java.util.Arrays.stream(offs.split(","))
+                .map(String::trim)
+                .filter(p -> p.matches("[+-]?\\d+"))
+                .mapToInt(Integer::parseInt)
+                .toArray();
     }
 
-    private record MergedEvents(List<Instant> times, List<String> plates) {}
+    /**
+     * Ёмкость кольца снимков в кадрах анализа: самое «глубокое» отрицательное смещение + запас
+     * на половину длительности события (mid отстаёт от момента закрытия ACTIVE).
+     * -Dqv.ocr.ringSec переопределяет глубину, -Dqv.ocr.ringMaxFrames ограничивает память.
+     */
+    private int eventRingCapacity(int[] offsetsSec, double fps) {
+        int maxBack = 0;
+        for (int sec : offsetsSec) maxBack = Math.max(maxBack, -sec);
+        int ringSec = Integer.getInteger("qv.ocr.ringSec", maxBack + 6);
+        int frames = (int) Math.ceil(ringSec * fps / stepFrames) + 1;
+        return Math.max(1, Math.min(frames, Integer.getInteger("qv.ocr.ringMaxFrames", 64)));
+    }
 
-    private static MergedEvents mergeCloseWithPlates(List<Instant> srcTimes,
-                                                     List<String> srcPlates,
-                                                     long mergeMs) {
-        if (srcTimes.isEmpty()) {
-            return new MergedEvents(List.of(), List.of());
+    /**
+     * Снимки одного события по кандидатам {@link FrameSelection}: прошлые кадры берутся из {@link EventFrameRing},
+     * будущие оцениваются, когда проход до них дойдёт. В OCR уходят только лучшие кадры ({@link TopFrames}),
+     * остальные даже не копируются. Владеет своими Mat до конца OCR.
+     */
+    final class EventSnapshots {
+        /** Список OCR-задач зоны события; результат ставится в futures[eventIndex]. */
+        final List<Future<EventPlate>> futures;
+        final int eventIndex;
+        final long mid;
+        final long ms;
+        /** Область поиска номера по движению события; null — весь кадр. */
+        final Rect search;
+        final double[] offsetsSec;
+        final long[] targets;
+        private final boolean[] taken;
+        final TopFrames top;
+        final int frameBudget;
+        /** Сколько кадров-кандидатов оценено по качеству (для PERF). */
+        int scored;
+        int remaining;
+
+        EventSnapshots(List<Future<EventPlate>> futures, int eventIndex, long mid, long ms, FrameSelection select,
+                       double fps, long frameCount, Rect search) {
+            this.futures = futures;
+            this.eventIndex = eventIndex;
+            this.mid = mid;
+            this.ms = ms;
+            this.search = search;
+            this.offsetsSec = select.offsetsSec();
+            this.targets = select.targets(mid, fps, frameCount);
+            this.taken = new boolean[targets.length];
+            this.top = select.newTop();
+            this.frameBudget = select.frameBudget();
+            this.remaining = targets.length;
+            openSnapshots.incrementAndGet();
         }
 
-        if (srcPlates == null || srcPlates.size() != srcTimes.size()) {
-            throw new IllegalArgumentException("srcPlates size must match srcTimes size");
+        /** Ближайший к цели кадр сетки уже пройден (или не наступит) — берём из кольца. Возвращает число промахов кольца. */
+        int fillFromRing(EventFrameRing ring, long currentIdx, int step) {
+            int misses = 0;
+            for (int i = 0; i < targets.length; i++) {
+                if (taken[i] || !reached(currentIdx, targets[i], step)) continue;
+                if (!ring.isEmpty() && targets[i] < ring.oldestFrame() - step / 2) misses++;
+                Mat m = ring.nearest(targets[i]); // кольцо пусто — снимка не будет
+                if (m != null) offer(i, m, ring.nearestFrame(targets[i]));
+                taken[i] = true;
+                remaining--;
+            }
+            return misses;
         }
 
-        List<Instant> outTimes = new ArrayList<>();
-        List<String> outPlates = new ArrayList<>();
-
-        Instant last = null;
-        for (int i = 0; i < srcTimes.size(); i++) {
-            Instant t = srcTimes.get(i);
-            String p = srcPlates.get(i);
+        /** Текущий кадр анализа — ближайший к отложенной цели. */
+        void fillReached(long idx, Mat frame, int step) {
+            for (int i = 0; i < targets.length; i++) {
+                if (taken[i] || !reached(idx, targets[i], step)) continue;
+                offer(i, frame, idx);
+                taken[i] = true;
+                remaining--;
+            }
+        }
 
-            if (last == null || (t.toEpochMilli() - last.toEpochMilli()) > mergeMs) {
-                // новая группа
-                outTimes.add(t);
-                outPlates.add(p);
-                last = t;
-            } else {
-                // внутри той же группы: если номер ещё пустой, а сейчас есть — обновляем
-                if (p != null && !p.isBlank()) {
-                    int idx = outPlates.size() - 1;
-                    String existing = outPlates.get(idx);
-                    if (existing == null || existing.isBlank()) {
-                        outPlates.set(idx, p);
-                    }
-                }
+        private void offer(int candidate, Mat frame, long frameIdx) {
+            double score = 0.0;
+            if (top.ranked()) {
+                score = FrameQuality.score(frame, search);
+                scored++;
             }
+            top.offer(candidate, frame, frameIdx, score);
         }
 
-        return new MergedEvents(outTimes, outPlates);
-    }
+        private static boolean reached(long idx, long target, int step) {
+            return idx >= target - step / 2.0;
+        }
 
-    /** Читает кадр по индексу (без изменения текущих Mat), возвращает новый Mat или null. */
-    private static Mat readFrameAt(VideoCapture cap, long frameIndex) {
-        double posBackup = cap.get(opencv_videoio.CAP_PROP_POS_FRAMES);
-        try {
-            cap.set(opencv_videoio.CAP_PROP_POS_FRAMES, frameIndex);
-            Mat m = new Mat();
-            if (cap.read(m) && !m.empty()) return m;
-            return null;
-        } finally {
-            cap.set(opencv_videoio.CAP_PROP_POS_FRAMES, posBackup);
+        void release() {
+            top.close();
+            openSnapshots.decrementAndGet();
         }
     }
 
-    /** Сканирует несколько ROI в нижней полосе и выбирает лучший результат OCR. */
-    private String tryOcrPlate(OcrService ocr, Mat bgr) {
+    /**
+     * События прохода, ещё не переданные OCR-стадии, и кольцо последних кадров анализа для их снимков.
+     * Событие ждёт, пока проход не дойдёт до его будущих целей (положительные смещения); ждущих не больше
+     * ёмкости кольца — при переполнении самое раннее уходит в OCR с ближайшими кадрами из кольца,
+     * на EOF/стопе — все оставшиеся так же. Не потокобезопасно: работает только стадия анализа.
+     */
+    static final class PendingSnapshots implements AutoCloseable {
+        /** Передача готового события OCR-стадии (может ждать место в её очереди). */
+        interface Sink {
+            void submit(EventSnapshots ev) throws InterruptedException;
+        }
 
-        if (log.isDebugEnabled()) {
-            log.debug("OCR: start tryOcrPlate, OCR_FAST_MODE={}, MAX_OCR_CALLS_PER_DETECT={}",
-                    OCR_FAST_MODE, MAX_OCR_CALLS_PER_DETECT);
+        private final EventFrameRing ring;
+        private final int step;
+        private final Sink sink;
+        private final List<EventSnapshots> waiting = new ArrayList<>();
+        private int maxSize;
+
+        PendingSnapshots(EventFrameRing ring, int step, Sink sink) {
+            this.ring = ring;
+            this.step = step;
+            this.sink = sink;
         }
 
-        int h = bgr.rows(), w = bgr.cols();
-        // сетка по X и размерам: центр и соседние позиции
-        // Важно для fast-режима: первые N ROI должны покрывать разные fy/fh,
-        // иначе при maxRoiPerScan мы можем вообще не дойти до "правильной" высоты номера.
-        // Поэтому: (1) сначала центр/типовые размеры, (2) перестраиваем порядок циклов ниже.
-        double[] fxList = {0.45, 0.50, 0.40, 0.55, 0.35, 0.60, 0.30, 0.65, 0.25};
-        double[] fwList = {0.18, 0.22, 0.14};
-        double[] fyList = {0.92, 0.90, 0.93, 0.88};
-        double[] fhList = {0.06, 0.07, 0.05};
+        /** Сколько событий может ждать будущих кадров (ждущие держат копии кадров). */
+        int capacity() { return ring.capacity(); }
 
-        String best = null;
-        int bestScore = -1;
-        int roiIdx = 0;
-        // Early-stop: если один и тот же нормализованный номер встретился N раз,
-        // прекращаем сканирование ROI.
-        // Управление:
-        // -Dqv.ocr.stopVotes=2   (рекомендуется для FAST)
-        final int stopVotes = Integer.getInteger("qv.ocr.stopVotes", OCR_FAST_MODE ? 2 : Integer.MAX_VALUE);
-        final HashMap<String, Integer> normVotes = new HashMap<>();
+        int size() { return waiting.size(); }
 
+        /** Наибольшее число ждущих событий за проход. */
+        int maxSize() { return maxSize; }
 
-        // Лимит ROI (Region of Interest, область интереса) на один скан номера.
-        // В FAST-режиме значение по умолчанию = 80, но его можно переопределить через -Dqv.ocr.maxRoiPerScan=...
-        final int maxRoiPerScan = Integer.getInteger(
-                "qv.ocr.maxRoiPerScan",
-                OCR_FAST_MODE ? 80 : Integer.MAX_VALUE);
-        if (log.isDebugEnabled()) {
-            log.debug("OCR: scanning plate ROI, maxRoiPerScan={}, grid sizes: fx={}, fw={}, fy={}, fh={}",
-                    maxRoiPerScan, fxList.length, fwList.length, fyList.length, fhList.length);
+        /** Кадр анализа idx: в кольцо; ждущие его события дозаполняются, готовые уходят в OCR. */
+        void onFrame(long idx, Mat frame) throws InterruptedException {
+            ring.push(idx, frame);
+            for (int i = waiting.size() - 1; i >= 0; i--) {
+                EventSnapshots ev = waiting.get(i);
+                ev.fillReached(idx, frame, step);
+                if (ev.remaining == 0) {
+                    sink.submit(ev);
+                    waiting.remove(i);
+                }
+            }
         }
 
-        outer:
-        for (double fx : fxList)
-            for (double fw : fwList)
-                for (double fy : fyList)
-                    for (double fh : fhList) {
-                        if (roiIdx >= maxRoiPerScan) {
-                            if (log.isDebugEnabled()) {
-                                log.debug("OCR: reached maxRoiPerScan={} (roiIdx={}), stop scanning plate ROI, best='{}', bestScore={}",
-                                        maxRoiPerScan, roiIdx, best, bestScore);
-                            }
-                            break outer;
-                        }
+        /** Событие закрыто на кадре idx: пройденные цели — из кольца, будущие — ждать. Возвращает промахи кольца. */
+        int onEvent(EventSnapshots ev, long idx) throws InterruptedException {
+            waiting.add(ev);
+            int misses = ev.fillFromRing(ring, idx, step);
+            if (ev.remaining == 0) {
+                sink.submit(ev);
+                waiting.remove(waiting.size() - 1);
+            } else if (waiting.size() > ring.capacity()) {
+                // переполнение: самое раннее ждущее событие — с тем, что уже есть в кольце
+                submitOldest();
+            }
+            maxSize = Math.max(maxSize, waiting.size());
+            return misses;
+        }
 
-                        int rx = clamp((int) Math.round(w * fx), 0, w - 1);
-                        int ry = clamp((int) Math.round(h * fy), 0, h - 1);
-                        int rw = clamp((int) Math.round(w * fw), 1, w - rx);
-                        int rh = clamp((int) Math.round(h * fh), 1, h - ry);
-                        Rect r = new Rect(rx, ry, rw, rh);
-                        String got = ocrOnceOnRoi(ocr, bgr, r, "roi_" + (roiIdx++));
-                        if (got == null) continue;
-                        // Не выбрасываем кириллицу — оставляем A-Z, 0-9 и А-ЯЁ, как в OcrService
-                        String cleaned = got.toUpperCase().replaceAll("[^A-Z0-9А-ЯЁ]", "");
-                        String norm = normalizePlate(cleaned);
-                        // Голосование по нормализованному номеру: если повторился N раз — early stop
-                        // но только для "достаточно длинных" номеров, чтобы не залипать на коротких ложняках.
-                        if (norm != null && stopVotes != Integer.MAX_VALUE) {
-                            int v = normVotes.merge(norm, 1, Integer::sum);
-                            final int minLenForEarlyStop = Integer.getInteger("qv.ocr.stopVotesMinLen", 8);
-                            if (v >= stopVotes && norm.length() >= minLenForEarlyStop) {
-                                this.perfStopByNormVotes++;
-                                if (log.isDebugEnabled()) {
-                                    log.debug("OCR: early-stop by normVotes={} for norm='{}' (len>={})",
-                                            v, norm, minLenForEarlyStop);
-                                }
-                                return norm;
-                            } else if (v >= stopVotes && log.isDebugEnabled()) {
-                                log.debug("OCR: votes reached (v={}) but skip early-stop: norm='{}' len={} < {}",
-                                        v, norm, norm.length(), minLenForEarlyStop);
-                            }
-                        }
-                        // Важно: score=100 слишком "плоский" — любой валидный шаблон (включая ложный RU)
-                        // мгновенно обрывает сканирование. Поэтому:
-                        // 1) даём валидным номерам базу 100 + длина (8-символьный выигрывает у 6-символьного)
-                        // 2) ранний выход допускаем только для "длинного" номера (>= 8), иначе продолжаем скан.
-                        int score = (norm != null ? 100 + norm.length() : cleaned.length()); // валидный шаблон — максимум
-                        String candidate = (norm != null ? norm : cleaned);
-                        if (log.isDebugEnabled()) {
-                            log.debug("OCR roi#{} rect=({}, {}, {}, {}): raw='{}' cleaned='{}' norm='{}' score='{}'",
-                                    roiIdx - 1, rx, ry, rw, rh, got, cleaned, norm, score);
-                        }
-                        if (score > bestScore
-                                || (score == bestScore && (best == null
-                                || candidate.length() > best.length()
-                                || (candidate.length() == best.length() && preferOnTie(candidate, best))))) {
-                            bestScore = score;
-                            best = candidate;
-                            if (log.isDebugEnabled()) {
-                                log.debug("OCR: new best='{}' score={} at roi#{}", best, bestScore, roiIdx - 1);
-                            }
-                        }
+        /** EOF/стоп: недостающие будущие кадры берём ближайшими из кольца. */
+        void flush() throws InterruptedException {
+            while (!waiting.isEmpty()) submitOldest();
+        }
 
-                        // Ранний выход — только если нашли "длинный" номер (например, LLDDDDLL = 8),
-                        // иначе продолжаем сканировать ROI, чтобы не зафиксировать ложный 6-символьный RU.
-                        if (norm != null && norm.length() >= 8) return norm;
-                    }
-        if (log.isDebugEnabled()) {
-            log.debug("OCR best='{}' score={}", best, bestScore);
+        private void submitOldest() throws InterruptedException {
+            EventSnapshots ev = waiting.get(0);
+            ev.fillFromRing(ring, Long.MAX_VALUE, step);
+            sink.submit(ev);
+            waiting.remove(0);
+        }
+
+        /** Освобождает снимки непереданных событий и кольцо — после остановки OCR-стадии. */
+        @Override
+        public void close() {
+            for (EventSnapshots ev : waiting) ev.release();
+            waiting.clear();
+            ring.close();
         }
-        // Для бизнес-логики принимаем только нормализованный номер (score=100),
-        // иначе считаем, что номер не найден.
-        return (bestScore >= 100) ? best : null;
     }
 
-    private int ocrCallsThisDetect = 0;
+    /**
+     * Какие кадры события рассматривать для OCR.
+     * <p>
+     * -Dqv.ocr.select=true (по умолчанию): qv.ocr.selectCandidates кадров (по умолчанию 9) равномерно по окну
+     * [min, max] смещений qv.ocr.eventOffsetsSec оцениваются {@link FrameQuality}, OCR — только по
+     * qv.ocr.selectTopK лучшим (по умолчанию 3), каждому — не больше своей доли бюджета события
+     * (qv.ocr.selectFrameBudget, по умолчанию MAX_OCR_CALLS_PER_DETECT / topK).
+     * false — прежние фиксированные смещения по порядку.
+     */
+    record FrameSelection(double[] offsetsSec, int topK, boolean rank, int frameBudget) {
+        static FrameSelection fromProperties(int[] eventOffsetsSec) {
+            double[] fixed = java.util.Arrays.stream(eventOffsetsSec).asDoubleStream().toArray();
+            if (!Boolean.parseBoolean(System.getProperty("qv.ocr.select", "true")) || fixed.length == 0) {
+                return new FrameSelection(fixed, Math.max(1, fixed.length), false, MAX_OCR_CALLS_PER_DETECT);
+            }
+            double lo = java.util.Arrays.stream(fixed).min().orElse(0), hi = java.util.Arrays.stream(fixed).max().orElse(0);
+            int n = Math.max(1, Integer.getInteger("qv.ocr.selectCandidates", 9));
+            double[] window = new double[(hi > lo) ? Math.max(2, n) : 1];
+            for (int i = 0; i < window.length; i++) {
+                window[i] = (window.length == 1) ? lo : lo + (hi - lo) * i / (window.length - 1);
+            }
+            int k = Math.max(1, Math.min(window.length, Integer.getInteger("qv.ocr.selectTopK", 3)));
+            int budget = Integer.getInteger("qv.ocr.selectFrameBudget",
+                    Math.max(1, (MAX_OCR_CALLS_PER_DETECT + k - 1) / k));
+            return new FrameSelection(window, k, true, budget);
+        }
 
-    private String ocrOnceOnRoi(OcrService ocr, Mat bgr, Rect r, String tag) {
-        final long roiStartNs = System.nanoTime();
-        this.perfRoiAttemptsTotal++;
-        try {
-            if (this.ocrCallsThisDetect >= MAX_OCR_CALLS_PER_DETECT) {
-                if (log.isDebugEnabled()) {
-                    log.debug("OCR: skip ROI {} because MAX_OCR_CALLS_PER_DETECT={} reached (rect({}, {}, {}, {}))",
-                            tag, MAX_OCR_CALLS_PER_DETECT, r.x(), r.y(), r.width(), r.height());
-                }
-                return null;
+        long[] targets(long mid, double fps, long frameCount) {
+            long[] t = new long[offsetsSec.length];
+            for (int i = 0; i < t.length; i++) {
+                t[i] = clampLong(mid + Math.round(offsetsSec[i] * fps), 0, Math.max(0, frameCount - 1));
             }
-            Mat roi = new Mat(bgr, r).clone();
-            Mat gray = new Mat();
-            opencv_imgproc.cvtColor(roi, gray, opencv_imgproc.COLOR_BGR2GRAY);
-            var clahe = opencv_imgproc.createCLAHE(2.0, new Size(8, 8));
-            Mat eq = new Mat();
-            clahe.apply(gray, eq);
-            Mat den = new Mat();
-            opencv_imgproc.bilateralFilter(eq, den, 5, 75, 75);
-            Mat up = new Mat();
-            opencv_imgproc.resize(den, up, new Size(den.cols() * 2, den.rows() * 2));
-            // первичная бинаризация (управляется флагами)
-            int b1 = Integer.getInteger("qv.ocr.adaptBlock", 31);
-            int c1 = Integer.getInteger("qv.ocr.adaptC", 5);
-            if ((b1 & 1) == 0) b1++; // blockSize должен быть нечётным
-            Mat bin = new Mat();
-            opencv_imgproc.adaptiveThreshold(
-                    up, bin, 255,
-                    opencv_imgproc.ADAPTIVE_THRESH_GAUSSIAN_C,
-                    opencv_imgproc.THRESH_BINARY, b1, c1);
-            // морфология для склейки разрывов символов
-            Mat k = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_RECT, new Size(3, 3));
-            opencv_imgproc.morphologyEx(bin, bin, opencv_imgproc.MORPH_CLOSE, k);
-            double fill = opencv_core.countNonZero(bin) / (double) (bin.rows() * bin.cols());
-            // оценка контраста ROI через стандартное отклонение яркости
-            Mat mean = new Mat();
-            Mat stddev = new Mat();
-            // В FAST-режиме решение "дропать ROI" зависит от контраста.
-            // Контраст корректнее считать ПОСЛЕ CLAHE, иначе ROI с номером часто ошибочно попадает в lowContrast.
-            opencv_core.meanStdDev(eq, mean, stddev);
-            double contrast = stddev.createIndexer().getDouble(0) / 255.0;
-            // пороги управляемы через -Dqv.ocr.minContrast / -Dqv.ocr.fillMin / -Dqv.ocr.fillMax
-            double minContrast = Double.parseDouble(System.getProperty("qv.ocr.minContrast", "0.10"));
-            double fillMin = Double.parseDouble(System.getProperty("qv.ocr.fillMin", "0.01"));
-            double fillMax = Double.parseDouble(System.getProperty("qv.ocr.fillMax", "0.90"));
-            boolean lowContrast = contrast < minContrast;
-            boolean badFill = (fill < fillMin || fill > fillMax);
-            boolean needFallback = badFill || lowContrast;
-            if (needFallback && OCR_FAST_MODE) {
-                // FAST-режим: ROI явно "плохой" по заполнению/контрасту — даже не зовём OCR
-                this.perfRoiDroppedFast++;
-                if (log.isDebugEnabled()) {
-                    log.debug("OCR fast: drop ROI after primary bin (badFill={}, lowContrast={}, " +
+            return t;
+        }
+
+        TopFrames newTop() {
+            return new TopFrames(rank ? topK : offsetsSec.length, rank);
+        }
+    }
+
+    /** Останавливает декодер и ждёт его завершения — только после этого можно освобождать слоты. */
+    private static void stopDecoder(Thread decoder, AtomicBoolean stop, MatRing ring) {
+        if (decoder == null) return;
+        stop.set(true);
+        boolean interrupted = false;
+        while (decoder.isAlive()) {
+            // декодер может ждать свободный слот: возвращаем ему всё, что уже заполнено
+            try {
+                MatRing.Slot s;
+                while ((s = ring.pollFilled()) != null) ring.recycle(s);
+                decoder.join(50);
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Параллельный detect по временным диапазонам (чанкам) одного видео.
+     * <p>
+     * Каждый чанк открывает свой {@link VideoCapture}, позиционируется на кадр перед первым
+     * сэмплом и считает только сигнал движения (число «белых» пикселей на сэмпл) в общем
+     * ForkJoinPool. Сэмплы лежат на той же сетке кадров {@code k * stepFrames}, что и в
+     * последовательном проходе, а EMA/IDLE-ACTIVE, warmup, NMS и склейка затем
+     * прогоняются по склеенному сигналу один раз — поэтому состояние через границы чанков
+     * переносится без приближений, и результат совпадает с {@link #detect(Path)}
+     * (при кадрово-точном позиционировании бэкенда). OCR событий делается после склейки.
+     * Для нескольких зон профиля возвращает первую — все зоны даёт {@link #detectParallelZones}.
+     */
+    public DetectionResult detectParallel(Path videoPath, int threads) {
+        return detectParallelZones(videoPath, threads).get(0);
+    }
+
+    /** Параллельный detect по чанкам для всех зон профиля камеры (сигнал чанка — по каждой зоне). */
+    public List<DetectionResult> detectParallelZones(Path videoPath, int threads) {
+        final long perfStartNs = System.nanoTime();
+        resetPerf();
+        startVideoOcrDeadline(perfStartNs);
+        int effectiveMergeMs = Integer.getInteger("qv.mergeMs", this.mergeMs);
+        final long maxDetectMs = Long.getLong("qv.detect.maxMs", Long.MAX_VALUE);
+        final long warmupMs = Long.getLong("qv.detect.warmupMs", 0L);
+        DetectionResult invalid = checkVideoFile(videoPath);
+        if (invalid != null) return List.of(invalid);
+
+        double fps;
+        long frameCount;
+        final List<ZoneSpec> specs = zoneSpecs(videoPath);
+        final List<ZoneRun> zones = new ArrayList<>(specs.size());
+        final int frameW, frameH;
+        final long perfAfterOpenNs;
+        try (VideoCapture cap = new VideoCapture(videoPath.toString())) {
+            perfAfterOpenNs = System.nanoTime();
+            if (!cap.isOpened()) {
+                log.error("VideoCapture cannot open: {}", videoPath);
+                return List.of(new DetectionResult(videoPath, 0, List.of(), 0.0, 0));
+            }
+            fps = cap.get(opencv_videoio.CAP_PROP_FPS);
+            if (!(fps > 1e-3)) fps = 25.0;
+            frameCount = (long) cap.get(opencv_videoio.CAP_PROP_FRAME_COUNT);
+            Mat first = new Mat();
+            try {
+                if (!cap.read(first) || first.empty()) {
+                    log.error("First frame is empty: {}", videoPath);
+                    return List.of(new DetectionResult(videoPath, 0, List.of(), fps, frameCount));
+                }
+                frameW = first.cols();
+                frameH = first.rows();
+                // площадь/порог зон — по пробному кадру; сигнал считают собственные зоны чанков
+                for (ZoneSpec spec : specs) {
+                    ZoneRun z = new ZoneRun(spec, newMotionZone(spec, frameW, frameH), fps, warmupMs);
+                    z.signal = signalRecorder(videoPath, z);
+                    logZone(z.motion, frameW, frameH);
+                    z.close();
+                    zones.add(z);
+                }
+            } finally {
+                first.release();
+            }
+        }
+        // сэмплы k = 1..samples на кадрах k*stepFrames (кадр 0 — первый prev)
+        long samples = frameCount > 0 ? (frameCount - 1) / stepFrames : 0;
+        int chunks = (int) Math.min(samples, (long) threads * 2);
+        long chunkSec = Long.getLong("qv.detect.chunkSec", 0L);
+        if (chunkSec > 0) {
+            long perChunk = Math.max(1L, Math.round(chunkSec * fps / stepFrames));
+            chunks = (int) Math.min(samples, (samples + perChunk - 1) / perChunk);
+        }
+        if (chunks < 2) {
+            log.info("Detect parallel: video too short for chunking (samples={}), fallback to sequential", samples);
+            return detectSequential(videoPath);
+        }
+        log.info("Detect parallel: threads={}, chunks={}, samples={}, stepFrames={}, zones={}",
+                threads, chunks, samples, stepFrames, zones.size());
+
+        // границы чанков по сэмплам: [k0, k1); последний чанк открыт до EOF
+        long[] bounds = new long[chunks + 1];
+        for (int c = 0; c <= chunks; c++) bounds[c] = 1 + (samples * c) / chunks;
+        bounds[chunks] = Long.MAX_VALUE;
+
+        final double fpsF = fps;
+        // маска движения для области поиска номера — только если будет OCR
+        final boolean motionGuided = Boolean.getBoolean("qv.ocr.init") && motionRegionEnabled();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<ChunkSignal> parts = new ArrayList<>(chunks);
+        final long perfLoopStartNs = System.nanoTime();
+        try {
+            List<ForkJoinTask<ChunkSignal>> tasks = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                final long k0 = bounds[c], k1 = bounds[c + 1];
+                // чанки после того, в котором сработает qv.detect.maxMs, не читаем
+                if (c > 0 && (long) ((bounds[c - 1] * stepFrames / fpsF) * 1000.0) >= maxDetectMs) break;
+                tasks.add(pool.submit(() -> scanChunk(videoPath, k0, k1, specs, frameW, frameH, motionGuided)));
+            }
+            for (ForkJoinTask<ChunkSignal> t : tasks) parts.add(t.join());
+        } finally {
+            pool.shutdownNow();
+        }
+        if (parts.contains(null)) {
+            // бэкенд не встал на кадр чанка — сигнал чанков не совпал бы с последовательным проходом
+            log.warn("Detect parallel: seek to chunk start is not frame-exact, fallback to sequential: {}", videoPath);
+            return detectSequential(videoPath);
+        }
+
+        final boolean multiZone = zones.size() > 1;
+        openTrace(videoPath, multiZone);
+        try {
+            long idxEnd = 1;
+            boolean stoppedEarly = false;
+            for (ChunkSignal part : parts) {
+                this.perfFramesGrabbed += part.grabbed;
+                this.perfFramesRetrieved += part.retrieved;
+            }
+            replay:
+            for (ChunkSignal part : parts) {
+                for (int i = 0; i < part.n; i++) {
+                    long idx = (part.k0 + i) * stepFrames;
+                    long msNow = (long) ((idx / fps) * 1000.0);
+                    if (msNow >= maxDetectMs) {
+                        log.info("Detect: reached qv.detect.maxMs={}ms (msNow={}), stop early", maxDetectMs, msNow);
+                        idxEnd = idx;
+                        stoppedEarly = true;
+                        break replay;
+                    }
+                    idxEnd = idx + 1;
+                    for (int zi = 0; zi < zones.size(); zi++) {
+                        ZoneRun z = zones.get(zi);
+                        double white = part.white[zi][i];
+                        if (z.signal != null) z.signal.add(idx, white);
+                        if (white < z.minWhite) continue;
+                        double ratio = white / (double) z.area;
+                        int evtMark = 0;
+                        if (z.sm.update(idx, ratio)) {
+                            z.plates.add(null);
+                            z.eventMids.add(z.sm.eventMidFrame(z.sm.eventCount() - 1));
+                            z.eventRegions.add(motionGuided ? motionSearchRect(z, frameW, frameH) : null);
+                            evtMark = 1;
+                        } else if (motionGuided && z.sm.isActive()) {
+                            if (z.sm.activeStartFrame() == idx) z.region.reset();
+                            z.region.add(part.box[zi], i * MotionRegion.BOX, white);
+                        }
+                        traceSample(msNow, idx, ratio, z, evtMark, multiZone);
+                    }
+                }
+                if (part.idxEnd >= 0) {
+                    // EOF внутри чанка: дальше сигнала нет
+                    idxEnd = part.idxEnd;
+                    break;
+                }
+            }
+
+            // OCR событий — после склейки, отдельным VideoCapture (порядок событий сохраняется);
+            // при отложенном OCR — фоновой очередью по кадрам из результата
+            final OcrEnginePool ocr = deferredOcr() ? null : ocrPoolIfRequested();
+            final OcrRun run = ocr != null ? new OcrRun(ocr, fastReaderFor(videoPath), OcrResultCache.forRun()) : null;
+            this.ocrRun = run;
+            if (ocr != null && zones.stream().anyMatch(z -> !z.eventMids.isEmpty())) {
+                try (VideoCapture cap = new VideoCapture(videoPath.toString());
+                     OcrEnginePool.Lease lease = ocr.checkout()) {
+                    this.perfOcr.poolWaitNs += lease.waitNanos();
+                    for (ZoneRun z : zones) {
+                        for (int i = 0; i < z.eventMids.size(); i++) {
+                            if (videoOcrDeadlinePassed()) {
+                                // дедлайн OCR видео: остальные события — без номеров
+                                this.perfOcr.eventsSkipped++;
+                                continue;
+                            }
+                            long mid = z.eventMids.get(i);
+                            long ms = z.sm.eventMs(i);
+                            z.plates.set(i, ocrAroundEventLogged(run, lease.engine(), cap, mid, fps, frameCount, ms,
+                                    z.eventRegions.get(i)));
+                        }
+                    }
+                } catch (InterruptedException ie) {
+                    // события остаются без номеров
+                    Thread.currentThread().interrupt();
+                    log.warn("Detect: OCR interrupted while waiting for engine: {}", videoPath);
+                }
+            }
+
+            if (!stoppedEarly) saveSignals(videoPath, zones, fps, frameCount, idxEnd);
+
+            List<DetectionResult> out = new ArrayList<>(zones.size());
+            int events = 0;
+            for (ZoneRun z : zones) {
+                DetectionResult r = finishResult(videoPath, fps, frameCount, z, idxEnd, effectiveMergeMs, true);
+                events += r.events();
+                out.add(r);
+            }
+            logPerf(videoPath, perfStartNs, perfAfterOpenNs, perfLoopStartNs, fps, frameCount,
+                    events, ocr != null, warmupMs,
+                    ", zones=" + zones.size() + ", threads=" + threads + ", chunks=" + parts.size());
+            return List.copyOf(out);
+        } finally {
+            closeTrace();
+        }
+    }
+
+    /**
+     * Сигнал движения одного чанка: white[zone][i] для сэмпла k0+i; idxEnd>=0, если чанк упёрся в EOF.
+     * box[zone][i*BOX..] — bounding rect/центр маски движения ({@link MotionZone#motionBox}), null — не нужен.
+     */
+    private record ChunkSignal(long k0, double[][] white, double[][] box, int n, long idxEnd, long grabbed,
+                               long retrieved) {}
+
+    /**
+     * Считает сигнал движения всех зон для сэмплов [k0, k1) на собственном VideoCapture.
+     * idxEnd повторяет значение idx последовательного цикла в момент EOF.
+     * Позиция после seek сверяется с CAP_PROP_POS_FRAMES: недолёт догоняется grab(), перелёт или позиция,
+     * которую бэкенд не сообщает, — null (чанк не посчитать точно, вызывающий уходит в последовательный проход).
+     */
+    private ChunkSignal scanChunk(Path videoPath, long k0, long k1, List<ZoneSpec> specs, int frameW, int frameH,
+                                  boolean boxes) {
+        long expected = (k1 == Long.MAX_VALUE) ? 1024 : (k1 - k0);
+        double[][] white = new double[specs.size()][(int) Math.max(1, Math.min(expected, Integer.MAX_VALUE - 8))];
+        double[][] box = boxes ? new double[specs.size()][white[0].length * MotionRegion.BOX] : null;
+        int n = 0;
+        Mat frame = new Mat();
+        final long[] counts = new long[2];
+        final boolean grab = grabSkip();
+        List<MotionZone> zones = new ArrayList<>(specs.size());
+        try (VideoCapture cap = new VideoCapture(videoPath.toString())) {
+            for (ZoneSpec spec : specs) zones.add(newMotionZone(spec, frameW, frameH));
+            long startFrame = (k0 - 1) * stepFrames;
+            if (startFrame > 0 && !seekExact(cap, startFrame, counts)) {
+                log.debug("Detect parallel: seek to frame {} is not exact (pos={})", startFrame,
+                        cap.get(opencv_videoio.CAP_PROP_POS_FRAMES));
+                return null;
+            }
+            if (!nextFrame(cap, frame, true, counts)) {
+                return new ChunkSignal(k0, white, box, 0, startFrame, counts[0], counts[1]);
+            }
+            for (MotionZone z : zones) z.reset(frame);
+            long pos = startFrame + 1; // индекс следующего кадра
+            for (long k = k0; k < k1; k++) {
+                if (!nextFrame(cap, frame, stepFrames <= 1 || !grab, counts)) {
+                    return new ChunkSignal(k0, white, box, n, pos, counts[0], counts[1]);
+                }
+                pos++;
+                for (int s = 1; s < stepFrames; s++) {
+                    if (!nextFrame(cap, frame, s == stepFrames - 1 || !grab, counts)) {
+                        // EOF в шаге: последовательный idx стоит на последнем прочитанном кадре
+                        return new ChunkSignal(k0, white, box, n, pos - 1, counts[0], counts[1]);
+                    }
+                    pos++;
+                }
+                if (n == white[0].length) {
+                    for (int zi = 0; zi < white.length; zi++) white[zi] = java.util.Arrays.copyOf(white[zi], n * 2);
+                    if (box != null) {
+                        for (int zi = 0; zi < box.length; zi++) {
+                            box[zi] = java.util.Arrays.copyOf(box[zi], n * 2 * MotionRegion.BOX);
+                        }
+                    }
+                }
+                for (int zi = 0; zi < zones.size(); zi++) {
+                    MotionZone z = zones.get(zi);
+                    white[zi][n] = z.white(frame);
+                    if (box != null) z.motionBox(box[zi], n * MotionRegion.BOX);
+                    z.commit();
+                }
+                n++;
+            }
+            return new ChunkSignal(k0, white, box, n, -1, counts[0], counts[1]);
+        } finally {
+            for (MotionZone z : zones) z.close();
+            release(frame);
+        }
+    }
+
+    /**
+     * Встать на кадр frame: seek, затем сверка с CAP_PROP_POS_FRAMES (бэкенды с seek по ключевым кадрам
+     * встают раньше — догоняем grab()). false — позиция неизвестна или уже за frame.
+     */
+    private static boolean seekExact(VideoCapture cap, long frame, long[] counts) {
+        cap.set(opencv_videoio.CAP_PROP_POS_FRAMES, frame);
+        double reported = cap.get(opencv_videoio.CAP_PROP_POS_FRAMES);
+        if (!(reported >= 0) || reported > frame) return false;
+        for (long pos = (long) reported; pos < frame; pos++) {
+            if (!nextFrame(cap, null, false, counts)) return false;
+        }
+        return true;
+    }
+
+    /** Ширина анализа: -Dqv.detect.analysisWidth приоритетнее YAML (detect.analysisWidth). */
+    private int effectiveAnalysisWidth() {
+        return Math.max(0, Integer.getInteger("qv.detect.analysisWidth", analysisWidth));
+    }
+
+    /**
+     * Зона с разрешёнными порогами: переопределения detect.profiles[].zones поверх detect:.
+     * label — имя для {@link DetectionResult#zone()} (null для единственной зоны), name — для логов.
+     */
+    record ZoneSpec(String label, String name, List<double[]> roi,
+                            int diffThreshold, double eventRatio, double minChangedFrac) {}
+
+    /** Зоны видео: из профиля камеры; без профиля или без zones — одна зона (ROI профиля или весь кадр). */
+    private List<ZoneSpec> zoneSpecs(Path videoPath) {
+        Config.DetectProfile profile = profileFor(videoPath);
+        if (profile == null) {
+            return List.of(new ZoneSpec(null, null, null, diffThreshold, eventRatio, minChangedFrac));
+        }
+        if (profile.zones() == null || profile.zones().isEmpty()) {
+            return List.of(new ZoneSpec(null, profile.name(), profile.roi(), diffThreshold, eventRatio, minChangedFrac));
+        }
+        List<ZoneSpec> out = new ArrayList<>(profile.zones().size());
+        for (Config.DetectZone z : profile.zones()) {
+            out.add(new ZoneSpec(z.name(), profile.name() + "/" + z.name(),
+                    z.roi() != null ? z.roi() : profile.roi(),
+                    z.diffThreshold() != null ? Math.max(1, z.diffThreshold()) : diffThreshold,
+                    z.eventRatio() != null ? Math.max(1e-4, z.eventRatio()) : eventRatio,
+                    z.minChangedFrac() != null ? Math.max(0.0, Math.min(1.0, z.minChangedFrac())) : minChangedFrac));
+        }
+        return out;
+    }
+
+    /** Зона анализа движения поверх кадра frameW×frameH. */
+    MotionZone newMotionZone(ZoneSpec spec, int frameW, int frameH) {
+        return new MotionZone(spec.name(), spec.roi(), frameW, frameH, effectiveAnalysisWidth(),
+                spec.diffThreshold(), morphKernel, spec.minChangedFrac(), minChangedPixels);
+    }
+
+    private static void logZone(MotionZone zone, int frameW, int frameH) {
+        if (zone.roi == null) return;
+        log.info("Detect: zone '{}' ROI {}x{}+{}+{} of {}x{}, zoneArea={}, minWhite={}",
+                zone.name, zone.roi.width(), zone.roi.height(), zone.roi.x(), zone.roi.y(),
+                frameW, frameH, zone.area, (long) zone.minWhite);
+    }
+
+    /**
+     * Профиль камеры для видео: -Dqv.detect.profile=имя, иначе первый профиль, чей glob {@code match}
+     * совпал с именем файла; null — профиля нет (анализ по всему кадру).
+     */
+    Config.DetectProfile profileFor(Path videoPath) {
+        if (profiles.isEmpty()) return null;
+        String forced = System.getProperty("qv.detect.profile");
+        if (forced != null && !forced.isBlank()) {
+            for (Config.DetectProfile p : profiles) {
+                if (forced.equals(p.name())) return p;
+            }
+            log.warn("Detect: profile '{}' (qv.detect.profile) not found, using full frame", forced);
+            return null;
+        }
+        Path fileName = videoPath.getFileName();
+        if (fileName == null) return null;
+        for (Config.DetectProfile p : profiles) {
+            if (p.match() == null || p.match().isBlank()) continue;
+            if (FileSystems.getDefault().getPathMatcher("glob:" + p.match()).matches(fileName)) return p;
+        }
+        return null;
+    }
+
+    /**
+     * -Dqv.detect.signalCache=true: сохранять сигнал движения зон ({@link MotionSignal}) рядом с видео
+     * или в каталоге -Dqv.detect.signalCacheDir.
+     */
+    private static boolean signalCacheEnabled() {
+        return Boolean.getBoolean("qv.detect.signalCache");
+    }
+
+    private static Path signalCacheDir(Path videoPath) {
+        String dir = System.getProperty("qv.detect.signalCacheDir", "");
+        if (!dir.isBlank()) return Path.of(dir);
+        Path parent = videoPath.toAbsolutePath().getParent();
+        return parent != null ? parent : Path.of(".");
+    }
+
+    /** Ключ сигнала зоны: видео и всё, от чего зависит число «белых» пикселей; null — видео недоступно. */
+    private String signalKey(Path videoPath, ZoneSpec spec) {
+        try {
+            Path abs = videoPath.toAbsolutePath().normalize();
+            StringBuilder roi = new StringBuilder();
+            if (spec.roi() != null) {
+                for (double[] p : spec.roi()) roi.append(p[0]).append(',').append(p[1]).append(';');
+            }
+            return abs + "|size=" + Files.size(abs) + "|mtime=" + Files.getLastModifiedTime(abs).toMillis()
+                    + "|step=" + stepFrames + "|aw=" + effectiveAnalysisWidth()
+                    + "|morph=" + morphKernel.width() + "x" + morphKernel.height()
+                    + "|thr=" + spec.diffThreshold() + "|roi=" + roi;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Запись сигнала зоны на проходе; null — кэш выключен. */
+    private MotionSignal.Recorder signalRecorder(Path videoPath, ZoneRun z) {
+        if (!signalCacheEnabled()) return null;
+        String key = signalKey(videoPath, z.spec);
+        return key == null ? null : new MotionSignal.Recorder(key, stepFrames, z.area, z.motion.pixelScale);
+    }
+
+    /** Сохранить записанные сигналы зон (ошибка записи кэша не ломает detect). */
+    private void saveSignals(Path videoPath, List<ZoneRun> zones, double fps, long frameCount, long idxEnd) {
+        for (ZoneRun z : zones) {
+            if (z.signal == null) continue;
+            MotionSignal s = z.signal.finish(fps, frameCount, idxEnd);
+            z.signal = null;
+            if (s == null) {
+                log.debug("Detect: motion signal of zone {} is not on the stepFrames grid, not cached", z.spec.name());
+                continue;
+            }
+            Path file = MotionSignal.path(signalCacheDir(videoPath), videoPath, s.key());
+            try {
+                s.write(file);
+                log.info("Detect: motion signal cached → {} (samples={})", file, s.size());
+            } catch (IOException e) {
+                log.warn("Detect: cannot write motion signal {}: {}", file, e.toString());
+            }
+        }
+    }
+
+    /** Состояние одной зоны на проходе: сигнал движения, свой автомат EMA/IDLE-ACTIVE и события. */
+    private final class ZoneRun implements AutoCloseable {
+        final ZoneSpec spec;
+        final MotionZone motion;
+        final MotionEventStateMachine sm;
+        final double minWhite;
+        final long area;
+        final List<String> plates = new ArrayList<>();
+        /** Последовательный проход: OCR-задачи событий (индекс = индекс события в sm). */
+        final List<Future<EventPlate>> plateFutures = new ArrayList<>();
+        /** Параллельный проход и отложенный OCR: mid-кадры событий для OCR после склейки. */
+        final List<Long> eventMids = new ArrayList<>();
+        /** Параллельный проход и отложенный OCR: область поиска номера по движению события (null — весь кадр). */
+        final List<Rect> eventRegions = new ArrayList<>();
+        /** Движение текущего ACTIVE-интервала (-Dqv.ocr.motionRegion). */
+        final MotionRegion region = new MotionRegion();
+        final double[] box = new double[MotionRegion.BOX];
+        /** Запись сигнала движения для кэша (-Dqv.detect.signalCache); null — не пишем. */
+        MotionSignal.Recorder signal;
+
+        ZoneRun(ZoneSpec spec, MotionZone motion, double fps, long warmupMs) {
+            this.spec = spec;
+            this.motion = motion;
+            this.sm = newStateMachine(fps, spec, warmupMs);
+            this.minWhite = motion.minWhite;
+            this.area = motion.area;
+        }
+
+        /** Повторный прогон по сохранённому сигналу: без MotionZone, порог — как в {@link MotionZone}. */
+        ZoneRun(ZoneSpec spec, MotionSignal s, long warmupMs) {
+            this.spec = spec;
+            this.motion = null;
+            this.sm = newStateMachine(s.fps(), spec, warmupMs);
+            this.area = s.area();
+            this.minWhite = spec.minChangedFrac() >= 0 ? spec.minChangedFrac() * area : minChangedPixels * s.pixelScale();
+        }
+
+        @Override
+        public void close() {
+            if (motion != null) motion.close();
+        }
+    }
+
+    /** Автомат событий зоны: порог — eventRatio зоны (по умолчанию общий detect.eventRatio), остальное — общее. */
+    MotionEventStateMachine newStateMachine(double fps, ZoneSpec spec, long warmupMs) {
+        return new MotionEventStateMachine(fps, spec.eventRatio(), thrLowFactor, emaAlpha,
+                cooldownFrames, minActiveMs, warmupMs);
+    }
+
+    /** -Dqv.ocr.motionRegion (по умолчанию true): искать номер только в области движения события. */
+    private static boolean motionRegionEnabled() {
+        return Boolean.parseBoolean(System.getProperty("qv.ocr.motionRegion", "true"));
+    }
+
+    /** Сэмпл без закрытия события: копим маску движения, пока зона в ACTIVE (новый интервал — заново). */
+    private static void trackMotion(ZoneRun z, long idx, double white) {
+        if (!z.sm.isActive()) return;
+        if (z.sm.activeStartFrame() == idx) z.region.reset();
+        z.motion.motionBox(z.box, 0);
+        z.region.add(z.box, 0, white);
+    }
+
+    /** Область поиска номера закрывшегося события (запас -Dqv.ocr.motionPad долей кадра, по умолчанию 0.05). */
+    private static Rect motionSearchRect(ZoneRun z, int frameW, int frameH) {
+        double pad = Double.parseDouble(System.getProperty("qv.ocr.motionPad", "0.05"));
+        Rect r = z.region.searchRect(frameW, frameH, pad);
+        if (log.isDebugEnabled()) {
+            log.debug("Detect: motion region zone={} rect={} centroid=({}, {})", z.motion.name,
+                    r == null ? "full" : r.x() + "," + r.y() + "," + r.width() + "x" + r.height(),
+                    String.format(java.util.Locale.ROOT, "%.0f", z.region.centroidX()),
+                    String.format(java.util.Locale.ROOT, "%.0f", z.region.centroidY()));
+        }
+        return r;
+    }
+
+    private String ocrAroundEventLogged(OcrRun run, OcrEngine tesseract, VideoCapture cap, long mid, double fps,
+                                        long frameCount, long ms, Rect search) {
+        final OcrEvent e = new OcrEvent(run);
+        try {
+            String plate = tryOcrPlateAroundEvent(e, run.reader(tesseract), cap, mid, fps, frameCount, search);
+            if (plate != null && !plate.isBlank()) {
+                log.info("OCR plate@{}ms: {}", ms, plate);
+            } else {
+                log.debug("OCR no plate @{}ms", ms);
+            }
+            return plate;
+        } catch (Throwable t) {
+            log.debug("OCR hook failed: {}", t.toString());
+            return null;
+        } finally {
+            this.perfOcr.add(e.perf);
+        }
+    }
+
+    /**
+     * EOF-хвост ACTIVE, NMS по времени и склейка ({@link MotionEventStateMachine}) — общий финал обоих
+     * проходов и повторного прогона (на зону). logTail — писать интервал хвоста в INFO.
+     */
+    private DetectionResult finishResult(Path videoPath, double fps, long frameCount, ZoneRun zone, long idx,
+                                         int effectiveMergeMs, boolean logTail) {
+        MotionEventStateMachine sm = zone.sm;
+        List<String> ocrPlates = zone.plates;
+        // EOF: если остались в ACTIVE — зафиксировать интервал
+        long tailStart = sm.activeStartFrame();
+        if (sm.finish(idx)) {
+            long mid = sm.eventMidFrame(sm.eventCount() - 1);
+            ocrPlates.add(null); // пока без OCR на хвосте
+            zone.eventMids.add(mid);
+            zone.eventRegions.add(null);
+            if (logTail && log.isInfoEnabled()) {
+                long startMs = (long) ((tailStart / fps) * 1000.0);
+                long durMs = (long) (((idx - tailStart) / fps) * 1000.0);
+                log.info("evt interval: startMs={} durMs{} midMs{}", startMs, durMs, sm.eventMs(sm.eventCount() - 1));
+            }
+        }
+        final int n = sm.eventCount();
+        // отложенный OCR: кадры-кандидаты на каждое событие (mid записан на каждое, включая хвост)
+        final boolean deferred = deferredOcr() && zone.eventMids.size() == n;
+        final FrameSelection select = deferred ? FrameSelection.fromProperties(eventOffsetsSec()) : null;
+        // NMS по времени и склейка близких — в автомате; Instant/номера — один раз на склеенное событие
+        int[] groupOf = new int[n];
+        int groups = sm.groups(nmsWindowMs, effectiveMergeMs, groupOf);
+        List<Instant> mergedTimes = new ArrayList<>(groups);
+        List<String> mergedPlates = new ArrayList<>(groups);
+        List<DeferredOcr> mergedDeferred = deferred ? new ArrayList<>(groups) : null;
+        // непустые номера текущей группы — сливаются посимвольно, когда группа закрывается
+        List<String> group = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int g = groupOf[i];
+            if (g < 0) continue;
+            String plate = (i < ocrPlates.size()) ? ocrPlates.get(i) : null;
+            DeferredOcr spec = deferred ? deferredSpec(zone, i, select, fps, frameCount) : null;
+            if (g == mergedTimes.size()) {
+                // новая группа
+                closeMergeGroup(mergedPlates, group);
+                mergedTimes.add(Instant.ofEpochMilli(sm.groupMs(g)));
+                mergedPlates.add(plate);
+                if (deferred) mergedDeferred.add(spec);
+            } else if (deferred) {
+                mergedDeferred.set(g, mergedDeferred.get(g).union(spec));
+            }
+            if (plate != null && !plate.isBlank()) group.add(plate);
+        }
+        closeMergeGroup(mergedPlates, group);
+        return new DetectionResult(videoPath, mergedTimes.size(), List.copyOf(mergedTimes), fps, frameCount,
+                mergedPlates, zone.spec.label(), deferred ? List.copyOf(mergedDeferred) : null);
+    }
+
+    /** Кадры-кандидаты и область поиска отложенного OCR для события i зоны. */
+    private static DeferredOcr deferredSpec(ZoneRun zone, int i, FrameSelection select, double fps, long frameCount) {
+        Rect r = zone.eventRegions.get(i);
+        // у краёв ролика смещения упираются в первый/последний кадр — повторы не нужны
+        long[] frames = java.util.Arrays.stream(select.targets(zone.eventMids.get(i), fps, frameCount))
+                .distinct().sorted().toArray();
+        return new DeferredOcr(frames, r == null ? null : new int[]{r.x(), r.y(), r.width(), r.height()});
+    }
+
+    private void logPerf(Path videoPath, long perfStartNs, long perfAfterOpenNs, long perfLoopStartNs,
+                         double fps, long frameCount, int events, boolean ocrEnabled, long warmupMs,
+                         String extra) {
+        final long perfEndNs = System.nanoTime();
+        long totalMs = (perfEndNs - perfStartNs) / 1_000_000L;
+        long openMs  = (perfAfterOpenNs - perfStartNs) / 1_000_000L;
+        long loopMs  = (perfEndNs - perfLoopStartNs) / 1_000_000L;
+
+        final OcrPerf p = this.perfOcr;
+        final OcrRun run = this.ocrRun;
+        final OcrResultCache cache = run != null ? run.cache() : null;
+        final CharTemplates fast = run != null ? run.fastReader() : null;
+        long ocrRoiMs = p.ocrRoiNs / 1_000_000L;
+        long ocrMs    = p.ocrNs / 1_000_000L;
+        long ocrCalls = p.ocrCalls;
+        long ocrAvgMs = (ocrCalls > 0) ? (ocrMs / ocrCalls) : 0;
+
+        final int maxRoiPerScan = Integer.getInteger(
+                "qv.ocr.maxRoiPerScan",
+                OCR_FAST_MODE ? 80 : Integer.MAX_VALUE);
+        final String eventOffsetsSec = System.getProperty("qv.ocr.eventOffsetsSec", "0,-4,4");
+
+        log.info("PERF {{video='{}', totalMs={}, openMs={}, loopMs={}, fps={}, frames={}, framesGrabbed={}, framesRetrieved={}, events={}, ocrEnabled={}, snapReads={}, roiAttempts={}, roiDroppedFast={}, ocrCalls={}, ocrRoiMs={}, ocrMs={}, ocrAvgMs={}, ocrStopByVotes={}, ocrPoolWaitMs={}, roiCancelled={}, roiWasted={}, locatorHits={}, gridFallbacks={}, roiSavedByLocator={}, roiSavedPerEvent={}, roiOutsideMotion={}, framesScored={}, ocrStopByFusion={}, fusedPlates={}, ocrCacheHits={}, ocrCacheMisses={}, fastReads={}, fastFallbacks={}, ocrDeadlineEvents={}, ocrEventsSkipped={}, roiSkippedByDeadline={}, psmSweepsSkipped={}, stepFrames={}, maxRoiPerScan={}, warmupMs={}, eventOffsetsSec='{}'{}}}",
+                videoPath.getFileName(),
+                totalMs, openMs, loopMs,
+                fps, frameCount, this.perfFramesGrabbed, this.perfFramesRetrieved, events,
+                ocrEnabled,
+                p.snapReads,
+                p.roiAttempts,
+                p.roiDroppedFast,
+                ocrCalls,
+                ocrRoiMs,
+                ocrMs,
+                ocrAvgMs,
+                p.stopByNormVotes,
+                p.poolWaitNs / 1_000_000L,
+                p.roiCancelled,
+                p.roiWasted,
+                p.locatorHits,
+                p.gridFallbacks,
+                p.roiSavedByLocator,
+                events > 0 ? p.roiSavedByLocator / events : 0,
+                p.roiOutsideMotion,
+                p.framesScored,
+                p.stopByFusion,
+                p.fusedPlates,
+                cache != null ? cache.hits() : 0,
+                cache != null ? cache.misses() : 0,
+                fast != null ? fast.accepted() - this.perfFastAcceptedBase : 0,
+                fast != null ? fast.rejected() - this.perfFastRejectedBase : 0,
+                p.deadlineEvents,
+                p.eventsSkipped,
+                p.roiSkippedByDeadline,
+                this.perfSweepsSkipped.get(),
+                stepFrames,
+                maxRoiPerScan,
+                warmupMs,
+                eventOffsetsSec,
+                extra);
+    }
+
+    private void resetPerf() {
+        this.perfOcr = new OcrPerf();
+        this.ocrRun = null;
+        this.perfSnapRingMiss = 0;
+        this.perfFramesGrabbed = 0;
+        this.perfFramesRetrieved = 0;
+        this.perfSweepsSkipped.set(0);
+    }
+
+    /**
+     * -Dqv.ocr.deferred (вместе с -Dqv.ocr.init): detect не читает номера, а отдаёт кадры событий
+     * ({@link DetectionResult#deferred()}) — их дочитывает фоновый воркер через {@link #ocrDeferred}.
+     */
+    public static boolean deferredOcr() {
+        return Boolean.getBoolean("qv.ocr.deferred") && Boolean.getBoolean("qv.ocr.init");
+    }
+
+    /**
+     * Общий пул OCR-движков процесса (создаётся один раз), null — OCR не включён (-Dqv.ocr.init).
+     * Пул, заданный полем {@link #ocrPool}, подменяет общий (тесты).
+     */
+    private OcrEnginePool ocrPoolIfRequested() {
+        if (this.ocrPool != null) return this.ocrPool;
+        final boolean ocrEnabled = Boolean.getBoolean("qv.ocr.init");
+        return ocrEnabled ? OcrEnginePool.shared(
+                new OcrService.Config(
+                        true,
+                        System.getProperty("qv.ocr.datapath", "tessdata"),
+                        System.getProperty("qv.ocr.languages", "eng"),
+                        Integer.getInteger("qv.ocr.psm", 7),
+                        Integer.getInteger("qv.ocr.oem", 3)
+                )
+        ) : null;
+    }
+
+    /**
+     * Быстрый читатель номеров для камеры видео: ocrReader профиля, иначе -Dqv.ocr.reader (tesseract|template,
+     * по умолчанию tesseract). null — только Tesseract.
+     */
+    private CharTemplates fastReaderFor(Path videoPath) {
+        Config.DetectProfile profile = profileFor(videoPath);
+        String kind = profile != null && profile.ocrReader() != null
+                ? profile.ocrReader()
+                : System.getProperty("qv.ocr.reader", "tesseract");
+        if (!"template".equalsIgnoreCase(kind)) return null;
+        CharTemplates model = CharTemplates.shared();
+        this.perfFastAcceptedBase = model.accepted();
+        this.perfFastRejectedBase = model.rejected();
+        return model;
+    }
+
+    /** null — файл в порядке; иначе пустой результат для битого/отсутствующего видео. */
+    private static DetectionResult checkVideoFile(Path videoPath) {
+        try {
+            if (!java.nio.file.Files.isRegularFile(videoPath) || java.nio.file.Files.size(videoPath) == 0L) {
+                log.error("Video file invalid: exists={} size={} path={}",
+                        java.nio.file.Files.exists(videoPath),
+                        java.nio.file.Files.exists(videoPath) ? java.nio.file.Files.size(videoPath) : -1,
+                        videoPath);
+                return new DetectionResult(videoPath, 0, List.of(), 0.0, 0);
+            }
+        } catch (Exception e) {
+            log.error("Video file check failed: {}", videoPath, e);
+            return new DetectionResult(videoPath, 0, List.of(), 0.0, 0);
+        }
+        return null;
+    }
+
+    /** withZone — несколько зон: в CSV добавляется колонка zone. */
+    private void openTrace(Path videoPath, boolean withZone) {
+        if (!trace) return;
+        try {
+            var name = videoPath.getFileName().toString().replaceAll("\\.[^.]+$","");
+            var dir = Path.of("trace");
+            Files.createDirectories(dir);
+            traceOut = new PrintWriter(Files.newBufferedWriter(
+                    dir.resolve("trace_" + name + ".csv")));
+            traceOut.println(withZone ? "ms,frame,ratio,ema,state,event,zone" : "ms,frame,ratio,ema,state,event");
+            log.info("trace enabled → {}", dir.resolve("trace_" + name + ".csv").toAbsolutePath());
+        } catch (Exception ex) {
+            log.warn("trace init failed: {}", ex.toString());
+        }
+    }
+
+    private void traceSample(long msNow, long idx, double ratio, ZoneRun zone, int evtMark, boolean withZone) {
+        if (traceOut == null) return;
+        if (withZone) {
+            traceOut.printf("%d,%d,%.6f,%.6f,%s,%d,%s%n",
+                    msNow, idx, ratio, zone.sm.ema(), zone.sm.traceState(), evtMark, zone.spec.label());
+        } else {
+            traceOut.printf("%d,%d,%.6f,%.6f,%s,%d%n",
+                    msNow, idx, ratio, zone.sm.ema(), zone.sm.traceState(), evtMark);
+        }
+    }
+
+    private void closeTrace() {
+        if (traceOut != null) {
+            traceOut.flush();
+            traceOut.close();
+            traceOut = null;
+        }
+    }
+
+    /**
+     * OCR по готовым снимкам события (лучшие по качеству первыми или порядок qv.ocr.eventOffsetsSec),
+     * без seek по видео. Бюджет MAX_OCR_CALLS_PER_DETECT — на событие целиком, как в {@link #tryOcrPlateAroundEvent}.
+     */
+    private String tryOcrPlateOnSnapshots(OcrEvent e, OcrEngine ocr, EventSnapshots ev) {
+        e.beginDeadline();
+        try {
+            return ocrTopFrames(e, ocr, ev.top, ev.offsetsSec, ev.search, ev.frameBudget);
+        } finally {
+            e.endDeadline();
+        }
+    }
+
+    /**
+     * Попытка OCR не только в mid кадре события, а на нескольких кадрах вокруг него.
+     * Управление через system property:
+     *   -Dqv.ocr.eventOffsetsSec=0,-4,4   (по умолчанию)
+     *
+     * Идея: на реальном видео mid кадр часто не лучший (перекрытия/смаз/угол),
+     * а за 3–5 секунд до/после номер бывает читаемее. С -Dqv.ocr.select (по умолчанию) кадры-кандидаты
+     * окна сначала читаются и оцениваются {@link FrameQuality}, OCR — только по лучшим ({@link FrameSelection}).
+     * search — область движения события (см. {@link MotionRegion}); ROI вне неё не сканируются.
+     */
+    private String tryOcrPlateAroundEvent(OcrEvent e, OcrEngine ocr, VideoCapture cap,
+                                          long midFrame, double fps, long frameCount, Rect search) {
+        final FrameSelection select = FrameSelection.fromProperties(eventOffsetsSec());
+        final long[] targets = select.targets(midFrame, fps, frameCount);
+        // Бюджет OCR — на событие целиком (на все offsets, счётчик в e), а не на каждый кадр отдельно
+        e.beginDeadline();
+        try {
+            return ocrAroundEvent(e, ocr, cap, select, targets, search);
+        } finally {
+            e.endDeadline();
+        }
+    }
+
+    /**
+     * Отложенный OCR одного события ({@link DeferredOcr}, фоновый воркер): кадры job.frames() читаются из видео
+     * и дальше идут тем же путём, что в {@link #tryOcrPlateAroundEvent} — отбор по качеству, OCR лучших,
+     * слияние, дедлайн события. Номер нормализован, как в detect; null — не прочитан или OCR не включён
+     * (-Dqv.ocr.init). Видео не открылось — IOException, прерывание — InterruptedException: задача не
+     * считается выполненной и повторяется очередью. Экземпляр детектора — на один поток.
+     */
+    public String ocrDeferred(Path videoPath, DeferredOcr job) throws IOException, InterruptedException {
+        final OcrEnginePool ocr = ocrPoolIfRequested();
+        final long[] targets = job.frames();
+        if (ocr == null || targets.length == 0) return null;
+        final int[] s = job.search();
+        final Rect search = s == null ? null : new Rect(s[0], s[1], s[2], s[3]);
+        final OcrEvent e = new OcrEvent(new OcrRun(ocr, fastReaderFor(videoPath), OcrResultCache.forRun()));
+        try (VideoCapture cap = new VideoCapture(videoPath.toString());
+             OcrEnginePool.Lease lease = ocr.checkout()) {
+            if (!cap.isOpened()) throw new IOException("VideoCapture cannot open: " + videoPath);
+            double fps = cap.get(opencv_videoio.CAP_PROP_FPS);
+            if (!(fps > 1e-3)) fps = 25.0;
+            // смещения кадров от середины окна — только для логов OCR
+            final long mid = targets[targets.length / 2];
+            double[] offsetsSec = new double[targets.length];
+            for (int i = 0; i < targets.length; i++) offsetsSec[i] = (targets[i] - mid) / fps;
+            FrameSelection base = FrameSelection.fromProperties(eventOffsetsSec());
+            FrameSelection select = new FrameSelection(offsetsSec, Math.min(base.topK(), targets.length),
+                    base.rank(), base.frameBudget());
+            e.beginDeadline();
+            String plate;
+            try {
+                plate = ocrAroundEvent(e, e.run.reader(lease.engine()), cap, select, targets, search);
+            } finally {
+                e.endDeadline();
+            }
+            // прерванный OCR мог пропустить кадры — такой результат не сохраняем
+            if (Thread.interrupted()) throw new InterruptedException("deferred OCR interrupted: " + videoPath);
+            return plate;
+        } finally {
+            this.perfOcr.add(e.perf);
+        }
+    }
+
+    /**
+     * Тело {@link #tryOcrPlateAroundEvent}: кадры окна события под дедлайном события. Кадры читаются из видео
+     * в {@link TopFrames} (с отбором — с оценкой качества) и дальше идут тем же путём, что готовые снимки.
+     */
+    private String ocrAroundEvent(OcrEvent e, OcrEngine ocr, VideoCapture cap, FrameSelection select, long[] targets,
+                                  Rect search) {
+        try (TopFrames top = select.newTop()) {
+            for (int i = 0; i < targets.length; i++) {
+                if (e.deadlinePassed()) break;
+                Mat snap = readFrameAt(cap, targets[i]);
+                if (snap == null) continue;
+                try {
+                    double score = 0.0;
+                    if (top.ranked()) {
+                        e.perf.framesScored++;
+                        score = FrameQuality.score(snap, search);
+                    }
+                    top.offer(i, snap, targets[i], score);
+                } finally {
+                    snap.release();
+                }
+            }
+            return ocrTopFrames(e, ocr, top, select.offsetsSec(), search, select.frameBudget());
+        }
+    }
+
+    /**
+     * OCR по кадрам события в порядке {@link TopFrames#order()}: лучшие по качеству первыми или порядок
+     * смещений. Единственное различие режимов — бюджет кадра: при отборе по качеству каждый кадр получает
+     * не больше selectFrameBudget вызовов, чтобы смазанный кадр не съел бюджет всего события; без отбора
+     * frameBudget = MAX_OCR_CALLS_PER_DETECT, и кадры делят бюджет события.
+     */
+    private String ocrTopFrames(OcrEvent e, OcrEngine ocr, TopFrames top, double[] offsetsSec, Rect search,
+                                int frameBudget) {
+        e.beginFusion();
+        try {
+            for (int slot : top.order()) {
+                Mat snap = top.mat(slot);
+                if (snap.empty()) continue;
+                if (e.deadlinePassed()) {
+                    log.debug("OCR: event deadline reached, stop frames scan");
+                    break;
+                }
+                e.perf.snapReads++;
+                // Если бюджет исчерпан — дальше offsets не смотрим
+                if (e.calls >= MAX_OCR_CALLS_PER_DETECT) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("OCR: event budget reached (MAX_OCR_CALLS_PER_DETECT={}), stop offsets scan", MAX_OCR_CALLS_PER_DETECT);
+                    }
+                    break;
+                }
+                e.callLimit = (int) Math.min(MAX_OCR_CALLS_PER_DETECT, (long) e.calls + frameBudget);
+                try {
+                    String plate = e.acceptFramePlate(tryOcrPlate(e, ocr, snap, search));
+                    if (plate != null) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("OCR: plate candidate '{}' at offsetSec={} (frame={}, quality={})", plate,
+                                    offsetsSec[top.candidate(slot)], top.frame(slot),
+                                    String.format(java.util.Locale.ROOT, "%.1f", top.score(slot)));
+                        }
+                        return plate;
+                    }
+                } catch (Throwable ignore) {
+                    // молча продолжаем на следующий offset
+                }
+            }
+            return e.plateAtEnd();
+        } finally {
+            e.callLimit = MAX_OCR_CALLS_PER_DETECT;
+            e.fusion = null;
+        }
+    }
+
+    /** Дедлайн OCR видео от начала detect(): -Dqv.ocr.videoDeadlineMs (0 — без ограничения, по умолчанию). */
+    private void startVideoOcrDeadline(long startNs) {
+        final long ms = Long.getLong("qv.ocr.videoDeadlineMs", 0L);
+        this.videoOcrDeadlineNs = ms > 0 ? startNs + ms * 1_000_000L : OcrDeadline.NONE;
+    }
+
+    private boolean videoOcrDeadlinePassed() {
+        return OcrDeadline.passed(this.videoOcrDeadlineNs);
+    }
+
+    /** Слитый номер валиден, уверенность не ниже qv.ocr.fuseTarget (0.7) и кадров — не меньше qv.ocr.fuseMinFrames (2). */
+    private static boolean fusionReached(PlateFusion.Result r) {
+        if (r == null) return false;
+        double target = Double.parseDouble(System.getProperty("qv.ocr.fuseTarget", "0.7"));
+        int minFrames = Integer.getInteger("qv.ocr.fuseMinFrames", 2);
+        return r.confidence() >= target && r.frames() >= minFrames && r.plate().equals(normalizePlate(r.plate()));
+    }
+
+    private static long clampLong(long v, long min, long max) {
+        if (v < min) return min;
+        if (v > max) return max;
+        return v;
+    }
+
+    /**
+     * Номер закрытой группы склейки: первый непустой, а при нескольких и -Dqv.ocr.fuse — посимвольное
+     * голосование {@link PlateFusion} (две разные гипотезы дают первую, как раньше).
+     */
+    private static void closeMergeGroup(List<String> outPlates, List<String> group) {
+        if (group.isEmpty()) return;
+        String plate = group.get(0);
+        if (group.size() > 1 && Boolean.parseBoolean(System.getProperty("qv.ocr.fuse", "true"))) {
+            String fused = PlateFusion.fuse(group);
+            if (fused != null && fused.equals(normalizePlate(fused))) plate = fused;
+        }
+        outPlates.set(outPlates.size() - 1, plate);
+        group.clear();
+    }
+
+    /** Читает кадр по индексу (без изменения текущих Mat), возвращает новый Mat или null. */
+    private static Mat readFrameAt(VideoCapture cap, long frameIndex) {
+        double posBackup = cap.get(opencv_videoio.CAP_PROP_POS_FRAMES);
+        try {
+            cap.set(opencv_videoio.CAP_PROP_POS_FRAMES, frameIndex);
+            Mat m = new Mat();
+            if (cap.read(m) && !m.empty()) return m;
+            return null;
+        } finally {
+            cap.set(opencv_videoio.CAP_PROP_POS_FRAMES, posBackup);
+        }
+    }
+
+    /**
+     * Сканирует несколько ROI и выбирает лучший результат OCR.
+     * <p>
+     * ROI — кандидаты {@link PlateLocator} (лучшие первыми); если он ничего не нашёл — сетка в нижней полосе.
+     * -Dqv.ocr.roiThreads=N (по умолчанию число ядер): ROI-кандидаты распознаются параллельно на движках
+     * общего пула (берём столько, сколько свободно без ожидания). Результаты фиксируются строго в порядке
+     * списка ROI, поэтому normVotes, «длинный номер ⇒ стоп», tie-break и бюджет MAX_OCR_CALLS_PER_DETECT дают
+     * тот же ответ, что и последовательный скан; после стопа ещё не начатые ROI отменяются.
+     */
+    String tryOcrPlate(OcrEngine ocr, Mat bgr) {
+        return tryOcrPlate(ocr, bgr, null);
+    }
+
+    /**
+     * То же в области поиска search (движение события, {@link MotionRegion}): локализатор смотрит только
+     * внутрь неё, из сетки остаются ROI с центром внутри. null — весь кадр.
+     */
+    String tryOcrPlate(OcrEngine ocr, Mat bgr, Rect search) {
+        return tryOcrPlate(ocr, bgr, search, null, MAX_OCR_CALLS_PER_DETECT);
+    }
+
+    /**
+     * Скан одного снимка вне события; pool — движки для параллельного скана ROI (null — только ocr),
+     * callLimit — бюджет вызовов OCR снимка.
+     */
+    String tryOcrPlate(OcrEngine ocr, Mat bgr, Rect search, OcrEnginePool pool, int callLimit) {
+        final OcrEvent e = new OcrEvent(new OcrRun(pool, null, null));
+        e.callLimit = callLimit;
+        try {
+            return tryOcrPlate(e, ocr, bgr, search);
+        } finally {
+            this.perfOcr.add(e.perf);
+        }
+    }
+
+    /** Скан ROI снимка в событии e: бюджет вызовов, слияние кадров и счётчики — в e. */
+    private String tryOcrPlate(OcrEvent e, OcrEngine ocr, Mat bgr, Rect search) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("OCR: start tryOcrPlate, OCR_FAST_MODE={}, MAX_OCR_CALLS_PER_DETECT={}",
+                    OCR_FAST_MODE, MAX_OCR_CALLS_PER_DETECT);
+        }
+
+        // Сначала локализатор (blackhat + контуры + плотность символов): несколько кандидатов вместо сетки.
+        // Сетка — только если он ничего не нашёл или выключен (-Dqv.ocr.locator=false).
+        List<Rect> grid = plateGrid(bgr.cols(), bgr.rows());
+        if (search != null) {
+            List<Rect> inside = new ArrayList<>(grid.size());
+            for (Rect r : grid) {
+                int cx = r.x() + r.width() / 2, cy = r.y() + r.height() / 2;
+                if (cx >= search.x() && cx < search.x() + search.width()
+                        && cy >= search.y() && cy < search.y() + search.height()) {
+                    inside.add(r);
+                }
+            }
+            e.perf.roiOutsideMotion += grid.size() - inside.size();
+            grid = inside;
+        }
+        List<Rect> rois = grid;
+        boolean located = false;
+        if (Boolean.parseBoolean(System.getProperty("qv.ocr.locator", "true"))) {
+            List<Rect> found = PlateLocator.propose(bgr, search, Integer.getInteger("qv.ocr.locatorMax", 6));
+            if (!found.isEmpty()) {
+                rois = found;
+                located = true;
+                e.perf.locatorHits++;
+                e.perf.roiSavedByLocator += Math.max(0, grid.size() - found.size());
+            } else {
+                e.perf.gridFallbacks++;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("OCR: locator candidates={}, grid={}", found.size(), grid.size());
+            }
+        }
+
+        final RoiVote vote = new RoiVote(e);
+        // ROI сетки сильно перекрываются: полоса под ними готовится один раз на снимок, ROI — view в неё
+        // (-Dqv.ocr.bandPrep=false — прежняя подготовка каждого ROI отдельно). Кандидаты локализатора
+        // разбросаны по кадру и их мало — их готовим по одному.
+        // Движок с сессиями (TessBaseAPI) получает полосу одним изображением и читает ROI через SetRectangle.
+        PlateBand band = null;
+        if (!located && Boolean.parseBoolean(System.getProperty("qv.ocr.bandPrep", "true")) && !rois.isEmpty()) {
+            int b1 = Integer.getInteger("qv.ocr.adaptBlock", 31);
+            if ((b1 & 1) == 0) b1++;
+            band = PlateBand.build(bgr, rois, b1, Integer.getInteger("qv.ocr.adaptC", 5));
+        }
+        final List<OcrEnginePool.Lease> extra = borrowRoiEngines(e.run.pool(), rois.size());
+        final CallBudget budget = new CallBudget(e.calls, e.callLimit, rois.size());
+        try {
+            if (extra.isEmpty()) {
+                try (OcrEngine.RegionSession ses = band != null ? ocr.open(band.image) : null) {
+                    for (int i = 0; i < rois.size(); i++) {
+                        if (e.deadlinePassed()) {
+                            e.perf.roiSkippedByDeadline += rois.size() - i;
+                            break;
+                        }
+                        CallBudget.Grant g = budget.next();
+                        if (g == null || g.calls() == 0) break; // бюджет события исчерпан
+                        RoiStats st = new RoiStats();
+                        String got = ocrOnRoi(ocr, ses, band, bgr, rois.get(i), "roi_" + i, st, g.calls());
+                        budget.finish(g, st.calls);
+                        e.perf.add(st);
+                        if (vote.offer(i, rois.get(i), got, st)) break;
+                    }
+                }
+            } else {
+                scanRoisParallel(e, ocr, extra, bgr, band, rois, vote, budget);
+            }
+        } finally {
+            for (OcrEnginePool.Lease lease : extra) lease.close();
+            if (band != null) band.close();
+        }
+        return vote.result();
+    }
+
+    /** Сетка ROI номера в нижней полосе кадра (fallback локализатора), не больше maxRoiPerScan. */
+    private List<Rect> plateGrid(int w, int h) {
+        // сетка по X и размерам: центр и соседние позиции
+        // Важно для fast-режима: первые N ROI должны покрывать разные fy/fh,
+        // иначе при maxRoiPerScan мы можем вообще не дойти до "правильной" высоты номера.
+        // Поэтому: (1) сначала центр/типовые размеры, (2) перестраиваем порядок циклов ниже.
+        double[] fxList = {0.45, 0.50, 0.40, 0.55, 0.35, 0.60, 0.30, 0.65, 0.25};
+        double[] fwList = {0.18, 0.22, 0.14};
+        double[] fyList = {0.92, 0.90, 0.93, 0.88};
+        double[] fhList = {0.06, 0.07, 0.05};
+
+        // Лимит ROI (Region of Interest, область интереса) на один скан номера.
+        // В FAST-режиме значение по умолчанию = 80, но его можно переопределить через -Dqv.ocr.maxRoiPerScan=...
+        final int maxRoiPerScan = Integer.getInteger(
+                "qv.ocr.maxRoiPerScan",
+                OCR_FAST_MODE ? 80 : Integer.MAX_VALUE);
+        if (log.isDebugEnabled()) {
+            log.debug("OCR: scanning plate ROI, maxRoiPerScan={}, grid sizes: fx={}, fw={}, fy={}, fh={}",
+                    maxRoiPerScan, fxList.length, fwList.length, fyList.length, fhList.length);
+        }
+
+        final List<Rect> rois = new ArrayList<>();
+        outer:
+        for (double fx : fxList)
+            for (double fw : fwList)
+                for (double fy : fyList)
+                    for (double fh : fhList) {
+                        if (rois.size() >= maxRoiPerScan) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("OCR: reached maxRoiPerScan={}, stop building plate ROI grid", maxRoiPerScan);
+                            }
+                            break outer;
+                        }
+                        int rx = clamp((int) Math.round(w * fx), 0, w - 1);
+                        int ry = clamp((int) Math.round(h * fy), 0, h - 1);
+                        int rw = clamp((int) Math.round(w * fw), 1, w - rx);
+                        int rh = clamp((int) Math.round(h * fh), 1, h - ry);
+                        rois.add(new Rect(rx, ry, rw, rh));
+                    }
+        return rois;
+    }
+
+    /** Дополнительные движки для параллельного скана ROI — только свободные, без ожидания (иначе deadlock). */
+    private static List<OcrEnginePool.Lease> borrowRoiEngines(OcrEnginePool pool, int roiCount) {
+        final int threads = Integer.getInteger("qv.ocr.roiThreads", Runtime.getRuntime().availableProcessors());
+        if (threads <= 1 || pool == null || roiCount < 2) return List.of();
+        List<OcrEnginePool.Lease> out = new ArrayList<>();
+        for (int k = 1; k < Math.min(threads, roiCount); k++) {
+            OcrEnginePool.Lease lease = pool.tryCheckout();
+            if (lease == null) break;
+            out.add(lease);
+        }
+        return out;
+    }
+
+    /**
+     * Воркеры (свой движок + арендованные, потоки — {@link OcrEnginePool#executor()}) берут ROI вместе с резервом
+     * вызовов ({@link CallBudget}) по возрастанию индекса, вызывающий поток фиксирует результаты в том же порядке.
+     * Стоп на ROI i: новые ROI не берутся, уже начатые дорабатывают и в голосовании не участвуют (их стоимость
+     * всё равно попадает в PERF). Бюджет кончился на ROI i — как стоп, но ROI с i не считаются отменёнными.
+     */
+    private void scanRoisParallel(OcrEvent e, OcrEngine own, List<OcrEnginePool.Lease> extra, Mat bgr,
+                                  PlateBand band, List<Rect> rois, RoiVote vote, CallBudget budget) {
+        final int n = rois.size();
+        final List<CompletableFuture<RoiResult>> slots = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) slots.add(new CompletableFuture<>());
+        // дедлайн события передаётся воркерам: и для выдачи ROI, и для свипа PSM внутри движка
+        final long deadline = OcrDeadline.current();
+        final AtomicLong sweepsSkipped = OcrDeadline.skippedCounter();
+
+        List<OcrEngine> engines = new ArrayList<>(extra.size() + 1);
+        engines.add(own);
+        for (OcrEnginePool.Lease lease : extra) engines.add(e.run.reader(lease.engine()));
+        final ExecutorService exec = e.run.pool().executor();
+        List<Future<?>> workers = new ArrayList<>(engines.size());
+        for (OcrEngine engine : engines) {
+            FutureTask<?> worker = new FutureTask<>(() -> {
+                // у каждого воркера своя сессия на своём движке: полоса передаётся движку один раз
+                OcrDeadline.set(deadline, sweepsSkipped);
+                try (OcrEngine.RegionSession ses = band != null ? engine.open(band.image) : null) {
+                    CallBudget.Grant g;
+                    while ((g = budget.next()) != null) {
+                        final int i = g.roi();
+                        if (g.calls() == 0) {
+                            slots.get(i).complete(ROI_BUDGET);
+                            break;
+                        }
+                        if (OcrDeadline.passed(deadline)) {
+                            budget.finish(g, 0);
+                            slots.get(i).complete(ROI_DEADLINE);
+                            continue;
+                        }
+                        RoiStats st = new RoiStats();
+                        String got = null;
+                        try {
+                            got = ocrOnRoi(engine, ses, band, bgr, rois.get(i), "roi_" + i, st, g.calls());
+                        } catch (Throwable t) {
+                            log.debug("OCR roi#{} failed: {}", i, t.toString());
+                        }
+                        budget.finish(g, st.calls);
+                        slots.get(i).complete(new RoiResult(got, st));
+                    }
+                } finally {
+                    OcrDeadline.clear();
+                }
+            }, null);
+            try {
+                exec.execute(worker);
+            } catch (RejectedExecutionException closed) {
+                // пул закрывается (выход из приложения): ROI этого воркера дочитывает вызывающий поток
+                worker.run();
+            }
+            workers.add(worker);
+        }
+
+        int committed = 0;
+        try {
+            for (int i = 0; i < n; i++) {
+                RoiResult res = slots.get(i).get();
+                if (res == ROI_DEADLINE) {
+                    // остальные ROI воркеры тоже закрывают маркером — их посчитает finally
+                    e.deadlineHit = true;
+                    break;
+                }
+                if (res == ROI_BUDGET) break;
+                committed = i + 1;
+                e.perf.add(res.stats);
+                if (vote.offer(i, rois.get(i), res.text, res.stats)) break;
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignore) {
+            // слоты завершаются только complete(), сюда не попадаем
+        } finally {
+            budget.stop();
+            // движки и bgr отдаём только после остановки всех воркеров
+            boolean interrupted = false;
+            for (Future<?> f : workers) {
+                while (true) {
+                    try {
+                        f.get();
+                        break;
+                    } catch (InterruptedException ie) {
+                        interrupted = true;
+                    } catch (ExecutionException ignore) {
+                        break;
+                    }
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            for (int j = committed; j < Math.min(n, budget.exhaustedAt()); j++) {
+                RoiResult res = slots.get(j).getNow(null);
+                if (res == ROI_DEADLINE) {
+                    e.perf.roiSkippedByDeadline++;
+                } else if (res != null) {
+                    e.perf.add(res.stats);
+                    e.perf.roiWasted++;
+                } else {
+                    e.perf.roiCancelled++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Бюджет вызовов OCR одного скана ROI: выдаёт ROI строго по возрастанию индекса вместе с резервом вызовов,
+     * так что предел {@link OcrEvent#callLimit} не превышается и при параллельном скане.
+     * <p>
+     * ROI получает полный резерв (вызов + инверсия AUDIT-режима), если он помещается в предел даже при
+     * худшем исходе всех ROI в работе; иначе выдача ждёт, пока все предыдущие ROI закончатся, и даёт точный
+     * остаток. Резерв ROI i поэтому зависит только от вызовов ROI 0..i-1 — те же ROI и те же резервы, что и в
+     * последовательном скане. Остаток 0 — бюджет исчерпан на этом ROI: дальше ROI не выдаются.
+     */
+    private static final class CallBudget {
+        /** ROI и разрешённое ему число вызовов OCR; calls=0 — на этом ROI бюджет кончился. */
+        record Grant(int roi, int calls) {}
+
+        private final int limit;
+        private final int rois;
+        private final int perRoi = OCR_FAST_MODE ? 1 : 2;
+        private int used;      // вызовы события и завершённых ROI
+        private int reserved;  // резерв ROI в работе
+        private int handed;    // выдано ROI
+        private int finished;  // из них завершено
+        private int exhaustedAt = Integer.MAX_VALUE;
+        private boolean stopped;
+
+        CallBudget(int used, int limit, int rois) {
+            this.used = used;
+            this.limit = limit;
+            this.rois = rois;
+        }
+
+        /** Следующий ROI с резервом вызовов; null — ROI кончились, бюджет исчерпан раньше или скан остановлен. */
+        synchronized Grant next() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    if (stopped || handed >= rois || handed >= exhaustedAt) return null;
+                    if (used + reserved + perRoi <= limit) {
+                        reserved += perRoi;
+                        return new Grant(handed++, perRoi);
+                    }
+                    if (finished == handed) {
+                        int left = Math.max(0, limit - used);
+                        if (left == 0) {
+                            exhaustedAt = handed;
+                            notifyAll();
+                            return new Grant(handed, 0);
+                        }
+                        reserved += left;
+                        return new Grant(handed++, left);
+                    }
+                    // предыдущие ROI в работе конечны — ждём их без прерывания
+                    try {
+                        wait();
+                    } catch (InterruptedException ie) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+        }
+
+        /** ROI закончен: фактические вызовы вместо резерва. */
+        synchronized void finish(Grant g, long calls) {
+            reserved -= g.calls();
+            used += (int) calls;
+            finished++;
+            notifyAll();
+        }
+
+        /** Стоп скана: ждущие выдачи воркеры выходят. */
+        synchronized void stop() {
+            stopped = true;
+            notifyAll();
+        }
+
+        /** Индекс ROI, на котором кончился бюджет, или Integer.MAX_VALUE. */
+        synchronized int exhaustedAt() { return exhaustedAt; }
+    }
+
+    /** Сырой результат OCR одного ROI и его счётчики. */
+    private record RoiResult(String text, RoiStats stats) {}
+
+    /** Маркер ROI, не начатого из-за дедлайна события (сравнивается по ссылке). */
+    private static final RoiResult ROI_DEADLINE = new RoiResult(null, new RoiStats());
+    /** Маркер ROI, на котором кончился бюджет вызовов события (сравнивается по ссылке). */
+    private static final RoiResult ROI_BUDGET = new RoiResult(null, new RoiStats());
+
+    /** Счётчики одного ROI: копятся в потоке воркера, в {@link OcrPerf} события сливаются вызывающим потоком. */
+    private static final class RoiStats {
+        long attempts, droppedFast, calls, ocrNs, roiNs;
+        /** Уверенность движка для распознанной строки ({@link OcrEngine#lastConfidence()}) — вес в слиянии. */
+        double confidence = 1.0;
+    }
+
+    /**
+     * Голосование по ROI в порядке сетки: счёт, tie-break, early-stop. Одинаково для последовательного и
+     * параллельного скана — результат зависит только от последовательности распознанных строк.
+     */
+    private final class RoiVote {
+        private final OcrEvent e;
+        // Early-stop: если один и тот же нормализованный номер встретился N раз,
+        // прекращаем сканирование ROI.
+        // Управление:
+        // -Dqv.ocr.stopVotes=2   (рекомендуется для FAST)
+        private final int stopVotes = Integer.getInteger("qv.ocr.stopVotes", OCR_FAST_MODE ? 2 : Integer.MAX_VALUE);
+        private final HashMap<String, Integer> normVotes = new HashMap<>();
+        private String best = null;
+        private int bestScore = -1;
+        private String stopped = null;
+        /** Слияние по событию: сколько ROI ещё смотреть после первого валидного номера кадра. */
+        private final int fuseExtraRois = Integer.getInteger("qv.ocr.fuseExtraRois", 8);
+        private int firstValidRoi = -1;
+
+        RoiVote(OcrEvent e) {
+            this.e = e;
+        }
+
+        /** Учитывает ROI #roiIdx; true — сканирование можно прекращать. */
+        boolean offer(int roiIdx, Rect r, String got, RoiStats st) {
+            // бюджет вызовов — по зафиксированным ROI (резерв {@link CallBudget} держит их в пределе)
+            e.calls += (int) st.calls;
+            if (got == null) return fuseFrameDone(roiIdx);
+            // Не выбрасываем кириллицу — оставляем A-Z, 0-9 и А-ЯЁ, как в OcrService
+            String cleaned = got.toUpperCase().replaceAll("[^A-Z0-9А-ЯЁ]", "");
+            String norm = normalizePlate(cleaned);
+            // Временное слияние: гипотеза идёт в накопитель события; согласие нескольких кадров — стоп
+            if (norm != null && e.fusion != null) {
+                e.fusion.add(norm, st.confidence, e.frame);
+                PlateFusion.Result fr = e.fusion.fuse();
+                if (fusionReached(fr)) {
+                    e.perf.stopByFusion++;
+                    if (log.isDebugEnabled()) {
+                        log.debug("OCR: early-stop by fusion '{}' (confidence={}, frames={}) at roi#{}",
+                                fr.plate(), String.format(java.util.Locale.ROOT, "%.2f", fr.confidence()),
+                                fr.frames(), roiIdx);
+                    }
+                    stopped = fr.plate();
+                    return true;
+                }
+                if (firstValidRoi < 0) firstValidRoi = roiIdx;
+            }
+            // Голосование по нормализованному номеру: если повторился N раз — early stop
+            // но только для "достаточно длинных" номеров, чтобы не залипать на коротких ложняках.
+            if (norm != null && stopVotes != Integer.MAX_VALUE) {
+                int v = normVotes.merge(norm, 1, Integer::sum);
+                final int minLenForEarlyStop = Integer.getInteger("qv.ocr.stopVotesMinLen", 8);
+                if (v >= stopVotes && norm.length() >= minLenForEarlyStop) {
+                    e.perf.stopByNormVotes++;
+                    if (log.isDebugEnabled()) {
+                        log.debug("OCR: early-stop by normVotes={} for norm='{}' (len>={})",
+                                v, norm, minLenForEarlyStop);
+                    }
+                    stopped = norm;
+                    return true;
+                } else if (v >= stopVotes && log.isDebugEnabled()) {
+                    log.debug("OCR: votes reached (v={}) but skip early-stop: norm='{}' len={} < {}",
+                            v, norm, norm.length(), minLenForEarlyStop);
+                }
+            }
+            // Важно: score=100 слишком "плоский" — любой валидный шаблон (включая ложный RU)
+            // мгновенно обрывает сканирование. Поэтому:
+            // 1) даём валидным номерам базу 100 + длина (8-символьный выигрывает у 6-символьного)
+            // 2) ранний выход допускаем только для "длинного" номера (>= 8), иначе продолжаем скан.
+            int score = (norm != null ? 100 + norm.length() : cleaned.length()); // валидный шаблон — максимум
+            String candidate = (norm != null ? norm : cleaned);
+            if (log.isDebugEnabled()) {
+                log.debug("OCR roi#{} rect=({}, {}, {}, {}): raw='{}' cleaned='{}' norm='{}' score='{}'",
+                        roiIdx, r.x(), r.y(), r.width(), r.height(), got, cleaned, norm, score);
+            }
+            if (score > bestScore
+                    || (score == bestScore && (best == null
+                    || candidate.length() > best.length()
+                    || (candidate.length() == best.length() && preferOnTie(candidate, best))))) {
+                bestScore = score;
+                best = candidate;
+                if (log.isDebugEnabled()) {
+                    log.debug("OCR: new best='{}' score={} at roi#{}", best, bestScore, roiIdx);
+                }
+            }
+
+            // Ранний выход — только если нашли "длинный" номер (например, LLDDDDLL = 8),
+            // иначе продолжаем сканировать ROI, чтобы не зафиксировать ложный 6-символьный RU.
+            if (norm != null && norm.length() >= 8) {
+                stopped = norm;
+                return true;
+            }
+            return fuseFrameDone(roiIdx);
+        }
+
+        /**
+         * При слиянии короткий валидный номер не заставляет дочитывать все ROI кадра: ещё fuseExtraRois
+         * в поисках длинного, дальше подтверждение — на следующих кадрах события.
+         */
+        private boolean fuseFrameDone(int roiIdx) {
+            return e.fusion != null && firstValidRoi >= 0 && roiIdx - firstValidRoi >= fuseExtraRois;
+        }
+
+        String result() {
+            if (stopped != null) return stopped;
+            if (log.isDebugEnabled()) {
+                log.debug("OCR best='{}' score={}", best, bestScore);
+            }
+            // Для бизнес-логики принимаем только нормализованный номер (score=100),
+            // иначе считаем, что номер не найден.
+            return (bestScore >= 100) ? best : null;
+        }
+    }
+
+    /** Дедлайн OCR видео (System.nanoTime(), {@link OcrDeadline#NONE} — нет); дедлайн события — в потоке. */
+    private long videoOcrDeadlineNs = OcrDeadline.NONE;
+    /** OCR текущего detect() (для PERF: кэш и быстрый читатель); null — OCR выключен. */
+    private OcrRun ocrRun;
+    /** Пул движков вместо общего {@link OcrEnginePool#shared} (тесты); null — общий при -Dqv.ocr.init. */
+    OcrEnginePool ocrPool;
+
+    /**
+     * OCR одного прогона: пул движков (для параллельного скана ROI), шаблоны символов камеры
+     * ({@link #fastReaderFor}; null — только Tesseract) и кэш результатов (-Dqv.ocr.cache; null — выключен).
+     * Не меняется до конца прогона — его читают и анализ, и OCR-стадия.
+     */
+    private record OcrRun(OcrEnginePool pool, CharTemplates fastReader, OcrResultCache cache) {
+        /**
+         * Движок аренды с быстрым читателем перед Tesseract (если он выбран для камеры); Tesseract — за кэшем
+         * результатов прогона, если он включён.
+         */
+        OcrEngine reader(OcrEngine tesseract) {
+            OcrEngine base = (cache != null && pool != null)
+                    ? new CachingOcrEngine(tesseract, cache, pool.settingsKey()) : tesseract;
+            return fastReader == null ? base
+                    : new TemplatePlateReader(fastReader, base, TemplatePlateReader.minConfidenceFromProperties());
+        }
+    }
+
+    /**
+     * Состояние OCR одного события: бюджет вызовов, слияние кадров, дедлайн и счётчики PERF. Создаётся на
+     * событие и живёт в потоке, который читает его номер (анализ, qv-detect-ocr или воркер отложенного OCR);
+     * в PERF прогона счётчики сливает поток прохода, когда событие завершено.
+     */
+    private final class OcrEvent {
+        final OcrRun run;
+        final OcrPerf perf = new OcrPerf();
+        /** Вызовы OCR события (бюджет MAX_OCR_CALLS_PER_DETECT — на событие целиком). */
+        int calls;
+        /** Предел calls для текущего кадра: MAX_OCR_CALLS_PER_DETECT или доля кадра ({@link FrameSelection}). */
+        int callLimit = MAX_OCR_CALLS_PER_DETECT;
+        /** Гипотезы номера события (-Dqv.ocr.fuse); null — вне кадров события или слияние выключено. */
+        PlateFusion fusion;
+        /** Номер кадра события, который сейчас сканируется (для слияния). */
+        int frame;
+        /** Первый номер, найденный кадром события, — если слияние не дало валидного номера. */
+        String firstPlate;
+        /** Событие урезано дедлайном (для PERF ocrDeadlineEvents). */
+        boolean deadlineHit;
+
+        OcrEvent(OcrRun run) {
+            this.run = run;
+        }
+
+        /**
+         * Начало OCR события: дедлайн = min(дедлайн видео, сейчас + -Dqv.ocr.eventDeadlineMs; 0 — без ограничения).
+         * Дедлайн живёт в потоке ({@link OcrDeadline}): по нему же движок не начинает новый свип PSM.
+         */
+        void beginDeadline() {
+            final long ms = Long.getLong("qv.ocr.eventDeadlineMs", 0L);
+            long d = videoOcrDeadlineNs;
+            if (ms > 0) d = Math.min(d, System.nanoTime() + ms * 1_000_000L);
+            this.deadlineHit = false;
+            OcrDeadline.set(d, perfSweepsSkipped);
+        }
+
+        void endDeadline() {
+            if (this.deadlineHit) perf.deadlineEvents++;
+            OcrDeadline.clear();
+        }
+
+        /** Дедлайн события (он же дедлайн потока, {@link OcrDeadline}) прошёл; событие отмечается как урезанное. */
+        boolean deadlinePassed() {
+            if (!OcrDeadline.expired()) return false;
+            this.deadlineHit = true;
+            return true;
+        }
+
+        /** Начало кадров события: новый накопитель гипотез, если -Dqv.ocr.fuse (по умолчанию true). */
+        void beginFusion() {
+            this.fusion = Boolean.parseBoolean(System.getProperty("qv.ocr.fuse", "true")) ? new PlateFusion() : null;
+            this.frame = 0;
+            this.firstPlate = null;
+        }
+
+        /**
+         * Результат кадра → номер события или null (смотреть следующий кадр). Без слияния — первый найденный
+         * номер, как раньше. Со слиянием — слитый номер, как только он уверен (-Dqv.ocr.fuseTarget) и его
+         * подтвердили несколько кадров (-Dqv.ocr.fuseMinFrames), либо длинный номер кадра (как раньше).
+         */
+        String acceptFramePlate(String plate) {
+            boolean found = plate != null && !plate.isBlank();
+            if (fusion == null) return found ? plate : null;
+            if (found && firstPlate == null) firstPlate = plate;
+            this.frame++;
+            PlateFusion.Result r = fusion.fuse();
+            if (fusionReached(r)) {
+                perf.fusedPlates++;
+                return r.plate();
+            }
+            if (found && plate.length() >= Integer.getInteger("qv.ocr.stopVotesMinLen", 8)) return plate;
+            return null;
+        }
+
+        /** Кадры события кончились: слитый номер, если он валиден, иначе первый номер кадра. */
+        String plateAtEnd() {
+            if (fusion == null) return null;
+            PlateFusion.Result r = fusion.fuse();
+            if (r != null && r.plate().equals(normalizePlate(r.plate()))) {
+                if (!r.plate().equals(firstPlate)) perf.fusedPlates++;
+                return r.plate();
+            }
+            return firstPlate;
+        }
+    }
+
+    /** Номер события и его счётчики PERF — результат задачи OCR-стадии. */
+    record EventPlate(String plate, OcrPerf perf) {}
+
+    /** Счётчики PERF OCR: на событие ({@link OcrEvent}) и их сумма за прогон. */
+    private static final class OcrPerf {
+        long ocrCalls, ocrNs, ocrRoiNs, roiAttempts, roiDroppedFast;
+        long snapReads;
+        long stopByNormVotes;
+        long poolWaitNs;          // ожидание свободного движка в OcrEnginePool
+        long roiCancelled;        // ROI, не начатые из-за early-stop параллельного скана
+        long roiWasted;           // ROI, распознанные параллельно уже после early-stop
+        long locatorHits;         // снимки, где PlateLocator дал кандидатов
+        long gridFallbacks;       // снимки, где локализатор ничего не нашёл → сетка
+        long roiSavedByLocator;   // ROI сетки, которые не пришлось проверять (оценка сэкономленных OCR)
+        long roiOutsideMotion;    // ROI сетки вне области движения события
+        long framesScored;        // кадры-кандидаты событий, оценённые FrameQuality
+        long stopByFusion;        // сканы ROI, остановленные согласием кадров события
+        long fusedPlates;         // номера событий, принятые по слиянию кадров
+        long deadlineEvents;      // события, OCR которых остановлен дедлайном
+        long eventsSkipped;       // события без OCR: дедлайн видео уже прошёл
+        long roiSkippedByDeadline; // ROI, не начатые из-за дедлайна
+
+        void add(RoiStats st) {
+            roiAttempts += st.attempts;
+            roiDroppedFast += st.droppedFast;
+            ocrCalls += st.calls;
+            ocrNs += st.ocrNs;
+            ocrRoiNs += st.roiNs;
+        }
+
+        void add(OcrPerf o) {
+            ocrCalls += o.ocrCalls;
+            ocrNs += o.ocrNs;
+            ocrRoiNs += o.ocrRoiNs;
+            roiAttempts += o.roiAttempts;
+            roiDroppedFast += o.roiDroppedFast;
+            snapReads += o.snapReads;
+            stopByNormVotes += o.stopByNormVotes;
+            poolWaitNs += o.poolWaitNs;
+            roiCancelled += o.roiCancelled;
+            roiWasted += o.roiWasted;
+            locatorHits += o.locatorHits;
+            gridFallbacks += o.gridFallbacks;
+            roiSavedByLocator += o.roiSavedByLocator;
+            roiOutsideMotion += o.roiOutsideMotion;
+            framesScored += o.framesScored;
+            stopByFusion += o.stopByFusion;
+            fusedPlates += o.fusedPlates;
+            deadlineEvents += o.deadlineEvents;
+            eventsSkipped += o.eventsSkipped;
+            roiSkippedByDeadline += o.roiSkippedByDeadline;
+        }
+    }
+    /**
+     * OCR одного ROI: не больше allowance вызовов движка (резерв {@link CallBudget}). Решение одно для ROI
+     * готовой полосы ({@link PlateBand}, band != null) и ROI, подготовленного отдельно: при плохом заполнении
+     * или контрасте FAST-режим отбрасывает ROI без OCR, AUDIT пробует вторую адаптивную бинаризацию и Otsu;
+     * пустое чтение AUDIT повторяет на инверсии, если резерв позволяет.
+     */
+    private String ocrOnRoi(OcrEngine ocr, OcrEngine.RegionSession ses, PlateBand band, Mat bgr, Rect r, String tag,
+                            RoiStats st, int allowance) {
+        final long roiStartNs = System.nanoTime();
+        st.attempts++;
+        try (RoiImages img = (band != null) ? new BandRoiImages(band, ses, r) : new FrameRoiImages(bgr, r)) {
+            double fill = img.fill();
+            double contrast = img.contrast();
+            // пороги управляемы через -Dqv.ocr.minContrast / -Dqv.ocr.fillMin / -Dqv.ocr.fillMax
+            double minContrast = Double.parseDouble(System.getProperty("qv.ocr.minContrast", "0.10"));
+            double fillMin = Double.parseDouble(System.getProperty("qv.ocr.fillMin", "0.01"));
+            double fillMax = Double.parseDouble(System.getProperty("qv.ocr.fillMax", "0.90"));
+            boolean lowContrast = contrast < minContrast;
+            boolean badFill = (fill < fillMin || fill > fillMax);
+            boolean needFallback = badFill || lowContrast;
+            if (needFallback && OCR_FAST_MODE) {
+                // FAST-режим: ROI явно "плохой" по заполнению/контрасту — даже не зовём OCR
+                st.droppedFast++;
+                if (log.isDebugEnabled()) {
+                    log.debug("OCR fast: drop ROI after primary bin (badFill={}, lowContrast={}, " +
                                     "fill={}, contrast={}, minC={}, fMin={}, fMax={}) rect({}, {}, {}, {})",
                             badFill, lowContrast,
                             String.format("%.3f", fill),
@@ -700,59 +2578,42 @@ public final class BucketDetector {
                             String.format("%.3f", fillMax),
                             r.x(), r.y(), r.width(), r.height());
                 }
-                release(k, bin, up, den, eq, gray, roi);
                 return null;
             }
+            Mat alt = null; // бинаризация fallback-а, если первичная не подошла
             if (needFallback) {
                 // альтернативная адаптивная бинаризация с более крупным окном
                 int b2 = Integer.getInteger("qv.ocr.adaptBlock2", 41);
                 int c2 = Integer.getInteger("qv.ocr.adaptC2", 2);
                 if ((b2 & 1) == 0) b2++;
-                Mat bin2 = new Mat();
-                opencv_imgproc.adaptiveThreshold(
-                        up, bin2, 255,
-                        opencv_imgproc.ADAPTIVE_THRESH_GAUSSIAN_C,
-                        opencv_imgproc.THRESH_BINARY, b2, c2);
-                double fill2 = opencv_core.countNonZero(bin2) / (double) (bin2.rows() * bin2.cols());
+                double fill2 = img.fill2(b2, c2);
                 if (fill2 >= fillMin && fill2 <= fillMax) {
                     if (log.isDebugEnabled()) {
                         log.debug("OCR fallback#1 OK (fill2={}) rect=({}, {}, {}, {})",
                                 String.format("%.3f", fill2), r.x(), r.y(), r.width(), r.height());
                     }
-                    bin.release();
-                    bin = bin2;
-                    fill = fill2;
+                    alt = img.bin2();
                     needFallback = false;
-                } else {
-                    bin2.release();
                 }
             }
             if (needFallback) {
-                // Otsu как последний вариант
-                Mat bin3 = new Mat();
-                opencv_imgproc.threshold(up, bin3, 0, 255, opencv_imgproc.THRESH_BINARY + opencv_imgproc.THRESH_OTSU);
+                // Otsu как последний вариант — порог свой у каждого ROI
+                Mat bin3 = img.otsu();
                 double fill3 = opencv_core.countNonZero(bin3) / (double) (bin3.rows() * bin3.cols());
                 if (fill3 >= fillMin && fill3 <= fillMax) {
                     if (log.isDebugEnabled()) {
                         log.debug("OCR fallback#2 Otsu OK (fill3={}) rect({}, {}, {}, {})",
                                 String.format("%.3f", fill3), r.x(), r.y(), r.width(), r.height());
                     }
-                    bin.release();
-                    bin = bin3;
-                    fill = fill3;
+                    alt = bin3;
                     needFallback = false;
-                } else {
-                    bin3.release();
                 }
-
             }
             if (needFallback) {
-                boolean badFillFinal = (fill < fillMin || fill > fillMax);
-                boolean lowContrastFinal = contrast < minContrast;
                 if (log.isDebugEnabled()) {
                     log.debug("OCR drop ROI after fallbacks (badFill={}, lowContrast={}, "
                                     + "fill={}, contrast={}, minC={}, fMin={}, fMax={}) rect({}, {}, {}, {})",
-                            badFillFinal, lowContrastFinal,
+                            badFill, lowContrast,
                             String.format("%.3f", fill),
                             String.format("%.3f", contrast),
                             String.format("%.3f", minContrast),
@@ -760,77 +2621,222 @@ public final class BucketDetector {
                             String.format("%.3f", fillMax),
                             r.x(), r.y(), r.width(), r.height());
                 }
-                release(k, bin, up, den, eq, gray, roi);
                 return null;
             }
-            BytePointer buf = new BytePointer();
-            boolean ok = opencv_imgcodecs.imencode(".png", bin, buf);
-            if (!ok) {
-                release(k, bin, up, den, eq, gray, roi);
-                return null;
+            st.calls++;
+            if (log.isDebugEnabled()) {
+                log.debug("OCR call {}/{} for ROI {} (rect=({}, {}, {}, {}))",
+                        st.calls, allowance, tag, r.x(), r.y(), r.width(), r.height());
             }
-            byte[] bytes = new byte[(int) buf.limit()];
-            buf.get(bytes);
-            try {
-                BufferedImage bi = ImageIO.read(new ByteArrayInputStream(bytes));
-                // сначала пробуем самый уверенный токен, потом общий текст
-                this.ocrCallsThisDetect++;
-                this.perfOcrCallsTotal++;
-                if (log.isDebugEnabled()) {
-                    log.debug("OCR call #{} for ROI {} (rect=({}, {}, {}, {}))",
-                            this.ocrCallsThisDetect,
-                            tag, r.x(), r.y(), r.width(), r.height());
-                }
-                final long ocrStartNs = System.nanoTime();
-                String raw = ocr.readBestToken(bi).orElse(null);
-                this.perfOcrNsTotal += (System.nanoTime() - ocrStartNs);
-                if (raw == null) {
-                    if (!OCR_FAST_MODE) {
-                        // Fallback: инверсия бинарного изображения и повторная попытка
-                        Mat binInv = new Mat();
-                        opencv_core.bitwise_not(bin, binInv);
-                        BytePointer buf2 = new BytePointer();
-                        boolean ok2 = opencv_imgcodecs.imencode(".png", binInv, buf2);
-                        if (ok2) {
-                            if (log.isDebugEnabled()) {
-                                log.debug("OCR fallback invert: call #{} for ROI {} (rect=({}, {}, {}, {}))",
-                                        this.ocrCallsThisDetect + 1,
-                                        tag, r.x(), r.y(), r.width(), r.height());
-                            }
-                            byte[] b2 = new byte[(int) buf2.limit()];
-                            buf2.get(b2);
-                            BufferedImage bi2 = ImageIO.read(new ByteArrayInputStream(b2));
-                            this.ocrCallsThisDetect++;
-                            this.perfOcrCallsTotal++;
-                            final long ocrStartNs2 = System.nanoTime();
-                            raw = ocr.readBestToken(bi2).orElse(null);
-                            this.perfOcrNsTotal += (System.nanoTime() - ocrStartNs2);
-                        }
-                        buf2.deallocate();
-                        binInv.release();
+            final long ocrStartNs = System.nanoTime();
+            // пиксели — прямо в TYPE_BYTE_GRAY, без PNG-кодирования и ImageIO
+            String raw = (alt == null)
+                    ? img.readPrimary(ocr).orElse(null)
+                    : ocr.readBestToken(MatImages.toGrayImage(alt)).orElse(null);
+            st.ocrNs += (System.nanoTime() - ocrStartNs);
+            if (raw != null) st.confidence = (alt == null) ? img.primaryConfidence(ocr) : ocr.lastConfidence();
+            if (raw == null && !OCR_FAST_MODE && st.calls < allowance) {
+                // Fallback: инверсия бинарного изображения и повторная попытка
+                Mat inv = new Mat();
+                try {
+                    opencv_core.bitwise_not(alt != null ? alt : img.bin(), inv);
+                    if (log.isDebugEnabled()) {
+                        log.debug("OCR fallback invert: call {}/{} for ROI {} (rect=({}, {}, {}, {}))",
+                                st.calls + 1, allowance, tag, r.x(), r.y(), r.width(), r.height());
                     }
-                    if (raw == null) return null;
+                    st.calls++;
+                    final long ocrStartNs2 = System.nanoTime();
+                    raw = ocr.readBestToken(MatImages.toGrayImage(inv)).orElse(null);
+                    st.ocrNs += (System.nanoTime() - ocrStartNs2);
+                    if (raw != null) st.confidence = ocr.lastConfidence();
+                } finally {
+                    inv.release();
                 }
-                return raw.trim();
-            } catch (Exception ignore) {
-                return null;
-            } finally {
-                buf.deallocate();
-                release(k, bin, up, den, eq, gray, roi);
             }
+            return raw == null ? null : raw.trim();
+        } catch (Exception ignore) {
+            return null;
         } finally {
-            this.perfOcrRoiNsTotal += (System.nanoTime() - roiStartNs);
+            st.roiNs += (System.nanoTime() - roiStartNs);
+        }
+    }
+
+    /** Изображения одного ROI для {@link #ocrOnRoi}; выданные Mat принадлежат источнику и освобождаются в close(). */
+    private interface RoiImages extends AutoCloseable {
+        /** Доля белых пикселей первичной бинаризации. */
+        double fill();
+
+        /** Контраст: std яркости после CLAHE, 0..1. */
+        double contrast();
+
+        /** Заполнение второй адаптивной бинаризации (строится при первом обращении). */
+        double fill2(int blockSize, int c);
+
+        /** Вторая адаптивная бинаризация; только после {@link #fill2}. */
+        Mat bin2();
+
+        /** Otsu по апскейленному серому ROI. */
+        Mat otsu();
+
+        /** Первичная бинаризация (для инверсии). */
+        Mat bin();
+
+        /** OCR первичной бинаризации. */
+        Optional<String> readPrimary(OcrEngine ocr);
+
+        double primaryConfidence(OcrEngine ocr);
+
+        @Override
+        void close();
+    }
+
+    /**
+     * ROI как view готовой полосы: заполнение и контраст — из интегральных изображений, первичная бинаризация
+     * читается через сессию движка (SetRectangle), fallback-и и инверсия — отдельными изображениями.
+     */
+    private static final class BandRoiImages implements RoiImages {
+        private final PlateBand band;
+        private final OcrEngine.RegionSession ses;
+        private final Rect r;
+        private final List<Mat> owned = new ArrayList<>(2);
+
+        BandRoiImages(PlateBand band, OcrEngine.RegionSession ses, Rect r) {
+            this.band = band;
+            this.ses = ses;
+            this.r = r;
+        }
+
+        @Override public double fill() { return band.fill(r); }
+        @Override public double contrast() { return band.contrast(r); }
+        @Override public double fill2(int blockSize, int c) { return band.fill2(r, blockSize, c); }
+        @Override public Mat bin2() { return own(band.bin2View(r)); }
+        @Override public Mat otsu() { return own(band.otsu(r)); }
+        @Override public Mat bin() { return own(band.binView(r)); }
+        @Override public Optional<String> readPrimary(OcrEngine ocr) { return ses.readBestToken(band.ocrRect(r)); }
+        @Override public double primaryConfidence(OcrEngine ocr) { return ses.lastConfidence(); }
+
+        private Mat own(Mat m) {
+            owned.add(m);
+            return m;
+        }
+
+        @Override
+        public void close() {
+            for (Mat m : owned) m.release();
+        }
+    }
+
+    /** ROI, подготовленный отдельно: серый → CLAHE → bilateral → апскейл ×2 → адаптивный порог → closing. */
+    private static final class FrameRoiImages implements RoiImages {
+        private final Mat eq = new Mat(), up = new Mat(), bin = new Mat();
+        private final double fill, contrast;
+        private Mat bin2, otsu;
+
+        FrameRoiImages(Mat bgr, Rect r) {
+            Mat roi = new Mat(bgr, r).clone();
+            Mat gray = new Mat();
+            Mat den = new Mat();
+            Mat k = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_RECT, new Size(3, 3));
+            Mat mean = new Mat();
+            Mat stddev = new Mat();
+            try {
+                opencv_imgproc.cvtColor(roi, gray, opencv_imgproc.COLOR_BGR2GRAY);
+                var clahe = opencv_imgproc.createCLAHE(2.0, new Size(8, 8));
+                clahe.apply(gray, eq);
+                opencv_imgproc.bilateralFilter(eq, den, 5, 75, 75);
+                opencv_imgproc.resize(den, up, new Size(den.cols() * 2, den.rows() * 2));
+                // первичная бинаризация (управляется флагами)
+                int b1 = Integer.getInteger("qv.ocr.adaptBlock", 31);
+                int c1 = Integer.getInteger("qv.ocr.adaptC", 5);
+                if ((b1 & 1) == 0) b1++; // blockSize должен быть нечётным
+                opencv_imgproc.adaptiveThreshold(
+                        up, bin, 255,
+                        opencv_imgproc.ADAPTIVE_THRESH_GAUSSIAN_C,
+                        opencv_imgproc.THRESH_BINARY, b1, c1);
+                // морфология для склейки разрывов символов
+                opencv_imgproc.morphologyEx(bin, bin, opencv_imgproc.MORPH_CLOSE, k);
+                this.fill = opencv_core.countNonZero(bin) / (double) (bin.rows() * bin.cols());
+                // Контраст корректнее считать ПОСЛЕ CLAHE, иначе ROI с номером часто ошибочно попадает в lowContrast.
+                opencv_core.meanStdDev(eq, mean, stddev);
+                this.contrast = stddev.createIndexer().getDouble(0) / 255.0;
+            } finally {
+                release(stddev, mean, k, den, gray, roi);
+            }
+        }
+
+        @Override public double fill() { return fill; }
+        @Override public double contrast() { return contrast; }
+
+        @Override
+        public double fill2(int blockSize, int c) {
+            if (bin2 == null) {
+                bin2 = new Mat();
+                opencv_imgproc.adaptiveThreshold(
+                        up, bin2, 255,
+                        opencv_imgproc.ADAPTIVE_THRESH_GAUSSIAN_C,
+                        opencv_imgproc.THRESH_BINARY, blockSize, c);
+            }
+            return opencv_core.countNonZero(bin2) / (double) (bin2.rows() * bin2.cols());
+        }
+
+        @Override public Mat bin2() { return bin2; }
+
+        @Override
+        public Mat otsu() {
+            if (otsu == null) {
+                otsu = new Mat();
+                opencv_imgproc.threshold(up, otsu, 0, 255, opencv_imgproc.THRESH_BINARY + opencv_imgproc.THRESH_OTSU);
+            }
+            return otsu;
+        }
+
+        @Override public Mat bin() { return bin; }
+
+        @Override
+        public Optional<String> readPrimary(OcrEngine ocr) {
+            return ocr.readBestToken(MatImages.toGrayImage(bin));
+        }
+
+        @Override public double primaryConfidence(OcrEngine ocr) { return ocr.lastConfidence(); }
+
+        @Override
+        public void close() {
+            release(bin, up, eq);
+            if (bin2 != null) bin2.release();
+            if (otsu != null) otsu.release();
         }
     }
 
     // PERF counters (PR-0)
-    private long perfOcrCallsTotal = 0;
-    private long perfOcrNsTotal = 0;
-    private long perfOcrRoiNsTotal = 0;
-    private long perfRoiAttemptsTotal = 0;
-    private long perfRoiDroppedFast = 0;
-    private long perfSnapReads = 0;
-    private long perfStopByNormVotes = 0;
+    /** OCR событий прогона: сумма {@link OcrEvent#perf} завершённых событий. */
+    private OcrPerf perfOcr = new OcrPerf();
+    private long perfSnapRingMiss = 0;
+    private long perfFramesGrabbed = 0;     // кадры, пройденные только grab() (без retrieve)
+    private long perfFramesRetrieved = 0;   // кадры, декодированные в Mat для анализа
+    private long perfFastAcceptedBase = 0;  // CharTemplates.accepted()/rejected() на начало прогона
+    private long perfFastRejectedBase = 0;
+    /** Свипы PSM, не начатые из-за дедлайна, — счётчик этого прогона (передаётся в {@link OcrDeadline}). */
+    private final AtomicLong perfSweepsSkipped = new AtomicLong();
+    /** Сколько кадров последний прогон декодировал в Mat (для бенчмарков шага). */
+    long framesRetrieved() { return perfFramesRetrieved; }
+
+    /** Сколько кадров последний прогон прошёл только grab(), без декодирования в Mat. */
+    long framesGrabbed() { return perfFramesGrabbed; }
+
+    /**
+     * Ёмкость и наибольшая глубина очередей конвейера последнего последовательного прохода: кольцо декодера,
+     * события в OCR-стадии, события, ждущие будущих кадров (для тестов конвейера).
+     */
+    record StageDepth(int ringCapacity, int ringMax, int ocrQueueSize, int ocrQueueMax, int pendingCapacity,
+                      int pendingMax) {}
+
+    private StageDepth lastStages;
+    /** Снимки событий, ещё не освобождённые ({@link EventSnapshots#release}). */
+    private final AtomicInteger openSnapshots = new AtomicInteger();
+
+    StageDepth lastStages() { return lastStages; }
+
+    int openSnapshots() { return openSnapshots.get(); }
     private static int clamp(int v, int lo, int hi){ return Math.max(lo, Math.min(hi, v)); }
 
     // Управление: включать ли регион в результат нормализации, default=false
@@ -0,0 +1,27 @@
+package com.quarryvision.core.detection;
+
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+/**
+ * Отложенный OCR события (-Dqv.ocr.deferred): кадры-кандидаты снимков и область движения, по которым
+ * фоновый воркер потом читает номер ({@link BucketDetector#ocrDeferred}), не задерживая проход по движению.
+ * frames — индексы кадров по возрастанию без повторов; search — {x, y, w, h} области поиска номера
+ * в пикселях кадра или null (весь кадр).
+ */
+public record DeferredOcr(long[] frames, int[] search) {
+
+    /** Событие после склейки: кадры обоих, область — охватывающая (весь кадр, если у одного его нет). */
+    public DeferredOcr union(DeferredOcr other) {
+        long[] f = LongStream.concat(Arrays.stream(frames), Arrays.stream(other.frames)).distinct().sorted().toArray();
+        int[] s = null;
+        if (search != null && other.search != null) {
+            int x0 = Math.min(search[0], other.search[0]);
+            int y0 = Math.min(search[1], other.search[1]);
+            int x1 = Math.max(search[0] + search[2], other.search[0] + other.search[2]);
+            int y1 = Math.max(search[1] + search[3], other.search[1] + other.search[3]);
+            s = new int[]{x0, y0, x1 - x0, y1 - y0};
+        }
+        return new DeferredOcr(f, s);
+    }
+}
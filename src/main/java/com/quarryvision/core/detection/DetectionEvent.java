@@ -0,0 +1,14 @@
+package com.quarryvision.core.detection;
+
+import java.time.Instant;
+
+/**
+ * Событие потокового детекта ({@link StreamingDetector}) — первое событие новой группы склейки.
+ *
+ * @param zone       имя зоны профиля (null — единственная зона)
+ * @param frame      mid-кадр ACTIVE-интервала от начала потока
+ * @param ms         он же в мс по fps — для файла совпадает с {@link DetectionResult#timestampsMs()}
+ * @param capturedAt время захвата mid-кадра по часам источника (для живой камеры — стеновые часы)
+ */
+public record DetectionEvent(String zone, long frame, long ms, Instant capturedAt) {
+}
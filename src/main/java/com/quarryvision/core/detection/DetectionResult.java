@@ -11,9 +11,36 @@ public record DetectionResult(
         List<Instant> timestampsMs,
         double fps,
         long frames,
-        List<String> plates
+        List<String> plates,
+        // имя зоны профиля камеры (detect.profiles[].zones); null — единственная зона/весь кадр
+        String zone,
+        // -Dqv.ocr.deferred: кадры для фонового OCR по событию (индекс = индекс в timestampsMs); null — OCR в detect
+        List<DeferredOcr> deferred
 ) {
 
+    public DetectionResult(
+            Path video,
+            int events,
+            List<Instant> timestampsMs,
+            double fps,
+            long frames,
+            List<String> plates,
+            String zone
+    ) {
+        this(video, events, timestampsMs, fps, frames, plates, zone, null);
+    }
+
+    public DetectionResult(
+            Path video,
+            int events,
+            List<Instant> timestampsMs,
+            double fps,
+            long frames,
+            List<String> plates
+    ) {
+        this(video, events, timestampsMs, fps, frames, plates, null);
+    }
+
     /**
      * Упрощённый конструктор для существующего кода, где plates ещё не используются.
      */
@@ -38,4 +65,9 @@ public record DetectionResult(
     public List<String> platesOrEmpty() {
         return plates == null ? List.of() : plates;
     }
+
+    /** Отложенный OCR по событиям; пусто — номера уже в plates. */
+    public List<DeferredOcr> deferredOrEmpty() {
+        return deferred == null ? List.of() : deferred;
+    }
 }
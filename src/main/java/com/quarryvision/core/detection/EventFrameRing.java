@@ -0,0 +1,78 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+/**
+ * Ограниченное кольцо последних проанализированных кадров (полное разрешение) для снимков событий.
+ * <p>
+ * Хранит только кадры сетки анализа (k*stepFrames), поэтому снимок по смещению
+ * {@code qv.ocr.eventOffsetsSec} берётся с ближайшего такого кадра (не дальше stepFrames/2).
+ * Mat-ы слотов выделяются один раз и переиспользуются через {@code copyTo}.
+ * Не потокобезопасно: пишет и читает только стадия анализа.
+ */
+final class EventFrameRing implements AutoCloseable {
+    private final Mat[] mats;
+    private final long[] frames;
+    private int head = 0;   // индекс самого старого
+    private int size = 0;
+
+    EventFrameRing(int capacity) {
+        int n = Math.max(1, capacity);
+        this.mats = new Mat[n];
+        this.frames = new long[n];
+        for (int i = 0; i < n; i++) mats[i] = new Mat();
+    }
+
+    /** Копирует кадр в кольцо, вытесняя самый старый при переполнении. */
+    void push(long frameIdx, Mat frame) {
+        int slot;
+        if (size < mats.length) {
+            slot = (head + size) % mats.length;
+            size++;
+        } else {
+            slot = head;
+            head = (head + 1) % mats.length;
+        }
+        frame.copyTo(mats[slot]);
+        frames[slot] = frameIdx;
+    }
+
+    boolean isEmpty() { return size == 0; }
+    int capacity() { return mats.length; }
+
+    long oldestFrame() { return size == 0 ? -1 : frames[head]; }
+
+    long newestFrame() { return size == 0 ? -1 : frames[(head + size - 1) % mats.length]; }
+
+    /** Индекс ближайшего к target кадра кольца (при равенстве — более ранний) или -1, если кольцо пусто. */
+    long nearestFrame(long target) {
+        int best = nearestSlot(target);
+        return best < 0 ? -1 : frames[best];
+    }
+
+    /** Ближайший к target кадр без копии (действителен до следующего push) или null, если кольцо пусто. */
+    Mat nearest(long target) {
+        int best = nearestSlot(target);
+        return best < 0 ? null : mats[best];
+    }
+
+    private int nearestSlot(long target) {
+        if (size == 0) return -1;
+        int best = head;
+        long bestDist = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % mats.length;
+            long d = Math.abs(frames[slot] - target);
+            if (d < bestDist) {
+                bestDist = d;
+                best = slot;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void close() {
+        for (Mat m : mats) m.release();
+    }
+}
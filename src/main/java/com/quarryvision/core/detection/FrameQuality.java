@@ -0,0 +1,61 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.indexer.DoubleIndexer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Size;
+
+/**
+ * Дешёвая оценка пригодности кадра для OCR номера: дисперсия лапласиана (резкость), экспозиция
+ * (средняя яркость вдали от 0/255) и контраст (СКО яркости), всё по области поиска номера,
+ * уменьшенной до {@link #WORK_WIDTH}. Больше — лучше; абсолютное значение смысла не имеет,
+ * только порядок кадров одного события.
+ */
+final class FrameQuality {
+    static final int WORK_WIDTH = 320;
+
+    private FrameQuality() {}
+
+    /** area — область поиска номера в координатах кадра, null — весь кадр. */
+    static double score(Mat bgr, Rect area) {
+        Mat gray = new Mat();
+        Mat small = new Mat();
+        Mat lap = new Mat();
+        Mat mean = new Mat();
+        Mat std = new Mat();
+        try (Mat src = (area != null) ? new Mat(bgr, area) : null) {
+            opencv_imgproc.cvtColor(src != null ? src : bgr, gray, opencv_imgproc.COLOR_BGR2GRAY);
+            if (gray.cols() > WORK_WIDTH) {
+                int h = Math.max(1, (int) Math.round(gray.rows() * (WORK_WIDTH / (double) gray.cols())));
+                opencv_imgproc.resize(gray, small, new Size(WORK_WIDTH, h), 0, 0, opencv_imgproc.INTER_AREA);
+            } else {
+                gray.copyTo(small);
+            }
+            opencv_imgproc.Laplacian(small, lap, opencv_core.CV_64F);
+            opencv_core.meanStdDev(lap, mean, std);
+            double lapStd = at(std);
+            opencv_core.meanStdDev(small, mean, std);
+            double brightness = at(mean);
+            double contrast = at(std);
+            // пересвет/недосвет глушат резкость: множитель 1 при средней яркости 128, 0.05 у краёв
+            double exposure = Math.max(0.05, 1.0 - Math.abs(brightness - 128.0) / 128.0);
+            // плоский кадр (туман, засветка) — меньше шансов на номер даже при шумном лапласиане
+            double contrastFactor = Math.min(1.0, contrast / 40.0);
+            return lapStd * lapStd * exposure * contrastFactor;
+        } finally {
+            std.release();
+            mean.release();
+            lap.release();
+            small.release();
+            gray.release();
+        }
+    }
+
+    private static double at(Mat m) {
+        try (DoubleIndexer ix = m.createIndexer()) {
+            return ix.get(0);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.nio.file.Path;
+
+/**
+ * Источник кадров для {@link StreamingDetector}: файл и живая камера (RTSP) — один и тот же pull-интерфейс.
+ * Кадры идут по порядку; {@link #skip()} продвигает поток без декодирования в Mat (кадры между сэмплами).
+ */
+public interface FrameSource extends AutoCloseable {
+
+    /** Кадров в секунду по данным источника (0 — неизвестно). */
+    double fps();
+
+    /** Следующий кадр в dst; false — конец файла или обрыв потока. */
+    boolean read(Mat dst);
+
+    /** Пропустить следующий кадр (grab без retrieve); false — конец файла или обрыв потока. */
+    boolean skip();
+
+    /**
+     * Время захвата последнего прочитанного/пропущенного кадра, мс: для файла — позиция в ролике
+     * (как {@link DetectionResult#timestampsMs()}), для живой камеры — стеновые часы в момент получения.
+     */
+    long captureMs();
+
+    @Override
+    void close();
+
+    /** Видеофайл; null — не открылся. */
+    static FrameSource file(Path video) {
+        VideoCaptureSource s = new VideoCaptureSource(video.toString(), false);
+        return s.isOpened() ? s : closeNull(s);
+    }
+
+    /** Живой поток (RTSP/HTTP URL камеры); null — не открылся. */
+    static FrameSource live(String url) {
+        VideoCaptureSource s = new VideoCaptureSource(url, true);
+        return s.isOpened() ? s : closeNull(s);
+    }
+
+    private static FrameSource closeNull(FrameSource s) {
+        s.close();
+        return null;
+    }
+}
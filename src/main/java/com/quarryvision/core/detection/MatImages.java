@@ -0,0 +1,37 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * Mat → BufferedImage для OCR без кодеков: пиксели 8-битного серого Mat копируются прямо в буфер
+ * TYPE_BYTE_GRAY (одна копия вместо imencode(".png") + ImageIO.read).
+ */
+final class MatImages {
+    private MatImages() {}
+
+    /** CV_8UC1 → TYPE_BYTE_GRAY с теми же пикселями (Mat может быть несплошным, например ROI). */
+    static BufferedImage toGrayImage(Mat gray) {
+        if (gray.type() != opencv_core.CV_8UC1) {
+            throw new IllegalArgumentException("expected CV_8UC1, got type=" + gray.type());
+        }
+        final int w = gray.cols(), h = gray.rows();
+        BufferedImage bi = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] dst = ((DataBufferByte) bi.getRaster().getDataBuffer()).getData();
+        BytePointer src = gray.data();
+        if (gray.isContinuous()) {
+            src.position(0).get(dst, 0, w * h);
+        } else {
+            final long step = gray.step();
+            for (int y = 0; y < h; y++) {
+                src.position(y * step).get(dst, y * w, w);
+            }
+            src.position(0);
+        }
+        return bi;
+    }
+}
@@ -0,0 +1,99 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченное кольцо переиспользуемых {@link Mat} между двумя стадиями конвейера.
+ * <p>
+ * Производитель берёт свободный слот ({@link #acquire}), заполняет его и публикует ({@link #publish});
+ * потребитель забирает заполненный ({@link #take}) и возвращает в пул ({@link #recycle}).
+ * Когда свободных слотов нет, производитель ждёт — это и есть backpressure.
+ * Нативная память слотов выделяется один раз и освобождается в {@link #close()}.
+ */
+final class MatRing implements AutoCloseable {
+
+    /** Слот кольца: кадр + индекс кадра в видео; eof=true — маркер конца потока. */
+    static final class Slot {
+        final Mat mat = new Mat();
+        long idx;
+        boolean eof;
+        /** Значение idx последовательного цикла в момент EOF (для EOF-хвоста ACTIVE). */
+        long idxEnd;
+    }
+
+    private final Slot[] all;
+    private final ArrayBlockingQueue<Slot> free;
+    private final ArrayBlockingQueue<Slot> filled;
+
+    // метрики: ожидание производителя/потребителя и глубина очереди при каждом take()
+    private long producerWaitNs;
+    private long consumerWaitNs;
+    private long depthSum;
+    private long depthSamples;
+    private int depthMax;
+
+    MatRing(int capacity) {
+        int n = Math.max(2, capacity);
+        this.all = new Slot[n];
+        this.free = new ArrayBlockingQueue<>(n);
+        this.filled = new ArrayBlockingQueue<>(n);
+        for (int i = 0; i < n; i++) {
+            all[i] = new Slot();
+            free.add(all[i]);
+        }
+    }
+
+    /** Свободный слот; null — если за timeoutMs не освободился (даёт проверить флаг остановки). */
+    Slot acquire(long timeoutMs) throws InterruptedException {
+        long t0 = System.nanoTime();
+        Slot s = free.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        producerWaitNs += System.nanoTime() - t0;
+        if (s != null) s.eof = false;
+        return s;
+    }
+
+    void publish(Slot s) {
+        filled.add(s);
+    }
+
+    void publishEof(Slot s, long idxEnd) {
+        s.eof = true;
+        s.idxEnd = idxEnd;
+        filled.add(s);
+    }
+
+    Slot take() throws InterruptedException {
+        int depth = filled.size();
+        depthSum += depth;
+        depthSamples++;
+        if (depth > depthMax) depthMax = depth;
+        long t0 = System.nanoTime();
+        Slot s = filled.take();
+        consumerWaitNs += System.nanoTime() - t0;
+        return s;
+    }
+
+    /** Заполненный слот без ожидания (для слива кольца при остановке); null — пусто. */
+    Slot pollFilled() {
+        return filled.poll();
+    }
+
+    void recycle(Slot s) {
+        free.add(s);
+    }
+
+    int capacity() { return all.length; }
+    long producerWaitMs() { return producerWaitNs / 1_000_000L; }
+    long consumerWaitMs() { return consumerWaitNs / 1_000_000L; }
+    int depthMax() { return depthMax; }
+    double depthAvg() { return depthSamples == 0 ? 0.0 : depthSum / (double) depthSamples; }
+
+    /** Освобождает нативную память. Вызывать только после остановки производителя. */
+    @Override
+    public void close() {
+        for (Slot s : all) s.mat.release();
+    }
+}
@@ -0,0 +1,182 @@
+package com.quarryvision.core.detection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Автомат событий движения без OpenCV и без объектов на сэмпл: EMA + гистерезис IDLE/ACTIVE, cooldown,
+ * minActiveMs, отбрасывание warmup, EOF-хвост, затем NMS по времени и склейка близких событий.
+ * <p>
+ * Вход — примитивные сэмплы {@code (frameIdx, ratio)}, выход — события в примитивных массивах (mid-кадр и мс),
+ * которые растут удвоением и переиспользуются после {@link #reset()}. Один и тот же автомат работает
+ * в последовательном и параллельном detect, при повторном прогоне сохранённого сигнала ({@link MotionSignal})
+ * и годится для живого потока. Не потокобезопасен: один экземпляр на зону.
+ */
+public final class MotionEventStateMachine {
+    private static final Logger log = LoggerFactory.getLogger(MotionEventStateMachine.class);
+
+    private final double fps;
+    private final double emaAlpha;
+    private final double thrHigh;
+    private final double thrLow;
+    private final int cooldownFrames;
+    private final long minActiveFrames;
+    private final long warmupMs;
+
+    private boolean active;
+    private long activeStartFrame;
+    private long lastEventFrame;
+    private double ema;
+    /** Состояние для trace: как в исходном цикле — до перехода, либо IDLE после выхода из ACTIVE. */
+    private String traceState;
+
+    private long[] mids = new long[64];
+    private long[] ms = new long[64];
+    private int count;
+    private long[] groupMs = new long[64];
+
+    /**
+     * @param eventRatio     верхний порог EMA (вход в ACTIVE); нижний — eventRatio * thrLowFactor
+     * @param cooldownFrames анти-дребезг: минимум кадров от принятого события до нового ACTIVE
+     * @param minActiveMs    ACTIVE-интервал короче — не событие
+     * @param warmupMs       события целиком в первых warmupMs отбрасываются (0 — нет)
+     */
+    public MotionEventStateMachine(double fps, double eventRatio, double thrLowFactor, double emaAlpha,
+                                   int cooldownFrames, int minActiveMs, long warmupMs) {
+        this.fps = fps;
+        this.emaAlpha = emaAlpha;
+        this.thrHigh = eventRatio;
+        this.thrLow = Math.max(1e-6, eventRatio * thrLowFactor);
+        this.cooldownFrames = cooldownFrames;
+        this.minActiveFrames = Math.max(1L, Math.round((minActiveMs / 1000.0) * fps));
+        this.warmupMs = warmupMs;
+        reset();
+    }
+
+    /** Сбросить состояние и события (буферы остаются). */
+    public void reset() {
+        active = false;
+        activeStartFrame = -1;
+        lastEventFrame = -cooldownFrames - 1;
+        ema = 0.0;
+        traceState = "IDLE";
+        count = 0;
+    }
+
+    /** Сэмпл на обычном шаге; true — принято новое событие ({@link #eventCount()} вырос). */
+    public boolean update(long idx, double ratio) {
+        return update(idx, ratio, 1);
+    }
+
+    /**
+     * То же для сэмпла, отстоящего от предыдущего на {@code samples} шагов stepFrames (адаптивный шаг):
+     * EMA затухает как за samples обычных сэмплов, чтобы постоянная времени не зависела от шага.
+     */
+    public boolean update(long idx, double ratio, int samples) {
+        double alpha = (samples <= 1) ? emaAlpha : 1.0 - Math.pow(1.0 - emaAlpha, samples);
+        ema = alpha * ratio + (1.0 - alpha) * ema;
+        traceState = active ? "ACTIVE" : "IDLE";
+        if (!active) {
+            if ((idx - lastEventFrame) > cooldownFrames && ema >= thrHigh) {
+                active = true;
+                activeStartFrame = idx;
+            }
+            return false;
+        }
+        if (ema >= thrLow) return false;
+        long durFrames = idx - activeStartFrame;
+        active = false;
+        traceState = "IDLE";
+        if (durFrames < minActiveFrames || isWarmup(activeStartFrame, durFrames)) return false;
+        add(activeStartFrame + durFrames / 2);
+        // cooldown — от сэмпла, на котором событие принято
+        lastEventFrame = idx;
+        return true;
+    }
+
+    /** EOF: незакрытый ACTIVE достаточной длины становится событием (без warmup/cooldown). true — добавлено. */
+    public boolean finish(long idxEnd) {
+        if (!active) return false;
+        long durFrames = idxEnd - activeStartFrame;
+        if (durFrames < minActiveFrames) return false;
+        add(activeStartFrame + durFrames / 2);
+        return true;
+    }
+
+    /** Warmup: отбрасываем только события, которые ЦЕЛИКОМ в первые warmupMs (по midpoint — нельзя). */
+    private boolean isWarmup(long startFrame, long durFrames) {
+        if (warmupMs <= 0) return false;
+        // последний сэмпл интервала — перед тем, на котором EMA упал ниже thrLow
+        long endFrame = Math.max(startFrame, startFrame + durFrames - 1);
+        long endMs = toMs(endFrame);
+        if (endMs > warmupMs) return false;
+        if (log.isDebugEnabled()) {
+            log.debug("Detect: drop warmup event (startMs={}, endMs={}, warmupMs={})", toMs(startFrame), endMs, warmupMs);
+        }
+        return true;
+    }
+
+    private void add(long mid) {
+        if (count == mids.length) {
+            mids = Arrays.copyOf(mids, count * 2);
+            ms = Arrays.copyOf(ms, count * 2);
+        }
+        mids[count] = mid;
+        ms[count] = toMs(mid);
+        count++;
+    }
+
+    private long toMs(long frame) {
+        return (long) ((frame / fps) * 1000.0);
+    }
+
+    /**
+     * Забыть накопленные события, не трогая EMA/ACTIVE/cooldown: живой поток бесконечен, события забираются
+     * по одному сразу после {@link #update}.
+     */
+    public void clearEvents() {
+        count = 0;
+    }
+
+    public int eventCount() { return count; }
+    /** mid-кадр события i (середина ACTIVE-интервала). */
+    public long eventMidFrame(int i) { return mids[i]; }
+    public long eventMs(int i) { return ms[i]; }
+
+    /**
+     * NMS и склейка событий: событие в пределах nmsWindowMs от последнего оставленного подавляется, оставленные
+     * ближе mergeMs к началу группы склеиваются в неё. groupOf[i] — группа события i или -1 (подавлено NMS);
+     * время группы — {@link #groupMs(int)}. Возвращает число групп.
+     */
+    public int groups(long nmsWindowMs, long mergeMs, int[] groupOf) {
+        int groups = 0;
+        long winStart = 0, groupStart = 0;
+        for (int i = 0; i < count; i++) {
+            long t = ms[i];
+            if (i > 0 && t - winStart <= nmsWindowMs) {
+                groupOf[i] = -1;
+                continue;
+            }
+            winStart = t;
+            if (groups == 0 || t - groupStart > mergeMs) {
+                if (groups == groupMs.length) groupMs = Arrays.copyOf(groupMs, groups * 2);
+                groupMs[groups++] = t;
+                groupStart = t;
+            }
+            groupOf[i] = groups - 1;
+        }
+        return groups;
+    }
+
+    /** Время группы g после {@link #groups}: первое событие группы. */
+    public long groupMs(int g) { return groupMs[g]; }
+
+    public double ema() { return ema; }
+    public String traceState() { return traceState; }
+    public boolean isActive() { return active; }
+    /** Для адаптивного шага: зона в ACTIVE или EMA уже выше нижнего порога гистерезиса. */
+    public boolean isHot() { return active || ema >= thrLow; }
+    public long activeStartFrame() { return activeStartFrame; }
+}
@@ -0,0 +1,61 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.opencv.opencv_core.Rect;
+
+/**
+ * Область движения одного ACTIVE-интервала: объединение bounding rect маски absdiff по сэмплам интервала
+ * и центр масс движения (взвешенный числом «белых» пикселей), всё в пикселях полного кадра.
+ * Из неё выводится область поиска номера для OCR события.
+ */
+final class MotionRegion {
+    /** Сэмпл маски движения: x, y, w, h, cx, cy (см. {@link MotionZone#motionBox}). */
+    static final int BOX = 6;
+
+    private int x0, y0, x1, y1;
+    private double sumX, sumY, weight;
+
+    MotionRegion() {
+        reset();
+    }
+
+    /** Начало нового ACTIVE-интервала. */
+    void reset() {
+        x0 = Integer.MAX_VALUE;
+        y0 = Integer.MAX_VALUE;
+        x1 = Integer.MIN_VALUE;
+        y1 = Integer.MIN_VALUE;
+        sumX = sumY = weight = 0;
+    }
+
+    /** Добавляет сэмпл box[off..off+BOX) с весом white; пустая маска (w == 0) пропускается. */
+    void add(double[] box, int off, double white) {
+        if (box[off + 2] <= 0 || box[off + 3] <= 0) return;
+        x0 = Math.min(x0, (int) box[off]);
+        y0 = Math.min(y0, (int) box[off + 1]);
+        x1 = Math.max(x1, (int) (box[off] + box[off + 2]));
+        y1 = Math.max(y1, (int) (box[off + 1] + box[off + 3]));
+        double w = Math.max(1.0, white);
+        sumX += box[off + 4] * w;
+        sumY += box[off + 5] * w;
+        weight += w;
+    }
+
+    boolean isEmpty() { return weight == 0; }
+
+    double centroidX() { return weight == 0 ? Double.NaN : sumX / weight; }
+    double centroidY() { return weight == 0 ? Double.NaN : sumY / weight; }
+
+    /**
+     * Область поиска номера: объединённый bounding rect, расширенный на padFrac размеров кадра с каждой
+     * стороны и обрезанный по кадру; null — движения не было (искать по всему кадру).
+     */
+    Rect searchRect(int frameW, int frameH, double padFrac) {
+        if (isEmpty()) return null;
+        int px = (int) Math.round(frameW * Math.max(0, padFrac));
+        int py = (int) Math.round(frameH * Math.max(0, padFrac));
+        int rx0 = Math.max(0, x0 - px), ry0 = Math.max(0, y0 - py);
+        int rx1 = Math.min(frameW, x1 + px), ry1 = Math.min(frameH, y1 + py);
+        if (rx1 <= rx0 || ry1 <= ry0) return null;
+        return new Rect(rx0, ry0, rx1 - rx0, ry1 - ry0);
+    }
+}
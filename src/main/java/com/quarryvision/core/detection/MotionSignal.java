@@ -0,0 +1,166 @@
+package com.quarryvision.core.detection;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Сигнал движения одной зоны — число «белых» пикселей на каждом сэмпле k*stepFrames (k = 1..n) — в бинарном
+ * файле-спутнике видео (-Dqv.detect.signalCache). Это весь вход автомата EMA/IDLE-ACTIVE: по нему
+ * {@link BucketDetector#replayZones} заново прогоняет EMA/гистерезис/minActiveMs/NMS/склейку за миллисекунды,
+ * без декодирования и OpenCV.
+ * <p>
+ * Ключ — видео (путь, размер, mtime) и всё, от чего зависит сигнал: stepFrames, ширина анализа, ядро
+ * морфологии, ROI и diffThreshold зоны. Ключ лежит в заголовке, имя файла — его хэш. Файл читается через
+ * mmap: сэмплы не копируются в кучу. Формат (little-endian): magic, version, key, fps, frames, stepFrames,
+ * area, pixelScale, idxEnd, n, затем n × float32.
+ */
+public final class MotionSignal {
+    private static final int MAGIC = 0x47535651; // "QVSG"
+    private static final int VERSION = 1;
+
+    private final String key;
+    private final double fps;
+    private final long frameCount;
+    private final int stepFrames;
+    private final long area;
+    private final double pixelScale;
+    private final long idxEnd;
+    private final FloatBuffer white;
+
+    private MotionSignal(String key, double fps, long frameCount, int stepFrames, long area, double pixelScale,
+                         long idxEnd, FloatBuffer white) {
+        this.key = key;
+        this.fps = fps;
+        this.frameCount = frameCount;
+        this.stepFrames = stepFrames;
+        this.area = area;
+        this.pixelScale = pixelScale;
+        this.idxEnd = idxEnd;
+        this.white = white;
+    }
+
+    public String key() { return key; }
+    public double fps() { return fps; }
+    public long frameCount() { return frameCount; }
+    public int stepFrames() { return stepFrames; }
+    /** Пикселей зоны в разрешении анализа (знаменатель ratio). */
+    public long area() { return area; }
+    /** Пикселей анализа на пиксель полного кадра — для legacy-порога minChangedPixels. */
+    public double pixelScale() { return pixelScale; }
+    /** idx прохода в момент EOF (для хвоста ACTIVE). */
+    public long idxEnd() { return idxEnd; }
+    public int size() { return white.limit(); }
+    /** «Белые» пиксели сэмпла i (кадр {@link #frameAt}). */
+    public float white(int i) { return white.get(i); }
+    public long frameAt(int i) { return (i + 1L) * stepFrames; }
+
+    /** Файл-спутник сигнала: &lt;имя видео&gt;.&lt;хэш ключа&gt;.qvsig в каталоге dir. */
+    public static Path path(Path dir, Path video, String key) {
+        try {
+            byte[] h = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return dir.resolve(video.getFileName() + "." + HexFormat.of().formatHex(h, 0, 8) + ".qvsig");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Сигнал из файла (mmap) или null — файла нет либо он записан для другого ключа/версии. */
+    public static MotionSignal load(Path file, String key) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < 12 || buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+        byte[] k = new byte[buf.getInt()];
+        if (k.length > buf.remaining()) return null;
+        buf.get(k);
+        if (!key.equals(new String(k, StandardCharsets.UTF_8))) return null;
+        double fps = buf.getDouble();
+        long frames = buf.getLong();
+        int step = buf.getInt();
+        long area = buf.getLong();
+        double pixelScale = buf.getDouble();
+        long idxEnd = buf.getLong();
+        int n = buf.getInt();
+        if ((long) n * Float.BYTES != buf.remaining()) return null;
+        FloatBuffer white = buf.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        return new MotionSignal(key, fps, frames, step, area, pixelScale, idxEnd, white);
+    }
+
+    /** Записать сигнал (через временный файл, чтобы читатель не увидел недописанный). */
+    public void write(Path file) throws IOException {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        long size = 4 + 4 + 4 + k.length + 8 + 8 + 4 + 8 + 8 + 8 + 4 + (long) size() * Float.BYTES;
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buf.order(ByteOrder.LITTLE_ENDIAN);
+                buf.putInt(MAGIC).putInt(VERSION).putInt(k.length).put(k);
+                buf.putDouble(fps).putLong(frameCount).putInt(stepFrames).putLong(area).putDouble(pixelScale)
+                        .putLong(idxEnd).putInt(size());
+                buf.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(white.duplicate().rewind());
+                buf.force();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Накопитель сигнала на проходе detect. Сэмплы должны идти подряд по сетке k*stepFrames; иначе
+     * (адаптивный шаг) сигнал не годится для повторного прогона и не сохраняется.
+     */
+    static final class Recorder {
+        private final String key;
+        private final int stepFrames;
+        private final long area;
+        private final double pixelScale;
+        private float[] white = new float[1024];
+        private int n;
+        private boolean valid = true;
+
+        Recorder(String key, int stepFrames, long area, double pixelScale) {
+            this.key = key;
+            this.stepFrames = stepFrames;
+            this.area = area;
+            this.pixelScale = pixelScale;
+        }
+
+        void add(long idx, double w) {
+            if (!valid) return;
+            if (idx != (n + 1L) * stepFrames) {
+                valid = false;
+                return;
+            }
+            if (n == white.length) white = Arrays.copyOf(white, n * 2);
+            white[n++] = (float) w;
+        }
+
+        /** Сигнал прохода или null — сетка сэмплов нарушена. */
+        MotionSignal finish(double fps, long frameCount, long idxEnd) {
+            if (!valid) return null;
+            return new MotionSignal(key, fps, frameCount, stepFrames, area, pixelScale, idxEnd,
+                    FloatBuffer.wrap(white, 0, n).slice());
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.indexer.IntIndexer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.bytedeco.opencv.opencv_core.Moments;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Зона анализа движения: полигон ROI (в долях кадра), его bounding rect и маска.
+ * <p>
+ * Кадр обрезается по bounding rect ещё до уменьшения/серого, поэтому gray/blur/absdiff/морфология
+ * идут только по зоне; маска полигона применяется к бинарной разнице перед подсчётом «белых» пикселей.
+ * Без полигона зона — весь кадр (прежнее поведение). Держит свои рабочие Mat, не потокобезопасна.
+ */
+final class MotionZone implements AutoCloseable {
+    final String name;
+    /** Bounding rect зоны в пикселях полного кадра; null — весь кадр. */
+    final Rect roi;
+    /** Размер кадра зоны в разрешении анализа; null — без уменьшения. */
+    final Size analysis;
+    /** Пикселей зоны в разрешении анализа (знаменатель ratio). */
+    final long area;
+    /** Порог «белых» пикселей в разрешении анализа. */
+    final double minWhite;
+    /** Пикселей анализа на пиксель полного кадра (перевод legacy-порога minChangedPixels). */
+    final double pixelScale;
+
+    private final int diffThreshold;
+    private final int fullW, fullH;
+    private final Mat kernel;
+    private final Mat mask;     // CV_8U по размеру кадра зоны; null — полигон = прямоугольник кадра
+    private final Mat small = new Mat(), gray = new Mat(), grayPrev = new Mat(), diff = new Mat();
+
+    /**
+     * @param polygon        вершины полигона в долях кадра [0..1] (x, y); null/пусто — весь кадр
+     * @param analysisWidth  ширина полного кадра после уменьшения; 0 — полное разрешение
+     * @param minChangedFrac порог долей зоны; &lt;0 — legacy minChangedPixels (пиксели полного кадра)
+     */
+    MotionZone(String name, List<double[]> polygon, int frameW, int frameH, int analysisWidth,
+               int diffThreshold, Size morphKernel, double minChangedFrac, int minChangedPixels) {
+        this.name = (name == null || name.isBlank()) ? "default" : name;
+        this.diffThreshold = diffThreshold;
+        this.fullW = frameW;
+        this.fullH = frameH;
+        this.kernel = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_RECT, morphKernel);
+
+        double scale = (analysisWidth > 0 && analysisWidth < frameW) ? analysisWidth / (double) frameW : 1.0;
+        boolean hasPolygon = polygon != null && polygon.size() >= 3;
+        int rx = 0, ry = 0, rw = frameW, rh = frameH;
+        if (hasPolygon) {
+            double minX = 1, minY = 1, maxX = 0, maxY = 0;
+            for (double[] p : polygon) {
+                minX = Math.min(minX, p[0]); maxX = Math.max(maxX, p[0]);
+                minY = Math.min(minY, p[1]); maxY = Math.max(maxY, p[1]);
+            }
+            rx = clamp((int) Math.floor(minX * frameW), 0, frameW - 1);
+            ry = clamp((int) Math.floor(minY * frameH), 0, frameH - 1);
+            rw = clamp((int) Math.ceil(maxX * frameW), rx + 1, frameW) - rx;
+            rh = clamp((int) Math.ceil(maxY * frameH), ry + 1, frameH) - ry;
+        }
+        this.roi = hasPolygon ? new Rect(rx, ry, rw, rh) : null;
+        this.analysis = (scale < 1.0)
+                ? new Size(Math.max(1, (int) Math.round(rw * scale)), Math.max(1, (int) Math.round(rh * scale)))
+                : null;
+        int aw = (analysis == null) ? rw : analysis.width();
+        int ah = (analysis == null) ? rh : analysis.height();
+
+        if (hasPolygon) {
+            this.mask = new Mat(ah, aw, opencv_core.CV_8UC1, new Scalar(0.0));
+            Mat pts = new Mat(polygon.size(), 1, opencv_core.CV_32SC2);
+            try (IntIndexer ix = pts.createIndexer(); MatVector polys = new MatVector(pts)) {
+                double sx = aw / (double) rw, sy = ah / (double) rh;
+                for (int i = 0; i < polygon.size(); i++) {
+                    double[] p = polygon.get(i);
+                    ix.put(i, 0, 0, (int) Math.round((p[0] * frameW - rx) * sx));
+                    ix.put(i, 0, 1, (int) Math.round((p[1] * frameH - ry) * sy));
+                }
+                opencv_imgproc.fillPoly(mask, polys, new Scalar(255.0));
+            } finally {
+                pts.release();
+            }
+            this.area = Math.max(1, opencv_core.countNonZero(mask));
+        } else {
+            this.mask = null;
+            this.area = (long) aw * ah;
+        }
+
+        this.pixelScale = (analysis == null) ? 1.0 : scale * scale;
+        if (minChangedFrac >= 0) {
+            this.minWhite = minChangedFrac * area;
+        } else {
+            // legacy-порог задан в пикселях полного кадра — переводим в пиксели анализа
+            this.minWhite = minChangedPixels * pixelScale;
+        }
+    }
+
+    /** Первый кадр: серый кадр зоны становится предыдущим. */
+    void reset(Mat frame) {
+        toGray(frame, grayPrev);
+    }
+
+    /** Число «белых» пикселей зоны между текущим кадром и предыдущим (текущий остаётся в gray до {@link #commit()}). */
+    double white(Mat frame) {
+        toGray(frame, gray);
+        opencv_core.absdiff(gray, grayPrev, diff);
+        opencv_imgproc.threshold(diff, diff, diffThreshold, 255, opencv_imgproc.THRESH_BINARY);
+        // Морфология: убираем мелкий шум и заращиваем разрывы
+        opencv_imgproc.erode(diff, diff, kernel);
+        opencv_imgproc.dilate(diff, diff, kernel);
+        if (mask != null) opencv_core.bitwise_and(diff, mask, diff);
+        return opencv_core.countNonZero(diff);
+    }
+
+    /**
+     * Bounding rect и центр масс маски последнего {@link #white} в пикселях полного кадра:
+     * dst[off..off+6) = x, y, w, h, cx, cy; пустая маска — w = h = 0.
+     */
+    void motionBox(double[] dst, int off) {
+        Rect b = opencv_imgproc.boundingRect(diff);
+        if (b.width() <= 0 || b.height() <= 0) {
+            Arrays.fill(dst, off, off + MotionRegion.BOX, 0.0);
+            return;
+        }
+        Moments m = opencv_imgproc.moments(diff, true);
+        double cx = m.m00() > 0 ? m.m10() / m.m00() : b.x() + b.width() / 2.0;
+        double cy = m.m00() > 0 ? m.m01() / m.m00() : b.y() + b.height() / 2.0;
+        // из разрешения анализа зоны — в полный кадр
+        double sx = (analysis == null) ? 1.0 : (roi != null ? roi.width() : fullW) / (double) diff.cols();
+        double sy = (analysis == null) ? 1.0 : (roi != null ? roi.height() : fullH) / (double) diff.rows();
+        int ox = (roi != null) ? roi.x() : 0, oy = (roi != null) ? roi.y() : 0;
+        dst[off] = ox + Math.floor(b.x() * sx);
+        dst[off + 1] = oy + Math.floor(b.y() * sy);
+        dst[off + 2] = Math.ceil(b.width() * sx);
+        dst[off + 3] = Math.ceil(b.height() * sy);
+        dst[off + 4] = ox + cx * sx;
+        dst[off + 5] = oy + cy * sy;
+    }
+
+    /** Текущий кадр становится предыдущим. */
+    void commit() {
+        gray.copyTo(grayPrev);
+    }
+
+    /** BGR-кадр → обрезка по зоне → (уменьшение INTER_AREA) → серый+blur. */
+    private void toGray(Mat frame, Mat dst) {
+        Mat src = (roi != null) ? frame.apply(roi) : frame;
+        try {
+            if (analysis != null) {
+                opencv_imgproc.resize(src, small, analysis, 0, 0, opencv_imgproc.INTER_AREA);
+                opencv_imgproc.cvtColor(small, dst, opencv_imgproc.COLOR_BGR2GRAY);
+            } else {
+                opencv_imgproc.cvtColor(src, dst, opencv_imgproc.COLOR_BGR2GRAY);
+            }
+            opencv_imgproc.GaussianBlur(dst, dst, new Size(5, 5), 0);
+        } finally {
+            if (src != frame) src.close();
+        }
+    }
+
+    private static int clamp(int v, int lo, int hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+
+    @Override
+    public void close() {
+        small.release();
+        gray.release();
+        grayPrev.release();
+        diff.release();
+        kernel.release();
+        if (mask != null) mask.release();
+    }
+}
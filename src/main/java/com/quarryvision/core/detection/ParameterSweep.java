@@ -0,0 +1,286 @@
+package com.quarryvision.core.detection;
+
+import com.quarryvision.app.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+/**
+ * Перебор параметров автомата событий (eventRatio, emaAlpha, thrLowFactor, minActiveMs, nmsWindowMs, mergeMs)
+ * по сохранённым сигналам движения ({@link MotionSignal}) и размеченным событиям: каждая комбинация
+ * прогоняется {@link BucketDetector#replay} без декодирования, параллельно на всех ядрах, и получает
+ * precision/recall/F1 и среднюю ошибку времени. Лучшая — первой; {@link #detectYaml} даёт готовый блок detect:.
+ * <p>
+ * Запуск: {@code java -cp quarry-vision.jar com.quarryvision.core.detection.ParameterSweep truth.csv}
+ * (truth.csv — строки «видео,t_ms»; видео без сохранённого сигнала один раз проходится detect).
+ * Сетка — -Dqv.sweep.&lt;параметр&gt;=v1,v2,... или lo:hi:step; допуск совпадения -Dqv.sweep.toleranceMs
+ * (по умолчанию 3000), потоки -Dqv.sweep.threads. -Dqv.mergeMs и eventRatio зон профиля перекрывают перебор.
+ */
+public final class ParameterSweep {
+    private static final Logger log = LoggerFactory.getLogger(ParameterSweep.class);
+
+    private ParameterSweep() {}
+
+    /** Одна комбинация параметров автомата. */
+    public record Params(double eventRatio, double emaAlpha, double thrLowFactor,
+                         int minActiveMs, int nmsWindowMs, int mergeMs) {}
+
+    /** Сетка перебора: декартово произведение значений; комбинация i — смешанная система счисления. */
+    public record Grid(double[] eventRatio, double[] emaAlpha, double[] thrLowFactor,
+                       int[] minActiveMs, int[] nmsWindowMs, int[] mergeMs) {
+
+        public long size() {
+            return (long) eventRatio.length * emaAlpha.length * thrLowFactor.length
+                    * minActiveMs.length * nmsWindowMs.length * mergeMs.length;
+        }
+
+        public Params at(long i) {
+            int m = (int) (i % mergeMs.length); i /= mergeMs.length;
+            int n = (int) (i % nmsWindowMs.length); i /= nmsWindowMs.length;
+            int a = (int) (i % minActiveMs.length); i /= minActiveMs.length;
+            int t = (int) (i % thrLowFactor.length); i /= thrLowFactor.length;
+            int e = (int) (i % emaAlpha.length); i /= emaAlpha.length;
+            return new Params(eventRatio[(int) i], emaAlpha[e], thrLowFactor[t], minActiveMs[a], nmsWindowMs[n],
+                    mergeMs[m]);
+        }
+
+        /** Сетка из -Dqv.sweep.*; по умолчанию — окрестность значений detect: (около 7500 комбинаций). */
+        public static Grid fromProperties(Config.DetectConf base) {
+            double r = base.eventRatio();
+            return new Grid(
+                    doubles("qv.sweep.eventRatio", new double[]{r * 0.5, r * 0.75, r, r * 1.25, r * 1.5}),
+                    doubles("qv.sweep.emaAlpha", new double[]{0.1, 0.2, 0.3, 0.45, 0.6}),
+                    doubles("qv.sweep.thrLowFactor", new double[]{0.5, 0.6, 0.75, 0.9, 0.96}),
+                    ints("qv.sweep.minActiveMs", new int[]{0, 300, 600, 1200, 2000}),
+                    ints("qv.sweep.nmsWindowMs", new int[]{0, 700, 2000}),
+                    ints("qv.sweep.mergeMs", new int[]{1000, 2500, 4000, 6000}));
+        }
+    }
+
+    /** Видео для перебора: сигналы зон (порядок — как в detect) и размеченные события, мс. */
+    public record Video(Path video, List<MotionSignal> signals, List<Long> truthMs) {}
+
+    /** Итог комбинации по всем видео. meanAbsErrorMs — по совпавшим событиям. */
+    public record Score(Params params, int truePositives, int falsePositives, int falseNegatives,
+                        double meanAbsErrorMs) {
+        public double precision() {
+            int d = truePositives + falsePositives;
+            return d == 0 ? 0.0 : truePositives / (double) d;
+        }
+
+        public double recall() {
+            int d = truePositives + falseNegatives;
+            return d == 0 ? 0.0 : truePositives / (double) d;
+        }
+
+        public double f1() {
+            double p = precision(), r = recall();
+            return (p + r) == 0 ? 0.0 : 2 * p * r / (p + r);
+        }
+    }
+
+    /** Лучшие первыми: F1, затем меньшая ошибка времени. */
+    public static final Comparator<Score> BEST_FIRST = Comparator.comparingDouble(Score::f1).reversed()
+            .thenComparingDouble(Score::meanAbsErrorMs);
+
+    /**
+     * Оценить все комбинации сетки на threads потоках; base задаёт параметры сигнала и профили камер.
+     * Результат отсортирован {@link #BEST_FIRST}.
+     */
+    public static List<Score> run(BucketDetector base, List<Video> videos, Grid grid, long toleranceMs, int threads) {
+        if (System.getProperty("qv.mergeMs") != null) {
+            log.warn("Sweep: -Dqv.mergeMs overrides every mergeMs of the grid");
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            List<Score> scores = pool.submit(() -> LongStream.range(0, grid.size()).parallel()
+                    .mapToObj(i -> evaluate(base, videos, grid.at(i), toleranceMs))
+                    .toList()).join();
+            List<Score> out = new ArrayList<>(scores);
+            out.sort(BEST_FIRST);
+            return out;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Одна комбинация: повторный прогон каждого видео и сопоставление с разметкой. */
+    static Score evaluate(BucketDetector base, List<Video> videos, Params p, long toleranceMs) {
+        BucketDetector det = base.retuned(p.eventRatio(), p.emaAlpha(), p.thrLowFactor(),
+                p.minActiveMs(), p.nmsWindowMs(), p.mergeMs());
+        int tp = 0, detected = 0, truth = 0;
+        long errSum = 0;
+        for (Video v : videos) {
+            long[] ms = det.replay(v.video(), v.signals()).stream()
+                    .flatMap(r -> r.timestampsMs().stream())
+                    .mapToLong(Instant::toEpochMilli)
+                    .sorted().toArray();
+            long[] t = v.truthMs().stream().mapToLong(Long::longValue).sorted().toArray();
+            long[] m = match(t, ms, toleranceMs);
+            tp += (int) m[0];
+            errSum += m[1];
+            detected += ms.length;
+            truth += t.length;
+        }
+        return new Score(p, tp, detected - tp, truth - tp, tp == 0 ? 0.0 : errSum / (double) tp);
+    }
+
+    /**
+     * Сопоставление событий один к одному: пары в пределах toleranceMs жадно по возрастанию расстояния.
+     * Оба массива отсортированы; результат — {число совпавших, сумма |ошибок| мс}.
+     */
+    static long[] match(long[] truth, long[] detected, long toleranceMs) {
+        List<long[]> pairs = new ArrayList<>(); // {|d|, i, j}
+        int lo = 0;
+        for (int i = 0; i < truth.length; i++) {
+            while (lo < detected.length && detected[lo] < truth[i] - toleranceMs) lo++;
+            for (int j = lo; j < detected.length && detected[j] <= truth[i] + toleranceMs; j++) {
+                pairs.add(new long[]{Math.abs(detected[j] - truth[i]), i, j});
+            }
+        }
+        pairs.sort(Comparator.comparingLong(a -> a[0]));
+        boolean[] usedT = new boolean[truth.length], usedD = new boolean[detected.length];
+        long matched = 0, errSum = 0;
+        for (long[] p : pairs) {
+            int i = (int) p[1], j = (int) p[2];
+            if (usedT[i] || usedD[j]) continue;
+            usedT[i] = true;
+            usedD[j] = true;
+            matched++;
+            errSum += p[0];
+        }
+        return new long[]{matched, errSum};
+    }
+
+    /** Блок detect: для application.yaml — значения base с подставленной лучшей комбинацией. */
+    public static String detectYaml(Config.DetectConf base, Score best, long combinations, int videos) {
+        Params p = best.params();
+        StringBuilder sb = new StringBuilder();
+        sb.append("detect:\n");
+        sb.append("  stepFrames: ").append(base.stepFrames()).append('\n');
+        sb.append("  diffThreshold: ").append(base.diffThreshold()).append('\n');
+        sb.append("  eventRatio: ").append(num(p.eventRatio())).append('\n');
+        sb.append("  cooldownFrames: ").append(base.cooldownFrames()).append('\n');
+        sb.append("  minChangedPixels: ").append(base.minChangedPixels()).append('\n');
+        if (base.minChangedFrac() >= 0) sb.append("  minChangedFrac: ").append(num(base.minChangedFrac())).append('\n');
+        sb.append("  analysisWidth: ").append(base.analysisWidth()).append('\n');
+        sb.append("  morphKernel: { w: ").append(base.morphW()).append(", h: ").append(base.morphH()).append(" }\n");
+        sb.append("  emaAlpha: ").append(num(p.emaAlpha())).append('\n');
+        sb.append("  thrLowFactor: ").append(num(p.thrLowFactor())).append('\n');
+        sb.append("  minActiveMs: ").append(p.minActiveMs()).append('\n');
+        sb.append("  nmsWindowMs: ").append(p.nmsWindowMs()).append('\n');
+        sb.append("  mergeMs: ").append(p.mergeMs()).append('\n');
+        sb.append("  trace: ").append(base.trace()).append('\n');
+        sb.append(String.format(Locale.ROOT,
+                "  # sweep: F1=%.3f precision=%.3f recall=%.3f meanAbsErrorMs=%.0f (%d combinations, %d video(s))%n",
+                best.f1(), best.precision(), best.recall(), best.meanAbsErrorMs(), combinations, videos));
+        if (base.profiles() != null && !base.profiles().isEmpty()) sb.append("  # profiles: без изменений\n");
+        return sb.toString();
+    }
+
+    /** Разметка: строки «видео,t_ms» (# — комментарий); видео — относительно каталога файла. */
+    public static Map<Path, List<Long>> readTruth(Path csv) throws IOException {
+        Map<Path, List<Long>> out = new LinkedHashMap<>();
+        Path dir = csv.toAbsolutePath().getParent();
+        int lineNo = 0;
+        for (String line : Files.readAllLines(csv)) {
+            lineNo++;
+            String s = line.strip();
+            if (s.isEmpty() || s.startsWith("#")) continue;
+            int comma = s.lastIndexOf(',');
+            if (comma < 0) throw new IllegalStateException(csv + ":" + lineNo + ": expected 'video,t_ms', got: " + s);
+            String ms = s.substring(comma + 1).strip();
+            if (lineNo == 1 && !ms.chars().allMatch(Character::isDigit)) continue; // заголовок
+            Path video = dir.resolve(s.substring(0, comma).strip()).normalize();
+            out.computeIfAbsent(video, k -> new ArrayList<>()).add(Long.parseLong(ms));
+        }
+        return out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: ParameterSweep <truth.csv>   (lines: video,t_ms)");
+            System.exit(2);
+        }
+        Config cfg = Config.load();
+        BucketDetector base = new BucketDetector(cfg);
+        List<Video> videos = new ArrayList<>();
+        for (Map.Entry<Path, List<Long>> e : readTruth(Path.of(args[0])).entrySet()) {
+            Path video = e.getKey();
+            List<MotionSignal> signals = base.loadSignals(video).orElse(null);
+            if (signals == null) {
+                // сигнала ещё нет: один проход detect с записью кэша
+                log.info("Sweep: no cached motion signal for {}, decoding once", video);
+                System.setProperty("qv.detect.signalCache", "true");
+                base.detectZones(video);
+                signals = base.loadSignals(video).orElseThrow(
+                        () -> new IllegalStateException("Sweep: motion signal was not cached for " + video));
+            }
+            videos.add(new Video(video, signals, e.getValue()));
+        }
+        Grid grid = Grid.fromProperties(cfg.detection());
+        long tol = Long.getLong("qv.sweep.toleranceMs", 3000L);
+        int threads = Integer.getInteger("qv.sweep.threads", Runtime.getRuntime().availableProcessors());
+        long t0 = System.nanoTime();
+        List<Score> scores = run(base, videos, grid, tol, threads);
+        long ms = (System.nanoTime() - t0) / 1_000_000L;
+        log.info("Sweep: {} combinations x {} video(s) in {} ms on {} thread(s)", grid.size(), videos.size(), ms, threads);
+
+        int top = Math.min(scores.size(), Integer.getInteger("qv.sweep.top", 10));
+        System.out.println("f1     precision recall maeMs  tp  fp  fn  eventRatio emaAlpha thrLowFactor minActiveMs nmsWindowMs mergeMs");
+        for (Score s : scores.subList(0, top)) {
+            Params p = s.params();
+            System.out.printf(Locale.ROOT, "%.3f  %.3f     %.3f  %6.0f %3d %3d %3d  %-10s %-8s %-12s %-11d %-11d %d%n",
+                    s.f1(), s.precision(), s.recall(), s.meanAbsErrorMs(),
+                    s.truePositives(), s.falsePositives(), s.falseNegatives(),
+                    num(p.eventRatio()), num(p.emaAlpha()), num(p.thrLowFactor()),
+                    p.minActiveMs(), p.nmsWindowMs(), p.mergeMs());
+        }
+        if (scores.isEmpty()) return;
+        String yaml = detectYaml(cfg.detection(), scores.get(0), grid.size(), videos.size());
+        System.out.println();
+        System.out.print(yaml);
+        String outFile = System.getProperty("qv.sweep.out", "");
+        if (!outFile.isBlank()) {
+            Files.writeString(Path.of(outFile), yaml);
+            log.info("Sweep: best detect: block → {}", Path.of(outFile).toAbsolutePath());
+        }
+    }
+
+    private static String num(double v) {
+        return String.format(Locale.ROOT, "%.4f", v).replaceAll("0+$", "").replaceAll("\\.$", ".0");
+    }
+
+    private static double[] doubles(String prop, double[] def) {
+        String s = System.getProperty(prop, "").strip();
+        if (s.isEmpty()) return def;
+        String[] range = s.split(":");
+        if (range.length == 3) {
+            double lo = Double.parseDouble(range[0]), hi = Double.parseDouble(range[1]), step = Double.parseDouble(range[2]);
+            if (!(step > 0)) throw new IllegalStateException(prop + ": step must be > 0, got: " + s);
+            int n = (int) Math.floor((hi - lo) / step + 1e-9) + 1;
+            double[] out = new double[Math.max(0, n)];
+            for (int i = 0; i < out.length; i++) out[i] = lo + i * step;
+            return out;
+        }
+        return Arrays.stream(s.split(",")).map(String::strip).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    private static int[] ints(String prop, int[] def) {
+        double[] d = doubles(prop, null);
+        return d == null ? def : Arrays.stream(d).mapToInt(v -> (int) Math.round(v)).toArray();
+    }
+}
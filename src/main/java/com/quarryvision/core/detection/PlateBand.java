@@ -0,0 +1,161 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.indexer.DoubleIndexer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Полоса кадра, покрывающая все ROI-кандидаты номера, подготовленная для OCR один раз на снимок:
+ * серый → CLAHE → bilateral → апскейл ×2 → адаптивный порог → closing (та же цепочка, что у одиночного ROI).
+ * ROI — это view в эти изображения: заполнение и контраст берутся из интегральных изображений за O(1),
+ * а OCR-движок получает всю бинаризацию одним изображением ({@link com.quarryvision.core.ocr.OcrEngine#open}).
+ * Вторая адаптивная бинаризация (fallback AUDIT-режима) строится лениво, тоже один раз на полосу.
+ */
+final class PlateBand implements AutoCloseable {
+    static final int SCALE = 2;
+
+    final Rect rect;           // полоса в координатах кадра
+    final Mat up;              // серый после CLAHE+bilateral, масштаб SCALE
+    final Mat bin;             // первичная бинаризация, масштаб SCALE
+    final BufferedImage image; // bin как TYPE_BYTE_GRAY для OCR-сессии
+
+    private final Mat eqSum = new Mat(), eqSqSum = new Mat(), binSum = new Mat();
+    private final DoubleIndexer eqS, eqSq, binS;
+    private Mat bin2;
+    private final Mat bin2Sum = new Mat();
+    private DoubleIndexer bin2S;
+
+    private PlateBand(Rect rect, Mat eq, Mat up, Mat bin) {
+        this.rect = rect;
+        this.up = up;
+        this.bin = bin;
+        this.image = MatImages.toGrayImage(bin);
+        opencv_imgproc.integral2(eq, eqSum, eqSqSum, opencv_core.CV_64F, opencv_core.CV_64F);
+        opencv_imgproc.integral(bin, binSum, opencv_core.CV_64F);
+        this.eqS = eqSum.createIndexer();
+        this.eqSq = eqSqSum.createIndexer();
+        this.binS = binSum.createIndexer();
+    }
+
+    /** Полоса = объединение rois; blockSize/c — параметры первичного adaptiveThreshold. */
+    static PlateBand build(Mat bgr, Iterable<Rect> rois, int blockSize, double c) {
+        int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE, x1 = 0, y1 = 0;
+        for (Rect r : rois) {
+            x0 = Math.min(x0, r.x());
+            y0 = Math.min(y0, r.y());
+            x1 = Math.max(x1, r.x() + r.width());
+            y1 = Math.max(y1, r.y() + r.height());
+        }
+        Rect band = new Rect(x0, y0, x1 - x0, y1 - y0);
+        Mat roi = new Mat(bgr, band);
+        Mat gray = new Mat();
+        Mat eq = new Mat();
+        Mat den = new Mat();
+        Mat up = new Mat();
+        Mat bin = new Mat();
+        Mat k = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_RECT, new Size(3, 3));
+        try {
+            opencv_imgproc.cvtColor(roi, gray, opencv_imgproc.COLOR_BGR2GRAY);
+            var clahe = opencv_imgproc.createCLAHE(2.0, new Size(8, 8));
+            clahe.apply(gray, eq);
+            opencv_imgproc.bilateralFilter(eq, den, 5, 75, 75);
+            opencv_imgproc.resize(den, up, new Size(den.cols() * SCALE, den.rows() * SCALE));
+            opencv_imgproc.adaptiveThreshold(up, bin, 255,
+                    opencv_imgproc.ADAPTIVE_THRESH_GAUSSIAN_C, opencv_imgproc.THRESH_BINARY, blockSize, c);
+            opencv_imgproc.morphologyEx(bin, bin, opencv_imgproc.MORPH_CLOSE, k);
+            return new PlateBand(band, eq, up, bin);
+        } finally {
+            k.release();
+            eq.release();
+            den.release();
+            gray.release();
+            roi.release();
+        }
+    }
+
+    /** Доля белых пикселей первичной бинаризации внутри ROI (координаты кадра). */
+    double fill(Rect r) {
+        return fill(binS, scaled(r));
+    }
+
+    /** Контраст ROI: std яркости после CLAHE, 0..1 (как meanStdDev по ROI). */
+    double contrast(Rect r) {
+        Rect l = local(r);
+        double n = (double) l.width() * l.height();
+        double mean = rectSum(eqS, l) / n;
+        double var = rectSum(eqSq, l) / n - mean * mean;
+        return Math.sqrt(Math.max(0.0, var)) / 255.0;
+    }
+
+    /** Заполнение второй адаптивной бинаризации (строится при первом обращении). */
+    double fill2(Rect r, int blockSize, double c) {
+        if (bin2 == null) {
+            bin2 = new Mat();
+            opencv_imgproc.adaptiveThreshold(up, bin2, 255,
+                    opencv_imgproc.ADAPTIVE_THRESH_GAUSSIAN_C, opencv_imgproc.THRESH_BINARY, blockSize, c);
+            opencv_imgproc.integral(bin2, bin2Sum, opencv_core.CV_64F);
+            bin2S = bin2Sum.createIndexer();
+        }
+        return fill(bin2S, scaled(r));
+    }
+
+    /** View ROI в первичной бинаризации (header без копии; release — на вызывающем). */
+    Mat binView(Rect r) { return new Mat(bin, scaled(r)); }
+
+    /** View ROI во второй бинаризации; только после {@link #fill2}. */
+    Mat bin2View(Rect r) { return new Mat(bin2, scaled(r)); }
+
+    /** Otsu по ROI апскейленного серого (порог свой у каждого ROI, поэтому не на всю полосу). */
+    Mat otsu(Rect r) {
+        Mat out = new Mat();
+        try (Mat v = new Mat(up, scaled(r))) {
+            opencv_imgproc.threshold(v, out, 0, 255, opencv_imgproc.THRESH_BINARY + opencv_imgproc.THRESH_OTSU);
+        }
+        return out;
+    }
+
+    /** ROI в координатах {@link #image}. */
+    Rectangle ocrRect(Rect r) {
+        Rect s = scaled(r);
+        return new Rectangle(s.x(), s.y(), s.width(), s.height());
+    }
+
+    private static double fill(DoubleIndexer sum, Rect s) {
+        return rectSum(sum, s) / 255.0 / ((double) s.width() * s.height());
+    }
+
+    /** Сумма по прямоугольнику из интегрального изображения (размер (h+1)×(w+1)). */
+    private static double rectSum(DoubleIndexer s, Rect r) {
+        long x0 = r.x(), y0 = r.y(), x1 = x0 + r.width(), y1 = y0 + r.height();
+        return s.get(y1, x1) - s.get(y0, x1) - s.get(y1, x0) + s.get(y0, x0);
+    }
+
+    private Rect local(Rect r) {
+        return new Rect(r.x() - rect.x(), r.y() - rect.y(), r.width(), r.height());
+    }
+
+    private Rect scaled(Rect r) {
+        return new Rect((r.x() - rect.x()) * SCALE, (r.y() - rect.y()) * SCALE, r.width() * SCALE, r.height() * SCALE);
+    }
+
+    @Override
+    public void close() {
+        eqS.release();
+        eqSq.release();
+        binS.release();
+        if (bin2S != null) bin2S.release();
+        eqSum.release();
+        eqSqSum.release();
+        binSum.release();
+        bin2Sum.release();
+        if (bin2 != null) bin2.release();
+        up.release();
+        bin.release();
+    }
+}
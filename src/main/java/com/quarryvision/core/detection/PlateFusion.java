@@ -0,0 +1,96 @@
+package com.quarryvision.core.detection;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Временное слияние гипотез номера одного события (или одной группы склейки событий).
+ * <p>
+ * Гипотезы — нормализованные номера с весом и кадром, откуда они пришли. Слияние: длина — взвешенным
+ * голосованием, затем по каждой позиции (строки выровнены по левому краю: серия/цифры номера стоят
+ * на фиксированных местах, различается только хвост региона) побеждает символ с наибольшим весом.
+ * При равенстве — гипотеза, добавленная раньше, поэтому две разные гипотезы дают первую.
+ * Уверенность — минимальная по позициям доля веса победившего символа.
+ */
+final class PlateFusion {
+    private final List<String> plates = new ArrayList<>();
+    private final List<Double> weights = new ArrayList<>();
+    private final List<Integer> frames = new ArrayList<>();
+
+    /** Итог слияния: номер, уверенность 0..1 и число кадров, согласных с ним (не больше одной ошибки). */
+    record Result(String plate, double confidence, int frames) {}
+
+    void add(String plate, double weight, int frame) {
+        if (plate == null || plate.isBlank() || !(weight > 0)) return;
+        plates.add(plate);
+        weights.add(weight);
+        frames.add(frame);
+    }
+
+    boolean isEmpty() { return plates.isEmpty(); }
+
+    int size() { return plates.size(); }
+
+    /** null — гипотез нет. */
+    Result fuse() {
+        if (plates.isEmpty()) return null;
+        // длина — взвешенным голосованием (при равенстве — первая встреченная)
+        Map<Integer, Double> byLen = new LinkedHashMap<>();
+        for (int i = 0; i < plates.size(); i++) byLen.merge(plates.get(i).length(), weights.get(i), Double::sum);
+        int len = -1;
+        double lenW = -1;
+        for (Map.Entry<Integer, Double> e : byLen.entrySet()) {
+            if (e.getValue() > lenW) {
+                len = e.getKey();
+                lenW = e.getValue();
+            }
+        }
+        StringBuilder out = new StringBuilder(len);
+        double confidence = 1.0;
+        for (int p = 0; p < len; p++) {
+            Map<Character, Double> votes = new LinkedHashMap<>();
+            double total = 0;
+            for (int i = 0; i < plates.size(); i++) {
+                String s = plates.get(i);
+                if (s.length() <= p) continue;
+                votes.merge(s.charAt(p), weights.get(i), Double::sum);
+                total += weights.get(i);
+            }
+            char best = 0;
+            double bestW = -1;
+            for (Map.Entry<Character, Double> e : votes.entrySet()) {
+                if (e.getValue() > bestW) {
+                    best = e.getKey();
+                    bestW = e.getValue();
+                }
+            }
+            out.append(best);
+            confidence = Math.min(confidence, bestW / total);
+        }
+        String fused = out.toString();
+        Set<Integer> agree = new HashSet<>();
+        for (int i = 0; i < plates.size(); i++) {
+            if (mismatches(plates.get(i), fused) <= 1) agree.add(frames.get(i));
+        }
+        return new Result(fused, confidence, agree.size());
+    }
+
+    /** Слияние готовых номеров (каждый с весом 1, каждый — свой кадр); null — непустых нет. */
+    static String fuse(List<String> plates) {
+        PlateFusion f = new PlateFusion();
+        for (int i = 0; i < plates.size(); i++) f.add(plates.get(i), 1.0, i);
+        Result r = f.fuse();
+        return r == null ? null : r.plate();
+    }
+
+    private static int mismatches(String a, String b) {
+        if (a.length() != b.length()) return Integer.MAX_VALUE;
+        int d = 0;
+        for (int i = 0; i < a.length(); i++) if (a.charAt(i) != b.charAt(i)) d++;
+        return d;
+    }
+}
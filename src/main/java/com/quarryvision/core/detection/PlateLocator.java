@@ -0,0 +1,162 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.indexer.IntIndexer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Поиск прямоугольников-кандидатов номера до любого вызова Tesseract.
+ * <p>
+ * Кадр уменьшается до {@link #WORK_WIDTH}, blackhat выделяет тёмные символы на светлой табличке,
+ * Sobel по X + closing широким ядром сливают строку символов в пятно, Otsu → контуры. Контур остаётся
+ * кандидатом, если у bounding rect подходящие пропорции и площадь, а внутри есть несколько «символьных»
+ * компонент (высота 35..95% высоты прямоугольника). Кандидаты сортируются по числу символов и плотности
+ * краёв. Пустой список — повод вернуться к сетке ROI.
+ */
+final class PlateLocator {
+    static final int WORK_WIDTH = 640;
+
+    private PlateLocator() {}
+
+    /** Кандидаты в координатах кадра, лучшие первыми, не больше max. */
+    static List<Rect> propose(Mat bgr, int max) {
+        return propose(bgr, null, max);
+    }
+
+    /**
+     * То же только внутри search (null — весь кадр). Масштаб и пороги площади — от полного кадра,
+     * чтобы табличка в маленькой области проходила те же фильтры, что и в целом кадре.
+     */
+    static List<Rect> propose(Mat bgr, Rect search, int max) {
+        final int w = bgr.cols(), h = bgr.rows();
+        final double scale = w > WORK_WIDTH ? WORK_WIDTH / (double) w : 1.0;
+        final Rect area0 = (search != null) ? search : new Rect(0, 0, w, h);
+        final int sw = Math.max(1, (int) Math.round(area0.width() * scale));
+        final int sh = Math.max(1, (int) Math.round(area0.height() * scale));
+        final double frameArea = (double) Math.round(w * scale) * Math.round(h * scale);
+
+        Mat gray = new Mat();
+        Mat small = new Mat();
+        Mat blackhat = new Mat();
+        Mat gradX = new Mat();
+        Mat mask = new Mat();
+        Mat chars = new Mat();
+        Mat kBlackhat = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_RECT, new Size(13, 5));
+        Mat kClose = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_RECT, new Size(17, 3));
+        Mat k3 = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_RECT, new Size(3, 3));
+        MatVector contours = new MatVector();
+        try {
+            try (Mat src = (search != null) ? new Mat(bgr, search) : null) {
+                opencv_imgproc.cvtColor(src != null ? src : bgr, gray, opencv_imgproc.COLOR_BGR2GRAY);
+            }
+            if (scale < 1.0) {
+                opencv_imgproc.resize(gray, small, new Size(sw, sh), 0, 0, opencv_imgproc.INTER_AREA);
+            } else {
+                gray.copyTo(small);
+            }
+            // тёмные символы на светлом фоне таблички
+            opencv_imgproc.morphologyEx(small, blackhat, opencv_imgproc.MORPH_BLACKHAT, kBlackhat);
+            // бинаризация символов — для подсчёта «символьных» компонент внутри кандидата
+            opencv_imgproc.threshold(blackhat, chars, 0, 255, opencv_imgproc.THRESH_BINARY + opencv_imgproc.THRESH_OTSU);
+
+            // вертикальные края символов → пятно строки
+            opencv_imgproc.Sobel(blackhat, gradX, opencv_core.CV_32F, 1, 0, -1, 1, 0, opencv_core.BORDER_DEFAULT);
+            opencv_core.convertScaleAbs(gradX, gradX);
+            opencv_core.normalize(gradX, gradX, 0, 255, opencv_core.NORM_MINMAX, -1, null);
+            opencv_imgproc.GaussianBlur(gradX, gradX, new Size(5, 5), 0);
+            opencv_imgproc.morphologyEx(gradX, gradX, opencv_imgproc.MORPH_CLOSE, kClose);
+            opencv_imgproc.threshold(gradX, mask, 0, 255, opencv_imgproc.THRESH_BINARY + opencv_imgproc.THRESH_OTSU);
+            opencv_imgproc.erode(mask, mask, k3, new Point(-1, -1), 2,
+                    opencv_core.BORDER_CONSTANT, opencv_imgproc.morphologyDefaultBorderValue());
+            opencv_imgproc.dilate(mask, mask, k3, new Point(-1, -1), 2,
+                    opencv_core.BORDER_CONSTANT, opencv_imgproc.morphologyDefaultBorderValue());
+
+            opencv_imgproc.findContours(mask, contours, opencv_imgproc.RETR_EXTERNAL, opencv_imgproc.CHAIN_APPROX_SIMPLE);
+            List<Candidate> found = new ArrayList<>();
+            for (long i = 0; i < contours.size(); i++) {
+                Rect b = opencv_imgproc.boundingRect(contours.get(i));
+                double aspect = b.width() / (double) Math.max(1, b.height());
+                double area = (double) b.width() * b.height();
+                if (aspect < 2.0 || aspect > 7.0) continue;
+                if (area < frameArea * 0.0008 || area > frameArea * 0.08) continue;
+                if (b.height() < 8) continue;
+                int blobs = charBlobs(chars, b);
+                if (blobs < 3) continue;
+                double edges;
+                try (Mat sub = new Mat(mask, b)) {
+                    edges = opencv_core.countNonZero(sub) / area;
+                }
+                found.add(new Candidate(b, blobs, edges));
+            }
+            found.sort(Comparator.comparingInt((Candidate c) -> c.blobs).reversed()
+                    .thenComparing(Comparator.comparingDouble((Candidate c) -> c.edges).reversed()));
+
+            List<Rect> out = new ArrayList<>(Math.min(max, found.size()));
+            for (Candidate c : found) {
+                if (out.size() >= max) break;
+                Rect r = toFrame(c.rect, scale, area0.width(), area0.height());
+                out.add(new Rect(r.x() + area0.x(), r.y() + area0.y(), r.width(), r.height()));
+            }
+            return out;
+        } finally {
+            contours.close();
+            k3.release();
+            kClose.release();
+            kBlackhat.release();
+            chars.release();
+            mask.release();
+            gradX.release();
+            blackhat.release();
+            small.release();
+            gray.release();
+        }
+    }
+
+    /** Компоненты внутри b с высотой 35..95% высоты b и шириной не больше высоты — похожие на символы. */
+    private static int charBlobs(Mat chars, Rect b) {
+        Mat labels = new Mat();
+        Mat stats = new Mat();
+        Mat centroids = new Mat();
+        try (Mat sub = new Mat(chars, b)) {
+            int n = opencv_imgproc.connectedComponentsWithStats(sub, labels, stats, centroids);
+            var idx = stats.<IntIndexer>createIndexer();
+            int count = 0;
+            for (int i = 1; i < n; i++) { // 0 — фон
+                int cw = idx.get(i, opencv_imgproc.CC_STAT_WIDTH);
+                int ch = idx.get(i, opencv_imgproc.CC_STAT_HEIGHT);
+                if (ch >= b.height() * 0.35 && ch <= b.height() * 0.95 && cw <= ch && cw >= 1) count++;
+            }
+            idx.release();
+            return count;
+        } finally {
+            centroids.release();
+            stats.release();
+            labels.release();
+        }
+    }
+
+    /** Обратно в кадр с запасом 10% по ширине и 25% по высоте (символы у края таблички). */
+    private static Rect toFrame(Rect b, double scale, int w, int h) {
+        double padX = b.width() * 0.10, padY = b.height() * 0.25;
+        int x0 = (int) Math.floor((b.x() - padX) / scale);
+        int y0 = (int) Math.floor((b.y() - padY) / scale);
+        int x1 = (int) Math.ceil((b.x() + b.width() + padX) / scale);
+        int y1 = (int) Math.ceil((b.y() + b.height() + padY) / scale);
+        x0 = Math.max(0, x0);
+        y0 = Math.max(0, y0);
+        x1 = Math.min(w, x1);
+        y1 = Math.min(h, y1);
+        return new Rect(x0, y0, Math.max(1, x1 - x0), Math.max(1, y1 - y0));
+    }
+
+    private record Candidate(Rect rect, int blobs, double edges) {}
+}
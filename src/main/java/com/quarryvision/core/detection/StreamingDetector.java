@@ -0,0 +1,183 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Push-детект: кадры с временем захвата подаются по одному ({@link #push}/{@link #skip}), событие уходит
+ * в listener на том же сэмпле, на котором закрылся ACTIVE-интервал, — без ожидания конца ролика.
+ * <p>
+ * Анализ тот же, что у последовательного detect(): первый кадр — опорный, сэмплы — кадры k*stepFrames,
+ * {@link MotionZone} на зону и {@link MotionEventStateMachine}. NMS и склейка — онлайн по тому же правилу,
+ * что {@link MotionEventStateMachine#groups}: наружу идёт только первое событие каждой группы, поэтому для
+ * файла последовательность {@link DetectionEvent#ms()} совпадает с {@link DetectionResult#timestampsMs()}.
+ * Не потокобезопасен: кадры подаёт один поток. Создаётся через {@link BucketDetector#stream}.
+ */
+public final class StreamingDetector implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(StreamingDetector.class);
+
+    private final BucketDetector detector;
+    private final List<BucketDetector.ZoneSpec> specs;
+    private final int stepFrames;
+    private final double fps;
+    private final long nmsWindowMs;
+    private final long mergeMs;
+    private final long warmupMs;
+    private final Consumer<DetectionEvent> listener;
+    private final List<Zone> zones = new ArrayList<>();
+    /** Индекс следующего кадра потока. */
+    private long next = 0;
+    private long lastCaptureMs;
+    private long events = 0;
+    private boolean closed;
+
+    StreamingDetector(BucketDetector detector, List<BucketDetector.ZoneSpec> specs, int stepFrames, double fps,
+                      long nmsWindowMs, long mergeMs, long warmupMs, Consumer<DetectionEvent> listener) {
+        this.detector = detector;
+        this.specs = specs;
+        this.stepFrames = stepFrames;
+        this.fps = fps;
+        this.nmsWindowMs = nmsWindowMs;
+        this.mergeMs = mergeMs;
+        this.warmupMs = warmupMs;
+        this.listener = listener;
+    }
+
+    /** Состояние зоны: сигнал движения, автомат и онлайн-NMS/склейка. */
+    private static final class Zone {
+        final String label;
+        final MotionZone motion;
+        final MotionEventStateMachine sm;
+        /** Время захвата кадра, на котором начался текущий ACTIVE. */
+        long activeStartCaptureMs;
+        boolean kept;
+        long winStartMs;
+        long groupStartMs;
+
+        Zone(String label, MotionZone motion, MotionEventStateMachine sm) {
+            this.label = label;
+            this.motion = motion;
+            this.sm = sm;
+        }
+    }
+
+    /** Нужен ли следующему кадру Mat: false — его можно подать через {@link #skip} (grab без декодирования). */
+    public boolean wantsFrame() {
+        return next == 0 || next % stepFrames == 0;
+    }
+
+    /** Следующий кадр потока (BGR) и время его захвата, мс. */
+    public void push(Mat frame, long captureMs) {
+        if (closed) throw new IllegalStateException("StreamingDetector is closed");
+        long idx = next++;
+        lastCaptureMs = captureMs;
+        if (idx == 0) {
+            // зоны — по размеру первого кадра, он же опорный
+            for (BucketDetector.ZoneSpec spec : specs) {
+                Zone z = new Zone(spec.label(), detector.newMotionZone(spec, frame.cols(), frame.rows()),
+                        detector.newStateMachine(fps, spec, warmupMs));
+                zones.add(z);
+                z.motion.reset(frame);
+            }
+            return;
+        }
+        if (idx % stepFrames != 0) return;
+        for (Zone z : zones) {
+            double white = z.motion.white(frame);
+            // Отсечь мелкие всплески
+            if (white >= z.motion.minWhite) {
+                boolean accepted = z.sm.update(idx, white / (double) z.motion.area);
+                if (z.sm.isActive() && z.sm.activeStartFrame() == idx) z.activeStartCaptureMs = captureMs;
+                if (accepted) emit(z, idx, captureMs);
+            }
+            z.motion.commit();
+        }
+    }
+
+    /** Кадр, который не анализируется ({@link #wantsFrame()} = false): только счёт кадров. */
+    public void skip(long captureMs) {
+        if (closed) throw new IllegalStateException("StreamingDetector is closed");
+        if (wantsFrame()) throw new IllegalStateException("frame " + next + " is a sample, push it");
+        next++;
+        lastCaptureMs = captureMs;
+    }
+
+    /**
+     * Прогнать источник до конца (или до обрыва) и закрыть детектор — хвост ACTIVE тоже становится событием.
+     * Возвращает число кадров.
+     */
+    public long run(FrameSource source) {
+        Mat frame = new Mat();
+        try {
+            while (true) {
+                if (wantsFrame()) {
+                    if (!source.read(frame)) break;
+                    push(frame, source.captureMs());
+                } else {
+                    if (!source.skip()) break;
+                    skip(source.captureMs());
+                }
+            }
+            return next;
+        } finally {
+            frame.release();
+            frame.close();
+            close();
+        }
+    }
+
+    private void emit(Zone z, long idx, long captureMs) {
+        MotionEventStateMachine sm = z.sm;
+        int i = sm.eventCount() - 1;
+        long mid = sm.eventMidFrame(i);
+        long ms = sm.eventMs(i);
+        sm.clearEvents();
+        // NMS: в окне от последнего оставленного — подавляется; склейка: ближе mergeMs к началу группы
+        if (z.kept && ms - z.winStartMs <= nmsWindowMs) return;
+        boolean newGroup = !z.kept || ms - z.groupStartMs > mergeMs;
+        z.kept = true;
+        z.winStartMs = ms;
+        if (!newGroup) return;
+        z.groupStartMs = ms;
+        // время захвата mid-кадра — между началом интервала и текущим сэмплом (у камеры fps плавает)
+        long start = sm.activeStartFrame();
+        long at = z.activeStartCaptureMs;
+        if (idx > start) at += Math.round((captureMs - at) * ((mid - start) / (double) (idx - start)));
+        events++;
+        DetectionEvent ev = new DetectionEvent(z.label, mid, ms, Instant.ofEpochMilli(at));
+        if (log.isDebugEnabled()) {
+            log.debug("Stream: event zone={} ms={} capturedAt={} lagMs={}", z.label, ms, ev.capturedAt(),
+                    captureMs - at);
+        }
+        listener.accept(ev);
+    }
+
+    /** Событий отдано в listener. */
+    public long events() {
+        return events;
+    }
+
+    /** Конец потока: незакрытый ACTIVE — событие (как EOF-хвост detect()); зоны освобождаются. */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            if (next <= 1) return;
+            long last = next - 1;
+            // idx конца — как у последовательного прохода: после сэмпла на EOF он на кадр дальше
+            long idxEnd = (last % stepFrames == 0) ? last + 1 : last;
+            for (Zone z : zones) {
+                if (z.sm.finish(idxEnd)) emit(z, idxEnd, lastCaptureMs);
+            }
+        } finally {
+            for (Zone z : zones) z.motion.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Лучшие кадры-кандидаты одного события для OCR.
+ * <p>
+ * rank=true — держит k кадров с наибольшей оценкой {@link FrameQuality} (кадр хуже всех уже отобранных
+ * не копируется), порядок OCR — по убыванию оценки. rank=false — прежнее поведение фиксированных смещений:
+ * кандидат i занимает слот i, порядок OCR — порядок смещений. Mat слотов выделяются один раз.
+ */
+final class TopFrames implements AutoCloseable {
+    private final boolean rank;
+    private final Mat[] mats;
+    private final long[] frames;
+    private final int[] candidates;
+    private final double[] scores;
+
+    TopFrames(int k, boolean rank) {
+        int n = Math.max(1, k);
+        this.rank = rank;
+        this.mats = new Mat[n];
+        this.frames = new long[n];
+        this.candidates = new int[n];
+        this.scores = new double[n];
+        for (int i = 0; i < n; i++) mats[i] = new Mat();
+        Arrays.fill(frames, -1);
+    }
+
+    boolean ranked() { return rank; }
+
+    /**
+     * Предлагает кадр frameIdx кандидата candidate с оценкой score (без rank не используется).
+     * Принятый кадр копируется; тот же frameIdx дважды не хранится. true — кадр взят.
+     */
+    boolean offer(int candidate, Mat frame, long frameIdx, double score) {
+        for (long f : frames) if (f == frameIdx) return false;
+        int slot;
+        if (!rank) {
+            if (candidate < 0 || candidate >= mats.length) return false;
+            slot = candidate;
+        } else {
+            slot = -1;
+            for (int i = 0; i < mats.length; i++) {
+                if (frames[i] < 0) {
+                    slot = i;
+                    break;
+                }
+                if (slot < 0 || scores[i] < scores[slot]) slot = i;
+            }
+            if (frames[slot] >= 0 && score <= scores[slot]) return false;
+        }
+        frame.copyTo(mats[slot]);
+        frames[slot] = frameIdx;
+        candidates[slot] = candidate;
+        scores[slot] = score;
+        return true;
+    }
+
+    /** Занятые слоты в порядке OCR. */
+    int[] order() {
+        Comparator<Integer> cmp = rank
+                ? Comparator.<Integer>comparingDouble(i -> -scores[i]).thenComparingInt(i -> candidates[i])
+                : Comparator.comparingInt(i -> candidates[i]);
+        return IntStream.range(0, mats.length).filter(i -> frames[i] >= 0).boxed()
+                .sorted(cmp).mapToInt(Integer::intValue).toArray();
+    }
+
+    int size() { return (int) Arrays.stream(frames).filter(f -> f >= 0).count(); }
+
+    Mat mat(int slot) { return mats[slot]; }
+    long frame(int slot) { return frames[slot]; }
+    int candidate(int slot) { return candidates[slot]; }
+    double score(int slot) { return scores[slot]; }
+
+    @Override
+    public void close() {
+        for (Mat m : mats) m.release();
+    }
+}
@@ -0,0 +1,63 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_videoio.VideoCapture;
+
+/** {@link FrameSource} поверх OpenCV VideoCapture: файл или URL камеры. */
+final class VideoCaptureSource implements FrameSource {
+    private final VideoCapture cap;
+    private final boolean live;
+    private final double fps;
+    /** Индекс последнего кадра (-1 — ещё не читали). */
+    private long frame = -1;
+    private long captureMs;
+
+    VideoCaptureSource(String uri, boolean live) {
+        this.cap = new VideoCapture(uri);
+        this.live = live;
+        // живой поток: не копить кадры в буфере бэкенда — задержка события растёт на глубину буфера
+        if (live && cap.isOpened()) cap.set(opencv_videoio.CAP_PROP_BUFFERSIZE, 1);
+        this.fps = cap.isOpened() ? cap.get(opencv_videoio.CAP_PROP_FPS) : 0.0;
+    }
+
+    boolean isOpened() {
+        return cap.isOpened();
+    }
+
+    @Override
+    public double fps() {
+        return fps;
+    }
+
+    @Override
+    public boolean read(Mat dst) {
+        if (!cap.read(dst) || dst.empty()) return false;
+        advance();
+        return true;
+    }
+
+    @Override
+    public boolean skip() {
+        if (!cap.grab()) return false;
+        advance();
+        return true;
+    }
+
+    private void advance() {
+        frame++;
+        captureMs = live ? System.currentTimeMillis()
+                : (long) ((frame / (fps > 1e-3 ? fps : 25.0)) * 1000.0);
+    }
+
+    @Override
+    public long captureMs() {
+        return captureMs;
+    }
+
+    @Override
+    public void close() {
+        cap.release();
+        cap.close();
+    }
+}
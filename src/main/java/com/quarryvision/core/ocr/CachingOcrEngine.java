@@ -0,0 +1,97 @@
+package com.quarryvision.core.ocr;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Optional;
+
+/**
+ * Движок с {@link OcrResultCache} прогона перед {@link #readBestToken}: тот же ROI с теми же настройками OCR
+ * не распознаётся повторно. Сессии {@link #open} кэшируются так же — по отпечатку прямоугольника изображения
+ * сессии. Обёртка лёгкая: создаётся на аренду движка, движок не закрывает. readText не кэшируется. Ответ, урезанный дедлайном ({@link OcrDeadline}),
+ * в кэш не кладётся: без дедлайна тот же ROI должен получить полный свип. Вместе с ответом хранится
+ * его {@link #lastConfidence()} — попадание в кэш весит при слиянии столько же, сколько исходное чтение.
+ */
+public final class CachingOcrEngine implements OcrEngine {
+    private final OcrEngine delegate;
+    private final OcrResultCache cache;
+    private final String settings;
+    private double lastConfidence = 1.0;
+
+    public CachingOcrEngine(OcrEngine delegate, OcrResultCache cache, String settings) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.settings = settings;
+    }
+
+    @Override
+    public Optional<String> readText(BufferedImage bi) {
+        return delegate.readText(bi);
+    }
+
+    @Override
+    public Optional<String> readText(File imageFile) {
+        return delegate.readText(imageFile);
+    }
+
+    @Override
+    public Optional<String> readBestToken(BufferedImage bi) {
+        Rectangle all = new Rectangle(0, 0, bi.getWidth(), bi.getHeight());
+        OcrResultCache.Fingerprint fp = OcrResultCache.fingerprint(bi, all);
+        OcrResultCache.Cached hit = cache.lookup(settings, all.width, all.height, fp);
+        if (hit != null) {
+            if (hit.token().isPresent()) lastConfidence = hit.confidence();
+            return hit.token();
+        }
+        long cuts = OcrDeadline.cuts();
+        Optional<String> got = delegate.readBestToken(bi);
+        double conf = got.isPresent() ? delegate.lastConfidence() : 1.0;
+        if (got.isPresent()) lastConfidence = conf;
+        if (OcrDeadline.cuts() == cuts) cache.put(settings, all.width, all.height, fp, got, conf);
+        return got;
+    }
+
+    @Override
+    public double lastConfidence() {
+        return lastConfidence;
+    }
+
+    @Override
+    public RegionSession open(BufferedImage image) {
+        final RegionSession inner = delegate.open(image);
+        return new RegionSession() {
+            private double lastConfidence = 1.0;
+
+            @Override
+            public Optional<String> readBestToken(Rectangle r) {
+                OcrResultCache.Fingerprint fp = OcrResultCache.fingerprint(image, r);
+                OcrResultCache.Cached hit = cache.lookup(settings, r.width, r.height, fp);
+                if (hit != null) {
+                    if (hit.token().isPresent()) lastConfidence = hit.confidence();
+                    return hit.token();
+                }
+                long cuts = OcrDeadline.cuts();
+                Optional<String> got = inner.readBestToken(r);
+                double conf = got.isPresent() ? inner.lastConfidence() : 1.0;
+                if (got.isPresent()) lastConfidence = conf;
+                if (OcrDeadline.cuts() == cuts) cache.put(settings, r.width, r.height, fp, got, conf);
+                return got;
+            }
+
+            @Override
+            public double lastConfidence() {
+                return lastConfidence;
+            }
+
+            @Override
+            public void close() {
+                inner.close();
+            }
+        };
+    }
+
+    @Override
+    public boolean prefersRegions() {
+        return delegate.prefersRegions();
+    }
+}
@@ -0,0 +1,292 @@
+package com.quarryvision.core.ocr;
+
+import org.bytedeco.javacpp.indexer.IntIndexer;
+import org.bytedeco.javacpp.indexer.UByteIndexer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Быстрое чтение номера без Tesseract: символы — связные компоненты бинаризации, класс — ближайший
+ * образец (kNN, k=1) по маске символа {@link #FEAT_W}×{@link #FEAT_H}.
+ * <p>
+ * Алфавит номеров крошечный ({@link #ALPHABET}), поэтому образцов хватает из размеченных кадров
+ * ({@code NNN.png} + {@code NNN.txt}, как в testdata/ocr/plates): кадр идёт в обучение, если число найденных
+ * символов совпало с длиной разметки. Кириллица разметки приводится к латинским двойникам.
+ * Уверенность символа — 1 − d₁/d₂, где d₁ — расстояние до ближайшего образца, d₂ — до ближайшего образца
+ * другого класса; уверенность номера — минимальная по символам. Модель после обучения только читается
+ * и потокобезопасна.
+ */
+public final class CharTemplates {
+    private static final Logger log = LoggerFactory.getLogger(CharTemplates.class);
+
+    /** Символы номера (латиница) и цифры. */
+    public static final String ALPHABET = "ABEKMHOPCTYX0123456789";
+    private static final String CYRILLIC = "АВЕКМНОРСТУХ";
+    private static final String LATIN = "ABEKMHOPCTYX";
+
+    static final int FEAT_W = 12, FEAT_H = 20;
+    /** Высота, к которой приводится ROI перед сегментацией. */
+    private static final int WORK_H = 64;
+    /** Вес отношения сторон символа в признаке (различает «1» и узкие варианты прочих). */
+    private static final float ASPECT_WEIGHT = 4f;
+
+    private static CharTemplates shared;
+
+    private final List<float[]> feats = new ArrayList<>();
+    private final List<Character> labels = new ArrayList<>();
+    private final AtomicLong accepted = new AtomicLong(), rejected = new AtomicLong();
+
+    /** Результат чтения: текст (пустой — символов не нашлось) и уверенность 0..1. */
+    public record Reading(String text, double confidence) {}
+
+    CharTemplates() {}
+
+    /**
+     * Модель процесса: обучается один раз по каталогу -Dqv.ocr.templatesDir (по умолчанию testdata/ocr/plates).
+     * Пустая модель (каталога нет) читает всё с нулевой уверенностью — то есть всегда уходит в Tesseract.
+     */
+    public static synchronized CharTemplates shared() {
+        if (shared == null) {
+            Path dir = Path.of(System.getProperty("qv.ocr.templatesDir", "testdata/ocr/plates"));
+            long t0 = System.nanoTime();
+            shared = train(dir);
+            log.info("OCR: char templates dir={} samples={} trainMs={}", dir, shared.size(),
+                    (System.nanoTime() - t0) / 1_000_000L);
+        }
+        return shared;
+    }
+
+    /** Обучение по размеченным кадрам каталога; нечитаемые и несегментируемые кадры пропускаются. */
+    public static CharTemplates train(Path dir) {
+        CharTemplates m = new CharTemplates();
+        if (!Files.isDirectory(dir)) {
+            log.warn("OCR: char templates dir not found: {}", dir);
+            return m;
+        }
+        List<Path> pngs;
+        try (Stream<Path> s = Files.list(dir)) {
+            pngs = s.filter(p -> p.getFileName().toString().endsWith(".png")).sorted().toList();
+        } catch (IOException e) {
+            log.warn("OCR: char templates dir unreadable: {} ({})", dir, e.toString());
+            return m;
+        }
+        for (Path png : pngs) {
+            Path txt = png.resolveSibling(png.getFileName().toString().replaceAll("\\.png$", ".txt"));
+            try {
+                if (!Files.isRegularFile(txt)) continue;
+                String label = toLatin(Files.readString(txt).trim());
+                BufferedImage img = ImageIO.read(png.toFile());
+                if (img == null || label.isEmpty()) continue;
+                if (!m.learn(img, label)) {
+                    log.debug("OCR: template sample skipped (segments != label): {} '{}'", png.getFileName(), label);
+                }
+            } catch (IOException e) {
+                log.debug("OCR: template sample unreadable: {} ({})", png, e.toString());
+            }
+        }
+        return m;
+    }
+
+    /** Добавляет символы кадра как образцы; false — сегментация не совпала с разметкой ни в одной полярности. */
+    boolean learn(BufferedImage img, String label) {
+        for (boolean darkText : new boolean[]{true, false}) {
+            List<float[]> chars = segment(img, darkText);
+            if (chars.size() != label.length()) continue;
+            for (int i = 0; i < chars.size(); i++) {
+                feats.add(chars.get(i));
+                labels.add(label.charAt(i));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** Чтение в обеих полярностях (тёмный текст на светлом и наоборот), лучшее по уверенности. */
+    public Reading read(BufferedImage img) {
+        Reading best = new Reading("", 0.0);
+        if (feats.isEmpty()) return best;
+        for (boolean darkText : new boolean[]{true, false}) {
+            Reading r = classify(segment(img, darkText));
+            if (r.confidence > best.confidence) best = r;
+        }
+        return best;
+    }
+
+    /** Число образцов символов. */
+    public int size() { return feats.size(); }
+
+    /** Чтения, принятые без Tesseract / ушедшие в Tesseract (счётчики {@link TemplatePlateReader}). */
+    public long accepted() { return accepted.get(); }
+
+    public long rejected() { return rejected.get(); }
+
+    void countAccepted() { accepted.incrementAndGet(); }
+
+    void countRejected() { rejected.incrementAndGet(); }
+
+    private Reading classify(List<float[]> chars) {
+        if (chars.size() < 6 || chars.size() > 9) return new Reading("", 0.0);
+        StringBuilder text = new StringBuilder(chars.size());
+        double conf = 1.0;
+        for (float[] f : chars) {
+            int best = -1;
+            double d1 = Double.MAX_VALUE;
+            for (int i = 0; i < feats.size(); i++) {
+                double d = dist(f, feats.get(i), d1);
+                if (d < d1) {
+                    d1 = d;
+                    best = i;
+                }
+            }
+            char c = labels.get(best);
+            double d2 = Double.MAX_VALUE;
+            for (int i = 0; i < feats.size(); i++) {
+                if (labels.get(i) == c) continue;
+                d2 = Math.min(d2, dist(f, feats.get(i), d2));
+            }
+            text.append(c);
+            conf = Math.min(conf, d2 == Double.MAX_VALUE ? 1.0 : 1.0 - d1 / Math.max(1e-9, d2));
+        }
+        return new Reading(text.toString(), Math.max(0.0, conf));
+    }
+
+    /** Квадрат евклидова расстояния с досрочным выходом, когда сумма уже не меньше bound. */
+    private static double dist(float[] a, float[] b, double bound) {
+        double s = 0;
+        for (int i = 0; i < a.length; i++) {
+            double d = a[i] - b[i];
+            s += d * d;
+            if (s >= bound) return s;
+        }
+        return s;
+    }
+
+    /**
+     * Признаки символов слева направо: ROI → серое высотой {@link #WORK_H} → Otsu → связные компоненты.
+     * Рамка и разделитель региона вычитаются как длинные штрихи; символ — компонента
+     * высотой от 30% ROI, шириной 25–100% своей высоты, с заполнением 10–90%; мелочь
+     * (RUS, флаг, грязь) отсекается по высоте относительно медианы символов.
+     */
+    static List<float[]> segment(BufferedImage img, boolean darkText) {
+        Mat src = toGray(img);
+        Mat gray = new Mat(), bin = new Mat(), lines = new Mat(), labels = new Mat(), stats = new Mat(), cents = new Mat();
+        try {
+            double scale = WORK_H / (double) Math.max(1, src.rows());
+            int w = Math.max(1, (int) Math.round(src.cols() * scale));
+            opencv_imgproc.resize(src, gray, new Size(w, WORK_H), 0, 0,
+                    scale < 1 ? opencv_imgproc.INTER_AREA : opencv_imgproc.INTER_LINEAR);
+            opencv_imgproc.threshold(gray, bin, 0, 255, (darkText ? opencv_imgproc.THRESH_BINARY_INV
+                    : opencv_imgproc.THRESH_BINARY) | opencv_imgproc.THRESH_OTSU);
+            // рамка номера и разделитель региона склеивают символы в одну компоненту — вычитаем длинные
+            // горизонтальные (≥ ¼ ширины) и вертикальные (≥ 0.8 высоты) штрихи
+            Mat kh = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_RECT, new Size(Math.max(1, w / 4), 1));
+            Mat kv = opencv_imgproc.getStructuringElement(opencv_imgproc.MORPH_RECT, new Size(1, (int) (WORK_H * 0.8)));
+            try {
+                opencv_imgproc.morphologyEx(bin, lines, opencv_imgproc.MORPH_OPEN, kh);
+                opencv_imgproc.morphologyEx(bin, cents, opencv_imgproc.MORPH_OPEN, kv);
+                opencv_core.bitwise_or(lines, cents, lines);
+                opencv_core.subtract(bin, lines, bin);
+            } finally {
+                kh.release();
+                kv.release();
+            }
+            int n = opencv_imgproc.connectedComponentsWithStats(bin, labels, stats, cents, 8, opencv_core.CV_32S);
+            List<int[]> boxes = new ArrayList<>();
+            try (IntIndexer st = stats.createIndexer()) {
+                for (int i = 1; i < n; i++) {
+                    int x = st.get(i, opencv_imgproc.CC_STAT_LEFT), y = st.get(i, opencv_imgproc.CC_STAT_TOP);
+                    int bw = st.get(i, opencv_imgproc.CC_STAT_WIDTH), bh = st.get(i, opencv_imgproc.CC_STAT_HEIGHT);
+                    int area = st.get(i, opencv_imgproc.CC_STAT_AREA);
+                    if (bh < WORK_H * 0.30 || bw > bh || bw < bh * 0.25) continue;
+                    double fill = area / (double) (bw * bh);
+                    if (fill < 0.10 || fill > 0.90) continue;
+                    boxes.add(new int[]{x, y, bw, bh, i});
+                }
+            }
+            if (boxes.isEmpty()) return List.of();
+            int[] hs = boxes.stream().mapToInt(b -> b[3]).sorted().toArray();
+            int med = hs[hs.length / 2];
+            boxes.removeIf(b -> b[3] < med * 0.5 || b[3] > med * 1.5);
+            boxes.sort((a, b) -> Integer.compare(a[0], b[0]));
+            List<float[]> out = new ArrayList<>(boxes.size());
+            for (int[] b : boxes) out.add(feature(labels, b));
+            return out;
+        } finally {
+            src.release();
+            gray.release();
+            bin.release();
+            lines.release();
+            labels.release();
+            stats.release();
+            cents.release();
+        }
+    }
+
+    /** Маска одной компоненты в её рамке → {@link #FEAT_W}×{@link #FEAT_H} (0..1) + отношение сторон. */
+    private static float[] feature(Mat labels, int[] b) {
+        Mat mask = new Mat(b[3], b[2], opencv_core.CV_8UC1);
+        Mat small = new Mat();
+        try {
+            try (IntIndexer li = labels.createIndexer(); UByteIndexer mi = mask.createIndexer()) {
+                for (int y = 0; y < b[3]; y++) {
+                    for (int x = 0; x < b[2]; x++) {
+                        mi.put(y, x, li.get(b[1] + y, b[0] + x) == b[4] ? 255 : 0);
+                    }
+                }
+            }
+            opencv_imgproc.resize(mask, small, new Size(FEAT_W, FEAT_H), 0, 0, opencv_imgproc.INTER_AREA);
+            float[] f = new float[FEAT_W * FEAT_H + 1];
+            try (UByteIndexer si = small.createIndexer()) {
+                for (int y = 0; y < FEAT_H; y++) {
+                    for (int x = 0; x < FEAT_W; x++) f[y * FEAT_W + x] = si.get(y, x) / 255f;
+                }
+            }
+            f[FEAT_W * FEAT_H] = ASPECT_WEIGHT * b[2] / (float) b[3];
+            return f;
+        } finally {
+            mask.release();
+            small.release();
+        }
+    }
+
+    /** BufferedImage (любой тип, в том числе подизображение) → CV_8UC1. */
+    private static Mat toGray(BufferedImage img) {
+        BufferedImage g = img;
+        if (img.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            g = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g2 = g.createGraphics();
+            g2.drawImage(img, 0, 0, null);
+            g2.dispose();
+        }
+        byte[] px = (byte[]) g.getRaster().getDataElements(0, 0, g.getWidth(), g.getHeight(), null);
+        Mat m = new Mat(g.getHeight(), g.getWidth(), opencv_core.CV_8UC1);
+        m.data().put(px);
+        return m;
+    }
+
+    /** Кириллические двойники → латиница, прочее вне алфавита выбрасывается. */
+    static String toLatin(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        for (char c : s.toUpperCase().toCharArray()) {
+            int k = CYRILLIC.indexOf(c);
+            char l = k >= 0 ? LATIN.charAt(k) : c;
+            if (ALPHABET.indexOf(l) >= 0) out.append(l);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.quarryvision.core.ocr;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кооперативный дедлайн OCR, привязанный к потоку: детектор ставит его на время события (и передаёт
+ * воркерам параллельного скана ROI), движки проверяют его между дорогими шагами — свип PSM и AUDIT-fallback-и
+ * в {@link OcrService#readBestToken}, PSM 8/7 в {@link TessBaseApiEngine}. Идущий вызов Tesseract не
+ * прерывается: дедлайн лишь не даёт начать следующий. Пропущенные свипы считаются в счётчик прогона,
+ * переданный вместе с дедлайном, — параллельные detect не смешивают свои PERF.
+ */
+public final class OcrDeadline {
+    /** Без ограничения. */
+    public static final long NONE = Long.MAX_VALUE;
+
+    /** Состояние потока: дедлайн, счётчик пропусков прогона (null — не считаем) и число обрывов в потоке. */
+    private static final class State {
+        long deadline = NONE;
+        AtomicLong skipped;
+        long cuts;
+    }
+
+    private static final ThreadLocal<State> CURRENT = ThreadLocal.withInitial(State::new);
+
+    private OcrDeadline() {}
+
+    /** Дедлайн текущего потока в единицах System.nanoTime(); {@link #NONE} — снять. Счётчик не меняется. */
+    public static void set(long deadlineNanos) {
+        CURRENT.get().deadline = deadlineNanos;
+    }
+
+    /** Дедлайн и счётчик пропущенных свипов прогона, которому принадлежит поток (null — не считать). */
+    public static void set(long deadlineNanos, AtomicLong skippedSweeps) {
+        State st = CURRENT.get();
+        st.deadline = deadlineNanos;
+        st.skipped = skippedSweeps;
+    }
+
+    public static void clear() {
+        State st = CURRENT.get();
+        st.deadline = NONE;
+        st.skipped = null;
+    }
+
+    /** Дедлайн текущего потока. */
+    public static long current() {
+        return CURRENT.get().deadline;
+    }
+
+    /** Счётчик пропусков текущего потока — для передачи воркерам вместе с {@link #current()}. */
+    public static AtomicLong skippedCounter() {
+        return CURRENT.get().skipped;
+    }
+
+    /** Дедлайн текущего потока прошёл. */
+    public static boolean expired() {
+        return passed(CURRENT.get().deadline);
+    }
+
+    /** Дедлайн deadlineNanos прошёл ({@link #NONE} — никогда). */
+    public static boolean passed(long deadlineNanos) {
+        return deadlineNanos != NONE && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Сколько раз дедлайн оборвал свип в этом потоке (монотонно). Изменилось за вызов движка — результат
+     * урезан и не должен попасть в кэш ({@link CachingOcrEngine}).
+     */
+    public static long cuts() {
+        return CURRENT.get().cuts;
+    }
+
+    static void countSkipped() {
+        State st = CURRENT.get();
+        st.cuts++;
+        if (st.skipped != null) st.skipped.incrementAndGet();
+    }
+}
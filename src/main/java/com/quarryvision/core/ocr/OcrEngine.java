@@ -1,5 +1,6 @@
 package com.quarryvision.core.ocr;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.Optional;
@@ -9,4 +10,44 @@ public interface OcrEngine {
     Optional<String> readText(File imageFile);
     /** Самый уверенный токен по словам Tesseract. */
     Optional<String> readBestToken(BufferedImage bi);
+
+    /**
+     * Уверенность последнего непустого ответа {@link #readBestToken} этого движка, 0..1: у Tesseract —
+     * confidence выбранного слова, у {@link CharTemplates} — оценка совпадения. Движок без оценки — 1.0.
+     * Читается тем же потоком сразу после вызова (движок арендован одним потоком).
+     */
+    default double lastConfidence() { return 1.0; }
+
+    /**
+     * Сессия для нескольких прямоугольников одного изображения (например, ROI-кандидаты номера в полосе кадра).
+     * По умолчанию — readBestToken на вырезке; нативный движок передаёт изображение один раз и читает
+     * прямоугольники через SetRectangle. Сессия живёт, пока движок арендован, и закрывается до возврата в пул.
+     */
+    default RegionSession open(BufferedImage image) {
+        return new RegionSession() {
+            @Override
+            public Optional<String> readBestToken(Rectangle r) {
+                return OcrEngine.this.readBestToken(image.getSubimage(r.x, r.y, r.width, r.height));
+            }
+
+            @Override
+            public double lastConfidence() {
+                return OcrEngine.this.lastConfidence();
+            }
+        };
+    }
+
+    /** true — {@link #open} дешевле отдельных readBestToken на вырезках. */
+    default boolean prefersRegions() { return false; }
+
+    interface RegionSession extends AutoCloseable {
+        /** Самый уверенный токен внутри прямоугольника (координаты изображения сессии). */
+        Optional<String> readBestToken(Rectangle r);
+
+        /** Уверенность последнего непустого ответа сессии, как {@link OcrEngine#lastConfidence()}. */
+        default double lastConfidence() { return 1.0; }
+
+        @Override
+        default void close() {}
+    }
 }
@@ -0,0 +1,192 @@
+package com.quarryvision.core.ocr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Общий на процесс пул заранее инициализированных OCR-движков.
+ * <p>
+ * Tesseract (и переключение PSM внутри {@link OcrService#readBestToken}) не потокобезопасен, поэтому движок
+ * выдаётся в монопольное пользование: {@link #checkout()} → работа → {@link Lease#close()} возвращает его в пул.
+ * Размер — -Dqv.ocr.poolSize (по умолчанию число ядер); все движки создаются сразу, чтобы detect() не платил
+ * за инициализацию Tesseract/traineddata на каждом видео.
+ * <p>
+ * {@link #close()} освобождает нативные движки (те, что AutoCloseable): свободные — сразу, арендованные —
+ * при возврате, так что движок не закрывается под работающим detect(), и останавливает потоки
+ * {@link #executor()}. Пул процесса закрывается {@link #closeShared()} на выходе из приложения.
+ */
+public final class OcrEnginePool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(OcrEnginePool.class);
+
+    private static OcrEnginePool shared;
+
+    private final BlockingQueue<OcrEngine> idle;
+    private final int size;
+    private final String settings;
+    /** Под монитором пула: возврат движка и close() не должны разойтись (иначе движок утечёт). */
+    private boolean closed;
+    /** Потоки работы на движках пула; создаются при первом {@link #executor()}. */
+    private ExecutorService workers;
+
+    /** Отдельный пул (тесты, собственные движки); в приложении — {@link #shared}. */
+    public OcrEnginePool(int size, Supplier<? extends OcrEngine> factory) {
+        this(size, factory, "custom");
+    }
+
+    private OcrEnginePool(int size, Supplier<? extends OcrEngine> factory, String settings) {
+        if (size < 1) throw new IllegalArgumentException("pool size must be >= 1: " + size);
+        this.size = size;
+        this.settings = settings;
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idle.add(factory.get());
+        }
+    }
+
+    /**
+     * Пул процесса; создаётся при первом вызове по переданному конфигу (последующие конфиги игнорируются —
+     * параметры OCR задаются один раз на запуск через -Dqv.ocr.* или application.yaml).
+     */
+    public static synchronized OcrEnginePool shared(OcrService.Config cfg) {
+        if (shared == null) {
+            int size = Math.max(1, Integer.getInteger("qv.ocr.poolSize",
+                    Runtime.getRuntime().availableProcessors()));
+            // -Dqv.ocr.engine=native — TessBaseAPI (SetImage один раз + SetRectangle), иначе Tess4J
+            final boolean nativeApi = "native".equalsIgnoreCase(System.getProperty("qv.ocr.engine", "tess4j"));
+            long t0 = System.nanoTime();
+            shared = new OcrEnginePool(size,
+                    () -> nativeApi ? new TessBaseApiEngine(cfg) : new OcrService(cfg),
+                    OcrResultCache.settingsKey(cfg, nativeApi ? "native" : "tess4j"));
+            log.info("OCR: engine pool size={} engine={} initMs={}", size, nativeApi ? "native" : "tess4j",
+                    (System.nanoTime() - t0) / 1_000_000L);
+        }
+        return shared;
+    }
+
+    /** Закрыть пул процесса (выход из приложения); следующий {@link #shared} создаст новый. */
+    public static void closeShared() {
+        OcrEnginePool p;
+        synchronized (OcrEnginePool.class) {
+            p = shared;
+            shared = null;
+        }
+        if (p != null) p.close();
+    }
+
+    /** Берёт свободный движок, при необходимости ждёт возврата; IllegalStateException — пул закрыт. */
+    public Lease checkout() throws InterruptedException {
+        long t0 = System.nanoTime();
+        while (true) {
+            ensureOpen();
+            // ожидание частями: закрытый пул движков уже не вернёт
+            OcrEngine e = idle.poll(200, TimeUnit.MILLISECONDS);
+            if (e != null) return new Lease(e, System.nanoTime() - t0);
+        }
+    }
+
+    /** Свободный движок без ожидания или null, если все в аренде (или пул закрыт). */
+    public Lease tryCheckout() {
+        OcrEngine e = idle.poll();
+        return e == null ? null : new Lease(e, 0L);
+    }
+
+    private synchronized void ensureOpen() {
+        if (closed) throw new IllegalStateException("OCR engine pool is closed");
+    }
+
+    /**
+     * Потоки (демоны qv-ocr-roi) для работы на арендованных движках, например параллельного скана ROI: не больше
+     * size — одновременно движков в работе не больше. Останавливаются в {@link #close()}: начатые задачи
+     * дорабатывают, новые отклоняются (RejectedExecutionException).
+     */
+    public synchronized ExecutorService executor() {
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(size, r -> {
+                Thread t = new Thread(r, "qv-ocr-roi");
+                t.setDaemon(true);
+                return t;
+            });
+            if (closed) workers.shutdown();
+        }
+        return workers;
+    }
+
+    @Override
+    public void close() {
+        List<OcrEngine> free = new ArrayList<>(size);
+        ExecutorService w;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            idle.drainTo(free);
+            w = workers;
+        }
+        if (w != null) w.shutdown();
+        for (OcrEngine e : free) closeEngine(e);
+        log.info("OCR: engine pool closed (engines freed={}, still leased={})", free.size(), size - free.size());
+    }
+
+    /** Возврат арендованного движка: в очередь или, если пул уже закрыт, — освободить. */
+    private void giveBack(OcrEngine e) {
+        synchronized (this) {
+            if (!closed) {
+                idle.add(e);
+                return;
+            }
+        }
+        closeEngine(e);
+    }
+
+    private static void closeEngine(OcrEngine e) {
+        if (!(e instanceof AutoCloseable c)) return;
+        try {
+            c.close();
+        } catch (Exception ex) {
+            log.warn("OCR: engine close failed: {}", ex.toString());
+        }
+    }
+
+    public int size() { return size; }
+
+    /** Настройки OCR движков пула — ключ {@link OcrResultCache} ({@link CachingOcrEngine} поверх аренды). */
+    public String settingsKey() { return settings; }
+
+    /** Свободных движков сейчас. */
+    public int available() { return idle.size(); }
+
+    /** Движок, выданный из пула; close() возвращает его (повторный close — no-op). */
+    public final class Lease implements AutoCloseable {
+        private OcrEngine engine;
+        private final long waitNanos;
+
+        private Lease(OcrEngine engine, long waitNanos) {
+            this.engine = engine;
+            this.waitNanos = waitNanos;
+        }
+
+        public OcrEngine engine() {
+            if (engine == null) throw new IllegalStateException("lease already returned");
+            return engine;
+        }
+
+        /** Сколько checkout() ждал свободный движок. */
+        public long waitNanos() { return waitNanos; }
+
+        @Override
+        public void close() {
+            if (engine == null) return;
+            OcrEngine e = engine;
+            engine = null;
+            giveBack(e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.quarryvision.core.ocr;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш результатов {@link OcrEngine#readBestToken} одного прогона detect (одного видео): ROI, уже
+ * распознанный на соседнем снимке или в перекрывающейся клетке сетки, не распознаётся повторно.
+ * <p>
+ * Прочитанный токен переиспользуется только для того же изображения: тот же ключ настроек
+ * (движок/язык/PSM/OEM/whitelist/режим), размер и 64-битный хэш всех пикселей. Перцептивный хэш
+ * (среднее по сетке {@link #HASH_W}×{@link #HASH_H}, 512 бит) для номеров не годится: номера, различающиеся
+ * одним символом, расходятся на единицы бит. Им сравниваются только ответы «ничего не прочитано»
+ * (расстояние Хэмминга до -Dqv.ocr.cacheMaxBits, по умолчанию 6) — ошибка там стоит лишнего пропуска ROI,
+ * а не чужого номера.
+ * <p>
+ * Записи разложены по корзинам (настройки + размер), у каждой свой монитор и свой LRU на
+ * -Dqv.ocr.cacheSize записей (по умолчанию 1024): параллельные воркеры ROI разных размеров друг друга не ждут,
+ * поиск по хэшу пикселей — O(1). Включается -Dqv.ocr.cache=true ({@link #forRun()}).
+ */
+public final class OcrResultCache {
+    static final int HASH_W = 32, HASH_H = 16;
+    private static final int WORDS = HASH_W * HASH_H / 64;
+
+    private final int capacity;
+    private final int maxBits;
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+    /** Сохранённый ответ и его уверенность ({@link OcrEngine#lastConfidence()}). */
+    record Cached(Optional<String> token, double confidence) {}
+
+    /** Отпечаток области изображения: хэш всех пикселей и перцептивный хэш. */
+    record Fingerprint(long exact, long[] bits) {}
+
+    /** Записи одной пары (настройки, размер): точные ответы и перцептивные хэши пустых. */
+    private final class Bucket {
+        final LinkedHashMap<Long, Cached> exact = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Cached> eldest) {
+                return size() > capacity;
+            }
+        };
+        final ArrayDeque<long[]> empties = new ArrayDeque<>();
+    }
+
+    public OcrResultCache(int capacity, int maxBits) {
+        this.capacity = Math.max(1, capacity);
+        this.maxBits = Math.max(0, maxBits);
+    }
+
+    /** Новый кэш на прогон (-Dqv.ocr.cacheSize, -Dqv.ocr.cacheMaxBits); null — кэш выключен (-Dqv.ocr.cache). */
+    public static OcrResultCache forRun() {
+        if (!Boolean.getBoolean("qv.ocr.cache")) return null;
+        return new OcrResultCache(Integer.getInteger("qv.ocr.cacheSize", 1024),
+                Integer.getInteger("qv.ocr.cacheMaxBits", 6));
+    }
+
+    /** Ключ настроек OCR: всё, что влияет на результат распознавания того же изображения. */
+    static String settingsKey(OcrService.Config cfg, String engine) {
+        return engine
+                + '|' + System.getProperty("qv.ocr.lang", cfg.languages)
+                + '|' + Integer.getInteger("qv.ocr.psm", cfg.psm)
+                + '|' + Integer.getInteger("qv.ocr.oem", cfg.oem)
+                + '|' + System.getProperty("qv.ocr.whitelist", OcrService.DEFAULT_WHITELIST)
+                + '|' + System.getProperty("qv.ocr.mode", "fast").toLowerCase();
+    }
+
+    /** Сохранённый результат для того же (а для пустого — почти того же) изображения или null (промах). */
+    Cached lookup(String settings, int w, int h, Fingerprint fp) {
+        Bucket b = buckets.get(bucketKey(settings, w, h));
+        if (b != null) {
+            synchronized (b) {
+                Cached hit = b.exact.get(fp.exact()); // get() — отметка LRU
+                if (hit == null) {
+                    for (long[] e : b.empties) {
+                        if (hamming(e, fp.bits()) <= maxBits) {
+                            hit = new Cached(Optional.empty(), 1.0);
+                            break;
+                        }
+                    }
+                }
+                if (hit != null) {
+                    hits.incrementAndGet();
+                    return hit;
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    void put(String settings, int w, int h, Fingerprint fp, Optional<String> token, double confidence) {
+        Bucket b = buckets.computeIfAbsent(bucketKey(settings, w, h), k -> new Bucket());
+        synchronized (b) {
+            b.exact.put(fp.exact(), new Cached(token, confidence));
+            if (token.isEmpty()) {
+                b.empties.addFirst(fp.bits());
+                if (b.empties.size() > capacity) b.empties.removeLast();
+            }
+        }
+    }
+
+    public long hits() { return hits.get(); }
+
+    public long misses() { return misses.get(); }
+
+    /** Точных записей во всех корзинах. */
+    public int size() {
+        int n = 0;
+        for (Bucket b : buckets.values()) {
+            synchronized (b) {
+                n += b.exact.size();
+            }
+        }
+        return n;
+    }
+
+    private static String bucketKey(String settings, int w, int h) {
+        return settings + '|' + w + 'x' + h;
+    }
+
+    /**
+     * Отпечаток области r изображения (серое/бинарное; для цветного берётся первый канал) за один проход:
+     * FNV-1a по всем сэмплам и перцептивный хэш.
+     */
+    static Fingerprint fingerprint(BufferedImage img, Rectangle r) {
+        Raster ras = img.getRaster();
+        double[] cells = new double[HASH_W * HASH_H];
+        int[] row = new int[r.width];
+        int[] counts = new int[HASH_W * HASH_H];
+        long exact = 0xcbf29ce484222325L;
+        for (int y = 0; y < r.height; y++) {
+            ras.getSamples(r.x, r.y + y, r.width, 1, 0, row);
+            int cy = (int) ((long) y * HASH_H / r.height);
+            for (int x = 0; x < r.width; x++) {
+                exact = (exact ^ row[x]) * 0x100000001b3L;
+                int c = cy * HASH_W + (int) ((long) x * HASH_W / r.width);
+                cells[c] += row[x];
+                counts[c]++;
+            }
+        }
+        double mean = 0;
+        int filled = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (counts[i] > 0) {
+                cells[i] /= counts[i];
+                mean += cells[i];
+                filled++;
+            }
+        }
+        mean = filled > 0 ? mean / filled : 0;
+        long[] bits = new long[WORDS];
+        for (int i = 0; i < cells.length; i++) {
+            if (counts[i] > 0 && cells[i] > mean) bits[i >>> 6] |= 1L << (i & 63);
+        }
+        return new Fingerprint(exact, bits);
+    }
+
+    private static int hamming(long[] a, long[] b) {
+        int d = 0;
+        for (int i = 0; i < a.length; i++) d += Long.bitCount(a[i] ^ b[i]);
+        return d;
+    }
+}
@@ -28,11 +28,17 @@ public final class OcrService implements OcrEngine {
 
     private enum Mode { FAST, AUDIT }
 
+    // латиница + кириллица-двойники + цифры
+    static final String DEFAULT_WHITELIST = "ABEKMHOPCTYXАВЕКМНОРСТУХ0123456789";
+
 
     private final Tesseract tess;
     private final int basePsm;
     private final int baseOem;
     private final Mode mode;
+    /** Confidence слова из последнего bestToken (0..100). */
+    private int wordConf;
+    private double lastConfidence = 1.0;
 
     public static final class Config {
         public final boolean enabled;
@@ -59,23 +65,12 @@ public final class OcrService implements OcrEngine {
             log.info("OCR: disabled in config");
             return;
         }
-        // Путь к tessdata: -Dqv.ocr.tessdataDir → cfg.datapath → ENV TESSDATA_PREFIX
-        String overrideDir = System.getProperty("qv.ocr.tessdataDir");
-        String dir = (overrideDir != null && !overrideDir.isBlank()) ? overrideDir : cfg.datapath;
-        if (dir == null || dir.isBlank()) dir = System.getenv("TESSDATA_PREFIX");
-        Path dp = Path.of(Objects.requireNonNull(dir, "tessdataDir is required"))
-                .toAbsolutePath().normalize();
-        if (!Files.isDirectory(dp)) {
-            throw new IllegalStateException("tessdataDir not found: " + dp);
-        }
+        Path dp = tessdataDir(cfg);
         // Языки/PSM/OEM: допускаем override через -D
         String languages = System.getProperty("qv.ocr.lang", cfg.languages);
         int psm = Integer.getInteger("qv.ocr.psm", cfg.psm);
         int oem = Integer.getInteger("qv.ocr.oem", cfg.oem);
-        String whitelist = System.getProperty(
-                "qv.ocr.whitelist",
-                // латиница + кириллица-двойники + цифры
-                "ABEKMHOPCTYXАВЕКМНОРСТУХ0123456789" );
+        String whitelist = System.getProperty("qv.ocr.whitelist", DEFAULT_WHITELIST);
 
         String modeProp = System.getProperty("qv.ocr.mode", "fast");
         Mode mode = "audit".equalsIgnoreCase(modeProp) ? Mode.AUDIT : Mode.FAST;
@@ -102,6 +97,19 @@ public final class OcrService implements OcrEngine {
                 dp, languages, psm, oem, mode);
     }
 
+    /** Путь к tessdata: -Dqv.ocr.tessdataDir → cfg.datapath → ENV TESSDATA_PREFIX. */
+    static Path tessdataDir(Config cfg) {
+        String overrideDir = System.getProperty("qv.ocr.tessdataDir");
+        String dir = (overrideDir != null && !overrideDir.isBlank()) ? overrideDir : cfg.datapath;
+        if (dir == null || dir.isBlank()) dir = System.getenv("TESSDATA_PREFIX");
+        Path dp = Path.of(Objects.requireNonNull(dir, "tessdataDir is required"))
+                .toAbsolutePath().normalize();
+        if (!Files.isDirectory(dp)) {
+            throw new IllegalStateException("tessdataDir not found: " + dp);
+        }
+        return dp;
+    }
+
     /** Простой OCR всего изображения. Возвращает trimmed-текст без внутренних переводов строк */
     public Optional<String> readText(BufferedImage image) {
         if (tess == null || image == null) return Optional.empty();
@@ -128,6 +136,11 @@ public final class OcrService implements OcrEngine {
         }
     }
 
+    @Override
+    public double lastConfidence() {
+        return lastConfidence;
+    }
+
     /** Возвращает самый уверенный токен [A-Z0-9]{3,10}. */
     @Override
     public Optional<String> readBestToken(BufferedImage bi) {
@@ -135,16 +148,17 @@ public final class OcrService implements OcrEngine {
         try {
             BufferedImage prepared = preparedForOcr(bi);
             // применяем whitelist и DPI перед распознаванием
-            final String wl = System.getProperty("qv.ocr.whitelist",
-                    "ABEKMHOPCTYXАВЕКМНОРСТУХ0123456789");
+            final String wl = System.getProperty("qv.ocr.whitelist", DEFAULT_WHITELIST);
             try { tess.setVariable("tessedit_char_whitelist", wl); } catch (Exception ignore) {}
             try { tess.setVariable("user_defined_dpi", "300"); } catch (Exception ignore) {}
             String best = bestToken(prepared);
             java.util.List<String> candidates = new java.util.ArrayList<>();
+            // confidence слова-кандидата; doOCR оценки не даёт — вес по умолчанию 1.0
+            java.util.Map<String, Double> confs = new java.util.HashMap<>();
             // первичная валидация best по whitelist
             if (best != null) {
                 String checked = cleanByWhitelist(best, wl);
-                if (checked != null) candidates.add(checked);
+                if (checked != null) { candidates.add(checked); confs.putIfAbsent(checked, wordConf / 100.0); }
                 else best = null; // не прошёл фильтр →  fallback
             }
             // Fallback: если пусто ИЛИ только цифры, пробуем другой PSM
@@ -157,11 +171,20 @@ public final class OcrService implements OcrEngine {
                             : new int[]{8, 7};       // урезанный FAST-режим
 
                     for (int psm : psms) {
+                        // дедлайн события: следующий PSM не начинаем
+                        if (OcrDeadline.expired()) {
+                            OcrDeadline.countSkipped();
+                            break;
+                        }
                         tess.setPageSegMode(psm);
                         String alt = bestToken(prepared);
                         if (alt != null && !alt.isBlank()) {
                             String checked  = cleanByWhitelist(alt, wl);
-                            if (checked != null) { candidates.add(checked); break; }
+                            if (checked != null) {
+                                candidates.add(checked);
+                                confs.putIfAbsent(checked, wordConf / 100.0);
+                                break;
+                            }
                         }
                     }
                 } finally {
@@ -170,7 +193,9 @@ public final class OcrService implements OcrEngine {
             }
             // Финальный fallback: общий OCR-текст с фильтрацией по whitelist
             // В FAST-режиме отключаем тяжёлые doOCR-варианты и работаем только через getWords/PSM.
-            if (mode == Mode.AUDIT) {
+            if (mode == Mode.AUDIT && OcrDeadline.expired()) {
+                OcrDeadline.countSkipped();
+            } else if (mode == Mode.AUDIT) {
                 String raw = safeDoOcr(prepared);
                 String cleaned = cleanByWhitelist(raw, wl);
                 if (cleaned != null) candidates.add(cleaned);
@@ -192,6 +217,7 @@ public final class OcrService implements OcrEngine {
                     .max(Comparator.<String>comparingInt(OcrService::plateShapeScore)
                             .thenComparingInt(String::length))
                     .orElse(null);
+            if (chosen != null) lastConfidence = Math.max(0.0, Math.min(1.0, confs.getOrDefault(chosen, 1.0)));
             return Optional.ofNullable(chosen);
         } catch (Exception e) {
             log.debug("OCR: best-token failed: {}", e.getMessage());
@@ -209,7 +235,7 @@ public final class OcrService implements OcrEngine {
         }
     }
 
-    private String cleanByWhitelist(String raw, String wl) {
+    static String cleanByWhitelist(String raw, String wl) {
         if (raw == null) return null;
         String cleaned = raw.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9А-ЯЁ]", "");
         if (cleaned.length() < 3) return null;
@@ -224,25 +250,33 @@ public final class OcrService implements OcrEngine {
         return cleaned;
     }
 
+    /** Инверсия результата preparedForOcr (TYPE_BYTE_BINARY: сэмпл 1 — белый) целыми строками растра. */
     private static BufferedImage invertBinary(BufferedImage src) {
         int W = src.getWidth(), H = src.getHeight();
         BufferedImage dst = new BufferedImage(W, H, BufferedImage.TYPE_BYTE_BINARY);
-        for (int y=0; y<H; y++)
-            for (int x=0; x<W; x++) {
-                int rgb = src.getRGB(x,y);
-                int v = (rgb & 0x00FFFFFF) ==0x00FFFFFF ? 0x000000 : 0xFFFFFF;
-                dst.setRGB(x, y, (0xFF<<24) | v);
-            }
+        int[] row = new int[W];
+        for (int y = 0; y < H; y++) {
+            src.getRaster().getSamples(0, y, W, 1, 0, row);
+            for (int x = 0; x < W; x++) row[x] = row[x] != 0 ? 0 : 1;
+            dst.getRaster().setSamples(0, y, W, 1, 0, row);
+        }
         return dst;
     }
 
-    /** Серый апскейл без порога: как в preparedForOcr, но без Отсу. */
-    private BufferedImage upscaledGray(BufferedImage src) {
-        int w = src.getWidth(), h = src.getHeight();
-        BufferedImage gray = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+    /** В серый; TYPE_BYTE_GRAY (кадр из Mat) используется как есть — drawImage gray→gray дал бы те же пиксели. */
+    private static BufferedImage toGray(BufferedImage src) {
+        if (src.getType() == BufferedImage.TYPE_BYTE_GRAY) return src;
+        BufferedImage gray = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
         Graphics2D g0 = gray.createGraphics();
         g0.drawImage(src, 0, 0, null);
         g0.dispose();
+        return gray;
+    }
+
+    /** Серый апскейл без порога: как в preparedForOcr, но без Отсу. */
+    private BufferedImage upscaledGray(BufferedImage src) {
+        int w = src.getWidth(), h = src.getHeight();
+        BufferedImage gray = toGray(src);
         int minW = 420;
         if (w >= minW) return gray;
         int newW = minW;
@@ -271,6 +305,7 @@ public final class OcrService implements OcrEngine {
                 best = norm;
             }
         }
+        wordConf = conf;
         return best;
     }
 
@@ -278,10 +313,7 @@ public final class OcrService implements OcrEngine {
     private static BufferedImage preparedForOcr(BufferedImage src) {
         int w = src.getWidth(), h = src.getHeight();
         // to grayscale
-        BufferedImage gray = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
-        Graphics2D g0 = gray.createGraphics();
-        g0.drawImage(src, 0, 0, null);
-        g0.dispose();
+        BufferedImage gray = toGray(src);
         // up-scale if too small
         int minW = 420;
         BufferedImage scaled = gray;
@@ -297,13 +329,11 @@ public final class OcrService implements OcrEngine {
             g.dispose();
         }
 
-        // Otsu threshold
+        // Otsu threshold: все сэмплы одним чтением растра
         int W = scaled.getWidth(), H = scaled.getHeight();
+        int[] px = scaled.getRaster().getSamples(0, 0, W, H, 0, (int[]) null);
         int[] hist = new int[256];
-        for (int y=0; y<H; y++)
-            for (int x=0; x<W; x++) {
-                hist[scaled.getRaster().getSample(x, y, 0)]++;
-            }
+        for (int v : px) hist[v]++;
         int total = W*H, sum=0;
         for (int t=0;t<256;t++) sum += t*hist[t];
         int sumB=0, wB=0;
@@ -318,18 +348,15 @@ public final class OcrService implements OcrEngine {
             double varBetween = wB * wF * (mB - mF) * (mB - mF);
             if (varBetween > maxVar) { maxVar = varBetween; thr = t; }
         }
+        // TYPE_BYTE_BINARY: сэмпл 1 — белый, 0 — чёрный (то же, что setRGB белым/чёрным)
+        for (int i = 0; i < px.length; i++) px[i] = px[i] >= thr ? 1 : 0;
         BufferedImage bin = new BufferedImage(W, H, BufferedImage.TYPE_BYTE_BINARY);
-        for (int y=0; y<H; y++)
-            for (int x=0; x<W; x++){
-                int v = scaled.getRaster().getSample(x,y,0);
-                int b = (v >= thr ? 0xFFFFFF : 0X000000);
-                bin.setRGB(x, y, (0xFF<<24) | b);
-            }
+        bin.getRaster().setSamples(0, 0, W, H, 0, px);
         return bin;
     }
 
     /** Приоритет формы: LLDDDDLL или LDDDLL[region]. Больше = лучше. */
-    private static int plateShapeScore(String s) {
+    static int plateShapeScore(String s) {
         int score = 0;
         // generic: LL DDDD LL
         if (s.matches("^[A-Z]{2}\\d{4}[A-Z]{2}$")) score += 200;
@@ -0,0 +1,99 @@
+package com.quarryvision.core.ocr;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Optional;
+
+/**
+ * Быстрый {@link OcrEngine}: номер читается {@link CharTemplates} (единицы миллисекунд на ROI), Tesseract
+ * (fallback) вызывается только при уверенности ниже minConfidence (-Dqv.ocr.fastMinConf, по умолчанию 0.3).
+ * Без fallback неуверенное чтение — «ничего не найдено». readText всегда уходит в fallback.
+ * <p>
+ * Обёртка лёгкая: создаётся на аренду движка из пула поверх арендованного Tesseract.
+ */
+public final class TemplatePlateReader implements OcrEngine {
+    private final CharTemplates model;
+    private final OcrEngine fallback;
+    private final double minConfidence;
+    private double lastConfidence = 1.0;
+
+    public TemplatePlateReader(CharTemplates model, OcrEngine fallback, double minConfidence) {
+        this.model = model;
+        this.fallback = fallback;
+        this.minConfidence = minConfidence;
+    }
+
+    /** Порог уверенности из -Dqv.ocr.fastMinConf. */
+    public static double minConfidenceFromProperties() {
+        return Double.parseDouble(System.getProperty("qv.ocr.fastMinConf", "0.3"));
+    }
+
+    @Override
+    public Optional<String> readText(BufferedImage bi) {
+        return fallback != null ? fallback.readText(bi) : Optional.empty();
+    }
+
+    @Override
+    public Optional<String> readText(File imageFile) {
+        return fallback != null ? fallback.readText(imageFile) : Optional.empty();
+    }
+
+    @Override
+    public Optional<String> readBestToken(BufferedImage bi) {
+        Optional<String> fast = readFast(bi);
+        if (fast != null) return fast;
+        if (fallback == null) return Optional.empty();
+        Optional<String> got = fallback.readBestToken(bi);
+        if (got.isPresent()) lastConfidence = fallback.lastConfidence();
+        return got;
+    }
+
+    @Override
+    public double lastConfidence() {
+        return lastConfidence;
+    }
+
+    @Override
+    public RegionSession open(BufferedImage image) {
+        final RegionSession inner = fallback != null ? fallback.open(image) : null;
+        return new RegionSession() {
+            @Override
+            public Optional<String> readBestToken(Rectangle r) {
+                Optional<String> fast = readFast(image.getSubimage(r.x, r.y, r.width, r.height));
+                if (fast != null) return fast;
+                if (inner == null) return Optional.empty();
+                Optional<String> got = inner.readBestToken(r);
+                if (got.isPresent()) lastConfidence = inner.lastConfidence();
+                return got;
+            }
+
+            @Override
+            public double lastConfidence() {
+                return lastConfidence;
+            }
+
+            @Override
+            public void close() {
+                if (inner != null) inner.close();
+            }
+        };
+    }
+
+    @Override
+    public boolean prefersRegions() {
+        return fallback != null && fallback.prefersRegions();
+    }
+
+    /** Уверенное быстрое чтение (оценка совпадения — в lastConfidence) или null — решать fallback. */
+    private Optional<String> readFast(BufferedImage bi) {
+        CharTemplates.Reading r = model.read(bi);
+        if (!r.text().isEmpty() && r.confidence() >= minConfidence) {
+            model.countAccepted();
+            lastConfidence = r.confidence();
+            return Optional.of(r.text());
+        }
+        model.countRejected();
+        return null;
+    }
+}
@@ -0,0 +1,283 @@
+package com.quarryvision.core.ocr;
+
+import com.sun.jna.Pointer;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.TessAPI1;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * OCR через низкоуровневый TessBaseAPI (тот же нативный Tesseract, что и у Tess4J, но без обёртки Tesseract).
+ * <p>
+ * Tess4J на каждый getWords/doOCR заново передаёт картинку и инициализирует распознавание. Здесь изображение
+ * (например, бинаризованная полоса кадра) ставится один раз через {@link #open}, а ROI-кандидаты читаются
+ * через SetRectangle + Recognize + итератор слов с confidence. Логика выбора токена — как в FAST-режиме
+ * {@link OcrService#readBestToken}: базовый PSM, при пустом/чисто цифровом ответе — PSM 8 и 7.
+ * Не потокобезопасен: один экземпляр — один поток (выдаётся через {@link OcrEnginePool}).
+ * Включается -Dqv.ocr.engine=native.
+ */
+public final class TessBaseApiEngine implements OcrEngine, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(TessBaseApiEngine.class);
+
+    private final ITessAPI.TessBaseAPI handle;
+    private final int basePsm;
+    private final String whitelist;
+    private Session current; // чьё изображение сейчас установлено в handle
+    /** Confidence слова из последнего {@link #bestWord()}. */
+    private float wordConf;
+    private double lastConfidence = 1.0;
+
+    /** Выбор среди кандидатов свипа PSM — как в {@link OcrService#readBestToken}. */
+    private static final Comparator<String> PLATE_ORDER =
+            Comparator.<String>comparingInt(OcrService::plateShapeScore).thenComparingInt(String::length);
+
+    public TessBaseApiEngine(OcrService.Config cfg) {
+        if (!cfg.enabled) throw new IllegalArgumentException("OCR is disabled in config");
+        Path dp = OcrService.tessdataDir(cfg);
+        String languages = System.getProperty("qv.ocr.lang", cfg.languages);
+        int psm = Integer.getInteger("qv.ocr.psm", cfg.psm);
+        int oem = Integer.getInteger("qv.ocr.oem", cfg.oem);
+        this.whitelist = System.getProperty("qv.ocr.whitelist", OcrService.DEFAULT_WHITELIST);
+
+        ITessAPI.TessBaseAPI h = TessAPI1.TessBaseAPICreate();
+        if (TessAPI1.TessBaseAPIInit2(h, dp.toString(), languages, oem) != 0) {
+            TessAPI1.TessBaseAPIDelete(h);
+            throw new IllegalStateException("TessBaseAPI init failed: datapath=" + dp + " languages=" + languages);
+        }
+        // те же переменные, что и у OcrService
+        if (whitelist != null && !whitelist.isBlank()) {
+            TessAPI1.TessBaseAPISetVariable(h, "tessedit_char_whitelist", whitelist);
+        }
+        TessAPI1.TessBaseAPISetVariable(h, "load_system_dawg", "F");
+        TessAPI1.TessBaseAPISetVariable(h, "load_freq_dawg", "F");
+        TessAPI1.TessBaseAPISetVariable(h, "user_defined_dpi", "300");
+        TessAPI1.TessBaseAPISetVariable(h, "preserve_interword_spaces", "1");
+        TessAPI1.TessBaseAPISetPageSegMode(h, psm);
+        this.handle = h;
+        this.basePsm = psm;
+        log.info("OCR: native TessBaseAPI init datapath={} languages={} psm={} oem={}", dp, languages, psm, oem);
+    }
+
+    @Override
+    public Optional<String> readText(BufferedImage bi) {
+        if (bi == null) return Optional.empty();
+        // сессия только ставит изображение в handle; текст читается с handle напрямую
+        Session s = new Session(bi);
+        try {
+            Pointer p = TessAPI1.TessBaseAPIGetUTF8Text(handle);
+            if (p == null) return Optional.empty();
+            try {
+                String norm = p.getString(0, StandardCharsets.UTF_8.name())
+                        .replace('\n', ' ').replace('\r', ' ').trim();
+                return norm.isEmpty() ? Optional.empty() : Optional.of(norm);
+            } finally {
+                TessAPI1.TessDeleteText(p);
+            }
+        } finally {
+            s.close();
+        }
+    }
+
+    @Override
+    public Optional<String> readText(File imageFile) {
+        if (imageFile == null) return Optional.empty();
+        try {
+            return readText(ImageIO.read(imageFile));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<String> readBestToken(BufferedImage bi) {
+        if (bi == null) return Optional.empty();
+        try (Session s = new Session(bi)) {
+            return s.readBestToken(new Rectangle(0, 0, bi.getWidth(), bi.getHeight()));
+        }
+    }
+
+    @Override
+    public double lastConfidence() {
+        return lastConfidence;
+    }
+
+    @Override
+    public RegionSession open(BufferedImage image) {
+        return new Session(image);
+    }
+
+    @Override
+    public boolean prefersRegions() { return true; }
+
+    @Override
+    public void close() {
+        TessAPI1.TessBaseAPIEnd(handle);
+        TessAPI1.TessBaseAPIDelete(handle);
+    }
+
+    /**
+     * Изображение сессии установлено в handle; буфер держим, пока сессия открыта. Если между чтениями движок
+     * распознавал другое изображение (readBestToken(BufferedImage) для fallback-бинаризаций), оно ставится заново.
+     */
+    private final class Session implements RegionSession {
+        private final ByteBuffer pixels;
+        private final int w, h;
+
+        Session(BufferedImage image) {
+            this.w = image.getWidth();
+            this.h = image.getHeight();
+            this.pixels = gray8(image);
+            install();
+        }
+
+        private void install() {
+            TessAPI1.TessBaseAPISetImage(handle, pixels, w, h, 1, w);
+            TessAPI1.TessBaseAPISetSourceResolution(handle, 300);
+            current = this;
+        }
+
+        @Override
+        public Optional<String> readBestToken(Rectangle r) {
+            try {
+                if (current != this) install();
+                TessAPI1.TessBaseAPISetRectangle(handle, r.x, r.y, r.width, r.height);
+                List<String> candidates = new ArrayList<>();
+                List<Float> confs = new ArrayList<>();
+                String best = OcrService.cleanByWhitelist(bestWord(), whitelist);
+                if (best != null) { candidates.add(best); confs.add(wordConf); }
+                // Fallback: если пусто ИЛИ только цифры, пробуем PSM 8 → 7 (как FAST в OcrService)
+                if (best == null || best.matches("\\d+")) {
+                    try {
+                        for (int psm : new int[]{8, 7}) {
+                            if (OcrDeadline.expired()) {
+                                OcrDeadline.countSkipped();
+                                break;
+                            }
+                            TessAPI1.TessBaseAPISetPageSegMode(handle, psm);
+                            String alt = OcrService.cleanByWhitelist(bestWord(), whitelist);
+                            if (alt != null) { candidates.add(alt); confs.add(wordConf); break; }
+                        }
+                    } finally {
+                        TessAPI1.TessBaseAPISetPageSegMode(handle, basePsm);
+                    }
+                }
+                int chosen = -1;
+                for (int k = 0; k < candidates.size(); k++) {
+                    if (candidates.get(k).length() < 3) continue;
+                    if (chosen < 0 || PLATE_ORDER.compare(candidates.get(k), candidates.get(chosen)) > 0) chosen = k;
+                }
+                if (chosen < 0) return Optional.empty();
+                lastConfidence = Math.max(0.0, Math.min(1.0, confs.get(chosen) / 100.0));
+                return Optional.of(candidates.get(chosen));
+            } catch (Exception e) {
+                log.debug("OCR: native best-token failed: {}", e.getMessage());
+                return Optional.empty();
+            }
+        }
+
+        @Override
+        public double lastConfidence() {
+            return lastConfidence;
+        }
+
+        @Override
+        public void close() {
+            if (current != this) return;
+            TessAPI1.TessBaseAPIClear(handle);
+            current = null;
+        }
+    }
+
+    /**
+     * Recognize текущего прямоугольника и самый уверенный токен [A-Z0-9А-ЯЁ]{3,10} по итератору слов;
+     * его confidence (0..100) — в {@link #wordConf}.
+     */
+    private String bestWord() {
+        if (TessAPI1.TessBaseAPIRecognize(handle, null) != 0) return null;
+        ITessAPI.TessResultIterator it = TessAPI1.TessBaseAPIGetIterator(handle);
+        if (it == null) return null;
+        final int level = ITessAPI.TessPageIteratorLevel.RIL_WORD;
+        String best = null;
+        float conf = -1;
+        try {
+            do {
+                Pointer p = TessAPI1.TessResultIteratorGetUTF8Text(it, level);
+                if (p == null) continue;
+                String s;
+                try {
+                    s = p.getString(0, StandardCharsets.UTF_8.name());
+                } finally {
+                    TessAPI1.TessDeleteText(p);
+                }
+                String norm = s.toUpperCase().replaceAll("[^A-Z0-9А-ЯЁ]", "");
+                if (norm.length() < 3 || norm.length() > 10) continue;
+                float c = TessAPI1.TessResultIteratorConfidence(it, level);
+                if (c > conf) {
+                    conf = c;
+                    best = norm;
+                }
+            } while (TessAPI1.TessResultIteratorNext(it, level) == ITessAPI.TRUE);
+        } finally {
+            TessAPI1.TessResultIteratorDelete(it);
+        }
+        wordConf = conf;
+        return best;
+    }
+
+    /**
+     * 8-битный серый буфер для SetImage (bytes_per_pixel=1, bytes_per_line=width). TYPE_BYTE_GRAY (кадр из
+     * Mat, вырезка полосы) копируется из DataBufferByte строками, без промежуточного int[].
+     */
+    static ByteBuffer gray8(BufferedImage image) {
+        final int w = image.getWidth(), h = image.getHeight();
+        ByteBuffer buf = ByteBuffer.allocateDirect(w * h);
+        WritableRaster ras = image.getRaster();
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY
+                && ras.getDataBuffer() instanceof DataBufferByte db
+                && ras.getSampleModel() instanceof ComponentSampleModel sm && sm.getPixelStride() == 1) {
+            byte[] data = db.getData();
+            int stride = sm.getScanlineStride();
+            // начало окна: у вырезки getSubimage растр сдвинут относительно общего буфера
+            int off = db.getOffset() + sm.getOffset(-ras.getSampleModelTranslateX(), -ras.getSampleModelTranslateY());
+            if (stride == w) {
+                buf.put(data, off, w * h);
+            } else {
+                for (int y = 0; y < h; y++) buf.put(data, off + y * stride, w);
+            }
+            buf.flip();
+            return buf;
+        }
+        int[] px;
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            px = ras.getSamples(0, 0, w, h, 0, (int[]) null);
+        } else if (image.getType() == BufferedImage.TYPE_BYTE_BINARY) {
+            px = ras.getSamples(0, 0, w, h, 0, (int[]) null);
+            for (int i = 0; i < px.length; i++) px[i] = px[i] != 0 ? 255 : 0;
+        } else {
+            px = new int[w * h];
+            int[] rgb = image.getRGB(0, 0, w, h, null, 0, w);
+            for (int i = 0; i < rgb.length; i++) {
+                int v = rgb[i];
+                px[i] = (((v >> 16) & 0xFF) * 299 + ((v >> 8) & 0xFF) * 587 + (v & 0xFF) * 114) / 1000;
+            }
+        }
+        for (int v : px) buf.put((byte) v);
+        buf.flip();
+        return buf;
+    }
+}
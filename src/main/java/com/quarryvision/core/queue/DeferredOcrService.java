@@ -0,0 +1,180 @@
+package com.quarryvision.core.queue;
+
+import com.quarryvision.core.db.DbOcrJob;
+import com.quarryvision.core.db.Pg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Фоновые воркеры отложенного OCR (-Dqv.ocr.deferred): разбирают очередь задач (таблица ocr_jobs) и пишут
+ * номер в events.plate — detect сохраняет события сразу, не дожидаясь Tesseract.
+ * <p>
+ * Потоки-демоны с пониженным приоритетом (qv.ocr.deferredPriority, по умолчанию Thread.MIN_PRIORITY);
+ * qv.ocr.deferredHours=20-6 — брать задачи только в эти часы (например, вне смены), пусто — всегда.
+ */
+public final class DeferredOcrService implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(DeferredOcrService.class);
+
+    /** Хранилище задач; в приложении — ocr_jobs в Postgres ({@link #pgStore(int)}). */
+    public interface Store {
+        /** Следующая задача (уже помечена как взятая) или null — очередь пуста. */
+        DbOcrJob claim();
+
+        void complete(DbOcrJob job, String plate);
+
+        void fail(DbOcrJob job, String error);
+
+        /** Вернуть взятую задачу в очередь без траты попытки (воркер остановлен, задача не выполнялась до конца). */
+        void requeue(DbOcrJob job);
+    }
+
+    /** Читает номер по кадрам задачи; null — номера нет. Должна бросать исключение при ошибке. */
+    @FunctionalInterface
+    public interface Reader {
+        String read(DbOcrJob job) throws Exception;
+    }
+
+    private final Store store;
+    private final Reader reader;
+    private final int workers;
+    private final long idleMs;
+    private final IntSupplier hour;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicLong done = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public DeferredOcrService(Store store, Reader reader, int workers, long idleMs) {
+        this(store, reader, workers, idleMs, () -> LocalTime.now().getHour());
+    }
+
+    DeferredOcrService(Store store, Reader reader, int workers, long idleMs, IntSupplier hour) {
+        this.store = Objects.requireNonNull(store, "store");
+        this.reader = Objects.requireNonNull(reader, "reader");
+        this.workers = Math.max(1, workers);
+        this.idleMs = Math.max(1, idleMs);
+        this.hour = hour;
+    }
+
+    /** Задачи в Postgres; задача с ошибкой повторяется до maxAttempts раз. */
+    public static Store pgStore(int maxAttempts) {
+        return new Store() {
+            @Override public DbOcrJob claim() { return Pg.claimOcrJob(); }
+            @Override public void complete(DbOcrJob job, String plate) { Pg.completeOcrJob(job, plate); }
+            @Override public void fail(DbOcrJob job, String error) { Pg.failOcrJob(job, error, maxAttempts); }
+            @Override public void requeue(DbOcrJob job) { Pg.requeueOcrJob(job); }
+        };
+    }
+
+    /** Запустить воркеры (qv-ocr-deferred-N). Повторный вызов, если уже запущены, игнорируется. */
+    public synchronized void start() {
+        if (running.get()) return;
+        running.set(true);
+        int priority = Integer.getInteger("qv.ocr.deferredPriority", Thread.MIN_PRIORITY);
+        for (int i = 0; i < workers; i++) {
+            Thread t = new Thread(this::workerLoop, "qv-ocr-deferred-" + i);
+            t.setDaemon(true);
+            t.setPriority(Math.max(Thread.MIN_PRIORITY, Math.min(Thread.MAX_PRIORITY, priority)));
+            threads.add(t);
+            t.start();
+        }
+        log.info("Deferred OCR: {} worker(s) started", workers);
+    }
+
+    /**
+     * Остановить воркеры и дождаться их выхода: прерванная задача возвращается в очередь, после возврата
+     * ни один воркер не держит движок OCR (пул можно закрывать). Флаг прерывания вызывающего на время
+     * ожидания снимается и затем восстанавливается.
+     */
+    public synchronized void stop() {
+        running.set(false);
+        for (Thread t : threads) t.interrupt();
+        boolean interrupted = Thread.interrupted();
+        for (Thread t : threads) {
+            while (t.isAlive()) {
+                try {
+                    t.join(TimeUnit.MINUTES.toMillis(1));
+                    if (t.isAlive()) log.info("Deferred OCR: waiting for {} to finish", t.getName());
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+        }
+        threads.clear();
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /** Задачи, по которым OCR завершён (номер найден или нет). */
+    public long done() {
+        return done.get();
+    }
+
+    /** Задачи, завершившиеся ошибкой (включая повторяемые). */
+    public long failed() {
+        return failed.get();
+    }
+
+    private void workerLoop() {
+        while (running.get()) {
+            try {
+                DbOcrJob job = activeHour(System.getProperty("qv.ocr.deferredHours", ""), hour.getAsInt())
+                        ? store.claim() : null;
+                if (job == null) {
+                    Thread.sleep(idleMs);
+                    continue;
+                }
+                String plate;
+                try {
+                    plate = reader.read(job);
+                } catch (InterruptedException ie) {
+                    // остановка — не ошибка задачи: попытку не тратим
+                    store.requeue(job);
+                    throw ie;
+                } catch (Exception ex) {
+                    failed.incrementAndGet();
+                    log.warn("Deferred OCR: job {} (event {}) failed: {}", job.id(), job.eventId(), ex.toString());
+                    store.fail(job, String.valueOf(ex.getMessage()));
+                    continue;
+                }
+                store.complete(job, plate);
+                done.incrementAndGet();
+                log.debug("Deferred OCR: event {} plate={}", job.eventId(), plate);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable th) {
+                // БД недоступна и т.п.: не падаем, пробуем позже
+                log.warn("Deferred OCR: worker error: {}", th.toString());
+                try {
+                    Thread.sleep(idleMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Час hour попадает в окно "from-to" (через полночь, если from > to); пустое окно — всегда. */
+    static boolean activeHour(String window, int hour) {
+        if (window == null || window.isBlank()) return true;
+        String[] p = window.trim().split("-");
+        if (p.length != 2) throw new IllegalStateException("qv.ocr.deferredHours must be 'from-to', got: " + window);
+        int from = Integer.parseInt(p[0].trim()), to = Integer.parseInt(p[1].trim());
+        return from <= to ? (hour >= from && hour < to) : (hour >= from || hour < to);
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+}
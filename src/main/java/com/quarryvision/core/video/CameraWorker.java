@@ -1,25 +1,39 @@
 package com.quarryvision.core.video;
 
 import com.quarryvision.core.db.Pg;
+import com.quarryvision.core.detection.BucketDetector;
+import com.quarryvision.core.detection.DetectionEvent;
+import com.quarryvision.core.detection.FrameSource;
+import com.quarryvision.core.detection.StreamingDetector;
+import org.bytedeco.opencv.opencv_core.Mat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
+import java.util.function.Consumer;
 
 
-// заглушка видеоконвейера
+// живая камера: RTSP → StreamingDetector, события — в listener по закрытию ACTIVE-интервала
 public class CameraWorker implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(CameraWorker.class);
     private final int id;
     private final String name;
+    private final String url;
+    private final BucketDetector detector;
+    private final Consumer<DetectionEvent> listener;
     private volatile boolean run = true;
+    private volatile Thread thread;
     private int retries = 0;
     private final int maxRetries = 3;
     private long lastHb = 0;
 
-    public CameraWorker(int id, String name) {
+    public CameraWorker(int id, String name, String url, BucketDetector detector,
+                        Consumer<DetectionEvent> listener) {
         this.id = id;
         this.name = name;
+        this.url = url;
+        this.detector = detector;
+        this.listener = listener;
     }
 
     private static String trimErr(String s) {
@@ -29,24 +43,15 @@ public class CameraWorker implements Runnable {
 
     @Override
     public void run() {
+        thread = Thread.currentThread();
         lastHb = System.currentTimeMillis();
         log.info("CameraWorker #{} '{}' started", id, name);
-        int i = 0;
         while (run) {
             try {
-                // рабочий тик
-                Thread.sleep(200);
-                i++;
-                long now = System.currentTimeMillis();
-                if (now - lastHb >= 2000) { // не чаще, чем раз в 2с
-                    log.debug("CameraWorker #{} '{}' ticks={}", id, name, i);
-                    try {
-                        Pg.setCameraHealth(id, Instant.ofEpochMilli(now), null);
-                    } catch (Throwable ignore) {}
-                    lastHb = now;
-                }
-                // эмуляция нормальной работы — сбрасываем счётчик ошибок
-                retries = 0;
+                stream();
+                if (!run) break;
+                // обрыв потока — переподключение через тот же backoff, что и ошибка
+                throw new IllegalStateException("stream ended");
             } catch (InterruptedException ie) {
                 Thread.currentThread().interrupt();
                 log.info("CameraWorker #{} '{}' interrupted", id, name);
@@ -74,9 +79,53 @@ public class CameraWorker implements Runnable {
         log.info("CameraWorker #{} '{}' exited", id, name);
     }
 
+    /** Одна сессия потока: кадры до обрыва/остановки; хвост ACTIVE при закрытии тоже становится событием. */
+    private void stream() throws InterruptedException {
+        FrameSource src = FrameSource.live(url);
+        if (src == null) throw new IllegalStateException("VideoCapture cannot open stream");
+        long frames = 0;
+        try (src; Mat frame = new Mat();
+             StreamingDetector sd = detector.stream(name, src.fps(), this::onEvent)) {
+            log.info("CameraWorker #{} '{}' streaming (fps={})", id, name, src.fps());
+            while (run) {
+                if (Thread.interrupted()) throw new InterruptedException();
+                if (sd.wantsFrame()) {
+                    if (!src.read(frame)) return;
+                    sd.push(frame, src.captureMs());
+                } else {
+                    if (!src.skip()) return;
+                    sd.skip(src.captureMs());
+                }
+                frames++;
+                // кадры идут — сбрасываем счётчик ошибок
+                retries = 0;
+                long now = System.currentTimeMillis();
+                if (now - lastHb >= 2000) { // не чаще, чем раз в 2с
+                    log.debug("CameraWorker #{} '{}' frames={} events={}", id, name, frames, sd.events());
+                    try {
+                        Pg.setCameraHealth(id, Instant.ofEpochMilli(now), null);
+                    } catch (Throwable ignore) {}
+                    lastHb = now;
+                }
+            }
+        }
+    }
+
+    private void onEvent(DetectionEvent ev) {
+        log.info("CameraWorker #{} '{}' event zone={} capturedAt={} latencyMs={}", id, name,
+                ev.zone(), ev.capturedAt(), System.currentTimeMillis() - ev.capturedAt().toEpochMilli());
+        try {
+            listener.accept(ev);
+        } catch (Throwable t) {
+            log.warn("CameraWorker #{} '{}' listener failed: {}", id, name, t.toString());
+        }
+    }
+
     public void shutdown() {
         run = false;
         log.info("CameraWorker #{} '{}' shutdown requested", id, name);
-        Thread.currentThread().interrupt();
+        // прерываем поток воркера (backoff-sleep), а не вызывающий
+        Thread t = thread;
+        if (t != null) t.interrupt();
     }
 }
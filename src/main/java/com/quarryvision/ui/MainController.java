@@ -28,7 +28,6 @@ import javafx.scene.control.TextField;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
 import javafx.util.Duration;
-import org.bytedeco.opencv.opencv_core.Size;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
@@ -46,6 +45,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -94,29 +94,20 @@ public class MainController {
             detectBtn.setDisable(true);
             exec.submit(() -> {
                 try {
-                    var dc = cfg.detection();
-                    var det = new BucketDetector(
-                            dc.stepFrames(),
-                            dc.diffThreshold(),
-                            dc.eventRatio(),
-                            dc.cooldownFrames(),
-                            dc.minChangedPixels(),
-                            new Size(dc.morphW(), dc.morphH()),
-                            resolveMergeMs(cfg),
-                            dc.emaAlpha(),
-                            dc.thrLowFactor(),
-                            dc.minActiveMs(),
-                            dc.nmsWindowMs(),
-                            dc.trace());
-                    var res = det.detect(p);
+                    // параметры и профили камер (ROI) — из application.yaml, -Dqv.mergeMs приоритетнее
+                    var det = new BucketDetector(cfg);
+                    // все зоны профиля камеры за одно декодирование; события сохраняются с именем зоны
+                    var zones = det.detectZones(p);
+                    var res = zones.get(0);
                     int videoId = Pg.upsertVideo(p, res.fps(), res.frames());
-                    int detId = Pg.insertDetection(videoId, det.effectiveMergeMs(), res.timestampsMs(), res.platesOrEmpty());
+                    int detId = Pg.insertDetectionZones(videoId, det.effectiveMergeMs(), zones);
+                    int eventsTotal = zones.stream().mapToInt(DetectionResult::events).sum();
 
                     // аккуратно считаем trips, чтобы ошибка сегментации не ломала Detect
                     List<TripSegment> trips;
 
                     try {
-                        trips = TripSegmenter.segmentFromDetectionResult(detId, res);
+                        trips = segmentZones(detId, zones);
                     } catch (Exception tripEx) {
                         trips = List.of();
                         String msg = "Trip segmentation error (detect): " + tripEx;
@@ -128,7 +119,7 @@ public class MainController {
                         log.appendText(String.format("Detect: %s ...%n", src));
                         // используем res.events(), а не прямой доступ к timestampsMs
                         log.appendText(String.format("Saved detection id=%d videoId=%d events=%d%n",
-                                detId, videoId, res.events()));
+                                detId, videoId, eventsTotal));
                         log.appendText(String.format("Trips: %d%n", tripsFinal.size()));
                         for (int i = 0; i < tripsFinal.size(); i++) {
                             TripSegment t = tripsFinal.get(i);
@@ -278,32 +269,21 @@ public class MainController {
             log.appendText("Detect: " + src + " ...\n");
             exec.submit(() -> {
                 try {
-                    var dc = cfg.detection();
-                    var det = new BucketDetector(
-                            dc.stepFrames(),
-                            dc.diffThreshold(),
-                            dc.eventRatio(),
-                            dc.cooldownFrames(),
-                            dc.minChangedPixels(),
-                            new Size(dc.morphW(), dc.morphH()),
-                            resolveMergeMs(cfg),
-                            dc.emaAlpha(),
-                            dc.thrLowFactor(),
-                            dc.minActiveMs(),
-                            dc.nmsWindowMs(),
-                            dc.trace()
-                    );
-                    var res = det.detect(p);
+                    // параметры и профили камер (ROI) — из application.yaml, -Dqv.mergeMs приоритетнее
+                    var det = new BucketDetector(cfg);
+                    var zones = det.detectZones(p);
                     Platform.runLater(() -> {
-                        var list = res.timestampsMs();
-                        log.appendText("Events=" + list.size() +
-                                " fps=" + res.fps() + " frames=" + res.frames() + "\n");
-                        int show = Math.min(10, list.size());
-                        for (int i = 0; i < show; i++) {
-                            log.appendText("  @" + list.get(i).toEpochMilli() + " ms\n");
-                        }
-                        if (list.size() > show) {
-                            log.appendText("  ... +" + (list.size() - show) + " more\n");
+                        for (DetectionResult res : zones) {
+                            var list = res.timestampsMs();
+                            log.appendText((res.zone() == null ? "" : "[" + res.zone() + "] ") + "Events=" + list.size() +
+                                    " fps=" + res.fps() + " frames=" + res.frames() + "\n");
+                            int show = Math.min(10, list.size());
+                            for (int i = 0; i < show; i++) {
+                                log.appendText("  @" + list.get(i).toEpochMilli() + " ms\n");
+                            }
+                            if (list.size() > show) {
+                                log.appendText("  ... +" + (list.size() - show) + " more\n");
+                            }
                         }
                     });
                 } catch (Exception ex) {
@@ -412,7 +392,8 @@ public class MainController {
 
                 // 2) Запускаем детекцию
                 onProgress.accept(10);
-                DetectionResult dr = det.detect(video);
+                List<DetectionResult> zones = det.detectZones(video);
+                DetectionResult dr = zones.get(0);
                 onProgress.accept(70);
 
                 // 3) Создаём/обновляем запись видео с реальными fps и frames
@@ -423,13 +404,13 @@ public class MainController {
                 int mergeMs = det.effectiveMergeMs();
 
                 // 5) Сохраняем детекцию и события
-                int detId = Pg.insertDetection(videoId, mergeMs, dr.timestampsMs(), dr.platesOrEmpty());
+                int detId = Pg.insertDetectionZones(videoId, mergeMs, zones);
                 onProgress.accept(100);
 
                 // считаем рейсы по DetectionResult с защитой
                 List<TripSegment> trips;
                 try {
-                    trips = TripSegmenter.segmentFromDetectionResult(detId, dr);
+                    trips = segmentZones(detId, zones);
                 } catch (Exception tripEx) {
                     trips = List.of();
                     String msg = "Trip segmentation error (queue): " + tripEx;
@@ -440,7 +421,7 @@ public class MainController {
                 StringBuilder sb = new StringBuilder();
                 sb.append("Saved detection #").append(detId)
                         .append(" videoId=").append(videoId)
-                        .append(" events=").append(dr.events())
+                        .append(" events=").append(zones.stream().mapToInt(DetectionResult::events).sum())
                         .append(" fps=").append(dr.fps())
                         .append(" frames=").append(dr.frames())
                         .append('\n');
@@ -1048,7 +1029,9 @@ public class MainController {
                         ok = validateCamera(cam.url(), 3000);
                     } catch (Exception ex) { ok = false;}
                     if (ok) {
-                        CameraWorker w = new CameraWorker(cam.id(), cam.name());
+                        CameraWorker w = new CameraWorker(cam.id(), cam.name(), cam.url(),
+                                new BucketDetector(cfg), ev -> Platform.runLater(() ->
+                                camLog.appendText("[Cameras] Event " + cam.name() + " @" + ev.capturedAt() + "\n")));
                         camWorkers.put(cam.id(), w);
                         Thread t = new Thread(w, "cam-" + cam.id());
                         t.setDaemon(true);
@@ -1231,7 +1214,9 @@ public class MainController {
                         try {
                             Pg.setCameraHealth(sel.id(), Instant.now(), null);
                         } catch (Exception ignore) {}
-                        CameraWorker w = new CameraWorker(sel.id(), sel.name());
+                        CameraWorker w = new CameraWorker(sel.id(), sel.name(), sel.url(),
+                                new BucketDetector(cfg), ev -> Platform.runLater(() ->
+                                camLog.appendText("[Cameras] Event " + sel.name() + " @" + ev.capturedAt() + "\n")));
                         camWorkers.put(sel.id(), w);
                         Thread t = new Thread(w, "cam-" + sel.id());
                         t.setDaemon(true);
@@ -1288,8 +1273,13 @@ public class MainController {
         } catch (Throwable ignore) {}
     }
 
-    /** Возвращает effective mergeMs: -Dqv.mergeMs приоритетнее YAML. */
-    private static int resolveMergeMs(Config cfg) {
-        return Integer.getInteger("qv.mergeMs", cfg.detection().mergeMs());
+    /** Рейсы по каждой зоне отдельно (у каждого погрузочного места своя очередь машин), по времени начала. */
+    private static List<TripSegment> segmentZones(int detId, List<DetectionResult> zones) {
+        List<TripSegment> out = new ArrayList<>();
+        for (DetectionResult z : zones) {
+            out.addAll(TripSegmenter.segmentFromDetectionResult(detId, z));
+        }
+        out.sort(java.util.Comparator.comparingLong(TripSegment::tStartMs));
+        return out;
     }
 }
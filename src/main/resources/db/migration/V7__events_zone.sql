@@ -0,0 +1,6 @@
+-- Zone of the camera profile that produced the event (multi-zone detect); NULL = single zone / whole frame
+ALTER TABLE events
+    ADD COLUMN IF NOT EXISTS zone varchar(32);
+
+CREATE INDEX IF NOT EXISTS events_detection_id_zone_idx
+    ON events(detection_id, zone);
@@ -0,0 +1,16 @@
+-- Deferred OCR (-Dqv.ocr.deferred): one job per event; a background worker reads the plate from the
+-- candidate frames and writes it to events.plate. status: PENDING -> RUNNING -> DONE | FAILED
+CREATE TABLE IF NOT EXISTS ocr_jobs (
+    id          serial primary key,
+    event_id    integer not null unique references events(id) on delete cascade,
+    frames      bigint[] not null,
+    search      integer[],
+    status      varchar(16) not null default 'PENDING',
+    attempts    integer not null default 0,
+    last_error  text,
+    created_at  timestamptz not null default now(),
+    updated_at  timestamptz not null default now()
+);
+
+CREATE INDEX IF NOT EXISTS ocr_jobs_status_id_idx
+    ON ocr_jobs(status, id);
@@ -0,0 +1,107 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Адаптивный шаг: те же события (в пределах допуска), но меньше декодированных кадров, чем при фиксированном шаге
+public class AdaptiveStrideBenchmarkTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+        Loader.load(opencv_videoio.class);
+    }
+
+    private static final long TOLERANCE_MS = 1000;
+
+    @Test
+    public void strideStaysDenseWhileHotAndGrowsWhenIdle() {
+        // 25 fps, допуск 1 с -> не больше 25 кадров -> 3*8=24
+        AdaptiveStride st = new AdaptiveStride(3, 25.0, TOLERANCE_MS, 16, 10);
+        assertEquals(24, st.maxStride());
+        assertEquals(6, st.next(0, false));
+        assertEquals(12, st.next(6, false));
+        assertEquals(24, st.next(18, false));
+        assertEquals(24, st.next(42, false));
+        assertEquals(3, st.next(66, true));
+        assertEquals(3, st.next(69, false)); // держим плотный шаг holdFrames после горячего сэмпла
+        assertEquals(3, st.next(75, false));
+        assertEquals(6, st.next(78, false));
+    }
+
+    @Test
+    @Timeout(60) // sec
+    public void syntheticAviKeepsEventsWithFewerDecodedFrames() throws IOException {
+        Path avi = Files.createTempFile("qv-test-adaptive-", ".avi");
+        avi.toFile().deleteOnExit();
+        // ровно три цикла: событие, обрезанное EOF короче разреженного шага, адаптивный режим может не увидеть
+        SyntheticVideo.writeMovingBlocks(avi, 640, 360, 25.0, 600);
+        compareFixedAndAdaptive(avi);
+    }
+
+    @Test
+    @Timeout(120) // sec
+    public void testMp4KeepsEventsWithFewerDecodedFrames() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/video/test.mp4")) {
+            if (in == null) throw new IOException("Missing test resource: /video/test.mp4");
+            Path tmp = Files.createTempFile("qv-test-adaptive-", ".mp4");
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            tmp.toFile().deleteOnExit();
+            compareFixedAndAdaptive(tmp);
+        }
+    }
+
+    private static void compareFixedAndAdaptive(Path video) {
+        BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                500, 0.45, 0.9, 100, 200, false);
+        DetectionResult fixed = det.detect(video);
+        Assumptions.assumeTrue(fixed.frames() > 0, "skip: video backend cannot decode " + video);
+        long fixedRetrieved = det.framesRetrieved();
+
+        DetectionResult adaptive;
+        long adaptiveRetrieved;
+        System.setProperty("qv.detect.adaptive", "true");
+        System.setProperty("qv.detect.adaptiveToleranceMs", String.valueOf(TOLERANCE_MS));
+        try {
+            adaptive = det.detect(video);
+            adaptiveRetrieved = det.framesRetrieved();
+        } finally {
+            System.clearProperty("qv.detect.adaptive");
+            System.clearProperty("qv.detect.adaptiveToleranceMs");
+        }
+
+        System.out.printf("adaptive stride on %s: retrieved %d -> %d frames (%.1f%% fewer), events %d -> %d%n",
+                video.getFileName(), fixedRetrieved, adaptiveRetrieved,
+                100.0 * (fixedRetrieved - adaptiveRetrieved) / Math.max(1, fixedRetrieved),
+                fixed.events(), adaptive.events());
+
+        List<Instant> a = fixed.timestampsMs();
+        List<Instant> b = adaptive.timestampsMs();
+        assertEquals(a.size(), b.size(), "events: fixed=" + a + " adaptive=" + b);
+        for (int i = 0; i < a.size(); i++) {
+            assertTrue(Math.abs(Duration.between(a.get(i), b.get(i)).toMillis()) <= TOLERANCE_MS,
+                    "event " + i + ": fixed=" + a.get(i) + " adaptive=" + b.get(i));
+        }
+        assertTrue(adaptiveRetrieved < fixedRetrieved,
+                "adaptive=" + adaptiveRetrieved + " fixed=" + fixedRetrieved);
+    }
+}
@@ -0,0 +1,123 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Снимки событий: какие кадры сетки анализа уходят в OCR для отрицательных, нулевого и положительных смещений
+public class EventSnapshotsTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+    }
+
+    private static final double FPS = 10.0;
+    private static final int STEP = 3;
+
+    private final BucketDetector det = new BucketDetector(STEP, 25, 0.01, 10, 500, new Size(3, 3),
+            500, 0.45, 0.9, 100, 200, false);
+    private final List<Future<BucketDetector.EventPlate>> futures = new ArrayList<>();
+    /** Кадры каждого переданного в OCR события, в порядке передачи (mid → кадры в порядке OCR). */
+    private final List<List<Long>> submitted = new ArrayList<>();
+    private final List<Long> submittedMids = new ArrayList<>();
+    private Mat frame;
+
+    @BeforeEach
+    void setUp() {
+        frame = new Mat(4, 4, opencv_core.CV_8UC1, new Scalar(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        frame.release();
+        assertEquals(0, det.openSnapshots(), "every event snapshot is released");
+    }
+
+    @Test
+    public void pastTargetsTakeNearestRingFrameAndFutureTargetsWait() throws InterruptedException {
+        try (BucketDetector.PendingSnapshots p = pending(8)) {
+            feed(p, 0, 33);
+            // mid=30: цели 20, 30, 40; событие закрыто на кадре 33
+            assertEquals(0, p.onEvent(event(30, -1, 0, 1), 33));
+            assertEquals(1, p.size(), "the +1s target is not reached yet");
+            feed(p, 36, 36);
+            assertTrue(submitted.isEmpty(), "frame 36 is farther than step/2 from target 40");
+            feed(p, 39, 39);
+            // 20 → ближайший кадр сетки 21 (18 дальше), 30 — сам, 40 → текущий кадр 39
+            assertEquals(List.of(List.of(21L, 30L, 39L)), submitted);
+            assertEquals(0, p.size());
+        }
+    }
+
+    @Test
+    public void targetsOlderThanRingCountAsMissesAndTakeOldestFrame() throws InterruptedException {
+        try (BucketDetector.PendingSnapshots p = pending(3)) {
+            feed(p, 0, 36);
+            // кольцо: 30, 33, 36; цель 13 (-2s) давно вытеснена
+            assertEquals(1, p.onEvent(event(33, -2, 0), 36));
+            assertEquals(List.of(List.of(30L, 33L)), submitted);
+        }
+    }
+
+    @Test
+    public void overflowSubmitsOldestWithRingFramesAndFlushSubmitsTheRest() throws InterruptedException {
+        try (BucketDetector.PendingSnapshots p = pending(2)) {
+            feed(p, 0, 33);
+            p.onEvent(event(30, 0, 5), 33);
+            feed(p, 36, 36);
+            p.onEvent(event(33, 0, 5), 36);
+            assertTrue(submitted.isEmpty());
+            feed(p, 39, 39);
+            // третье ждущее событие при ёмкости 2: самое раннее (mid=30) уходит с тем, что есть в кольце (36, 39)
+            p.onEvent(event(36, 0, 5), 39);
+            assertEquals(List.of(30L), submittedMids);
+            assertEquals(List.of(30L, 39L), submitted.get(0));
+            assertEquals(2, p.size());
+            assertEquals(2, p.maxSize());
+            assertTrue(p.maxSize() <= p.capacity());
+
+            feed(p, 42, 45);
+            p.flush(); // EOF: цели 83 и 86 не наступят — ближайший кадр кольца 45
+            assertEquals(List.of(30L, 33L, 36L), submittedMids);
+            assertEquals(List.of(33L, 45L), submitted.get(1));
+            assertEquals(List.of(36L, 45L), submitted.get(2));
+            assertEquals(0, p.size());
+        }
+    }
+
+    private BucketDetector.PendingSnapshots pending(int capacity) {
+        return new BucketDetector.PendingSnapshots(new EventFrameRing(capacity), STEP, ev -> {
+            List<Long> frames = new ArrayList<>();
+            for (int slot : ev.top.order()) frames.add(ev.top.frame(slot));
+            submitted.add(frames);
+            submittedMids.add(ev.mid);
+            ev.release(); // как задача OCR-стадии
+        });
+    }
+
+    /** Событие с фиксированными смещениями (без ранжирования кадров), кандидаты — в порядке смещений. */
+    private BucketDetector.EventSnapshots event(long mid, double... offsetsSec) {
+        futures.add(null);
+        BucketDetector.FrameSelection select = new BucketDetector.FrameSelection(offsetsSec, offsetsSec.length, false, 10);
+        return det.new EventSnapshots(futures, futures.size() - 1, mid, (long) (mid / FPS * 1000), select,
+                FPS, 1000, null);
+    }
+
+    /** Кадры сетки анализа from..to (шаг STEP), как их видит стадия анализа. */
+    private void feed(BucketDetector.PendingSnapshots p, long from, long to) throws InterruptedException {
+        for (long idx = from; idx <= to; idx += STEP) p.onFrame(idx, frame);
+    }
+}
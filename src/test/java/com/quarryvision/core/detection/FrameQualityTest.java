@@ -0,0 +1,94 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Отбор кадров события: резкий кадр выше смазанного и пересвеченного, в OCR — только top-K по оценке
+public class FrameQualityTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+    }
+
+    @Test
+    public void sharpFrameScoresAboveBlurredAndOverexposed() {
+        Mat sharp = textFrame(120, 235, 20);
+        Mat blurred = new Mat();
+        Mat bright = textFrame(240, 255, 225);
+        try {
+            // смаз движением по горизонтали
+            opencv_imgproc.blur(sharp, blurred, new Size(25, 1));
+            double s = FrameQuality.score(sharp, null);
+            double b = FrameQuality.score(blurred, null);
+            double o = FrameQuality.score(bright, null);
+            assertTrue(s > b, "sharp=" + s + " blurred=" + b);
+            assertTrue(s > o, "sharp=" + s + " overexposed=" + o);
+            // область поиска: пустой угол кадра хуже таблички
+            assertTrue(FrameQuality.score(sharp, new Rect(400, 200, 230, 80))
+                    > FrameQuality.score(sharp, new Rect(0, 0, 230, 80)));
+        } finally {
+            sharp.release();
+            blurred.release();
+            bright.release();
+        }
+    }
+
+    @Test
+    public void rankedTopKeepsBestFramesInScoreOrder() {
+        Mat frame = textFrame(120, 235, 20);
+        try (TopFrames top = new TopFrames(2, true)) {
+            assertTrue(top.offer(0, frame, 100, 5.0));
+            assertTrue(top.offer(1, frame, 110, 9.0));
+            assertFalse(top.offer(2, frame, 120, 1.0), "worse than both kept frames");
+            assertFalse(top.offer(3, frame, 110, 50.0), "same frame twice");
+            assertTrue(top.offer(4, frame, 130, 7.0));
+            assertEquals(2, top.size());
+            int[] order = top.order();
+            assertEquals(110, top.frame(order[0]));
+            assertEquals(130, top.frame(order[1]));
+            assertEquals(4, top.candidate(order[1]));
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    public void unrankedTopKeepsOffsetOrder() {
+        Mat frame = textFrame(120, 235, 20);
+        try (TopFrames top = new TopFrames(3, false)) {
+            // будущие смещения приходят позже прошлых — порядок OCR всё равно по смещениям
+            top.offer(1, frame, 50, 0);
+            top.offer(2, frame, 250, 0);
+            top.offer(0, frame, 150, 0);
+            int[] order = top.order();
+            assertArrayEquals(new int[]{0, 1, 2}, order);
+            assertEquals(150, top.frame(order[0]));
+        } finally {
+            frame.release();
+        }
+    }
+
+    /** Фон bg и светлая табличка plate с тёмной надписью ink. */
+    private static Mat textFrame(int bg, int plate, int ink) {
+        Mat m = new Mat(360, 640, opencv_core.CV_8UC3, new Scalar(bg, bg, bg, 0));
+        opencv_imgproc.rectangle(m, new Rect(420, 220, 200, 44), new Scalar(plate, plate, plate, 0), -1,
+                opencv_imgproc.LINE_8, 0);
+        opencv_imgproc.putText(m, "A123BC77", new Point(428, 254), opencv_imgproc.FONT_HERSHEY_SIMPLEX, 0.9,
+                new Scalar(ink, ink, ink, 0), 2, opencv_imgproc.LINE_8, false);
+        return m;
+    }
+}
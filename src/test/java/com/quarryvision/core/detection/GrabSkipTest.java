@@ -0,0 +1,66 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Пропуск кадров между сэмплами через grab(): декодируется каждый stepFrames-й кадр, метки — как при read() всех
+public class GrabSkipTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+        Loader.load(opencv_videoio.class);
+    }
+
+    private static final int STEP = 3;
+
+    @Test
+    @Timeout(60) // sec
+    public void grabSkipMatchesReadEveryFrame() throws IOException {
+        Path avi = Files.createTempFile("qv-test-grab-", ".avi");
+        avi.toFile().deleteOnExit();
+        SyntheticVideo.writeMovingBlocks(avi, 640, 360, 25.0, 611);
+        BucketDetector det = new BucketDetector(STEP, 25, 0.01, 10, 500, new Size(3, 3),
+                500, 0.45, 0.9, 100, 200, false);
+
+        DetectionResult skipped = det.detect(avi);
+        Assumptions.assumeTrue(skipped.frames() > 0, "skip: MJPEG backend unavailable");
+        assertTrue(skipped.events() > 1, "synthetic video must produce several events");
+        long frames = skipped.frames();
+        // первый кадр + каждый STEP-й после него; каждый кадр пройден ровно один раз
+        assertEquals(1 + (frames - 1) / STEP, det.framesRetrieved());
+        assertEquals(frames, det.framesGrabbed() + det.framesRetrieved());
+        DetectionResult parallel = det.detectParallel(avi, 3);
+        long parallelRetrieved = det.framesRetrieved();
+
+        System.setProperty("qv.detect.grabSkip", "false");
+        try {
+            DetectionResult baseline = det.detect(avi);
+            assertEquals(frames, det.framesRetrieved(), "baseline decodes every frame");
+            assertEquals(0, det.framesGrabbed());
+            assertEquals(baseline.timestampsMs(), skipped.timestampsMs());
+
+            DetectionResult parallelBaseline = det.detectParallel(avi, 3);
+            assertTrue(det.framesRetrieved() > parallelRetrieved,
+                    "chunks decode fewer frames with grab(): " + parallelRetrieved + " vs " + det.framesRetrieved());
+            assertEquals(parallelBaseline.timestampsMs(), parallel.timestampsMs());
+            assertEquals(baseline.timestampsMs(), parallel.timestampsMs());
+        } finally {
+            System.clearProperty("qv.detect.grabSkip");
+        }
+    }
+}
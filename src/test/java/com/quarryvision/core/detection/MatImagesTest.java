@@ -0,0 +1,67 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Прямое копирование Mat → BufferedImage даёт те же пиксели, что и прежний путь PNG → ImageIO
+public class MatImagesTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgcodecs.class);
+    }
+
+    @Test
+    public void grayImageMatchesPngRoundTrip() throws IOException {
+        Mat full = new Mat(90, 173, opencv_core.CV_8UC1);
+        byte[] px = new byte[90 * 173];
+        new Random(7).nextBytes(px);
+        full.data().put(px);
+        // ROI — несплошной Mat со step > cols
+        Mat roi = new Mat(full, new Rect(11, 5, 61, 40));
+        try {
+            assertFalse(roi.isContinuous());
+            for (Mat m : new Mat[]{full, roi}) {
+                BufferedImage direct = MatImages.toGrayImage(m);
+                BufferedImage viaPng = viaPng(m);
+                assertEquals(BufferedImage.TYPE_BYTE_GRAY, direct.getType());
+                assertEquals(viaPng.getWidth(), direct.getWidth());
+                assertEquals(viaPng.getHeight(), direct.getHeight());
+                for (int y = 0; y < direct.getHeight(); y++)
+                    for (int x = 0; x < direct.getWidth(); x++)
+                        assertEquals(viaPng.getRaster().getSample(x, y, 0), direct.getRaster().getSample(x, y, 0),
+                                "pixel " + x + "," + y);
+            }
+        } finally {
+            roi.release();
+            full.release();
+        }
+    }
+
+    private static BufferedImage viaPng(Mat m) throws IOException {
+        BytePointer buf = new BytePointer();
+        try {
+            opencv_imgcodecs.imencode(".png", m, buf);
+            byte[] bytes = new byte[(int) buf.limit()];
+            buf.get(bytes);
+            return ImageIO.read(new ByteArrayInputStream(bytes));
+        } finally {
+            buf.deallocate();
+        }
+    }
+}
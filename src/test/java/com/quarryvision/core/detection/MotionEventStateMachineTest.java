@@ -0,0 +1,128 @@
+package com.quarryvision.core.detection;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Автомат событий без OpenCV: гистерезис, cooldown, warmup, EOF-хвост, NMS/склейка и сэмплы без аллокаций
+class MotionEventStateMachineTest {
+
+    /** ratio=1 на len сэмплах подряд с кадра start, затем 0: при emaAlpha=1 событие с mid = start + len/2. */
+    private static boolean pulse(MotionEventStateMachine sm, long start, int len) {
+        for (int k = 0; k < len; k++) sm.update(start + k, 1.0);
+        return sm.update(start + len, 0.0);
+    }
+
+    @Test
+    void hysteresisCooldownAndMinActive() {
+        // fps=10, верхний порог 0.1, нижний 0.05, cooldown 20 кадров, minActive 300 мс = 3 кадра
+        MotionEventStateMachine sm = new MotionEventStateMachine(10.0, 0.1, 0.5, 1.0, 20, 300, 0);
+        for (long i = 1; i < 10; i++) assertFalse(sm.update(i, 0.07), "below the upper threshold");
+        assertFalse(sm.isActive());
+        for (long i = 10; i < 20; i++) assertFalse(sm.update(i, 0.2));
+        assertTrue(sm.isActive());
+        // между порогами ACTIVE держится
+        for (long i = 20; i < 25; i++) assertFalse(sm.update(i, 0.07));
+        assertTrue(sm.isHot());
+        assertTrue(sm.update(25, 0.0));
+        assertEquals(1, sm.eventCount());
+        assertEquals(17, sm.eventMidFrame(0));
+        assertEquals(1700, sm.eventMs(0));
+
+        // cooldown от кадра 25: новый ACTIVE не раньше 46
+        for (long i = 30; i < 50; i++) {
+            sm.update(i, 0.2);
+            assertEquals(i >= 46, sm.isActive(), "idx=" + i);
+        }
+        assertEquals(46, sm.activeStartFrame());
+        assertTrue(sm.update(50, 0.0));
+        assertEquals(48, sm.eventMidFrame(1));
+
+        // короче minActive — не событие
+        for (long i = 80; i < 82; i++) sm.update(i, 0.2);
+        assertFalse(sm.update(82, 0.0));
+        assertEquals(2, sm.eventCount());
+        assertEquals("IDLE", sm.traceState());
+    }
+
+    @Test
+    void warmupDropsOnlyWholeIntervalsAndSkipsCooldown() {
+        // warmup 2000 мс при fps=10 — кадры до 20
+        MotionEventStateMachine sm = new MotionEventStateMachine(10.0, 0.1, 0.5, 1.0, 20, 300, 2000);
+        for (long i = 5; i < 15; i++) sm.update(i, 0.2);
+        assertFalse(sm.update(15, 0.0), "ends at frame 14 = 1400 ms: warmup");
+        assertEquals(0, sm.eventCount());
+        // отброшенное событие не запускает cooldown; интервал, выходящий за warmup, принимается
+        for (long i = 18; i < 30; i++) sm.update(i, 0.2);
+        assertEquals(18, sm.activeStartFrame());
+        assertTrue(sm.update(30, 0.0));
+        assertEquals(24, sm.eventMidFrame(0));
+    }
+
+    @Test
+    void eofTailAndReset() {
+        MotionEventStateMachine sm = new MotionEventStateMachine(10.0, 0.1, 0.5, 1.0, 0, 300, 0);
+        for (long i = 10; i < 20; i++) sm.update(i, 0.2);
+        assertTrue(sm.finish(20));
+        assertEquals(15, sm.eventMidFrame(0));
+
+        sm.reset();
+        assertEquals(0, sm.eventCount());
+        assertFalse(sm.isActive());
+        assertEquals(0.0, sm.ema());
+        sm.update(10, 0.2);
+        assertFalse(sm.finish(11), "tail shorter than minActive");
+        assertFalse(new MotionEventStateMachine(10.0, 0.1, 0.5, 1.0, 0, 300, 0).finish(100));
+    }
+
+    @Test
+    void nmsAndMergeGroups() {
+        // fps=1000: кадр = мс
+        MotionEventStateMachine sm = new MotionEventStateMachine(1000.0, 0.5, 0.5, 1.0, 0, 1, 0);
+        for (long start : new long[]{998, 1098, 1498, 2498, 4998}) assertTrue(pulse(sm, start, 4));
+        assertEquals(5, sm.eventCount());
+        assertEquals(1100, sm.eventMs(1));
+
+        int[] groupOf = new int[sm.eventCount()];
+        int groups = sm.groups(200, 1000, groupOf);
+        // 1100 — в окне NMS от 1000; 1500 — склеено с 1000 (расстояние до начала группы)
+        assertArrayEquals(new int[]{0, -1, 0, 1, 2}, groupOf);
+        assertEquals(3, groups);
+        assertEquals(1000, sm.groupMs(0));
+        assertEquals(2500, sm.groupMs(1));
+        assertEquals(5000, sm.groupMs(2));
+
+        assertEquals(5, sm.groups(0, 0, groupOf), "no NMS window and no merge: every event is a group");
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, groupOf);
+    }
+
+    @Test
+    void steadyStateSamplesDoNotAllocate() {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "skip: per-thread allocation counter unavailable");
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(mx.isThreadAllocatedMemorySupported() && mx.isThreadAllocatedMemoryEnabled());
+        MotionEventStateMachine sm = new MotionEventStateMachine(25.0, 0.1, 0.6, 0.3, 5, 200, 0);
+        int[] groupOf = new int[64];
+        long sink = run(sm, groupOf); // прогрев JIT; буферы уже нужного размера
+        long tid = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int r = 0; r < 20; r++) sink += run(sm, groupOf);
+        long allocated = mx.getThreadAllocatedBytes(tid) - before;
+        assertTrue(sink > 0);
+        assertTrue(allocated < 16 * 1024, "allocated=" + allocated);
+    }
+
+    /** 50 000 сэмплов с ~40 событиями, затем NMS/склейка; reset — буферы переиспользуются. */
+    private static long run(MotionEventStateMachine sm, int[] groupOf) {
+        sm.reset();
+        for (long idx = 1; idx <= 50_000; idx++) {
+            sm.update(idx, (idx % 1250) < 100 ? 0.5 : 0.01);
+        }
+        sm.finish(50_001);
+        return sm.groups(2500, 5000, groupOf) + sm.eventCount();
+    }
+}
@@ -0,0 +1,99 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Кэш сигнала движения: повторный прогон автомата по файлу-спутнику совпадает с detect без декодирования
+class MotionSignalTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+        Loader.load(opencv_videoio.class);
+    }
+
+    @Test
+    @Timeout(60) // sec
+    void replayMatchesDetectForOtherStateMachineParams() throws IOException {
+        Path dir = Files.createTempDirectory("qv-signal-");
+        Path avi = dir.resolve("moving.avi");
+        SyntheticVideo.writeMovingBlocks(avi, 640, 360, 25.0, 611);
+
+        BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                500, 0.45, 0.9, 100, 200, false);
+        // те же сигнал-параметры (stepFrames, diffThreshold, морфология), другие EMA/гистерезис/длительность/склейка
+        BucketDetector retuned = new BucketDetector(3, 25, 0.02, 10, 500, new Size(3, 3),
+                3000, 0.3, 0.6, 400, 1000, false);
+        System.setProperty("qv.detect.signalCache", "true");
+        try {
+            assertTrue(det.replayZones(avi).isEmpty(), "no signal before the first pass");
+            DetectionResult seq = det.detect(avi);
+            Assumptions.assumeTrue(seq.frames() > 0, "skip: MJPEG backend unavailable");
+            assertTrue(seq.events() > 0, "synthetic video must produce events");
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(1, files.filter(f -> f.toString().endsWith(".qvsig")).count());
+            }
+
+            assertEquals(seq.timestampsMs(), det.replayZones(avi).orElseThrow().get(0).timestampsMs());
+            long t0 = System.nanoTime();
+            List<DetectionResult> replayed = retuned.replayZones(avi).orElseThrow();
+            long replayMs = (System.nanoTime() - t0) / 1_000_000L;
+            System.out.println("motion signal replay: ms=" + replayMs);
+            assertTrue(replayMs < 500, "replayMs=" + replayMs);
+
+            // эталон — честный проход с новыми параметрами (и параллельный сигнал тот же)
+            assertEquals(retuned.detect(avi).timestampsMs(), replayed.get(0).timestampsMs());
+            assertEquals(seq.timestampsMs(), det.detectParallel(avi, 3).timestampsMs());
+            assertEquals(seq.timestampsMs(), det.replayZones(avi).orElseThrow().get(0).timestampsMs());
+
+            // другой diffThreshold — другой сигнал: кэша для него нет
+            BucketDetector otherThr = new BucketDetector(3, 40, 0.01, 10, 500, new Size(3, 3),
+                    500, 0.45, 0.9, 100, 200, false);
+            assertEquals(Optional.empty(), otherThr.replayZones(avi));
+        } finally {
+            System.clearProperty("qv.detect.signalCache");
+        }
+    }
+
+    @Test
+    void recorderRoundTripsThroughMappedFile() throws IOException {
+        MotionSignal.Recorder rec = new MotionSignal.Recorder("k", 3, 1000, 0.25);
+        for (int k = 1; k <= 2000; k++) rec.add(k * 3L, k % 7 == 0 ? 120 : 0);
+        MotionSignal s = rec.finish(25.0, 6003, 6001);
+        Path file = MotionSignal.path(Files.createTempDirectory("qv-signal-"), Path.of("a.avi"), "k");
+        s.write(file);
+
+        MotionSignal back = MotionSignal.load(file, "k");
+        assertNotNull(back);
+        assertEquals(2000, back.size());
+        assertEquals(120f, back.white(6));
+        assertEquals(0f, back.white(7));
+        assertEquals(21L, back.frameAt(6));
+        assertEquals(1000, back.area());
+        assertEquals(0.25, back.pixelScale());
+        assertEquals(6001, back.idxEnd());
+        assertNull(MotionSignal.load(file, "other"), "key mismatch is a miss");
+
+        // пропуск сэмпла (адаптивный шаг) — сигнал не сохраняется
+        MotionSignal.Recorder gap = new MotionSignal.Recorder("k", 3, 1000, 1.0);
+        gap.add(3, 1);
+        gap.add(9, 1);
+        assertNull(gap.finish(25.0, 100, 99));
+    }
+}
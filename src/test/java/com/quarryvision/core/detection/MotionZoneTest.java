@@ -0,0 +1,104 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// ROI-полигон: движение вне зоны погрузки не должно попадать в подсчёт «белых» пикселей
+public class MotionZoneTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+    }
+
+    private static final List<double[]> RIGHT_HALF =
+            List.of(new double[]{0.5, 0.0}, new double[]{1.0, 0.0}, new double[]{1.0, 1.0}, new double[]{0.5, 1.0});
+
+    @Test
+    public void motionOutsidePolygonIsIgnored() {
+        Mat black = new Mat(360, 640, opencv_core.CV_8UC3, new Scalar(0, 0, 0, 0));
+        Mat moved = black.clone();
+        // «грузовик» проезжает в левой половине кадра
+        opencv_imgproc.rectangle(moved, new Point(40, 100), new Point(240, 260),
+                new Scalar(255, 255, 255, 0), -1, opencv_imgproc.LINE_8, 0);
+        try (MotionZone full = new MotionZone(null, null, 640, 360, 0, 25, new Size(3, 3), 0.01, 0);
+             MotionZone right = new MotionZone("bay", RIGHT_HALF, 640, 360, 0, 25, new Size(3, 3), 0.01, 0)) {
+            full.reset(black);
+            right.reset(black);
+            assertTrue(full.white(moved) > 0);
+            assertEquals(0.0, right.white(moved));
+
+            assertNull(full.roi);
+            assertNotNull(right.roi);
+            assertEquals(320, right.roi.width());
+            // порог и знаменатель ratio — по площади зоны, а не кадра
+            assertEquals(640L * 360, full.area);
+            assertTrue(Math.abs(right.area - 320L * 360) <= 360, "area=" + right.area);
+            assertEquals(0.01 * right.area, right.minWhite, 1e-9);
+        } finally {
+            black.release();
+            moved.release();
+        }
+    }
+
+    @Test
+    public void downscaledZoneKeepsLegacyPixelThresholdInFullFramePixels() {
+        try (MotionZone z = new MotionZone(null, null, 1920, 1080, 480, 25, new Size(3, 3), -1.0, 35000)) {
+            assertNotNull(z.analysis);
+            assertEquals(480, z.analysis.width());
+            assertEquals(270, z.analysis.height());
+            // 35000 px полного кадра = 35000/16 px кадра анализа
+            assertEquals(35000.0 / 16, z.minWhite, 1e-6);
+        }
+    }
+
+    @Test
+    public void motionBoxIsInFullFramePixels() {
+        Mat black = new Mat(1080, 1920, opencv_core.CV_8UC3, new Scalar(0, 0, 0, 0));
+        Mat moved = black.clone();
+        opencv_imgproc.rectangle(moved, new Point(1200, 400), new Point(1600, 800),
+                new Scalar(255, 255, 255, 0), -1, opencv_imgproc.LINE_8, 0);
+        // зона — правая половина, анализ в 480 px по ширине кадра
+        try (MotionZone z = new MotionZone("bay", RIGHT_HALF, 1920, 1080, 480, 25, new Size(3, 3), 0.01, 0)) {
+            z.reset(black);
+            double white = z.white(moved);
+            assertTrue(white > 0);
+            double[] box = new double[MotionRegion.BOX];
+            z.motionBox(box, 0);
+            // точность — пара пикселей анализа (×4) плюс размытие
+            assertEquals(1200, box[0], 24);
+            assertEquals(400, box[1], 24);
+            assertEquals(400, box[2], 48);
+            assertEquals(400, box[3], 48);
+            assertEquals(1400, box[4], 8);
+            assertEquals(600, box[5], 8);
+
+            MotionRegion region = new MotionRegion();
+            assertNull(region.searchRect(1920, 1080, 0.05));
+            region.add(box, 0, white);
+            var search = region.searchRect(1920, 1080, 0.05);
+            assertNotNull(search);
+            // запас 5% кадра: 96 px по X, 54 px по Y
+            assertEquals(box[0] - 96, search.x(), 1);
+            assertEquals(box[1] - 54, search.y(), 1);
+            assertTrue(search.x() + search.width() <= 1920 && search.y() + search.height() <= 1080);
+        } finally {
+            black.release();
+            moved.release();
+        }
+    }
+}
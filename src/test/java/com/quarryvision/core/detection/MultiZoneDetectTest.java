@@ -0,0 +1,69 @@
+package com.quarryvision.core.detection;
+
+import com.quarryvision.app.Config;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Несколько зон профиля камеры за одно декодирование: у каждой зоны свой автомат и свой DetectionResult
+public class MultiZoneDetectTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+        Loader.load(opencv_videoio.class);
+    }
+
+    @Test
+    @Timeout(60) // sec
+    public void eachZoneGetsItsOwnResult() throws IOException {
+        Path avi = Files.createTempFile("qv-test-zones-", ".avi");
+        avi.toFile().deleteOnExit();
+        SyntheticVideo.writeMovingBlocks(avi, 640, 360, 25.0, 611);
+
+        // "yard" — весь кадр (как без профиля), "strip" — полоса снизу: блок туда не заезжает
+        Config.DetectProfile profile = new Config.DetectProfile("cam", "qv-test-zones-*", null, List.of(
+                new Config.DetectZone("yard", rect(0.0, 0.0, 1.0, 1.0), null, null, null),
+                new Config.DetectZone("strip", rect(0.0, 0.80, 1.0, 1.0), null, 0.02, null)));
+        Config cfg = new Config(null, null, new Config.DetectConf(3, 25, 0.01, 10, 500, 3, 3, 500,
+                0.45, 0.9, 100, 200, false, 0, -1.0, List.of(profile)));
+
+        BucketDetector single = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                500, 0.45, 0.9, 100, 200, false);
+        DetectionResult whole = single.detect(avi);
+        Assumptions.assumeTrue(whole.frames() > 0, "skip: MJPEG backend unavailable");
+
+        BucketDetector det = new BucketDetector(cfg);
+        List<DetectionResult> zones = det.detectZones(avi);
+        assertEquals(2, zones.size());
+        assertEquals("yard", zones.get(0).zone());
+        assertEquals("strip", zones.get(1).zone());
+        assertTrue(zones.get(0).events() > 0);
+        assertEquals(whole.timestampsMs(), zones.get(0).timestampsMs());
+        assertEquals(0, zones.get(1).events(), "no motion in the bottom strip");
+
+        List<DetectionResult> par = det.detectParallelZones(avi, 3);
+        for (int i = 0; i < zones.size(); i++) {
+            assertEquals(zones.get(i).zone(), par.get(i).zone());
+            assertEquals(zones.get(i).timestampsMs(), par.get(i).timestampsMs());
+        }
+    }
+
+    private static List<double[]> rect(double x0, double y0, double x1, double y1) {
+        return List.of(new double[]{x0, y0}, new double[]{x1, y0}, new double[]{x1, y1}, new double[]{x0, y1});
+    }
+}
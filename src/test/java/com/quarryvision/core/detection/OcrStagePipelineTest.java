@@ -0,0 +1,94 @@
+package com.quarryvision.core.detection;
+
+import com.quarryvision.core.ocr.OcrEngine;
+import com.quarryvision.core.ocr.OcrEnginePool;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// OCR-стадия последовательного прохода: медленный движок не меняет номера, очереди ограничены, снимки освобождены
+public class OcrStagePipelineTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+        Loader.load(opencv_videoio.class);
+    }
+
+    @Test
+    @Timeout(120) // sec
+    public void slowOcrStageMatchesInlineOcr() throws IOException {
+        Path avi = Files.createTempFile("qv-test-ocr-stage-", ".avi");
+        avi.toFile().deleteOnExit();
+        SyntheticVideo.writeMovingBlocks(avi, 640, 360, 25.0, 611);
+
+        AtomicInteger calls = new AtomicInteger();
+        BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                500, 0.45, 0.9, 100, 200, false);
+        det.ocrPool = new OcrEnginePool(2, () -> new SlowEngine(calls));
+        System.setProperty("qv.ocr.init", "true");
+        System.setProperty("qv.detect.ringSize", "2");
+        System.setProperty("qv.detect.ocrQueue", "1");
+        // «табличка» синтетического видео — под блоком, вне области его движения
+        System.setProperty("qv.ocr.motionRegion", "false");
+        try {
+            DetectionResult staged = det.detect(avi);
+            Assumptions.assumeTrue(staged.frames() > 0, "skip: MJPEG backend unavailable");
+            assertTrue(staged.events() > 1, "synthetic video must produce several events");
+            assertTrue(calls.get() > 0, "events reach the OCR stage");
+            assertTrue(staged.platesOrEmpty().stream().anyMatch(Objects::nonNull), "plates: " + staged.platesOrEmpty());
+
+            BucketDetector.StageDepth d = det.lastStages();
+            assertTrue(d.ringMax() <= d.ringCapacity(), "decode ring: " + d);
+            assertTrue(d.ocrQueueMax() >= 1 && d.ocrQueueMax() <= d.ocrQueueSize(), "OCR queue: " + d);
+            assertTrue(d.pendingMax() <= d.pendingCapacity(), "events waiting for frames: " + d);
+            assertEquals(0, det.openSnapshots(), "every event snapshot is released");
+
+            // OCR после склейки — в потоке прохода, по кадрам видео
+            DetectionResult inline = det.detectParallel(avi, 3);
+            assertEquals(staged.timestampsMs(), inline.timestampsMs());
+            assertEquals(staged.platesOrEmpty(), inline.platesOrEmpty());
+        } finally {
+            System.clearProperty("qv.ocr.motionRegion");
+            System.clearProperty("qv.detect.ocrQueue");
+            System.clearProperty("qv.detect.ringSize");
+            System.clearProperty("qv.ocr.init");
+            det.ocrPool.close();
+        }
+    }
+
+    /** Отвечает одним номером на любой ROI, но долго — OCR-стадия отстаёт от анализа. */
+    private record SlowEngine(AtomicInteger calls) implements OcrEngine {
+        @Override
+        public Optional<String> readBestToken(BufferedImage bi) {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.of("AB1234CD");
+        }
+
+        @Override public Optional<String> readText(BufferedImage bi) { return Optional.empty(); }
+        @Override public Optional<String> readText(File imageFile) { return Optional.empty(); }
+    }
+}
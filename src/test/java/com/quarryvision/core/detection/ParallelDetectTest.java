@@ -0,0 +1,134 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Параллельный detect по чанкам обязан давать тот же DetectionResult, что и последовательный
+public class ParallelDetectTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+        Loader.load(opencv_videoio.class);
+    }
+
+    @Test
+    @Timeout(60) // sec
+    public void parallelMatchesSequentialOnSyntheticAvi() throws IOException {
+        // MJPEG/AVI пишется и читается встроенным бэкендом OpenCV — работает и без FFmpeg
+        Path avi = Files.createTempFile("qv-test-par-", ".avi");
+        avi.toFile().deleteOnExit();
+        // 611 кадров: ролик обрывается в ACTIVE и посреди шага — проверяем EOF-хвост
+        SyntheticVideo.writeMovingBlocks(avi, 640, 360, 25.0, 611);
+
+        BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                500, 0.45, 0.9, 100, 200, false);
+        DetectionResult seq = det.detect(avi);
+        Assumptions.assumeTrue(seq.frames() > 0, "skip: MJPEG backend unavailable");
+        assertTrue(seq.events() > 0, "synthetic video must produce events");
+
+        for (int threads : new int[]{2, 3, 8}) {
+            DetectionResult par = det.detectParallel(avi, threads);
+            assertEquals(seq.timestampsMs(), par.timestampsMs(), "threads=" + threads);
+            assertEquals(seq.platesOrEmpty(), par.platesOrEmpty(), "threads=" + threads);
+        }
+    }
+
+    @Test
+    @Timeout(60) // sec
+    public void deferredOcrQueuesCandidateFramesInBothModes() throws IOException {
+        Path avi = Files.createTempFile("qv-test-par-", ".avi");
+        avi.toFile().deleteOnExit();
+        SyntheticVideo.writeMovingBlocks(avi, 640, 360, 25.0, 611);
+
+        BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                500, 0.45, 0.9, 100, 200, false);
+        // отложенный OCR: движок Tesseract в detect не нужен, номера дочитает воркер
+        System.setProperty("qv.ocr.init", "true");
+        System.setProperty("qv.ocr.deferred", "true");
+        try {
+            DetectionResult seq = det.detect(avi);
+            Assumptions.assumeTrue(seq.frames() > 0, "skip: MJPEG backend unavailable");
+            assertTrue(seq.events() > 0, "synthetic video must produce events");
+            DetectionResult par = det.detectParallel(avi, 3);
+            assertEquals(seq.timestampsMs(), par.timestampsMs());
+
+            for (DetectionResult r : new DetectionResult[]{seq, par}) {
+                assertTrue(r.platesOrEmpty().stream().allMatch(java.util.Objects::isNull), "plates are filled later");
+                assertEquals(r.events(), r.deferredOrEmpty().size(), "one OCR job per event");
+                for (DeferredOcr job : r.deferredOrEmpty()) {
+                    long[] f = job.frames();
+                    assertTrue(f.length > 0);
+                    for (int i = 0; i < f.length; i++) {
+                        assertTrue(f[i] >= 0 && f[i] < r.frames(), "frame=" + f[i]);
+                        if (i > 0) assertTrue(f[i] > f[i - 1], "frames are sorted and distinct");
+                    }
+                }
+            }
+            for (int i = 0; i < seq.events(); i++) {
+                assertArrayEquals(seq.deferredOrEmpty().get(i).frames(), par.deferredOrEmpty().get(i).frames());
+            }
+        } finally {
+            System.clearProperty("qv.ocr.deferred");
+            System.clearProperty("qv.ocr.init");
+        }
+    }
+
+    @Test
+    @Timeout(60) // sec
+    public void downscaledAnalysisMatchesAcrossModes() throws IOException {
+        Path avi = Files.createTempFile("qv-test-par-", ".avi");
+        avi.toFile().deleteOnExit();
+        SyntheticVideo.writeMovingBlocks(avi, 640, 360, 25.0, 611);
+
+        // анализ на 320px по ширине, порог — доля кадра (те же 500 px на 640x360)
+        BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                500, 0.45, 0.9, 100, 200, false, 320, 500.0 / (640 * 360));
+        DetectionResult seq = det.detect(avi);
+        Assumptions.assumeTrue(seq.frames() > 0, "skip: MJPEG backend unavailable");
+        assertTrue(seq.events() > 0, "downscaled analysis must still produce events");
+
+        DetectionResult par = det.detectParallel(avi, 3);
+        assertEquals(seq.timestampsMs(), par.timestampsMs());
+    }
+
+    @Test
+    @Timeout(60) // sec
+    public void parallelMatchesSequential() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/video/test.mp4")) {
+            if (in == null) throw new IOException("Missing test resource: /video/test.mp4");
+            Path tmp = Files.createTempFile("qv-test-par-", ".mp4");
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            tmp.toFile().deleteOnExit();
+
+            // мелкий шаг и низкие пороги, чтобы на коротком ролике были события и несколько чанков
+            BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                    500, 0.45, 0.9, 100, 200, false);
+            DetectionResult seq = det.detect(tmp);
+            Assumptions.assumeTrue(seq.frames() > 0, "skip: video backend cannot decode " + tmp);
+
+            DetectionResult par = det.detectParallel(tmp, 4);
+            assertEquals(seq.fps(), par.fps());
+            assertEquals(seq.frames(), par.frames());
+            assertEquals(seq.timestampsMs(), par.timestampsMs());
+            assertEquals(seq.platesOrEmpty(), par.platesOrEmpty());
+        }
+    }
+}
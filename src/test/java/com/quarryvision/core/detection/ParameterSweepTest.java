@@ -0,0 +1,118 @@
+package com.quarryvision.core.detection;
+
+import com.quarryvision.app.Config;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Перебор параметров автомата по сохранённому сигналу: комбинация-эталон находится без повторного декодирования
+class ParameterSweepTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+        Loader.load(opencv_videoio.class);
+    }
+
+    @Test
+    @Timeout(60) // sec
+    void sweepRecoversParamsThatProducedTheLabels() throws IOException {
+        Path dir = Files.createTempDirectory("qv-sweep-");
+        Path avi = dir.resolve("moving.avi");
+        SyntheticVideo.writeMovingBlocks(avi, 640, 360, 25.0, 611);
+
+        BucketDetector base = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                500, 0.45, 0.9, 100, 200, false);
+        List<MotionSignal> signals;
+        System.setProperty("qv.detect.signalCache", "true");
+        try {
+            Assumptions.assumeTrue(base.detect(avi).frames() > 0, "skip: MJPEG backend unavailable");
+            signals = base.loadSignals(avi).orElseThrow();
+        } finally {
+            System.clearProperty("qv.detect.signalCache");
+        }
+        // разметка — события честного прохода с «правильными» параметрами
+        BucketDetector truthDet = base.retuned(0.02, 0.3, 0.6, 400, 1000, 3000);
+        List<Long> truth = truthDet.detect(avi).timestampsMs().stream().map(Instant::toEpochMilli).toList();
+        assertFalse(truth.isEmpty());
+
+        ParameterSweep.Grid grid = new ParameterSweep.Grid(
+                new double[]{0.005, 0.01, 0.02}, new double[]{0.1, 0.3, 0.6}, new double[]{0.6, 0.9},
+                new int[]{100, 400, 2000}, new int[]{200, 1000}, new int[]{500, 3000});
+        long t0 = System.nanoTime();
+        List<ParameterSweep.Score> scores = ParameterSweep.run(base,
+                List.of(new ParameterSweep.Video(avi, signals, truth)), grid, 500, 4);
+        long ms = (System.nanoTime() - t0) / 1_000_000L;
+        System.out.println("sweep: combinations=" + grid.size() + " ms=" + ms);
+
+        assertEquals(grid.size(), scores.size());
+        ParameterSweep.Score best = scores.get(0);
+        assertEquals(1.0, best.f1(), 1e-9, "best=" + best);
+        assertEquals(0.0, best.meanAbsErrorMs(), 1e-9);
+        assertTrue(scores.stream().anyMatch(s -> s.params().equals(new ParameterSweep.Params(0.02, 0.3, 0.6, 400, 1000, 3000))
+                && s.f1() == 1.0));
+        assertTrue(scores.get(scores.size() - 1).f1() < 1.0, "grid must contain worse combinations");
+    }
+
+    @Test
+    void matchIsOneToOneWithinTolerance() {
+        long[] truth = {1_000, 5_000, 9_000};
+        long[] detected = {1_200, 1_300, 8_000, 20_000};
+        long[] m = ParameterSweep.match(truth, detected, 1_000);
+        assertEquals(2, m[0], "1000↔1200, 9000↔8000; 1300 and 20000 are false positives");
+        assertEquals(200 + 1_000, m[1]);
+
+        ParameterSweep.Score s = new ParameterSweep.Score(
+                new ParameterSweep.Params(0.1, 0.2, 0.6, 0, 0, 0), 2, 2, 1, 600);
+        assertEquals(0.5, s.precision(), 1e-9);
+        assertEquals(2.0 / 3, s.recall(), 1e-9);
+        assertEquals(4.0 / 7, s.f1(), 1e-9);
+    }
+
+    @Test
+    void gridEnumeratesEveryCombinationOnce() {
+        ParameterSweep.Grid grid = new ParameterSweep.Grid(new double[]{1, 2}, new double[]{3, 4, 5},
+                new double[]{6}, new int[]{7, 8}, new int[]{9, 10}, new int[]{11, 12, 13});
+        Set<ParameterSweep.Params> seen = new HashSet<>();
+        for (long i = 0; i < grid.size(); i++) seen.add(grid.at(i));
+        assertEquals(72, grid.size());
+        assertEquals(72, seen.size());
+    }
+
+    @Test
+    void truthCsvAndDetectBlock() throws IOException {
+        Path dir = Files.createTempDirectory("qv-sweep-");
+        Path csv = dir.resolve("truth.csv");
+        Files.writeString(csv, "video,t_ms\n# погрузки смены\ncam1.mp4,1500\ncam1.mp4, 9000\nsub/cam2.mp4,700\n");
+        Map<Path, List<Long>> truth = ParameterSweep.readTruth(csv);
+        assertEquals(List.of(1500L, 9000L), truth.get(dir.resolve("cam1.mp4").toAbsolutePath()));
+        assertEquals(List.of(700L), truth.get(dir.resolve("sub/cam2.mp4").toAbsolutePath()));
+
+        Config.DetectConf base = new Config.DetectConf(15, 45, 0.16, 150, 35000, 1, 1, 2500,
+                0.45, 0.96, 300, 700, false, 640, 0.017, List.of());
+        String yaml = ParameterSweep.detectYaml(base, new ParameterSweep.Score(
+                new ParameterSweep.Params(0.12, 0.3, 0.75, 600, 2000, 4000), 9, 1, 0, 250), 7500, 3);
+        assertTrue(yaml.startsWith("detect:\n  stepFrames: 15\n"), yaml);
+        assertTrue(yaml.contains("  eventRatio: 0.12\n"), yaml);
+        assertTrue(yaml.contains("  thrLowFactor: 0.75\n"), yaml);
+        assertTrue(yaml.contains("  mergeMs: 4000\n"), yaml);
+        assertTrue(yaml.contains("  minChangedFrac: 0.017\n"), yaml);
+    }
+}
@@ -0,0 +1,66 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Полоса номера: статистики ROI из интегральных изображений совпадают с прямым подсчётом по view
+public class PlateBandTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+    }
+
+    @Test
+    public void integralStatsMatchDirectStats() {
+        Mat bgr = new Mat(360, 640, opencv_core.CV_8UC3);
+        byte[] px = new byte[360 * 640 * 3];
+        new Random(3).nextBytes(px);
+        bgr.data().put(px);
+        List<Rect> rois = List.of(new Rect(288, 331, 115, 22), new Rect(160, 317, 141, 25), new Rect(416, 335, 90, 18));
+        try (PlateBand band = PlateBand.build(bgr, rois, 31, 5)) {
+            assertEquals(160, band.rect.x());
+            assertEquals(317, band.rect.y());
+            assertEquals(2 * 346, band.bin.cols());
+
+            // CLAHE той же полосы — эталон контраста
+            Mat gray = new Mat();
+            Mat eq = new Mat();
+            try (Mat crop = new Mat(bgr, band.rect)) {
+                opencv_imgproc.cvtColor(crop, gray, opencv_imgproc.COLOR_BGR2GRAY);
+                opencv_imgproc.createCLAHE(2.0, new Size(8, 8)).apply(gray, eq);
+            }
+            for (Rect r : rois) {
+                try (Mat v = band.binView(r)) {
+                    double fill = opencv_core.countNonZero(v) / (double) (v.rows() * v.cols());
+                    assertEquals(fill, band.fill(r), 1e-9);
+                }
+                Mat mean = new Mat();
+                Mat std = new Mat();
+                try (Mat v = new Mat(eq, new Rect(r.x() - band.rect.x(), r.y() - band.rect.y(), r.width(), r.height()))) {
+                    opencv_core.meanStdDev(v, mean, std);
+                    assertEquals(std.createIndexer().getDouble(0) / 255.0, band.contrast(r), 1e-6);
+                } finally {
+                    mean.release();
+                    std.release();
+                }
+                assertEquals(r.width() * 2, band.ocrRect(r).width);
+            }
+            gray.release();
+            eq.release();
+        } finally {
+            bgr.release();
+        }
+    }
+}
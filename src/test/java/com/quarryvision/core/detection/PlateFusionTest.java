@@ -0,0 +1,59 @@
+package com.quarryvision.core.detection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Временное слияние номера: посимвольное голосование по кадрам события
+public class PlateFusionTest {
+
+    @Test
+    public void perCharacterVoteRecoversPlateNoFrameReadExactly() {
+        PlateFusion f = new PlateFusion();
+        // каждый кадр ошибся в одном (своём) символе
+        f.add("A128BC77", 1.0, 0);
+        f.add("A123BO77", 1.0, 1);
+        f.add("4123BC77", 1.0, 2);
+        PlateFusion.Result r = f.fuse();
+        assertEquals("A123BC77", r.plate());
+        assertEquals(2.0 / 3, r.confidence(), 1e-9);
+        assertEquals(3, r.frames(), "each frame is one character away from the fused plate");
+    }
+
+    @Test
+    public void lengthIsVotedAndRegionTailAligned() {
+        PlateFusion f = new PlateFusion();
+        f.add("O793PP", 1.0, 0);
+        f.add("O793PP12", 1.0, 1);
+        f.add("O793PP", 1.0, 2);
+        PlateFusion.Result r = f.fuse();
+        assertEquals("O793PP", r.plate());
+        assertEquals(1.0, r.confidence(), 1e-9);
+        assertEquals(2, r.frames());
+    }
+
+    @Test
+    public void tieKeepsFirstHypothesis() {
+        assertEquals("K123MO", PlateFusion.fuse(List.of("K123MO", "X555XX")));
+        assertEquals("X555XX", PlateFusion.fuse(List.of("X555XX", "K123MO")));
+        assertEquals("K123MO", PlateFusion.fuse(List.of("K123MO", "X555XX", "K123MO")));
+    }
+
+    @Test
+    public void weightsDecideAndEmptyIsNull() {
+        PlateFusion f = new PlateFusion();
+        assertNull(f.fuse());
+        f.add("K123MO", 1.0, 0);
+        f.add("K128MO", 3.0, 1);
+        f.add("", 5.0, 2);
+        f.add(null, 5.0, 3);
+        PlateFusion.Result r = f.fuse();
+        assertEquals("K128MO", r.plate());
+        assertEquals(0.75, r.confidence(), 1e-9);
+        assertEquals(2, r.frames());
+        assertEquals(2, f.size());
+    }
+}
@@ -0,0 +1,144 @@
+package com.quarryvision.core.detection;
+
+import com.quarryvision.core.ocr.OcrEngine;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Локализатор номера: табличка вне нижней полосы находится, пустой кадр — нет кандидатов (→ сетка)
+public class PlateLocatorTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+    }
+
+    private static final Rect PLATE = new Rect(420, 260, 300, 64);
+
+    @Test
+    public void findsPlateOutsideBottomBand() {
+        Mat bgr = plateFrame();
+        try {
+            List<Rect> found = PlateLocator.propose(bgr, 6);
+            assertFalse(found.isEmpty(), "plate candidate expected");
+            assertTrue(found.size() <= 6);
+            Rect best = found.get(0);
+            assertTrue(covers(best, PLATE, 0.8), "best candidate covers the plate: " + str(best));
+        } finally {
+            bgr.release();
+        }
+    }
+
+    @Test
+    public void flatFrameHasNoCandidates() {
+        Mat bgr = new Mat(720, 1280, opencv_core.CV_8UC3, new Scalar(90, 90, 90, 0));
+        try {
+            assertTrue(PlateLocator.propose(bgr, 6).isEmpty());
+        } finally {
+            bgr.release();
+        }
+    }
+
+    @Test
+    public void locatedCandidatesReplaceGrid() {
+        Mat bgr = plateFrame();
+        AtomicInteger calls = new AtomicInteger();
+        OcrEngine engine = new OcrEngine() {
+            @Override
+            public Optional<String> readBestToken(BufferedImage bi) {
+                calls.incrementAndGet();
+                return Optional.empty();
+            }
+            @Override public Optional<String> readText(BufferedImage bi) { return Optional.empty(); }
+            @Override public Optional<String> readText(File imageFile) { return Optional.empty(); }
+        };
+        try {
+            BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                    500, 0.45, 0.9, 100, 200, false);
+            det.tryOcrPlate(engine, bgr);
+            int located = calls.getAndSet(0);
+            System.setProperty("qv.ocr.locator", "false");
+            try {
+                det.tryOcrPlate(engine, bgr);
+            } finally {
+                System.clearProperty("qv.ocr.locator");
+            }
+            int grid = calls.get();
+            assertTrue(located > 0, "locator candidates reach OCR");
+            assertTrue(located < grid, "locator=" + located + " grid=" + grid);
+        } finally {
+            bgr.release();
+        }
+    }
+
+    @Test
+    public void searchRegionLimitsCandidates() {
+        Mat bgr = plateFrame();
+        AtomicInteger calls = new AtomicInteger();
+        OcrEngine engine = new OcrEngine() {
+            @Override
+            public Optional<String> readBestToken(BufferedImage bi) {
+                calls.incrementAndGet();
+                return Optional.empty();
+            }
+            @Override public Optional<String> readText(BufferedImage bi) { return Optional.empty(); }
+            @Override public Optional<String> readText(File imageFile) { return Optional.empty(); }
+        };
+        try {
+            BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                    500, 0.45, 0.9, 100, 200, false);
+            // движение было только слева вверху: табличка «припаркованной» машины и нижняя полоса вне области
+            det.tryOcrPlate(engine, bgr, new Rect(0, 0, 380, 240));
+            assertEquals(0, calls.get(), "no ROI outside the motion region");
+            det.tryOcrPlate(engine, bgr, new Rect(360, 200, 420, 200));
+            assertTrue(calls.get() > 0, "plate inside the motion region is read");
+        } finally {
+            bgr.release();
+        }
+    }
+
+    /** Серый фон с лёгким шумом, шумная нижняя полоса и светлая табличка с тёмными символами в середине кадра. */
+    private static Mat plateFrame() {
+        Mat m = new Mat(720, 1280, opencv_core.CV_8UC3);
+        byte[] px = new byte[720 * 1280 * 3];
+        Random rnd = new Random(7);
+        final int bandStart = 600 * 1280 * 3; // нижняя полоса — сильный шум: ROI сетки проходят фильтры и доходят до OCR
+        for (int i = 0; i < px.length; i++) px[i] = (byte) (i < bandStart ? 80 + rnd.nextInt(12) : rnd.nextInt(256));
+        m.data().put(px);
+        opencv_imgproc.rectangle(m, PLATE, new Scalar(235, 235, 235, 0), -1, opencv_imgproc.LINE_8, 0);
+        opencv_imgproc.putText(m, "A123BC77", new Point(PLATE.x() + 14, PLATE.y() + 48),
+                opencv_imgproc.FONT_HERSHEY_SIMPLEX, 1.4, new Scalar(20, 20, 20, 0), 4, opencv_imgproc.LINE_8, false);
+        return m;
+    }
+
+    /** Доля площади b, попавшая в a, не меньше frac. */
+    private static boolean covers(Rect a, Rect b, double frac) {
+        int x0 = Math.max(a.x(), b.x()), y0 = Math.max(a.y(), b.y());
+        int x1 = Math.min(a.x() + a.width(), b.x() + b.width());
+        int y1 = Math.min(a.y() + a.height(), b.y() + b.height());
+        long inter = (long) Math.max(0, x1 - x0) * Math.max(0, y1 - y0);
+        return inter >= frac * b.width() * b.height();
+    }
+
+    private static String str(Rect r) {
+        return "rect(" + r.x() + ", " + r.y() + ", " + r.width() + ", " + r.height() + ")";
+    }
+}
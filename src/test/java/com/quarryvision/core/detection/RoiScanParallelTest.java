@@ -0,0 +1,223 @@
+package com.quarryvision.core.detection;
+
+import com.quarryvision.core.ocr.OcrDeadline;
+import com.quarryvision.core.ocr.OcrEngine;
+import com.quarryvision.core.ocr.OcrEnginePool;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Параллельный скан ROI: тот же номер, что и последовательный, при любом порядке завершения задач
+public class RoiScanParallelTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+    }
+
+    @Test
+    @Timeout(60) // sec
+    public void parallelScanMatchesSerialScan() {
+        // «движок» отвечает по размеру бинаризованного ROI (fw/fh сетки), с разной задержкой
+        assertSameResult((w, h) -> w == 282 && h == 50 ? "AB1234CD" : "A1");
+        assertSameResult((w, h) -> h == 44 ? (w == 180 ? "O793PP" : "K123MO") : null);
+        assertSameResult((w, h) -> (w * 31 + h) % 7 == 0 ? "O793PP" : ((w + h) % 3 == 0 ? "X555XX" : "7"));
+        assertSameResult((w, h) -> null);
+    }
+
+    @Test
+    @Timeout(60) // sec
+    public void regionEngineGetsBandOncePerEngine() {
+        BiFunction<Integer, Integer, String> reader = (w, h) -> h == 44 ? (w == 180 ? "O793PP" : "K123MO") : null;
+        Mat bgr = noiseFrame();
+        try {
+            AtomicInteger sessions = new AtomicInteger();
+            AtomicInteger reads = new AtomicInteger();
+            String serial = scan(bgr, reader, 1, null, sessions, reads);
+            assertNotNull(serial);
+            assertEquals(1, sessions.get(), "serial scan sets the band image once");
+            assertTrue(reads.get() > 1, "ROI are read as rectangles of the band: " + reads);
+
+            sessions.set(0);
+            String parallel = scan(bgr, reader, 4, null, sessions, reads);
+            assertEquals(serial, parallel);
+            assertTrue(sessions.get() >= 1 && sessions.get() <= 4, "one band session per engine: " + sessions);
+        } finally {
+            bgr.release();
+        }
+    }
+
+    @Test
+    @Timeout(60) // sec
+    public void eventDeadlineStopsRoiScanCooperatively() {
+        // медленный движок без ответа: без дедлайна скан прошёл бы всю сетку
+        AtomicInteger calls = new AtomicInteger();
+        BiFunction<Integer, Integer, String> slow = (w, h) -> {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        };
+        Mat bgr = noiseFrame();
+        try {
+            for (int threads : new int[]{1, 4}) {
+                calls.set(0);
+                OcrDeadline.set(System.nanoTime() + 100_000_000L);
+                try {
+                    assertNull(scan(bgr, slow, threads, null, null, null));
+                } finally {
+                    OcrDeadline.clear();
+                }
+                assertTrue(calls.get() > 0 && calls.get() <= 10 * threads,
+                        "threads=" + threads + " calls=" + calls);
+            }
+            calls.set(0);
+            assertNull(scan(bgr, slow, 4, null, null, null));
+            assertTrue(calls.get() > 40, "without a deadline the whole grid is read: " + calls);
+        } finally {
+            bgr.release();
+        }
+    }
+
+    @Test
+    @Timeout(60) // sec
+    public void callBudgetIsExactAndIndependentOfThreads() {
+        // ответ без номера: скан не останавливается голосованием, его держит только бюджет вызовов
+        List<String> read = Collections.synchronizedList(new ArrayList<>());
+        BiFunction<Integer, Integer, String> reader = (w, h) -> {
+            read.add(w + "x" + h);
+            return "7";
+        };
+        Mat bgr = noiseFrame();
+        try {
+            for (int limit : new int[]{1, 7, 20}) {
+                read.clear();
+                assertNull(scan(bgr, reader, 1, null, null, null, limit));
+                List<String> serial = new ArrayList<>(read);
+                assertEquals(limit, serial.size(), "serial scan stops at the budget");
+                for (int run = 0; run < 5; run++) {
+                    read.clear();
+                    assertNull(scan(bgr, reader, 4, null, null, null, limit));
+                    assertEquals(limit, read.size(), "parallel scan never overshoots, limit=" + limit);
+                    List<String> parallel = new ArrayList<>(read);
+                    Collections.sort(parallel);
+                    List<String> expected = new ArrayList<>(serial);
+                    Collections.sort(expected);
+                    assertEquals(expected, parallel, "the same ROI are read as in the serial scan");
+                }
+            }
+        } finally {
+            bgr.release();
+        }
+    }
+
+    private static void assertSameResult(BiFunction<Integer, Integer, String> reader) {
+        Mat bgr = noiseFrame();
+        try {
+            String serial = scan(bgr, reader, 1, null, null, null);
+            Set<Integer> engines = ConcurrentHashMap.newKeySet();
+            String parallel = scan(bgr, reader, 4, engines, null, null);
+            assertEquals(serial, parallel);
+            assertTrue(engines.size() > 1, "ROI were spread over several engines: " + engines);
+        } finally {
+            bgr.release();
+        }
+    }
+
+    /** sessions != null — движки «нативные»: полоса через open(), ROI через readBestToken(Rectangle). */
+    private static String scan(Mat bgr, BiFunction<Integer, Integer, String> reader, int threads, Set<Integer> used,
+                               AtomicInteger sessions, AtomicInteger reads) {
+        return scan(bgr, reader, threads, used, sessions, reads, Integer.MAX_VALUE);
+    }
+
+    /** limit — бюджет вызовов OCR снимка. */
+    private static String scan(Mat bgr, BiFunction<Integer, Integer, String> reader, int threads, Set<Integer> used,
+                               AtomicInteger sessions, AtomicInteger reads, int limit) {
+        AtomicInteger ids = new AtomicInteger();
+        OcrEnginePool pool = new OcrEnginePool(4, () -> sessions == null
+                ? new FakeEngine(ids.incrementAndGet(), reader, used)
+                : new FakeRegionEngine(reader, sessions, reads));
+        System.setProperty("qv.ocr.roiThreads", String.valueOf(threads));
+        try (OcrEnginePool.Lease own = pool.checkout()) {
+            BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                    500, 0.45, 0.9, 100, 200, false);
+            String plate = det.tryOcrPlate(own.engine(), bgr, null, pool, limit);
+            assertEquals(3, pool.available(), "borrowed ROI engines are returned");
+            return plate;
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        } finally {
+            System.clearProperty("qv.ocr.roiThreads");
+            pool.close();
+        }
+    }
+
+    /** Шум: ROI проходят фильтры контраста/заполнения FAST-режима и доходят до OCR. */
+    private static Mat noiseFrame() {
+        Mat m = new Mat(360, 640, opencv_core.CV_8UC3);
+        byte[] px = new byte[360 * 640 * 3];
+        new Random(42).nextBytes(px);
+        m.data().put(px);
+        return m;
+    }
+
+    private record FakeEngine(int id, BiFunction<Integer, Integer, String> reader, Set<Integer> used)
+            implements OcrEngine {
+        @Override
+        public Optional<String> readBestToken(BufferedImage bi) {
+            if (used != null) used.add(id);
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(4));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.ofNullable(reader.apply(bi.getWidth(), bi.getHeight()));
+        }
+
+        @Override public Optional<String> readText(BufferedImage bi) { return Optional.empty(); }
+        @Override public Optional<String> readText(File imageFile) { return Optional.empty(); }
+    }
+
+    private record FakeRegionEngine(BiFunction<Integer, Integer, String> reader, AtomicInteger sessions,
+                                    AtomicInteger reads) implements OcrEngine {
+        @Override
+        public RegionSession open(BufferedImage image) {
+            sessions.incrementAndGet();
+            return r -> {
+                reads.incrementAndGet();
+                return Optional.ofNullable(reader.apply(r.width, r.height));
+            };
+        }
+
+        @Override public boolean prefersRegions() { return true; }
+        @Override public Optional<String> readBestToken(BufferedImage bi) { throw new AssertionError("per-ROI call"); }
+        @Override public Optional<String> readText(BufferedImage bi) { return Optional.empty(); }
+        @Override public Optional<String> readText(File imageFile) { return Optional.empty(); }
+    }
+}
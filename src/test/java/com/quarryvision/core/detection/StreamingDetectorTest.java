@@ -0,0 +1,95 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Push-детект: файл как источник кадров даёт те же события, что detect(), и отдаёт их по ходу потока
+class StreamingDetectorTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+        Loader.load(opencv_videoio.class);
+    }
+
+    @Test
+    @Timeout(60) // sec
+    void fileSourceMatchesDetectAndEmitsIncrementally() throws IOException {
+        Path dir = Files.createTempDirectory("qv-stream-");
+        Path avi = dir.resolve("moving.avi");
+        SyntheticVideo.writeMovingBlocks(avi, 640, 360, 25.0, 611);
+
+        BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                500, 0.45, 0.9, 100, 200, false);
+        DetectionResult batch = det.detect(avi);
+        Assumptions.assumeTrue(batch.frames() > 0, "skip: MJPEG backend unavailable");
+        assertTrue(batch.events() > 1, "synthetic video must produce events");
+
+        FrameSource src = FrameSource.file(avi);
+        assertNotNull(src);
+        List<DetectionEvent> events = new ArrayList<>();
+        List<Long> emittedAtFrame = new ArrayList<>();
+        long frames;
+        try (src) {
+            StreamingDetector[] sd = new StreamingDetector[1];
+            sd[0] = det.stream(avi.getFileName().toString(), src.fps(), ev -> {
+                events.add(ev);
+                emittedAtFrame.add(src.captureMs());
+            });
+            frames = sd[0].run(src);
+            assertEquals(events.size(), sd[0].events());
+        }
+        assertEquals(batch.frames(), frames);
+        assertEquals(batch.timestampsMs().stream().map(t -> t.toEpochMilli()).toList(),
+                events.stream().map(DetectionEvent::ms).toList());
+        // событие уходит на закрытии интервала, а не в конце ролика; время захвата — у mid-кадра
+        long endMs = (long) ((frames / 25.0) * 1000.0);
+        assertTrue(emittedAtFrame.get(0) < endMs / 2, "first event at " + emittedAtFrame.get(0) + " of " + endMs);
+        for (int i = 0; i < events.size(); i++) {
+            DetectionEvent ev = events.get(i);
+            assertNull(ev.zone());
+            assertTrue(emittedAtFrame.get(i) >= ev.ms(), "emitted after the mid frame");
+            assertTrue(Math.abs(ev.capturedAt().toEpochMilli() - ev.ms()) <= 40, "capturedAt=" + ev.capturedAt());
+        }
+    }
+
+    @Test
+    void pushAndSkipFollowTheSampleGrid() {
+        BucketDetector det = new BucketDetector(3, 25, 0.01, 10, 500, new Size(3, 3),
+                500, 0.45, 0.9, 100, 200, false);
+        List<DetectionEvent> events = new ArrayList<>();
+        StreamingDetector sd = det.stream("cam-1", 0, events::add);
+        try (Mat frame = new Mat(120, 160, opencv_core.CV_8UC3, new Scalar(0, 0, 0, 0))) {
+            assertTrue(sd.wantsFrame(), "first frame is the reference");
+            sd.push(frame, 0);
+            for (int k = 1; k <= 2; k++) {
+                assertFalse(sd.wantsFrame());
+                sd.skip(k * 40L);
+            }
+            assertTrue(sd.wantsFrame(), "frame 3 is a sample");
+            assertThrows(IllegalStateException.class, () -> sd.skip(120));
+            sd.push(frame, 120);
+            sd.close();
+            assertThrows(IllegalStateException.class, () -> sd.push(frame, 160));
+        }
+        assertTrue(events.isEmpty(), "static frames: no motion");
+        assertEquals(0, sd.events());
+    }
+}
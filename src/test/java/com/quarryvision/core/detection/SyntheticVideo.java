@@ -0,0 +1,56 @@
+package com.quarryvision.core.detection;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.bytedeco.opencv.opencv_videoio.VideoWriter;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+
+import java.nio.file.Path;
+
+/** Синтетическое видео для тестов: статичный фон и периодически проезжающий блок («ковш»). */
+final class SyntheticVideo {
+    private SyntheticVideo() {}
+
+    /**
+     * Пишет MJPEG/AVI: в каждом цикле 200 кадров первые 60 блок движется, остальные — слабое мерцание.
+     * Возвращает false, если VideoWriter не открылся.
+     */
+    static boolean writeMovingBlocks(Path out, int w, int h, double fps, int frames) {
+        int fourcc = VideoWriter.fourcc((byte) 'M', (byte) 'J', (byte) 'P', (byte) 'G');
+        VideoWriter vw = new VideoWriter(out.toString(), fourcc, fps, new Size(w, h), true);
+        if (!vw.isOpened()) {
+            vw.release();
+            return false;
+        }
+        Mat frame = new Mat(h, w, opencv_core.CV_8UC3);
+        try {
+            for (int i = 0; i < frames; i++) {
+                frame.put(new Scalar(40, 40, 40, 0));
+                int phase = i % 200;
+                if (phase < 60) {
+                    int bw = w / 3, bh = h / 2;
+                    int x = (int) ((w - bw) * (phase / 59.0));
+                    opencv_imgproc.rectangle(frame, new Rect(x, h / 4, bw, bh),
+                            new Scalar(230, 230, 230, 0), opencv_imgproc.FILLED, opencv_imgproc.LINE_8, 0);
+                } else if ((i & 1) == 0) {
+                    // слабое мерцание в паузе: выше minChangedPixels, но ниже порога выхода из ACTIVE,
+                    // иначе EMA не затухает и интервал не закрывается
+                    opencv_imgproc.rectangle(frame, new Rect(10, 10, 40, 40),
+                            new Scalar(200, 200, 200, 0), opencv_imgproc.FILLED, opencv_imgproc.LINE_8, 0);
+                }
+                // статичная «табличка» внизу кадра
+                opencv_imgproc.putText(frame, "AB1234CD", new Point(w / 3, h - 20),
+                        opencv_imgproc.FONT_HERSHEY_SIMPLEX, 1.0, new Scalar(255, 255, 255, 0));
+                vw.write(frame);
+            }
+        } finally {
+            frame.release();
+            vw.release();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,113 @@
+package com.quarryvision.core.ocr;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Быстрый читатель номеров: шаблоны символов из testdata/ocr/plates, Tesseract — только при низкой уверенности
+class CharTemplatesTest {
+    static {
+        System.setProperty("org.bytedeco.javacpp.cachedir",
+                System.getProperty("user.home") + "/.javacpp-cache");
+        Loader.load(opencv_core.class);
+        Loader.load(opencv_imgproc.class);
+    }
+
+    private static final Path PLATES = Path.of("testdata/ocr/plates");
+    private static final int PLATE_COUNT = 5;
+
+    @Test
+    void everyLabelledPlateSegmentsIntoItsLabel() throws Exception {
+        CharTemplates model = CharTemplates.train(PLATES);
+        int chars = 0;
+        for (int i = 1; i <= PLATE_COUNT; i++) chars += label(i).length();
+        assertEquals(chars, model.size(), "every sample segments into exactly its label's characters");
+    }
+
+    @Test
+    void leaveOneOutReadsCharactersSeenInOtherPlates() throws Exception {
+        // каждый номер читается моделью, обученной на остальных: оценка не на своих же образцах
+        double minConf = TemplatePlateReader.minConfidenceFromProperties();
+        int seen = 0, right = 0;
+        for (int held = 1; held <= PLATE_COUNT; held++) {
+            CharTemplates model = new CharTemplates();
+            StringBuilder alphabet = new StringBuilder();
+            for (int i = 1; i <= PLATE_COUNT; i++) {
+                if (i == held) continue;
+                assertTrue(model.learn(plate(i), label(i)));
+                alphabet.append(label(i));
+            }
+            String expected = label(held);
+            CharTemplates.Reading r = model.read(plate(held));
+            assertEquals(expected.length(), r.text().length(), "held-out " + held + " read as '" + r.text() + "'");
+            // символа нет ни в одном другом номере — его модель прочитать не может
+            for (int k = 0; k < expected.length(); k++) {
+                if (alphabet.indexOf(String.valueOf(expected.charAt(k))) < 0) continue;
+                seen++;
+                if (r.text().charAt(k) == expected.charAt(k)) right++;
+            }
+            System.out.println("char templates: held-out " + held + " '" + expected + "' -> '" + r.text()
+                    + "' confidence=" + r.confidence());
+            // ошибочное чтение не должно пройти мимо Tesseract
+            if (!r.text().equals(expected)) {
+                assertTrue(r.confidence() < minConf, "wrong held-out read accepted: " + r);
+            }
+        }
+        System.out.println("char templates: leave-one-out " + right + "/" + seen);
+        // пять номеров — мало образцов на символ; порог ловит поломку сегментации/признаков, а не оценку качества
+        assertTrue(right * 2 >= seen, "leave-one-out accuracy " + right + "/" + seen);
+    }
+
+    @Test
+    void unseenPlateFallsBackToTesseract() throws Exception {
+        // модель без 001.png: этот номер ей незнаком
+        CharTemplates model = new CharTemplates();
+        for (int i = 2; i <= 5; i++) assertTrue(model.learn(plate(i), label(i)));
+        CharTemplates.Reading unseen = model.read(plate(1));
+        assertTrue(unseen.confidence() < TemplatePlateReader.minConfidenceFromProperties(),
+                "confidence=" + unseen.confidence());
+
+        AtomicInteger tesseract = new AtomicInteger();
+        OcrEngine fallback = new OcrEngine() {
+            @Override public Optional<String> readText(BufferedImage bi) { return Optional.empty(); }
+            @Override public Optional<String> readText(File f) { return Optional.empty(); }
+            @Override public Optional<String> readBestToken(BufferedImage bi) {
+                tesseract.incrementAndGet();
+                return Optional.of("TESS");
+            }
+        };
+        OcrEngine reader = new TemplatePlateReader(model, fallback, TemplatePlateReader.minConfidenceFromProperties());
+        assertEquals(Optional.of("TESS"), reader.readBestToken(plate(1)));
+        assertEquals(Optional.of(label(2)), reader.readBestToken(plate(2)));
+        assertEquals(1, tesseract.get(), "known plate is read without Tesseract");
+        assertEquals(1, model.accepted());
+        assertEquals(1, model.rejected());
+        // без fallback неуверенное чтение — пусто
+        assertTrue(new TemplatePlateReader(model, null, 0.3).readBestToken(plate(1)).isEmpty());
+    }
+
+    @Test
+    void cyrillicLabelsMapToLatinTwins() {
+        assertEquals("P138EH58", CharTemplates.toLatin("Р138ЕН58"));
+        assertEquals("O793PP123", CharTemplates.toLatin("о793рр 123"));
+    }
+
+    private static BufferedImage plate(int i) throws Exception {
+        return ImageIO.read(PLATES.resolve(String.format("%03d.png", i)).toFile());
+    }
+
+    private static String label(int i) throws Exception {
+        return CharTemplates.toLatin(Files.readString(PLATES.resolve(String.format("%03d.txt", i))).trim());
+    }
+}
@@ -0,0 +1,154 @@
+package com.quarryvision.core.ocr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Пул движков: монопольная выдача, возврат по close(), ожидание при исчерпании
+class OcrEnginePoolTest {
+
+    @Test
+    void enginesAreCreatedOnceAndReused() throws InterruptedException {
+        AtomicInteger created = new AtomicInteger();
+        OcrEnginePool pool = new OcrEnginePool(2, () -> new FakeEngine(created.incrementAndGet()));
+        assertEquals(2, created.get());
+        assertEquals(2, pool.available());
+
+        OcrEngine first;
+        try (OcrEnginePool.Lease a = pool.checkout(); OcrEnginePool.Lease b = pool.checkout()) {
+            first = a.engine();
+            assertNotSame(a.engine(), b.engine());
+            assertEquals(0, pool.available());
+        }
+        assertEquals(2, pool.available());
+        for (int i = 0; i < 5; i++) {
+            try (OcrEnginePool.Lease l = pool.checkout()) {
+                assertNotNull(l.engine());
+            }
+        }
+        assertEquals(2, created.get(), "no engine is created after the pool is built");
+        assertTrue(first instanceof FakeEngine);
+    }
+
+    @Test
+    void doubleCloseReturnsEngineOnce() throws InterruptedException {
+        OcrEnginePool pool = new OcrEnginePool(1, () -> new FakeEngine(1));
+        OcrEnginePool.Lease l = pool.checkout();
+        l.close();
+        l.close();
+        assertEquals(1, pool.available());
+        assertThrows(IllegalStateException.class, l::engine);
+    }
+
+    @Test
+    @Timeout(10) // sec
+    void checkoutWaitsForReturn() throws Exception {
+        OcrEnginePool pool = new OcrEnginePool(1, () -> new FakeEngine(1));
+        OcrEnginePool.Lease held = pool.checkout();
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicReference<OcrEngine> got = new AtomicReference<>();
+        Thread t = new Thread(() -> {
+            started.countDown();
+            try (OcrEnginePool.Lease l = pool.checkout()) {
+                got.set(l.engine());
+            } catch (InterruptedException ignore) {
+            }
+        });
+        t.start();
+        started.await();
+        t.join(200);
+        assertTrue(t.isAlive(), "second checkout must wait while the only engine is leased");
+        OcrEngine e = held.engine();
+        held.close();
+        t.join(TimeUnit.SECONDS.toMillis(5));
+        assertSame(e, got.get());
+    }
+
+    @Test
+    void closeFreesIdleEnginesNowAndLeasedOnesOnReturn() throws InterruptedException {
+        List<ClosableEngine> engines = new ArrayList<>();
+        OcrEnginePool pool = new OcrEnginePool(2, () -> {
+            ClosableEngine e = new ClosableEngine();
+            engines.add(e);
+            return e;
+        });
+        OcrEnginePool.Lease held = pool.checkout();
+        pool.close();
+        pool.close();
+        assertEquals(1, engines.stream().filter(e -> e.closed.get() == 1).count(), "idle engine is freed once");
+        assertEquals(0, pool.available());
+        assertThrows(IllegalStateException.class, pool::checkout);
+        assertNull(pool.tryCheckout());
+
+        // арендованный движок работает до возврата и освобождается при нём
+        assertEquals(Optional.of("E"), held.engine().readBestToken(new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_GRAY)));
+        held.close();
+        assertTrue(engines.stream().allMatch(e -> e.closed.get() == 1));
+        assertEquals(0, pool.available());
+    }
+
+    @Test
+    @Timeout(10) // sec
+    void executorIsBoundedAndStopsWithPool() throws Exception {
+        OcrEnginePool pool = new OcrEnginePool(2, () -> new FakeEngine(1));
+        ExecutorService exec = pool.executor();
+        assertSame(exec, pool.executor());
+        // задач больше, чем движков: одновременно работают не больше size
+        AtomicInteger running = new AtomicInteger(), peak = new AtomicInteger();
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(exec.submit(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            }));
+        }
+        for (Future<?> f : tasks) f.get();
+        assertTrue(peak.get() <= 2, "peak=" + peak);
+
+        pool.close();
+        assertTrue(exec.awaitTermination(5, TimeUnit.SECONDS), "worker threads stop with the pool");
+        assertThrows(RejectedExecutionException.class, () -> exec.execute(() -> { }));
+    }
+
+    /** Движок с нативным ресурсом: считает close(). */
+    private static final class ClosableEngine implements OcrEngine, AutoCloseable {
+        final AtomicInteger closed = new AtomicInteger();
+
+        @Override public Optional<String> readText(BufferedImage bi) { return Optional.empty(); }
+        @Override public Optional<String> readText(File imageFile) { return Optional.empty(); }
+
+        @Override
+        public Optional<String> readBestToken(BufferedImage bi) {
+            if (closed.get() > 0) throw new IllegalStateException("engine used after close");
+            return Optional.of("E");
+        }
+
+        @Override
+        public void close() { closed.incrementAndGet(); }
+    }
+
+    private record FakeEngine(int id) implements OcrEngine {
+        @Override public Optional<String> readText(BufferedImage bi) { return Optional.empty(); }
+        @Override public Optional<String> readText(File imageFile) { return Optional.empty(); }
+        @Override public Optional<String> readBestToken(BufferedImage bi) { return Optional.of("E" + id); }
+    }
+}
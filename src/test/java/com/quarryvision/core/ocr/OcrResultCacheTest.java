@@ -0,0 +1,185 @@
+package com.quarryvision.core.ocr;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Кэш OCR по перцептивному хэшу: почти одинаковый ROI не распознаётся повторно
+class OcrResultCacheTest {
+
+    @Test
+    void sameRoiIsServedFromCacheNearDuplicatePlateIsNot() {
+        OcrResultCache cache = new OcrResultCache(16, 6);
+        CountingEngine inner = new CountingEngine();
+        OcrEngine ocr = new CachingOcrEngine(inner, cache, "tess4j|rus|7");
+
+        BufferedImage a = plate("A123BC77");
+        BufferedImage noisy = plate("A123BC77");
+        // соседний снимок: немного шума бинаризации — прочитанный номер по перцептивному хэшу не отдаётся
+        for (int i = 0; i < 40; i++) noisy.getRaster().setSample((i * 37) % 240, (i * 11) % 60, 0, 0);
+
+        assertEquals(Optional.of("T1"), ocr.readBestToken(a));
+        assertEquals(Optional.of("T1"), ocr.readBestToken(plate("A123BC77")));
+        assertEquals(Optional.of("T2"), ocr.readBestToken(noisy));
+        assertEquals(2, inner.calls.get());
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+
+        // другие настройки — промах
+        assertEquals(Optional.of("T3"), new CachingOcrEngine(inner, cache, "native|rus|7").readBestToken(a));
+        assertEquals(3, inner.calls.get());
+        assertEquals(3, cache.misses());
+    }
+
+    @Test
+    void platesDifferingByOneCharacterMiss() {
+        OcrResultCache cache = new OcrResultCache(16, 6);
+        CountingEngine inner = new CountingEngine();
+        OcrEngine ocr = new CachingOcrEngine(inner, cache, "s");
+        // в перцептивном хэше эти номера отличаются от A123BC77 на 1..5 бит — в пределах cacheMaxBits
+        String[] plates = {"A123BC77", "A123EC77", "A128BC77", "A123BC71", "B123BC77"};
+        for (int i = 0; i < plates.length; i++) {
+            assertEquals(Optional.of("T" + (i + 1)), ocr.readBestToken(plate(plates[i])), plates[i]);
+        }
+        assertEquals(0, cache.hits());
+        assertEquals(plates.length, inner.calls.get());
+    }
+
+    @Test
+    void regionSessionsAndEmptyResultsAreCached() {
+        OcrResultCache cache = new OcrResultCache(16, 6);
+        CountingEngine inner = new CountingEngine();
+        OcrEngine ocr = new CachingOcrEngine(inner, cache, "s");
+
+        BufferedImage band = new BufferedImage(600, 60, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = band.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 600, 60);
+        g.dispose();
+        // пустой ROI в двух местах одной полосы: второй — из кэша, «ничего» тоже запоминается
+        try (OcrEngine.RegionSession s = ocr.open(band)) {
+            assertTrue(s.readBestToken(new Rectangle(0, 0, 240, 60)).isEmpty());
+            assertTrue(s.readBestToken(new Rectangle(300, 0, 240, 60)).isEmpty());
+        }
+        assertEquals(1, inner.calls.get());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        OcrResultCache cache = new OcrResultCache(2, 0);
+        CountingEngine inner = new CountingEngine();
+        OcrEngine ocr = new CachingOcrEngine(inner, cache, "s");
+        BufferedImage a = plate("A123BC77"), b = plate("K555XX12"), c = plate("O793PP50");
+        ocr.readBestToken(a);
+        ocr.readBestToken(b);
+        ocr.readBestToken(a); // a — свежий
+        ocr.readBestToken(c); // вытесняет b
+        assertEquals(2, cache.size());
+        ocr.readBestToken(a);
+        assertEquals(3, inner.calls.get());
+        ocr.readBestToken(b);
+        assertEquals(4, inner.calls.get());
+    }
+
+    @Test
+    void deadlineTruncatedResultIsNotCachedAndCountsPerRun() {
+        OcrResultCache cache = new OcrResultCache(16, 6);
+        AtomicLong runA = new AtomicLong(), runB = new AtomicLong();
+        // движок, которому дедлайн оборвал свип PSM: ответ урезан
+        OcrEngine truncating = new OcrEngine() {
+            @Override public Optional<String> readText(BufferedImage bi) { return Optional.empty(); }
+            @Override public Optional<String> readText(File f) { return Optional.empty(); }
+            @Override
+            public Optional<String> readBestToken(BufferedImage bi) {
+                if (OcrDeadline.expired()) {
+                    OcrDeadline.countSkipped();
+                    return Optional.empty();
+                }
+                return Optional.of("A123BC77");
+            }
+        };
+        OcrEngine ocr = new CachingOcrEngine(truncating, cache, "s");
+        BufferedImage a = plate("A123BC77");
+        OcrDeadline.set(System.nanoTime() - 1, runA);
+        try {
+            assertEquals(Optional.empty(), ocr.readBestToken(a));
+        } finally {
+            OcrDeadline.clear();
+        }
+        assertEquals(0, cache.size(), "truncated answer must not be cached");
+        assertEquals(1, runA.get());
+        assertEquals(0, runB.get(), "other runs' counters are untouched");
+
+        // без дедлайна — полный ответ, он и кэшируется
+        assertEquals(Optional.of("A123BC77"), ocr.readBestToken(a));
+        assertEquals(1, cache.size());
+        assertEquals(1, runA.get(), "no deadline, nothing counted");
+    }
+
+    @Test
+    void cacheHitKeepsConfidenceOfTheOriginalReading() {
+        OcrResultCache cache = new OcrResultCache(16, 6);
+        double[] conf = {0.42};
+        OcrEngine scored = new OcrEngine() {
+            @Override public Optional<String> readText(BufferedImage bi) { return Optional.empty(); }
+            @Override public Optional<String> readText(File f) { return Optional.empty(); }
+            @Override public Optional<String> readBestToken(BufferedImage bi) { return Optional.of("A123BC77"); }
+            @Override public double lastConfidence() { return conf[0]; }
+        };
+        OcrEngine ocr = new CachingOcrEngine(scored, cache, "s");
+        BufferedImage a = plate("A123BC77");
+        assertEquals(Optional.of("A123BC77"), ocr.readBestToken(a));
+        assertEquals(0.42, ocr.lastConfidence(), 1e-9);
+
+        conf[0] = 0.9; // другой движок ответил бы увереннее — но из кэша приходит исходная оценка
+        assertEquals(Optional.of("A123BC77"), ocr.readBestToken(a));
+        assertEquals(1, cache.hits());
+        assertEquals(0.42, ocr.lastConfidence(), 1e-9);
+        // сессия по умолчанию (вырезка + readBestToken) отдаёт оценку движка
+        try (OcrEngine.RegionSession s = scored.open(a)) {
+            assertTrue(s.readBestToken(new Rectangle(0, 0, 240, 60)).isPresent());
+            assertEquals(0.9, s.lastConfidence(), 1e-9);
+        }
+    }
+
+    /** Бинаризованный ROI номера: чёрный текст на белом. */
+    private static BufferedImage plate(String text) {
+        BufferedImage img = new BufferedImage(240, 60, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 240, 60);
+        g.setColor(Color.BLACK);
+        g.setFont(new Font(Font.MONOSPACED, Font.BOLD, 36));
+        g.drawString(text, 10, 45);
+        g.dispose();
+        return img;
+    }
+
+    /** Каждый вызов даёт новый токен «T<n>» (пустой ROI — ничего): повтор из кэша виден по номеру. */
+    private static final class CountingEngine implements OcrEngine {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override public Optional<String> readText(BufferedImage bi) { return Optional.empty(); }
+        @Override public Optional<String> readText(File f) { return Optional.empty(); }
+
+        @Override
+        public Optional<String> readBestToken(BufferedImage bi) {
+            int n = calls.incrementAndGet();
+            for (int y = 0; y < bi.getHeight(); y++)
+                for (int x = 0; x < bi.getWidth(); x++)
+                    if (bi.getRaster().getSample(x, y, 0) < 128) return Optional.of("T" + n);
+            return Optional.empty();
+        }
+    }
+}
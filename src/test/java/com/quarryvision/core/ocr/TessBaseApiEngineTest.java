@@ -0,0 +1,43 @@
+package com.quarryvision.core.ocr;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Буфер для SetImage: серое изображение и его вырезка копируются из DataBufferByte без потерь
+class TessBaseApiEngineTest {
+
+    @Test
+    void gray8CopiesGrayImagesAndSubimagesExactly() {
+        BufferedImage img = new BufferedImage(37, 11, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < img.getHeight(); y++)
+            for (int x = 0; x < img.getWidth(); x++)
+                img.getRaster().setSample(x, y, 0, (x * 7 + y * 31) & 0xFF);
+
+        assertPixels(img, TessBaseApiEngine.gray8(img));
+        // вырезка: строка буфера длиннее ширины, окно сдвинуто
+        BufferedImage sub = img.getSubimage(5, 3, 20, 6);
+        assertPixels(sub, TessBaseApiEngine.gray8(sub));
+    }
+
+    @Test
+    void gray8MapsBinarySamplesToBlackAndWhite() {
+        BufferedImage bin = new BufferedImage(9, 2, BufferedImage.TYPE_BYTE_BINARY);
+        bin.getRaster().setSample(4, 1, 0, 1);
+        ByteBuffer buf = TessBaseApiEngine.gray8(bin);
+        assertEquals(18, buf.remaining());
+        assertEquals((byte) 255, buf.get(9 + 4));
+        assertEquals(0, buf.get(9 + 3));
+    }
+
+    private static void assertPixels(BufferedImage img, ByteBuffer buf) {
+        int w = img.getWidth(), h = img.getHeight();
+        assertEquals(w * h, buf.remaining());
+        for (int y = 0; y < h; y++)
+            for (int x = 0; x < w; x++)
+                assertEquals(img.getRaster().getSample(x, y, 0), buf.get(y * w + x) & 0xFF, "px " + x + "," + y);
+    }
+}
@@ -0,0 +1,143 @@
+package com.quarryvision.core.queue;
+
+import com.quarryvision.core.db.DbOcrJob;
+import com.quarryvision.core.detection.DeferredOcr;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Фоновый OCR событий: очередь задач разбирается воркерами, ошибки повторяются до лимита попыток
+class DeferredOcrServiceTest {
+
+    @Test
+    @Timeout(10) // sec
+    void workersDrainQueueAndRetryFailures() throws Exception {
+        MemoryStore store = new MemoryStore(2);
+        for (int i = 1; i <= 5; i++) store.add(new DbOcrJob(i, 100 + i, "v.mp4", new DeferredOcr(new long[]{i}, null), 0));
+        // событие 103 не читается с первой попытки, 105 — никогда
+        Map<Integer, Integer> calls = new ConcurrentHashMap<>();
+        DeferredOcrService.Reader reader = job -> {
+            int n = calls.merge(job.eventId(), 1, Integer::sum);
+            if (job.eventId() == 105 || (job.eventId() == 103 && n == 1)) throw new IllegalStateException("boom");
+            return job.eventId() == 104 ? null : "A" + job.eventId() + "BC77";
+        };
+        try (DeferredOcrService svc = new DeferredOcrService(store, reader, 2, 5)) {
+            svc.start();
+            while (store.finished() < 5) Thread.sleep(5);
+        }
+        assertEquals("A101BC77", store.plates.get(101));
+        assertEquals("A103BC77", store.plates.get(103));
+        assertEquals("", store.plates.get(104), "no plate is still a finished job");
+        assertNull(store.plates.get(105));
+        assertEquals(1, store.failedForGood);
+        assertEquals(2, calls.get(105));
+    }
+
+    @Test
+    @Timeout(10) // sec
+    void jobInFlightAtShutdownIsRequeuedNotCompleted() throws Exception {
+        MemoryStore store = new MemoryStore(3);
+        store.add(new DbOcrJob(1, 101, "v.mp4", new DeferredOcr(new long[]{1}, null), 0));
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean readerLeft = new AtomicBoolean();
+        DeferredOcrService.Reader reader = job -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+                return "X";
+            } finally {
+                Thread.sleep(50); // освобождение движка и т.п. — stop() должен его дождаться
+                readerLeft.set(true);
+            }
+        };
+        try (DeferredOcrService svc = new DeferredOcrService(store, reader, 1, 5)) {
+            svc.start();
+            started.await();
+        }
+        // close() вернулся только после выхода воркера
+        assertTrue(readerLeft.get(), "stop() must join the worker");
+        assertEquals(1, store.pendingCount(), "interrupted job is back in the queue");
+        assertEquals(0, store.finished(), "interrupted read must not complete the job");
+        assertEquals(0, store.pending.peek().attempts(), "stopping must not use up an attempt");
+    }
+
+    @Test
+    void activeHoursWindowWrapsMidnight() {
+        assertTrue(DeferredOcrService.activeHour("", 12));
+        assertTrue(DeferredOcrService.activeHour("20-6", 23));
+        assertTrue(DeferredOcrService.activeHour("20-6", 3));
+        assertFalse(DeferredOcrService.activeHour("20-6", 6));
+        assertFalse(DeferredOcrService.activeHour("20-6", 12));
+        assertTrue(DeferredOcrService.activeHour("9-17", 9));
+        assertFalse(DeferredOcrService.activeHour("9-17", 17));
+    }
+
+    @Test
+    @Timeout(10) // sec
+    void outsideActiveHoursNothingIsClaimed() throws Exception {
+        MemoryStore store = new MemoryStore(3);
+        store.add(new DbOcrJob(1, 101, "v.mp4", new DeferredOcr(new long[]{1}, null), 0));
+        System.setProperty("qv.ocr.deferredHours", "20-6");
+        try (DeferredOcrService svc = new DeferredOcrService(store, job -> "X", 1, 5, () -> 12)) {
+            svc.start();
+            Thread.sleep(100);
+            assertEquals(0, store.finished());
+        } finally {
+            System.clearProperty("qv.ocr.deferredHours");
+        }
+    }
+
+    /** Очередь в памяти с той же семантикой попыток, что ocr_jobs. */
+    private static final class MemoryStore implements DeferredOcrService.Store {
+        final int maxAttempts;
+        final Deque<DbOcrJob> pending = new ArrayDeque<>();
+        final Map<Integer, String> plates = new ConcurrentHashMap<>();
+        int failedForGood;
+
+        MemoryStore(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        synchronized void add(DbOcrJob job) {
+            pending.add(job);
+        }
+
+        synchronized int pendingCount() {
+            return pending.size();
+        }
+
+        synchronized int finished() {
+            return plates.size() + failedForGood;
+        }
+
+        @Override
+        public synchronized DbOcrJob claim() {
+            DbOcrJob j = pending.poll();
+            return j == null ? null : new DbOcrJob(j.id(), j.eventId(), j.videoPath(), j.frames(), j.attempts() + 1);
+        }
+
+        @Override
+        public synchronized void complete(DbOcrJob job, String plate) {
+            plates.put(job.eventId(), plate == null ? "" : plate);
+        }
+
+        @Override
+        public synchronized void fail(DbOcrJob job, String error) {
+            if (job.attempts() >= maxAttempts) failedForGood++;
+            else pending.add(job);
+        }
+
+        @Override
+        public synchronized void requeue(DbOcrJob job) {
+            pending.add(new DbOcrJob(job.id(), job.eventId(), job.videoPath(), job.frames(), job.attempts() - 1));
+        }
+    }
+}